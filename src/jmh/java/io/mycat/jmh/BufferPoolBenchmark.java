@@ -0,0 +1,56 @@
+package io.mycat.jmh;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.mycat.buffer.DirectByteBufferPool;
+
+/**
+ * DirectByteBufferPool 申请与回收，单线程和多线程竞争两种情况
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BufferPoolBenchmark {
+
+    @Param({ "64", "4096", "65536" })
+    public int size;
+
+    private DirectByteBufferPool pool;
+
+    @Setup
+    public void setup() {
+        // 与默认配置相同: 每页 2M，chunk 4K，8 页
+        pool = new DirectByteBufferPool(2 * 1024 * 1024, (short) 4096, (short) 8, 4096);
+    }
+
+    @Benchmark
+    public int allocateRecycle() {
+        ByteBuffer buffer = pool.allocate(size);
+        int capacity = buffer.capacity();
+        pool.recycle(buffer);
+        return capacity;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public int allocateRecycleContended() {
+        return allocateRecycle();
+    }
+}
@@ -0,0 +1,58 @@
+package io.mycat.jmh;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.mycat.util.CompressUtil;
+
+/**
+ * mysql 压缩协议使用的 zlib 压缩与解压
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressBenchmark {
+
+    @Param({ "256", "16384", "1048576" })
+    public int size;
+
+    private byte[] data;
+    private byte[] compressed;
+
+    @Setup
+    public void setup() {
+        // 模拟结果集: 重复度较高的文本
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(size);
+        while (sb.length() < size) {
+            sb.append(random.nextInt(100000)).append(",name-").append(random.nextInt(100)).append(",2017-01-01\n");
+        }
+        data = sb.substring(0, size).getBytes();
+        compressed = CompressUtil.compress(data);
+    }
+
+    @Benchmark
+    public byte[] compress() {
+        return CompressUtil.compress(data);
+    }
+
+    @Benchmark
+    public byte[] decompress() {
+        return CompressUtil.decompress(compressed, 0, compressed.length);
+    }
+}
@@ -0,0 +1,142 @@
+package io.mycat.jmh;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.mycat.MycatServer;
+import io.mycat.memory.MyCatMemory;
+import io.mycat.memory.unsafe.memory.mm.DataNodeMemoryManager;
+import io.mycat.memory.unsafe.row.BufferHolder;
+import io.mycat.memory.unsafe.row.StructType;
+import io.mycat.memory.unsafe.row.UnsafeRow;
+import io.mycat.memory.unsafe.row.UnsafeRowWriter;
+import io.mycat.memory.unsafe.utils.sort.PrefixComparator;
+import io.mycat.memory.unsafe.utils.sort.PrefixComparators;
+import io.mycat.memory.unsafe.utils.sort.RowPrefixComputer;
+import io.mycat.memory.unsafe.utils.sort.UnsafeExternalRowSorter;
+import io.mycat.sqlengine.mpp.ColMeta;
+import io.mycat.sqlengine.mpp.MergeCol;
+import io.mycat.sqlengine.mpp.OrderCol;
+import io.mycat.sqlengine.mpp.UnsafeRowGrouper;
+
+/**
+ * 跨分片结果合并: order by 排序与 group by 聚合，行格式与 DataNodeMergeManager 相同
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class MergeBenchmark {
+
+    private static final int FIELD_COUNT = 3;
+
+    @Param({ "10000", "100000" })
+    public int rows;
+
+    @Param({ "1000" })
+    public int groups;
+
+    private MyCatMemory myCatMemory;
+    private List<UnsafeRow> input;
+
+    @Setup
+    public void setup() throws Exception {
+        myCatMemory = new MyCatMemory();
+        // UnsafeRowGrouper 从 MycatServer 取内存管理器，这里不启动服务，直接设置
+        Field field = MycatServer.class.getDeclaredField("myCatMemory");
+        field.setAccessible(true);
+        field.set(MycatServer.getInstance(), myCatMemory);
+
+        Random random = new Random(42);
+        input = new ArrayList<UnsafeRow>(rows);
+        for (int i = 0; i < rows; i++) {
+            UnsafeRow row = new UnsafeRow(FIELD_COUNT);
+            BufferHolder holder = new BufferHolder(row, 0);
+            UnsafeRowWriter writer = new UnsafeRowWriter(holder, FIELD_COUNT);
+            holder.reset();
+            writer.write(0, String.valueOf(random.nextInt(1000000)).getBytes());
+            writer.write(1, ("g" + random.nextInt(groups)).getBytes());
+            writer.write(2, String.valueOf(random.nextInt(1000)).getBytes());
+            row.setTotalSize(holder.totalSize());
+            input.add(row);
+        }
+    }
+
+    private Map<String, ColMeta> columns() {
+        Map<String, ColMeta> columToIndx = new HashMap<String, ColMeta>();
+        columToIndx.put("ID", new ColMeta(0, ColMeta.COL_TYPE_LONGLONG));
+        columToIndx.put("GRP", new ColMeta(1, ColMeta.COL_TYPE_STRING));
+        columToIndx.put("FEE", new ColMeta(2, ColMeta.COL_TYPE_LONGLONG));
+        return columToIndx;
+    }
+
+    private UnsafeExternalRowSorter newSorter(Map<String, ColMeta> columToIndx, OrderCol[] orderCols,
+            PrefixComparator prefixComparator, boolean sort) throws Exception {
+        StructType schema = new StructType(columToIndx, FIELD_COUNT);
+        schema.setOrderCols(orderCols);
+        DataNodeMemoryManager dataNodeMemoryManager = new DataNodeMemoryManager(
+                myCatMemory.getResultMergeMemoryManager(), Thread.currentThread().getId());
+        return new UnsafeExternalRowSorter(dataNodeMemoryManager, myCatMemory, schema, prefixComparator,
+                new RowPrefixComputer(schema),
+                myCatMemory.getConf().getSizeAsBytes("mycat.buffer.pageSize", "32k"), false, sort);
+    }
+
+    @Benchmark
+    public void sort(Blackhole bh) throws Exception {
+        Map<String, ColMeta> columToIndx = columns();
+        OrderCol[] orderCols = { new OrderCol(columToIndx.get("ID"), OrderCol.COL_ORDER_TYPE_ASC) };
+        UnsafeExternalRowSorter sorter = newSorter(columToIndx, orderCols, PrefixComparators.LONG, true);
+        try {
+            for (UnsafeRow row : input) {
+                sorter.insertRow(row);
+            }
+            Iterator<UnsafeRow> iter = sorter.sort();
+            while (iter.hasNext()) {
+                bh.consume(iter.next());
+            }
+        } finally {
+            sorter.cleanupResources();
+        }
+    }
+
+    @Benchmark
+    public void groupBy(Blackhole bh) throws Exception {
+        Map<String, ColMeta> columToIndx = columns();
+        MergeCol[] mergeCols = { new MergeCol(columToIndx.get("FEE"), MergeCol.MERGE_SUM) };
+        UnsafeRowGrouper grouper = new UnsafeRowGrouper(columToIndx, new String[] { "GRP" }, mergeCols, null);
+        UnsafeExternalRowSorter result = newSorter(columToIndx, null, PrefixComparators.LONG, false);
+        try {
+            for (UnsafeRow row : input) {
+                grouper.addRow(row);
+            }
+            Iterator<UnsafeRow> iter = grouper.getResult(result);
+            while (iter.hasNext()) {
+                bh.consume(iter.next());
+            }
+        } finally {
+            grouper.free();
+            result.cleanupResources();
+        }
+    }
+}
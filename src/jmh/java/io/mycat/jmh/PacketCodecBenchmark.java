@@ -0,0 +1,79 @@
+package io.mycat.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import io.mycat.backend.mysql.MySQLMessage;
+import io.mycat.buffer.BufferArray;
+import io.mycat.buffer.DirectByteBufferPool;
+import io.mycat.net.mysql.RowDataPacket;
+
+/**
+ * 行数据包的编码与解码
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketCodecBenchmark {
+
+    @Param({ "4", "32" })
+    public int fieldCount;
+
+    private DirectByteBufferPool pool;
+    private RowDataPacket row;
+    private byte[] packet;
+
+    @Setup
+    public void setup() {
+        pool = new DirectByteBufferPool(2 * 1024 * 1024, (short) 4096, (short) 2, 4096);
+        row = new RowDataPacket(fieldCount);
+        for (int i = 0; i < fieldCount; i++) {
+            if (i % 8 == 7) {
+                row.add(null);
+            } else {
+                row.add(("value-" + i + "-abcdefghijklmnopqrstuvwxyz").getBytes());
+            }
+        }
+        row.packetId = 1;
+        packet = encode();
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        BufferArray bufferArray = pool.allocateArray();
+        row.write(bufferArray);
+        return bufferArray.writeToByteArrayAndRecycle();
+    }
+
+    @Benchmark
+    public RowDataPacket decodeRowDataPacket() {
+        RowDataPacket decoded = new RowDataPacket(fieldCount);
+        decoded.read(packet);
+        return decoded;
+    }
+
+    @Benchmark
+    public void decodeMySQLMessage(Blackhole bh) {
+        MySQLMessage mm = new MySQLMessage(packet);
+        mm.readUB3();
+        mm.read();
+        for (int i = 0; i < fieldCount; i++) {
+            bh.consume(mm.readBytesWithLength());
+        }
+    }
+}
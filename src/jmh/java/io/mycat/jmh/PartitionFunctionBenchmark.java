@@ -0,0 +1,137 @@
+package io.mycat.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.mycat.config.model.TableConfig;
+import io.mycat.config.model.rule.RuleConfig;
+import io.mycat.route.function.AbstractPartitionAlgorithm;
+import io.mycat.route.function.AutoPartitionByLong;
+import io.mycat.route.function.PartitionByCRC32PreSlot;
+import io.mycat.route.function.PartitionByDate;
+import io.mycat.route.function.PartitionByHashMod;
+import io.mycat.route.function.PartitionByJumpConsistentHash;
+import io.mycat.route.function.PartitionByLong;
+import io.mycat.route.function.PartitionByMod;
+import io.mycat.route.function.PartitionByMonth;
+import io.mycat.route.function.PartitionByMurmurHash;
+import io.mycat.route.function.PartitionByPattern;
+import io.mycat.route.function.PartitionByRangeMod;
+import io.mycat.route.function.PartitionByString;
+
+/**
+ * 各个分片函数的 calculate，每次调用轮流使用一组分片字段值
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PartitionFunctionBenchmark {
+
+    @Param({ "mod", "long", "string", "hashMod", "murmur", "jumpHash", "crc32Slot", "autoLong", "rangeMod",
+            "pattern", "date", "month" })
+    public String function;
+
+    private AbstractPartitionAlgorithm algorithm;
+    private String[] values;
+    private int index;
+
+    @Setup
+    public void setup() throws Exception {
+        boolean date = false;
+        if ("mod".equals(function)) {
+            PartitionByMod f = new PartitionByMod();
+            f.setCount(16);
+            algorithm = f;
+        } else if ("long".equals(function)) {
+            PartitionByLong f = new PartitionByLong();
+            f.setPartitionCount("8");
+            f.setPartitionLength("128");
+            algorithm = f;
+        } else if ("string".equals(function)) {
+            PartitionByString f = new PartitionByString();
+            f.setPartitionCount("8");
+            f.setPartitionLength("128");
+            f.setHashSlice("0:8");
+            algorithm = f;
+        } else if ("hashMod".equals(function)) {
+            PartitionByHashMod f = new PartitionByHashMod();
+            f.setCount(16);
+            algorithm = f;
+        } else if ("murmur".equals(function)) {
+            PartitionByMurmurHash f = new PartitionByMurmurHash();
+            f.setCount(16);
+            f.setSeed(0);
+            f.setVirtualBucketTimes(160);
+            algorithm = f;
+        } else if ("jumpHash".equals(function)) {
+            PartitionByJumpConsistentHash f = new PartitionByJumpConsistentHash();
+            f.setTotalBuckets(16);
+            algorithm = f;
+        } else if ("crc32Slot".equals(function)) {
+            PartitionByCRC32PreSlot f = new PartitionByCRC32PreSlot();
+            f.setRuleName("jmh-crc32slot");
+            f.setTableConfig(new TableConfig("jmh", "id", true, false, -1,
+                    PartitionByCRC32PreSlot.genDataNodesString(16), null, new RuleConfig("id", "crc32slot"),
+                    true, null, false, null, null, null));
+            algorithm = f;
+        } else if ("autoLong".equals(function)) {
+            AutoPartitionByLong f = new AutoPartitionByLong();
+            f.setMapFile("autopartition-long.txt");
+            algorithm = f;
+        } else if ("rangeMod".equals(function)) {
+            PartitionByRangeMod f = new PartitionByRangeMod();
+            f.setMapFile("partition-range-mod.txt");
+            algorithm = f;
+        } else if ("pattern".equals(function)) {
+            PartitionByPattern f = new PartitionByPattern();
+            f.setMapFile("partition-pattern.txt");
+            f.setPatternValue(256);
+            algorithm = f;
+        } else if ("date".equals(function)) {
+            PartitionByDate f = new PartitionByDate();
+            f.setDateFormat("yyyy-MM-dd");
+            f.setsBeginDate("2014-01-01");
+            f.setsPartionDay("10");
+            algorithm = f;
+            date = true;
+        } else if ("month".equals(function)) {
+            PartitionByMonth f = new PartitionByMonth();
+            f.setDateFormat("yyyy-MM-dd");
+            f.setsBeginDate("2014-01-01");
+            algorithm = f;
+            date = true;
+        } else {
+            throw new IllegalArgumentException(function);
+        }
+        algorithm.init();
+
+        values = new String[1024];
+        for (int i = 0; i < values.length; i++) {
+            if (date) {
+                values[i] = String.format("2014-%02d-%02d", i % 12 + 1, i % 28 + 1);
+            } else {
+                values[i] = String.valueOf(i * 7919L % 2000000);
+            }
+        }
+    }
+
+    @Benchmark
+    public Integer calculate() {
+        index = (index + 1) & (values.length - 1);
+        return algorithm.calculate(values[index]);
+    }
+}
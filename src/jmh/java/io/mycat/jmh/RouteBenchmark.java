@@ -0,0 +1,69 @@
+package io.mycat.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.mycat.MycatServer;
+import io.mycat.SimpleCachePool;
+import io.mycat.config.loader.SchemaLoader;
+import io.mycat.config.loader.xml.XMLSchemaLoader;
+import io.mycat.config.model.SchemaConfig;
+import io.mycat.config.model.SystemConfig;
+import io.mycat.route.RouteResultset;
+import io.mycat.route.RouteStrategy;
+import io.mycat.route.factory.RouteStrategyFactory;
+import io.mycat.server.parser.ServerParse;
+
+/**
+ * druid 路由，使用测试用的 route/schema.xml 和 route/rule.xml
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteBenchmark {
+
+    @Param({
+            "select * from travelrecord where id = 1",
+            "select * from travelrecord where id in (1, 2500000, 3) order by id limit 10",
+            "select count(*), fee from travelrecord group by fee",
+            "insert into travelrecord (id, name) values (1, 'a')",
+            "select * from orders o, customer c where o.customer_id = c.id and c.id = 1" })
+    public String sql;
+
+    private SystemConfig system;
+    private SchemaConfig schema;
+    private RouteStrategy routeStrategy;
+    private SimpleCachePool cachePool;
+    private int sqlType;
+
+    @Setup
+    public void setup() {
+        SchemaLoader schemaLoader = new XMLSchemaLoader("/route/schema.xml", "/route/rule.xml");
+        MycatServer.getInstance().getConfig().getSchemas().putAll(schemaLoader.getSchemas());
+        RouteStrategyFactory.init();
+        system = new SystemConfig();
+        schema = schemaLoader.getSchemas().get("TESTDB");
+        routeStrategy = RouteStrategyFactory.getRouteStrategy("druidparser");
+        cachePool = new SimpleCachePool();
+        sqlType = ServerParse.parse(sql) & 0xff;
+    }
+
+    @Benchmark
+    public RouteResultset route() throws Exception {
+        return routeStrategy.route(system, schema, sqlType, sql, null, null, cachePool);
+    }
+}
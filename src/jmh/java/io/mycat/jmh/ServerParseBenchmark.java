@@ -0,0 +1,42 @@
+package io.mycat.jmh;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.mycat.server.parser.ServerParse;
+
+/**
+ * 前端 sql 类型识别
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServerParseBenchmark {
+
+    @Param({
+            "select id, name from travelrecord where id = 1",
+            "/* mycat: sql=select 1 */ insert into travelrecord (id, name) values (1, 'a')",
+            "update travelrecord set name = 'b' where id = 1",
+            "set autocommit = 1",
+            "show databases",
+            "commit" })
+    public String sql;
+
+    @Benchmark
+    public int parse() {
+        return ServerParse.parse(sql);
+    }
+}
@@ -41,6 +41,7 @@ import io.mycat.buffer.BufferPool;
 import io.mycat.buffer.DirectByteBufferPool;
 import io.mycat.buffer.NettyBufferPool;
 import io.mycat.cache.CacheService;
+import io.mycat.cache.MysqlDataSetService;
 import io.mycat.config.MycatConfig;
 import io.mycat.config.classloader.DynaClassLoader;
 import io.mycat.config.loader.zkprocess.comm.ZkConfig;
@@ -114,6 +115,7 @@ public class MycatServer {
     private final DynaClassLoader catletClassLoader;
     private final SQLInterceptor sqlInterceptor;
     private volatile int nextProcessor;
+    private volatile SocketAcceptor[] acceptors = new SocketAcceptor[0];
 
     // System Buffer Pool Instance
     private BufferPool bufferPool;
@@ -175,6 +177,7 @@ public class MycatServer {
 
         //缓存服务初始化
         cacheService = new CacheService();
+        MysqlDataSetService.getInstance().init(config.getSystem());
 
         //路由计算初始化
         routerService = new RouteService(cacheService);
@@ -422,14 +425,14 @@ public class MycatServer {
             // startup server
 
             server = new AIOAcceptor(NAME + "Server", system.getBindIp(),
-                    system.getServerPort(), sf, this.asyncChannelGroups[0]);
+                    system.getServerPort(), system.getAcceptBacklog(), sf, this.asyncChannelGroups[0]);
 
         } else {
             LOGGER.info("using nio network handler ");
 
             NIOReactorPool reactorPool = new NIOReactorPool(
                     DirectByteBufferPool.LOCAL_BUF_THREAD_PREX + "NIOREACTOR",
-                    processors.length);
+                    processors.length, bufferPoolChunkSize);
             connector = new NIOConnector(DirectByteBufferPool.LOCAL_BUF_THREAD_PREX + "NIOConnector", reactorPool);
             ((NIOConnector) connector).start();
 
@@ -437,7 +440,8 @@ public class MycatServer {
                     + "Manager", system.getBindIp(), system.getManagerPort(), mf, reactorPool);
 
             server = new NIOAcceptor(DirectByteBufferPool.LOCAL_BUF_THREAD_PREX + NAME
-                    + "Server", system.getBindIp(), system.getServerPort(), sf, reactorPool);
+                    + "Server", system.getBindIp(), system.getServerPort(), system.getAcceptorCount(),
+                    system.getAcceptBacklog(), sf, reactorPool);
         }
         // manager start
         manager.start();
@@ -446,6 +450,7 @@ public class MycatServer {
 
         // server started
         LOGGER.info(server.getName() + " is started and listening on " + server.getPort());
+        this.acceptors = new SocketAcceptor[] { manager, server };
 
         LOGGER.info("===============================================");
 
@@ -464,7 +469,11 @@ public class MycatServer {
         long dataNodeIldeCheckPeriod = system.getDataNodeIdleCheckPeriod();
 
         heartbeatScheduler.scheduleAtFixedRate(updateTime(), 0L, TIME_UPDATE_PERIOD, TimeUnit.MILLISECONDS);
-        heartbeatScheduler.scheduleAtFixedRate(processorCheck(), 0L, system.getProcessorCheckPeriod(), TimeUnit.MILLISECONDS);
+        if (system.getUseTimingWheel() == 1) {
+            heartbeatScheduler.scheduleAtFixedRate(processorTimingWheelTick(), 0L, system.getTimingWheelTickMillis(), TimeUnit.MILLISECONDS);
+        } else {
+            heartbeatScheduler.scheduleAtFixedRate(processorCheck(), 0L, system.getProcessorCheckPeriod(), TimeUnit.MILLISECONDS);
+        }
         heartbeatScheduler.scheduleAtFixedRate(dataNodeConHeartBeatCheck(dataNodeIldeCheckPeriod), 0L, dataNodeIldeCheckPeriod, TimeUnit.MILLISECONDS);
         heartbeatScheduler.scheduleAtFixedRate(dataNodeHeartbeat(), 0L, system.getDataNodeHeartbeatPeriod(), TimeUnit.MILLISECONDS);
         heartbeatScheduler.scheduleAtFixedRate(dataSourceOldConsClear(), 0L, DEFAULT_OLD_CONNECTION_CLEAR_PERIOD, TimeUnit.MILLISECONDS);
@@ -482,6 +491,10 @@ public class MycatServer {
 //			scheduler.scheduleAtFixedRate(glableTableConsistencyCheck(), 0L, system.getGlableTableCheckPeriod(), TimeUnit.MILLISECONDS);
         }
 
+        if (system.getUseGlobalTableChecksumCheck() == 1) {    // 全局表分段校验和检查，会扫描全表，启动一个周期后再开始
+            scheduler.scheduleAtFixedRate(globalTableChecksumCheck(), system.getGlableTableCheckPeriod(), system.getGlableTableCheckPeriod(), TimeUnit.MILLISECONDS);
+        }
+
         //定期清理结果集排行榜，控制拒绝策略
         scheduler.scheduleAtFixedRate(resultSetMapClear(), 0L, system.getClearBigSqLResultSetMapMs(), TimeUnit.MILLISECONDS);
 
@@ -633,6 +646,16 @@ public class MycatServer {
     }
 
 
+    private Runnable globalTableChecksumCheck() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                // 检查在单独的线程中执行，上一次没结束时跳过
+                GlobalTableUtil.submitChecksumCheck();
+            }
+        };
+    }
+
     /**
      * 在bufferpool使用率大于使用率阈值时不清理
      * 在bufferpool使用率小于使用率阈值时清理大结果集清单内容
@@ -816,6 +839,10 @@ public class MycatServer {
         return processors;
     }
 
+    public SocketAcceptor[] getAcceptors() {
+        return acceptors;
+    }
+
     public SocketConnector getConnector() {
         return connector;
     }
@@ -884,6 +911,27 @@ public class MycatServer {
         };
     }
 
+    // 处理器时间轮 tick，只检查到期的连接
+    private Runnable processorTimingWheelTick() {
+        return new Runnable() {
+            @Override
+            public void run() {
+                timerExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (NIOProcessor p : processors) {
+                            try {
+                                p.checkTimeouts();
+                            } catch (Exception e) {
+                                LOGGER.warn("checkTimeouts caught err:" + e);
+                            }
+                        }
+                    }
+                });
+            }
+        };
+    }
+
     // 数据节点定时连接空闲超时检查任务
     private Runnable dataNodeConHeartBeatCheck(final long heartPeriod) {
         return new Runnable() {
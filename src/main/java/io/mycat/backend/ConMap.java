@@ -46,6 +46,26 @@ public class ConMap {
 
 	}
 
+	/**
+	 * 按会话状态取连接，先在本 schema 下找状态一致或同步代价最小的连接，再找其他 schema
+	 */
+	public BackendConnection tryTakeCon(final String schema, int state) {
+		final ConQueue queue = items.get(schema);
+		BackendConnection con = queue == null ? null : queue.takeIdleCon(state);
+		if (con != null) {
+			return con;
+		}
+		for (ConQueue queue2 : items.values()) {
+			if (queue != queue2) {
+				con = queue2.takeIdleCon(state);
+				if (con != null) {
+					return con;
+				}
+			}
+		}
+		return null;
+	}
+
 	private BackendConnection tryTakeCon(ConQueue queue, boolean autoCommit) {
 
 		BackendConnection con = null;
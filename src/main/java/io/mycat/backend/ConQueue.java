@@ -1,32 +1,140 @@
 package io.mycat.backend;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
+import io.mycat.net.AbstractConnection;
+
+/**
+ * 同一个 schema 下的空闲连接，按会话状态(字符集、事务隔离级别、autocommit)分组
+ *
+ * 取连接时优先取状态完全一致的连接，没有时取需要同步的 SET 语句最少的连接，
+ * 避免在每条 SQL 前面拼接 SET names/SET SESSION TRANSACTION ISOLATION LEVEL/SET autocommit。
+ */
 public class ConQueue {
-	private final ConcurrentLinkedQueue<BackendConnection> autoCommitCons = new ConcurrentLinkedQueue<BackendConnection>();
-	private final ConcurrentLinkedQueue<BackendConnection> manCommitCons = new ConcurrentLinkedQueue<BackendConnection>();
+	// key - 会话状态，见 stateKey
+	private final ConcurrentHashMap<Integer, ConcurrentLinkedQueue<BackendConnection>> stateCons = new ConcurrentHashMap<Integer, ConcurrentLinkedQueue<BackendConnection>>();
+	// 每种会话状态被请求的次数，收缩空闲连接时用于保留热门状态的连接
+	private final ConcurrentHashMap<Integer, AtomicLong> stateTakes = new ConcurrentHashMap<Integer, AtomicLong>();
 	private long executeCount;
 
-	public BackendConnection takeIdleCon(boolean autoCommit) {
-		ConcurrentLinkedQueue<BackendConnection> f1 = autoCommitCons;
-		ConcurrentLinkedQueue<BackendConnection> f2 = manCommitCons;
+	/**
+	 * 会话状态的紧凑表示：[字符集][事务隔离级别 3 位][autocommit 1 位]
+	 */
+	public static int stateKey(int charsetIndex, int txIsolation, boolean autoCommit) {
+		return (charsetIndex << 4) | ((txIsolation & 0x7) << 1) | (autoCommit ? 1 : 0);
+	}
+
+	public static int stateOf(BackendConnection con) {
+		int charsetIndex = (con instanceof AbstractConnection) ? ((AbstractConnection) con).getCharsetIndex() : 0;
+		return stateKey(charsetIndex, con.getTxIsolation(), con.isAutocommit());
+	}
+
+	/**
+	 * 两种会话状态之间需要同步的 SET 语句数
+	 */
+	public static int syncCost(int state1, int state2) {
+		int cost = 0;
+		if ((state1 >>> 4) != (state2 >>> 4)) {
+			cost++;
+		}
+		if (((state1 >>> 1) & 0x7) != ((state2 >>> 1) & 0x7)) {
+			cost++;
+		}
+		if ((state1 & 1) != (state2 & 1)) {
+			cost++;
+		}
+		return cost;
+	}
+
+	public BackendConnection takeIdleCon(int state) {
+		AtomicLong takes = stateTakes.get(state);
+		if (takes == null) {
+			AtomicLong newTakes = new AtomicLong();
+			takes = stateTakes.putIfAbsent(state, newTakes);
+			if (takes == null) {
+				takes = newTakes;
+			}
+		}
+		takes.incrementAndGet();
 
-		if (!autoCommit) {
-			f1 = manCommitCons;
-			f2 = autoCommitCons;
+		BackendConnection con = pollIdle(stateCons.get(state));
+		while (con == null) {
+			// 没有状态一致的连接，取同步代价最小的
+			ConcurrentLinkedQueue<BackendConnection> best = null;
+			int bestCost = Integer.MAX_VALUE;
+			for (Map.Entry<Integer, ConcurrentLinkedQueue<BackendConnection>> entry : stateCons.entrySet()) {
+				if (entry.getValue().isEmpty()) {
+					continue;
+				}
+				int cost = syncCost(state, entry.getKey());
+				if (cost < bestCost) {
+					bestCost = cost;
+					best = entry.getValue();
+				}
+			}
+			if (best == null) {
+				return null;
+			}
+			con = pollIdle(best);
+		}
+		return con;
+	}
 
+	/**
+	 * 不关心字符集和隔离级别，只按 autocommit 取连接
+	 */
+	public BackendConnection takeIdleCon(boolean autoCommit) {
+		int bit = autoCommit ? 1 : 0;
+		for (Map.Entry<Integer, ConcurrentLinkedQueue<BackendConnection>> entry : stateCons.entrySet()) {
+			if ((entry.getKey() & 1) == bit) {
+				BackendConnection con = pollIdle(entry.getValue());
+				if (con != null) {
+					return con;
+				}
+			}
 		}
-		BackendConnection con = f1.poll();
-		if (con == null || con.isClosedOrQuit()) {
-			con = f2.poll();
+		for (ConcurrentLinkedQueue<BackendConnection> queue : stateCons.values()) {
+			BackendConnection con = pollIdle(queue);
+			if (con != null) {
+				return con;
+			}
 		}
-		if (con == null || con.isClosedOrQuit()) {
+		return null;
+	}
+
+	private static BackendConnection pollIdle(ConcurrentLinkedQueue<BackendConnection> queue) {
+		if (queue == null) {
 			return null;
-		} else {
-			return con;
 		}
+		BackendConnection con;
+		while ((con = queue.poll()) != null) {
+			if (!con.isClosedOrQuit()) {
+				return con;
+			}
+		}
+		return null;
+	}
 
+	public boolean offerIdleCon(BackendConnection con) {
+		int state = stateOf(con);
+		ConcurrentLinkedQueue<BackendConnection> queue = stateCons.get(state);
+		if (queue == null) {
+			ConcurrentLinkedQueue<BackendConnection> newQueue = new ConcurrentLinkedQueue<BackendConnection>();
+			queue = stateCons.putIfAbsent(state, newQueue);
+			if (queue == null) {
+				queue = newQueue;
+			}
+		}
+		return queue.offer(con);
 	}
 
 	public long getExecuteCount() {
@@ -38,47 +146,112 @@ public class ConQueue {
 	}
 
 	public boolean removeCon(BackendConnection con) {
-		boolean removed = autoCommitCons.remove(con);
-		if (!removed) {
-			return manCommitCons.remove(con);
+		ConcurrentLinkedQueue<BackendConnection> queue = stateCons.get(stateOf(con));
+		if (queue != null && queue.remove(con)) {
+			return true;
+		}
+		// 连接入队后状态可能又被修改过
+		for (ConcurrentLinkedQueue<BackendConnection> q : stateCons.values()) {
+			if (q != queue && q.remove(con)) {
+				return true;
+			}
 		}
-		return removed;
+		return false;
 	}
 
 	public boolean isSameCon(BackendConnection con) {
-		if (autoCommitCons.contains(con)) {
-			return true;
-		} else if (manCommitCons.contains(con)) {
-			return true;
+		for (ConcurrentLinkedQueue<BackendConnection> queue : stateCons.values()) {
+			if (queue.contains(con)) {
+				return true;
+			}
 		}
 		return false;
 	}
 
-	public ConcurrentLinkedQueue<BackendConnection> getAutoCommitCons() {
-		return autoCommitCons;
+	public Collection<ConcurrentLinkedQueue<BackendConnection>> getIdleConQueues() {
+		return stateCons.values();
 	}
 
-	public ConcurrentLinkedQueue<BackendConnection> getManCommitCons() {
-		return manCommitCons;
+	public int getIdleCount() {
+		int total = 0;
+		for (ConcurrentLinkedQueue<BackendConnection> queue : stateCons.values()) {
+			total += queue.size();
+		}
+		return total;
 	}
 
 	public ArrayList<BackendConnection> getIdleConsToClose(int count) {
-		ArrayList<BackendConnection> readyCloseCons = new ArrayList<BackendConnection>(
-				count);
-		while (!manCommitCons.isEmpty() && readyCloseCons.size() < count) {
-			BackendConnection theCon = manCommitCons.poll();
-			if (theCon != null&&!theCon.isBorrowed()) {
-				readyCloseCons.add(theCon);
+		return getIdleConsToClose(count, 0);
+	}
+
+	/**
+	 * 选出要关闭的空闲连接，先从冷门状态中选
+	 *
+	 * @param reservePercent 按各状态被请求的比例保留的空闲连接百分比，
+	 *            如 50 表示保留空闲连接总数的一半，按请求比例分给各状态
+	 */
+	public ArrayList<BackendConnection> getIdleConsToClose(int count, int reservePercent) {
+		ArrayList<BackendConnection> readyCloseCons = new ArrayList<BackendConnection>(count);
+		List<Map.Entry<Integer, ConcurrentLinkedQueue<BackendConnection>>> entries =
+				new ArrayList<Map.Entry<Integer, ConcurrentLinkedQueue<BackendConnection>>>(stateCons.entrySet());
+		final Map<Integer, Long> takes = snapshotTakes();
+		Collections.sort(entries, new Comparator<Map.Entry<Integer, ConcurrentLinkedQueue<BackendConnection>>>() {
+			@Override
+			public int compare(Map.Entry<Integer, ConcurrentLinkedQueue<BackendConnection>> o1,
+					Map.Entry<Integer, ConcurrentLinkedQueue<BackendConnection>> o2) {
+				return Long.compare(takesOf(takes, o1.getKey()), takesOf(takes, o2.getKey()));
 			}
+		});
+
+		long totalTakes = 0;
+		for (Long t : takes.values()) {
+			totalTakes += t;
 		}
-		while (!autoCommitCons.isEmpty() && readyCloseCons.size() < count) {
-			BackendConnection theCon = autoCommitCons.poll();
-			if (theCon != null&&!theCon.isBorrowed()) {
-				readyCloseCons.add(theCon);
+		int reserveTotal = getIdleCount() * Math.max(0, Math.min(reservePercent, 100)) / 100;
+		// 第一轮只关闭超出保留数的连接，不够时第二轮不再保留
+		for (int round = 0; round < 2 && readyCloseCons.size() < count; round++) {
+			for (Map.Entry<Integer, ConcurrentLinkedQueue<BackendConnection>> entry : entries) {
+				int keep = 0;
+				if (round == 0 && totalTakes > 0) {
+					keep = (int) Math.ceil((double) reserveTotal * takesOf(takes, entry.getKey()) / totalTakes);
+				}
+				ConcurrentLinkedQueue<BackendConnection> queue = entry.getValue();
+				while (queue.size() > keep && readyCloseCons.size() < count) {
+					BackendConnection theCon = queue.poll();
+					if (theCon == null) {
+						break;
+					}
+					if (!theCon.isBorrowed()) {
+						readyCloseCons.add(theCon);
+					}
+				}
 			}
-
 		}
+		decayTakes();
 		return readyCloseCons;
 	}
 
+	private Map<Integer, Long> snapshotTakes() {
+		Map<Integer, Long> snapshot = new HashMap<Integer, Long>();
+		for (Map.Entry<Integer, AtomicLong> entry : stateTakes.entrySet()) {
+			snapshot.put(entry.getKey(), entry.getValue().get());
+		}
+		return snapshot;
+	}
+
+	private static long takesOf(Map<Integer, Long> takes, Integer state) {
+		Long t = takes.get(state);
+		return t == null ? 0 : t;
+	}
+
+	/**
+	 * 请求次数减半，使热门状态跟随最近的业务变化
+	 */
+	private void decayTakes() {
+		for (AtomicLong takes : stateTakes.values()) {
+			long v = takes.get();
+			takes.compareAndSet(v, v >>> 1);
+		}
+	}
+
 }
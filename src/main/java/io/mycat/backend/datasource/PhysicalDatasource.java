@@ -43,11 +43,16 @@ import io.mycat.backend.heartbeat.DBHeartbeat;
 import io.mycat.backend.mysql.nio.MySQLConnection;
 import io.mycat.backend.mysql.nio.handler.ConnectionHeartBeatHandler;
 import io.mycat.backend.mysql.nio.handler.DelegateResponseHandler;
+import io.mycat.backend.mysql.nio.handler.MultiNodeQueryHandler;
 import io.mycat.backend.mysql.nio.handler.NewConnectionRespHandler;
 import io.mycat.backend.mysql.nio.handler.ResponseHandler;
+import io.mycat.backend.mysql.nio.handler.SingleNodeHandler;
 import io.mycat.config.Alarms;
 import io.mycat.config.model.DBHostConfig;
 import io.mycat.config.model.DataHostConfig;
+import io.mycat.net.CompressStat;
+import io.mycat.server.NonBlockingSession;
+import io.mycat.server.ServerConnection;
 import io.mycat.util.TimeUtil;
 
 
@@ -71,6 +76,14 @@ public abstract class PhysicalDatasource {
 	
 	// 添加DataSource写计数
 	private AtomicLong writeCount = new AtomicLong(0);
+
+	/**
+	 * 执行的 SQL 数，以及其中需要先 SET 同步会话状态的 SQL 数
+	 */
+	private final AtomicLong executeSqlCount = new AtomicLong(0);
+	private final AtomicLong setSyncCount = new AtomicLong(0);
+	// 压缩连接的网络字节数与解压后字节数
+	private final CompressStat compressStat = new CompressStat();
 	
 	
 	/** 
@@ -172,11 +185,7 @@ public abstract class PhysicalDatasource {
 	}
 
 	public int getIdleCountForSchema(String schema) {
-		ConQueue queue = conMap.getSchemaConQueue(schema);
-		int total = 0;
-		total += queue.getAutoCommitCons().size()
-				+ queue.getManCommitCons().size();
-		return total;
+		return conMap.getSchemaConQueue(schema).getIdleCount();
 	}
 
 	public DBHeartbeat getHeartbeat() {
@@ -186,8 +195,7 @@ public abstract class PhysicalDatasource {
 	public int getIdleCount() {
 		int total = 0;
 		for (ConQueue queue : conMap.getAllConQueue()) {
-			total += queue.getAutoCommitCons().size()
-					+ queue.getManCommitCons().size();
+			total += queue.getIdleCount();
 		}
 		return total;
 	}
@@ -276,14 +284,13 @@ public abstract class PhysicalDatasource {
 		long hearBeatTime = TimeUtil.currentTimeMillis() - conHeartBeatPeriod;
 		long hearBeatTime2 = TimeUtil.currentTimeMillis() - 2
 				* conHeartBeatPeriod;
-		for (ConQueue queue : conMap.getAllConQueue()) {
-			checkIfNeedHeartBeat(heartBeatCons, queue,
-					queue.getAutoCommitCons(), hearBeatTime, hearBeatTime2);
-			if (heartBeatCons.size() < maxConsInOneCheck) {
-				checkIfNeedHeartBeat(heartBeatCons, queue,
-						queue.getManCommitCons(), hearBeatTime, hearBeatTime2);
-			} else if (heartBeatCons.size() >= maxConsInOneCheck) {
-				break;
+		check: for (ConQueue queue : conMap.getAllConQueue()) {
+			for (ConcurrentLinkedQueue<BackendConnection> checkLis : queue.getIdleConQueues()) {
+				if (heartBeatCons.size() >= maxConsInOneCheck) {
+					break check;
+				}
+				checkIfNeedHeartBeat(heartBeatCons, queue, checkLis,
+						hearBeatTime, hearBeatTime2);
 			}
 		}
 
@@ -337,8 +344,9 @@ public abstract class PhysicalDatasource {
 		LOGGER.info("too many ilde cons ,close some for datasouce  " + name);
 		List<BackendConnection> readyCloseCons = new ArrayList<BackendConnection>(
 				ildeCloseCount);
+		int reservePercent = MycatServer.getInstance().getConfig().getSystem().getBackendStateReservePercent();
 		for (ConQueue queue : conMap.getAllConQueue()) {
-			readyCloseCons.addAll(queue.getIdleConsToClose(ildeCloseCount));
+			readyCloseCons.addAll(queue.getIdleConsToClose(ildeCloseCount - readyCloseCons.size(), reservePercent));
 			if (readyCloseCons.size() >= ildeCloseCount) {
 				break;
 			}
@@ -412,6 +420,20 @@ public abstract class PhysicalDatasource {
 		}
 	}
 
+	/**
+	 * 主动关闭的连接(如被取消的分片查询)，补充一个新的空闲连接
+	 */
+	public void replaceClosedCon(String schema) {
+		if (this.getActiveCount() + this.getIdleCount() >= size) {
+			return;
+		}
+		try {
+			this.createNewConnection(new NewConnectionRespHandler(), null, schema);
+		} catch (IOException e) {
+			LOGGER.warn("create connection err " + e);
+		}
+	}
+
 	public int getActiveCount() {
 		return this.conMap.getActiveCountForDs(this);
 	}
@@ -508,7 +530,15 @@ public abstract class PhysicalDatasource {
 			throws IOException {
 		
 		// 从当前连接map中拿取已建立好的后端连接
-		BackendConnection con = this.conMap.tryTakeCon(schema, autocommit);
+		ServerConnection source = getFrontend(handler);
+		BackendConnection con;
+		if (source != null) {
+			// 按前端连接的会话状态取连接，减少执行 SQL 前的 SET 同步
+			con = this.conMap.tryTakeCon(schema, ConQueue.stateKey(source.getCharsetIndex(),
+					source.getTxIsolation(), autocommit));
+		} else {
+			con = this.conMap.tryTakeCon(schema, autocommit);
+		}
 		if (con != null) {
 			//如果不为空，则绑定对应前端请求的handler
 			takeCon(con, handler, attachment, schema);
@@ -575,6 +605,38 @@ public abstract class PhysicalDatasource {
 //		return this.totalConnection.incrementAndGet();
 //	}
 
+	private static ServerConnection getFrontend(ResponseHandler handler) {
+		NonBlockingSession session = null;
+		if (handler instanceof SingleNodeHandler) {
+			session = ((SingleNodeHandler) handler).getSession();
+		} else if (handler instanceof MultiNodeQueryHandler) {
+			session = ((MultiNodeQueryHandler) handler).getSession();
+		}
+		return session == null ? null : session.getSource();
+	}
+
+	/**
+	 * 记录一次 SQL 执行，setSync 表示执行前是否需要 SET 同步字符集、隔离级别或 autocommit
+	 */
+	public void recordExecute(boolean setSync) {
+		executeSqlCount.incrementAndGet();
+		if (setSync) {
+			setSyncCount.incrementAndGet();
+		}
+	}
+
+	public long getExecuteSqlCount() {
+		return executeSqlCount.get();
+	}
+
+	public long getSetSyncCount() {
+		return setSyncCount.get();
+	}
+
+	public CompressStat getCompressStat() {
+		return compressStat;
+	}
+
 	private void returnCon(BackendConnection c) {
 		
 		c.setAttachment(null);
@@ -582,12 +644,7 @@ public abstract class PhysicalDatasource {
 		c.setLastTime(TimeUtil.currentTimeMillis());
 		ConQueue queue = this.conMap.getSchemaConQueue(c.getSchema());
 
-		boolean ok = false;
-		if (c.isAutocommit()) {
-			ok = queue.getAutoCommitCons().offer(c);
-		} else {
-			ok = queue.getManCommitCons().offer(c);
-		}
+		boolean ok = queue.offerIdleCon(c);
 		
 //		if(c.getId() > 0 && takeConnectionContext.remove(c.getId(), TAKE_CONNECTION_FLAG) ) {
 //			decrementActiveCountSafe();
@@ -0,0 +1,416 @@
+package io.mycat.backend.heartbeat;
+
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.mycat.MycatServer;
+import io.mycat.backend.datasource.PhysicalDBNode;
+import io.mycat.backend.datasource.PhysicalDatasource;
+import io.mycat.config.MycatConfig;
+import io.mycat.config.model.SystemConfig;
+import io.mycat.config.model.TableConfig;
+import io.mycat.server.interceptor.impl.GlobalTableUtil;
+import io.mycat.sqlengine.MultiRowSQLQueryResultHandler;
+import io.mycat.sqlengine.SQLJob;
+import io.mycat.sqlengine.SQLQueryResult;
+import io.mycat.sqlengine.SQLQueryResultListener;
+
+/**
+ * 全局表分段校验和一致性检查（Merkle 风格）
+ *
+ * 先取各节点主键的 min/max，把整个主键区间切成 fanout 个桶，
+ * 每个节点只返回每个桶的 count(*) 和 BIT_XOR(CRC32(行))，
+ * 对比后仅对不一致的桶继续细分，直到区间宽度不超过 leafRangeSize，
+ * 从而只传输少量聚合结果就能定位到不一致的主键区间。
+ * 每一轮范围查询之间休眠 throttleMillis，避免检查本身影响业务 IO。
+ *
+ * 仅支持整数主键，且需在 schema.xml 中为全局表配置 primaryKey。
+ *
+ * @author mycat
+ */
+public class GlobalTableChecksumChecker {
+	private static final Logger LOGGER = LoggerFactory.getLogger(GlobalTableChecksumChecker.class);
+
+	public static final String BUCKET_COLUMN = "bucket_id";
+	public static final String CRC_COLUMN = "range_crc";
+	public static final String MIN_KEY_COLUMN = "min_key";
+	public static final String MAX_KEY_COLUMN = "max_key";
+	public static final String COLUMN_NAME = "COLUMN_NAME";
+	private static final long QUERY_TIMEOUT_SECONDS = 60;
+
+	private final String tableName;
+	private final String primaryKey;
+	private final List<String> dataNodes;
+	private final int fanout;
+	private final long leafRangeSize;
+	private final long throttleMillis;
+	private final int maxDivergentRanges;
+	private volatile String rowExpression;
+
+	public GlobalTableChecksumChecker(String tableName, String primaryKey, List<String> dataNodes,
+			int fanout, long leafRangeSize, long throttleMillis, int maxDivergentRanges) {
+		this.tableName = tableName;
+		this.primaryKey = primaryKey;
+		this.dataNodes = dataNodes;
+		this.fanout = Math.max(2, fanout);
+		this.leafRangeSize = Math.max(1, leafRangeSize);
+		this.throttleMillis = Math.max(0, throttleMillis);
+		this.maxDivergentRanges = Math.max(1, maxDivergentRanges);
+	}
+
+	public static GlobalTableChecksumChecker create(TableConfig table) {
+		SystemConfig system = MycatServer.getInstance().getConfig().getSystem();
+		return new GlobalTableChecksumChecker(table.getName(), table.getPrimaryKey(), table.getDataNodes(),
+				system.getGlobalTableCheckFanout(), system.getGlobalTableCheckLeafSize(),
+				system.getGlobalTableCheckThrottle(), system.getGlobalTableCheckMaxRanges());
+	}
+
+	/**
+	 * 同步执行检查，调用方应在定时/管理线程中执行，不能在 NIO 线程中调用
+	 */
+	public GlobalTableChecksumResult check() {
+		long begin = System.currentTimeMillis();
+		GlobalTableChecksumResult result = new GlobalTableChecksumResult(tableName, dataNodes);
+		try {
+			if (StringUtils.isBlank(primaryKey)) {
+				result.setErrMsg("primaryKey of global table " + tableName + " is not configured");
+				return result;
+			}
+			long[] bounds = fetchKeyBounds();
+			if (bounds == null) { // 所有节点都没有数据
+				return result;
+			}
+			result.setKeyBounds(bounds[0], bounds[1]);
+
+			Deque<long[]> pending = new ArrayDeque<>();
+			pending.add(bounds);
+			while (!pending.isEmpty()) {
+				long[] range = pending.poll();
+				long step = bucketStep(range[0], range[1], fanout);
+				Map<String, Map<Long, RangeChecksum>> nodeBuckets = fetchBuckets(range[0], range[1], step);
+				int bucketRows = 0;
+				TreeSet<Long> buckets = new TreeSet<>();
+				for (Map<Long, RangeChecksum> m : nodeBuckets.values()) {
+					bucketRows += m.size();
+					buckets.addAll(m.keySet());
+				}
+				result.onRangeQuery(bucketRows);
+				result.onBucketsCompared(buckets.size());
+
+				for (Long bucket : buckets) {
+					if (isSame(nodeBuckets, bucket)) {
+						continue;
+					}
+					long[] sub = bucketRange(range[0], range[1], bucket, step);
+					long low = sub[0];
+					long high = sub[1];
+					if (widthAtMost(low, high, leafRangeSize) || step == 1) {
+						result.addDivergentRange(toDivergentRange(nodeBuckets, bucket, low, high));
+						if (result.getDivergentRanges().size() >= maxDivergentRanges) {
+							result.setTruncated(true);
+							return result;
+						}
+					} else {
+						pending.add(new long[] { low, high });
+					}
+				}
+				if (!pending.isEmpty() && throttleMillis > 0) {
+					TimeUnit.MILLISECONDS.sleep(throttleMillis);
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			result.setErrMsg("interrupted");
+		} catch (Exception e) {
+			LOGGER.warn("global table " + tableName + " checksum check failed", e);
+			result.setErrMsg(e.getMessage());
+		} finally {
+			result.setElapsedMillis(System.currentTimeMillis() - begin);
+		}
+		return result;
+	}
+
+	/**
+	 * 主键区间可能跨越 long 的大半范围，宽度等用 BigInteger 计算避免溢出
+	 */
+	static long bucketStep(long low, long high, int fanout) {
+		BigInteger width = BigInteger.valueOf(high).subtract(BigInteger.valueOf(low)).add(BigInteger.ONE);
+		BigInteger[] qr = width.divideAndRemainder(BigInteger.valueOf(fanout));
+		BigInteger step = qr[1].signum() == 0 ? qr[0] : qr[0].add(BigInteger.ONE);
+		// 截断到 Long.MAX_VALUE 时桶序号可能等于 fanout，bucketRange 仍能算出正确的区间
+		return Math.max(1, step.min(BigInteger.valueOf(Long.MAX_VALUE)).longValue());
+	}
+
+	/**
+	 * 第 bucket 个桶的主键区间 {low, high}，不超出 [rangeLow, rangeHigh]
+	 */
+	static long[] bucketRange(long rangeLow, long rangeHigh, long bucket, long step) {
+		BigInteger low = BigInteger.valueOf(rangeLow)
+				.add(BigInteger.valueOf(bucket).multiply(BigInteger.valueOf(step)));
+		BigInteger high = low.add(BigInteger.valueOf(step - 1)).min(BigInteger.valueOf(rangeHigh));
+		return new long[] { low.min(BigInteger.valueOf(rangeHigh)).longValue(), high.longValue() };
+	}
+
+	/**
+	 * [low, high] 内的主键个数是否不超过 n，low <= high
+	 */
+	static boolean widthAtMost(long low, long high, long n) {
+		long diff = high - low;
+		// diff 为负说明溢出，区间宽度超过 Long.MAX_VALUE
+		return diff >= 0 && diff < n;
+	}
+
+	private boolean isSame(Map<String, Map<Long, RangeChecksum>> nodeBuckets, Long bucket) {
+		RangeChecksum first = null;
+		boolean firstNode = true;
+		for (String dn : dataNodes) {
+			RangeChecksum cur = nodeBuckets.get(dn).get(bucket);
+			if (firstNode) {
+				first = cur;
+				firstNode = false;
+			} else if (first == null ? cur != null : !first.equals(cur)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private GlobalTableChecksumResult.DivergentRange toDivergentRange(
+			Map<String, Map<Long, RangeChecksum>> nodeBuckets, Long bucket, long low, long high) {
+		GlobalTableChecksumResult.DivergentRange range = new GlobalTableChecksumResult.DivergentRange(low, high);
+		for (String dn : dataNodes) {
+			RangeChecksum cur = nodeBuckets.get(dn).get(bucket);
+			range.getNodeChecksums().put(dn, cur == null ? "0/0" : cur.toString());
+		}
+		return range;
+	}
+
+	/**
+	 * 返回所有节点主键的并集区间 {min, max}，所有节点都为空时返回 null
+	 */
+	protected long[] fetchKeyBounds() throws InterruptedException {
+		String sql = "select min(" + primaryKey + ") as " + MIN_KEY_COLUMN + ", max(" + primaryKey + ") as "
+				+ MAX_KEY_COLUMN + " from " + tableName;
+		Map<String, List<Map<String, String>>> rows = executeOnAllNodes(sql,
+				new String[] { MIN_KEY_COLUMN, MAX_KEY_COLUMN });
+		long[] bounds = null;
+		for (List<Map<String, String>> nodeRows : rows.values()) {
+			for (Map<String, String> row : nodeRows) {
+				String min = row.get(MIN_KEY_COLUMN);
+				String max = row.get(MAX_KEY_COLUMN);
+				if (min == null || max == null) {
+					continue;
+				}
+				long lo = Long.parseLong(min);
+				long hi = Long.parseLong(max);
+				if (bounds == null) {
+					bounds = new long[] { lo, hi };
+				} else {
+					bounds[0] = Math.min(bounds[0], lo);
+					bounds[1] = Math.max(bounds[1], hi);
+				}
+			}
+		}
+		return bounds;
+	}
+
+	/**
+	 * 返回每个节点在 [low, high] 内按 step 分桶后的 count 和 校验和，key 为桶序号
+	 */
+	protected Map<String, Map<Long, RangeChecksum>> fetchBuckets(long low, long high, long step)
+			throws InterruptedException {
+		String sql = buildBucketSQL(tableName, primaryKey, getRowExpression(), low, high, step);
+		Map<String, List<Map<String, String>>> rows = executeOnAllNodes(sql,
+				new String[] { BUCKET_COLUMN, GlobalTableUtil.COUNT_COLUMN, CRC_COLUMN });
+		Map<String, Map<Long, RangeChecksum>> nodeBuckets = new HashMap<>();
+		for (Map.Entry<String, List<Map<String, String>>> entry : rows.entrySet()) {
+			Map<Long, RangeChecksum> buckets = new HashMap<>();
+			for (Map<String, String> row : entry.getValue()) {
+				buckets.put(Long.parseLong(row.get(BUCKET_COLUMN)),
+						new RangeChecksum(Long.parseLong(row.get(GlobalTableUtil.COUNT_COLUMN)),
+								Long.parseLong(row.get(CRC_COLUMN))));
+			}
+			nodeBuckets.put(entry.getKey(), buckets);
+		}
+		return nodeBuckets;
+	}
+
+	static String buildBucketSQL(String tableName, String primaryKey, String rowExpression,
+			long low, long high, long step) {
+		StringBuilder sb = new StringBuilder(256);
+		// 区间宽度超过 BIGINT 范围时 primaryKey - low 会在 mysql 中溢出报错，转成 DECIMAL 计算
+		String key = high - low >= 0 ? primaryKey : "CAST(" + primaryKey + " AS DECIMAL(20,0))";
+		sb.append("select (").append(key).append(" - (").append(low).append(")) DIV ").append(step)
+				.append(" as ").append(BUCKET_COLUMN)
+				.append(", count(*) as ").append(GlobalTableUtil.COUNT_COLUMN)
+				.append(", BIT_XOR(CRC32(").append(rowExpression).append(")) as ").append(CRC_COLUMN)
+				.append(" from ").append(tableName)
+				.append(" where ").append(primaryKey).append(" >= ").append(low)
+				.append(" and ").append(primaryKey).append(" <= ").append(high)
+				.append(" group by ").append(BUCKET_COLUMN);
+		return sb.toString();
+	}
+
+	/**
+	 * CONCAT_WS 会跳过 NULL，末尾追加每列的 ISNULL 标记以区分 NULL 和空串
+	 */
+	static String buildRowExpression(List<String> columns) {
+		StringBuilder values = new StringBuilder("CONCAT_WS('#'");
+		StringBuilder nulls = new StringBuilder("CONCAT(");
+		for (int i = 0; i < columns.size(); i++) {
+			String col = "`" + columns.get(i) + "`";
+			values.append(", ").append(col);
+			if (i > 0) {
+				nulls.append(", ");
+			}
+			nulls.append("ISNULL(").append(col).append(")");
+		}
+		return values.append(", ").append(nulls).append("))").toString();
+	}
+
+	private String getRowExpression() throws InterruptedException {
+		if (rowExpression == null) {
+			String columnsList = GlobalTableUtil.getTableColumsMap().get(tableName.toUpperCase());
+			List<String> columns = new ArrayList<>();
+			if (StringUtils.isNotBlank(columnsList)) {
+				for (String col : columnsList.split(",")) {
+					columns.add(col.trim());
+				}
+			} else {
+				columns = fetchColumns();
+			}
+			if (columns.isEmpty()) {
+				throw new IllegalStateException("can't get columns of global table " + tableName);
+			}
+			rowExpression = buildRowExpression(columns);
+		}
+		return rowExpression;
+	}
+
+	private List<String> fetchColumns() throws InterruptedException {
+		MycatConfig config = MycatServer.getInstance().getConfig();
+		PhysicalDBNode dn = config.getDataNodes().get(dataNodes.get(0));
+		String sql = "select COLUMN_NAME from information_schema.columns where TABLE_NAME='" + tableName
+				+ "' and TABLE_SCHEMA='" + dn.getDatabase() + "' order by ORDINAL_POSITION";
+		List<String> columns = new ArrayList<>();
+		for (Map<String, String> row : execute(dn, sql, new String[] { COLUMN_NAME })) {
+			columns.add(row.get(COLUMN_NAME));
+		}
+		return columns;
+	}
+
+	private Map<String, List<Map<String, String>>> executeOnAllNodes(String sql, String[] fetchCols)
+			throws InterruptedException {
+		MycatConfig config = MycatServer.getInstance().getConfig();
+		final Map<String, SQLQueryResult<List<Map<String, String>>>> results = new ConcurrentHashMap<>();
+		final CountDownLatch latch = new CountDownLatch(dataNodes.size());
+		for (final String nodeName : dataNodes) {
+			PhysicalDBNode dn = config.getDataNodes().get(nodeName);
+			runJob(dn, sql, fetchCols, new SQLQueryResultListener<SQLQueryResult<List<Map<String, String>>>>() {
+				@Override
+				public void onResult(SQLQueryResult<List<Map<String, String>>> result) {
+					results.put(nodeName, result);
+					latch.countDown();
+				}
+			});
+		}
+		if (!latch.await(QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("sql time out: " + sql);
+		}
+		Map<String, List<Map<String, String>>> rows = new HashMap<>();
+		for (String nodeName : dataNodes) {
+			SQLQueryResult<List<Map<String, String>>> r = results.get(nodeName);
+			if (!r.isSuccess()) {
+				throw new IllegalStateException(sql + " execute failed in " + nodeName + ": " + r.getErrMsg());
+			}
+			rows.put(nodeName, r.getResult());
+		}
+		return rows;
+	}
+
+	private List<Map<String, String>> execute(PhysicalDBNode dn, String sql, String[] fetchCols)
+			throws InterruptedException {
+		final List<SQLQueryResult<List<Map<String, String>>>> holder = new ArrayList<>(1);
+		final CountDownLatch latch = new CountDownLatch(1);
+		runJob(dn, sql, fetchCols, new SQLQueryResultListener<SQLQueryResult<List<Map<String, String>>>>() {
+			@Override
+			public void onResult(SQLQueryResult<List<Map<String, String>>> result) {
+				holder.add(result);
+				latch.countDown();
+			}
+		});
+		if (!latch.await(QUERY_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+			throw new IllegalStateException("sql time out: " + sql);
+		}
+		if (!holder.get(0).isSuccess()) {
+			throw new IllegalStateException(sql + " execute failed in " + dn.getName() + ": "
+					+ holder.get(0).getErrMsg());
+		}
+		return holder.get(0).getResult();
+	}
+
+	private void runJob(PhysicalDBNode dn, String sql, String[] fetchCols,
+			SQLQueryResultListener<SQLQueryResult<List<Map<String, String>>>> listener) {
+		// 使用当前写节点，与业务写入保持一致
+		PhysicalDatasource ds = dn.getDbPool().getSource();
+		MultiRowSQLQueryResultHandler handler = new MultiRowSQLQueryResultHandler(fetchCols, listener);
+		new SQLJob(sql, dn.getDatabase(), handler, ds).run();
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	/**
+	 * 一个主键区间的 count 和 BIT_XOR(CRC32) 校验和
+	 */
+	public static class RangeChecksum {
+		private final long count;
+		private final long crc;
+
+		public RangeChecksum(long count, long crc) {
+			this.count = count;
+			this.crc = crc;
+		}
+
+		public long getCount() {
+			return count;
+		}
+
+		public long getCrc() {
+			return crc;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof RangeChecksum)) {
+				return false;
+			}
+			RangeChecksum other = (RangeChecksum) o;
+			return count == other.count && crc == other.crc;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (count * 31 + crc);
+		}
+
+		@Override
+		public String toString() {
+			return count + "/" + crc;
+		}
+	}
+}
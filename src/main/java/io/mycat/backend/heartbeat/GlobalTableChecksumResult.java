@@ -0,0 +1,162 @@
+package io.mycat.backend.heartbeat;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 全局表分段校验和一致性检查的结果
+ *
+ * 记录检查覆盖的主键范围、发出的范围查询次数、比较过的桶数量，
+ * 以及最终定位到的不一致主键区间
+ */
+public class GlobalTableChecksumResult {
+
+	private final String tableName;
+	private final List<String> dataNodes;
+	private final List<DivergentRange> divergentRanges = new ArrayList<>();
+	private final long checkTime = System.currentTimeMillis();
+	private Long minKey;
+	private Long maxKey;
+	private int rangeQueries;
+	private long bucketsCompared;
+	private long bucketRowsRead;
+	private boolean truncated;
+	private String errMsg;
+	private long elapsedMillis;
+
+	public GlobalTableChecksumResult(String tableName, List<String> dataNodes) {
+		this.tableName = tableName;
+		this.dataNodes = dataNodes;
+	}
+
+	public boolean isSuccess() {
+		return errMsg == null;
+	}
+
+	public boolean isConsistent() {
+		return isSuccess() && divergentRanges.isEmpty();
+	}
+
+	public void addDivergentRange(DivergentRange range) {
+		divergentRanges.add(range);
+	}
+
+	public void onRangeQuery(int bucketRows) {
+		rangeQueries++;
+		bucketRowsRead += bucketRows;
+	}
+
+	public void onBucketsCompared(int count) {
+		bucketsCompared += count;
+	}
+
+	public String getTableName() {
+		return tableName;
+	}
+
+	public List<String> getDataNodes() {
+		return dataNodes;
+	}
+
+	public List<DivergentRange> getDivergentRanges() {
+		return divergentRanges;
+	}
+
+	public long getCheckTime() {
+		return checkTime;
+	}
+
+	public Long getMinKey() {
+		return minKey;
+	}
+
+	public Long getMaxKey() {
+		return maxKey;
+	}
+
+	public void setKeyBounds(Long minKey, Long maxKey) {
+		this.minKey = minKey;
+		this.maxKey = maxKey;
+	}
+
+	public int getRangeQueries() {
+		return rangeQueries;
+	}
+
+	public long getBucketsCompared() {
+		return bucketsCompared;
+	}
+
+	public long getBucketRowsRead() {
+		return bucketRowsRead;
+	}
+
+	public boolean isTruncated() {
+		return truncated;
+	}
+
+	public void setTruncated(boolean truncated) {
+		this.truncated = truncated;
+	}
+
+	public String getErrMsg() {
+		return errMsg;
+	}
+
+	public void setErrMsg(String errMsg) {
+		this.errMsg = errMsg;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public void setElapsedMillis(long elapsedMillis) {
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	@Override
+	public String toString() {
+		if (!isSuccess()) {
+			return "table " + tableName + " checksum check failed: " + errMsg;
+		}
+		return "table " + tableName + (isConsistent() ? " consistent" : " divergent ranges " + divergentRanges.size())
+				+ ", keys [" + minKey + "," + maxKey + "], range queries " + rangeQueries
+				+ ", buckets " + bucketsCompared + (truncated ? ", truncated" : "")
+				+ ", " + elapsedMillis + "ms";
+	}
+
+	/**
+	 * 各节点校验和不一致的最小主键区间 [lowKey, highKey]
+	 */
+	public static class DivergentRange {
+		private final long lowKey;
+		private final long highKey;
+		// dataNode -> "count/crc"，节点中该区间没有数据时为 "0/0"
+		private final Map<String, String> nodeChecksums = new LinkedHashMap<>();
+
+		public DivergentRange(long lowKey, long highKey) {
+			this.lowKey = lowKey;
+			this.highKey = highKey;
+		}
+
+		public long getLowKey() {
+			return lowKey;
+		}
+
+		public long getHighKey() {
+			return highKey;
+		}
+
+		public Map<String, String> getNodeChecksums() {
+			return nodeChecksums;
+		}
+
+		@Override
+		public String toString() {
+			return "[" + lowKey + "," + highKey + "] " + nodeChecksums;
+		}
+	}
+}
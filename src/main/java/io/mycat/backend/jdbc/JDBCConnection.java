@@ -2,10 +2,10 @@ package io.mycat.backend.jdbc;
 
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.math.BigDecimal;
 import java.nio.ByteBuffer;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.RejectedExecutionException;
 
 import io.mycat.backend.mysql.PacketUtil;
 import io.mycat.route.Procedure;
@@ -19,6 +19,7 @@ import io.mycat.backend.mysql.nio.handler.ConnectionHeartBeatHandler;
 import io.mycat.backend.mysql.nio.handler.ResponseHandler;
 import io.mycat.config.ErrorCode;
 import io.mycat.config.Isolations;
+import io.mycat.config.model.SystemConfig;
 import io.mycat.net.NIOProcessor;
 import io.mycat.net.mysql.EOFPacket;
 import io.mycat.net.mysql.ErrorPacket;
@@ -33,6 +34,8 @@ import io.mycat.server.parser.ServerParse;
 public class JDBCConnection implements BackendConnection {
 	protected static final Logger LOGGER = LoggerFactory
 			.getLogger(JDBCConnection.class);
+	// 等待前端写队列消化的单次最长时间(ms)
+	private static final long WRITE_QUEUE_WAIT_MILLIS = 100;
 	private JDBCDatasource pool;
 	private volatile String schema;
 	private volatile String dbType;
@@ -621,14 +624,22 @@ public class JDBCConnection implements BackendConnection {
         ResultSet rs = null;
         Statement stmt = null;
 
+		JDBCRowEncoder encoder = null;
+		SystemConfig system = MycatServer.getInstance().getConfig().getSystem();
 		try {
-			stmt = con.createStatement();
+			stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+			if (system.getJdbcFetchSize() > 0) {
+				try {
+					stmt.setFetchSize(system.getJdbcFetchSize());
+				} catch (SQLException e) {
+					LOGGER.debug("jdbc driver not support fetchSize: " + e.getMessage());
+				}
+			}
 			rs = stmt.executeQuery(sql);
 
 			List<FieldPacket> fieldPks = new LinkedList<FieldPacket>();
 			ResultSetUtil.resultSetToFieldPacket(sc.getCharset(), fieldPks, rs,
 					this.isSpark);
-			int colunmCount = fieldPks.size();
 			ByteBuffer byteBuf = sc.allocate();
 			ResultSetHeaderPacket headerPkg = new ResultSetHeaderPacket();
 			headerPkg.fieldCount = fieldPks.size();
@@ -661,31 +672,17 @@ public class JDBCConnection implements BackendConnection {
 			this.respHandler.fieldEofResponse(header, fields, eof, this);
 
 			// output row
+			encoder = new JDBCRowEncoder(sc, sc.getCharset(), fieldPks, isTypedGetterSupported());
+			int highWater = system.getJdbcWriteQueueHighWater();
+			// 写队列的 size() 需要遍历队列，每隔若干行检查一次
+			int checkInterval = Math.max(1, highWater / 4);
+			int rows = 0;
 			while (rs.next()) {
-				RowDataPacket curRow = new RowDataPacket(colunmCount);
-				for (int i = 0; i < colunmCount; i++) {
-					int j = i + 1;
-					if(MysqlDefs.isBianry((byte) fieldPks.get(i).type)) {
-							curRow.add(rs.getBytes(j));
-					} else if(fieldPks.get(i).type == MysqlDefs.FIELD_TYPE_DECIMAL ||
-							fieldPks.get(i).type == (MysqlDefs.FIELD_TYPE_NEW_DECIMAL - 256)) { // field type is unsigned byte
-						// ensure that do not use scientific notation format
-						BigDecimal val = rs.getBigDecimal(j);
-						curRow.add(StringUtil.encode(val != null ? val.toPlainString() : null,
-								sc.getCharset()));
-					} else {
-						   curRow.add(StringUtil.encode(rs.getString(j),
-								   sc.getCharset()));
-					}
-
-				}
-				curRow.packetId = ++packetId;
-				byteBuf = curRow.write(byteBuf, sc, false);
-				byteBuf.flip();
-				byte[] row = new byte[byteBuf.limit()];
-				byteBuf.get(row);
-				byteBuf.clear();
+				byte[] row = encoder.encode(rs, ++packetId);
 				this.respHandler.rowResponse(row, this);
+				if (highWater > 0 && ++rows % checkInterval == 0 && sc.getWriteQueue().size() > highWater) {
+					waitForWriteQueue(sc, stmt, highWater);
+				}
 			}
 
 			fieldPks.clear();
@@ -700,6 +697,9 @@ public class JDBCConnection implements BackendConnection {
 			sc.recycle(byteBuf);
 			this.respHandler.rowEofResponse(eof, this);
 		} finally {
+			if (encoder != null) {
+				encoder.release();
+			}
 			if (rs != null) {
 				try {
 					rs.close();
@@ -717,6 +717,36 @@ public class JDBCConnection implements BackendConnection {
 		}
 	}
 
+	/**
+	 * 前端写队列积压时暂停拉取结果集，由于是在数据源独立的线程池中执行，阻塞不会影响其他查询
+	 */
+	private void waitForWriteQueue(ServerConnection sc, Statement stmt, int highWater)
+			throws SQLException {
+		try {
+			// 写出数据时会被唤醒，超时只是为了兜底检查连接是否已关闭
+			while (!sc.awaitWriteQueue(highWater, WRITE_QUEUE_WAIT_MILLIS)) {
+				if (sc.isClosed()) {
+					break;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			stmt.cancel();
+			throw new SQLException("jdbc query interrupted while waiting for front connection write queue");
+		}
+		if (sc.isClosed()) {
+			stmt.cancel();
+			throw new SQLException("front connection closed, jdbc query canceled");
+		}
+	}
+
+	/**
+	 * mongodb、sequoiadb 驱动的 wasNull() 总是返回 false，不能使用 getLong 等原始类型的 getter
+	 */
+	private boolean isTypedGetterSupported() {
+		return !"mongodb".equalsIgnoreCase(dbType) && !"sequoiadb".equalsIgnoreCase(dbType);
+	}
+
 	@Override
 	public void query(final String sql) throws UnsupportedEncodingException {
 		if(respHandler instanceof ConnectionHeartBeatHandler)
@@ -785,7 +815,17 @@ public class JDBCConnection implements BackendConnection {
 			}
 		};
 
-		MycatServer.getInstance().getBusinessExecutor().execute(runnable);
+		try {
+			pool.getExecutor().execute(runnable);
+		} catch (RejectedExecutionException e) {
+			this.running = false;
+			ErrorPacket error = new ErrorPacket();
+			error.packetId = ++packetId;
+			error.errno = ErrorCode.ER_UNKNOWN_ERROR;
+			error.message = ("too many queries waiting on jdbc datasource " + pool.getName()).getBytes();
+			LOGGER.warn(new String(error.message));
+			this.respHandler.errorResponse(error.writeToBytes(source), this);
+		}
 	}
 
 	@Override
@@ -6,6 +6,8 @@ import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.Lists;
 
@@ -15,8 +17,11 @@ import io.mycat.backend.heartbeat.DBHeartbeat;
 import io.mycat.backend.mysql.nio.handler.ResponseHandler;
 import io.mycat.config.model.DBHostConfig;
 import io.mycat.config.model.DataHostConfig;
+import io.mycat.config.model.SystemConfig;
 import io.mycat.net.NIOConnector;
 import io.mycat.net.NIOProcessor;
+import io.mycat.util.NameableExecutor;
+import io.mycat.util.NameableThreadFactory;
 
 public class JDBCDatasource extends PhysicalDatasource {
 	
@@ -41,10 +46,34 @@ public class JDBCDatasource extends PhysicalDatasource {
 		}
 	}
 	
+	// JDBC 的查询是阻塞的，每个数据源使用独立的有界线程池，避免慢查询占满 BusinessExecutor
+	private volatile NameableExecutor executor;
+
 	public JDBCDatasource(DBHostConfig config, DataHostConfig hostConfig, boolean isReadNode) {
 		super(config, hostConfig, isReadNode);
 	}
 
+	public NameableExecutor getExecutor() {
+		NameableExecutor exec = executor;
+		if (exec == null) {
+			synchronized (this) {
+				exec = executor;
+				if (exec == null) {
+					SystemConfig system = MycatServer.getInstance().getConfig().getSystem();
+					String name = "JDBC-" + getName();
+					exec = new NameableExecutor(name, Math.max(1, system.getJdbcExecutorThreads()),
+							new ArrayBlockingQueue<Runnable>(Math.max(1, system.getJdbcExecutorQueueSize())),
+							new NameableThreadFactory(name, true));
+					// 空闲时线程全部回收，reload 后旧数据源不会残留线程
+					exec.setKeepAliveTime(60, TimeUnit.SECONDS);
+					exec.allowCoreThreadTimeOut(true);
+					executor = exec;
+				}
+			}
+		}
+		return exec;
+	}
+
 	@Override
 	public DBHeartbeat createHeartBeat() {
 		return new JDBCHeartbeat(this);
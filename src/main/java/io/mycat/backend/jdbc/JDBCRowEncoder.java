@@ -0,0 +1,150 @@
+package io.mycat.backend.jdbc;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+import io.mycat.backend.mysql.BufferUtil;
+import io.mycat.net.AbstractConnection;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+import io.mycat.util.StringUtil;
+
+/**
+ * 将 JDBC ResultSet 的当前行直接编码为 MySQL 文本协议的行包
+ *
+ * 每列按字段类型调用对应的 getter，整数列直接写入十进制字符，不再经过 String，
+ * 所有列写入同一个从 BufferPool 借出的 ByteBuffer，只在最后拷贝一次得到行包。
+ * 用完后必须调用 {@link #release()} 归还 buffer。
+ *
+ * @author mycat
+ */
+final class JDBCRowEncoder {
+
+	private static final byte NULL_MARK = (byte) 251;
+
+	private static final int KIND_STRING = 0;
+	private static final int KIND_BINARY = 1;
+	private static final int KIND_DECIMAL = 2;
+	private static final int KIND_INTEGER = 3;
+
+	private final AbstractConnection conn;
+	private final String charset;
+	private final int[] kinds;
+	private final byte[] digits = new byte[20];
+	private ByteBuffer buffer;
+
+	/**
+	 * @param typedGetters 驱动的 wasNull() 是否可靠，不可靠时整数列退回 getString
+	 */
+	JDBCRowEncoder(AbstractConnection conn, String charset, List<FieldPacket> fieldPks, boolean typedGetters) {
+		this.conn = conn;
+		this.charset = charset;
+		this.kinds = new int[fieldPks.size()];
+		for (int i = 0; i < kinds.length; i++) {
+			int type = fieldPks.get(i).type & 0xff;
+			if (MysqlDefs.isBianry((byte) type)) {
+				kinds[i] = KIND_BINARY;
+			} else if (type == MysqlDefs.FIELD_TYPE_DECIMAL || type == MysqlDefs.FIELD_TYPE_NEW_DECIMAL) {
+				kinds[i] = KIND_DECIMAL;
+			} else if (typedGetters && (type == MysqlDefs.FIELD_TYPE_TINY || type == MysqlDefs.FIELD_TYPE_SHORT
+					|| type == MysqlDefs.FIELD_TYPE_LONG || type == MysqlDefs.FIELD_TYPE_INT24)) {
+				// LONGLONG 可能是 unsigned bigint，超出 long 的范围，仍然走 getString
+				kinds[i] = KIND_INTEGER;
+			} else {
+				kinds[i] = KIND_STRING;
+			}
+		}
+		this.buffer = conn.allocate();
+	}
+
+	/**
+	 * 编码当前行，返回完整的行包(含包头)
+	 */
+	byte[] encode(ResultSet rs, byte packetId) throws SQLException {
+		buffer.clear();
+		buffer.position(4);
+		for (int i = 0; i < kinds.length; i++) {
+			int j = i + 1;
+			switch (kinds[i]) {
+			case KIND_BINARY:
+				writeBytes(rs.getBytes(j));
+				break;
+			case KIND_DECIMAL:
+				// ensure that do not use scientific notation format
+				BigDecimal val = rs.getBigDecimal(j);
+				writeBytes(val != null ? StringUtil.encode(val.toPlainString(), charset) : null);
+				break;
+			case KIND_INTEGER:
+				long v = rs.getLong(j);
+				if (rs.wasNull()) {
+					writeBytes(null);
+				} else {
+					writeLong(v);
+				}
+				break;
+			default:
+				writeBytes(StringUtil.encode(rs.getString(j), charset));
+			}
+		}
+		int end = buffer.position();
+		int bodyLength = end - 4;
+		buffer.put(0, (byte) (bodyLength & 0xff));
+		buffer.put(1, (byte) (bodyLength >>> 8));
+		buffer.put(2, (byte) (bodyLength >>> 16));
+		buffer.put(3, packetId);
+		byte[] row = new byte[end];
+		buffer.flip();
+		buffer.get(row);
+		return row;
+	}
+
+	void release() {
+		if (buffer != null) {
+			conn.recycle(buffer);
+			buffer = null;
+		}
+	}
+
+	private void writeBytes(byte[] v) {
+		if (v == null) {
+			ensure(1);
+			buffer.put(NULL_MARK);
+		} else {
+			ensure(BufferUtil.getLength(v));
+			BufferUtil.writeWithLength(buffer, v);
+		}
+	}
+
+	private void writeLong(long v) {
+		if (v == Long.MIN_VALUE) {
+			writeBytes(Long.toString(v).getBytes());
+			return;
+		}
+		boolean negative = v < 0;
+		if (negative) {
+			v = -v;
+		}
+		int pos = digits.length;
+		do {
+			digits[--pos] = (byte) ('0' + (v % 10));
+			v /= 10;
+		} while (v != 0);
+		if (negative) {
+			digits[--pos] = '-';
+		}
+		int len = digits.length - pos;
+		ensure(len + 1);
+		buffer.put((byte) len);
+		buffer.put(digits, pos, len);
+	}
+
+	private void ensure(int capacity) {
+		if (capacity > buffer.remaining()) {
+			// checkWriteBuffer 会保留已写入的内容并归还旧的 buffer
+			buffer = conn.checkWriteBuffer(buffer, capacity, false);
+		}
+	}
+}
@@ -144,6 +144,8 @@ public class MySQLConnection extends BackendAIOConnection {
 	private volatile StatusSync statusSync;
 	private volatile boolean metaDataSyned = true;
 	private volatile int xaStatus = 0;
+	// 需要先 SET 同步会话状态的 SQL 数
+	private volatile long setSyncCount;
 
 	public MySQLConnection(NetworkChannel channel, boolean fromSlaveDB) {
 		super(channel);
@@ -232,6 +234,29 @@ public class MySQLConnection extends BackendAIOConnection {
 		this.isAuthenticated = isAuthenticated;
 	}
 
+	/**
+	 * 握手时是否向后端申请压缩协议，全局 useCompression 或 dataHost 的 compress 打开时申请
+	 */
+	public void setRequestCompress(boolean requestCompress) {
+		if (requestCompress) {
+			clientFlags |= Capabilities.CLIENT_COMPRESS;
+		} else {
+			clientFlags &= ~Capabilities.CLIENT_COMPRESS;
+		}
+	}
+
+	public boolean isRequestCompress() {
+		return (clientFlags & Capabilities.CLIENT_COMPRESS) != 0;
+	}
+
+	@Override
+	public void setSupportCompress(boolean isSupportCompress) {
+		super.setSupportCompress(isSupportCompress);
+		if (isSupportCompress && pool != null) {
+			compressCodec.setStat(pool.getCompressStat());
+		}
+	}
+
 	public String getPassword() {
 		return password;
 	}
@@ -392,11 +417,20 @@ public class MySQLConnection extends BackendAIOConnection {
 		if(sc.getSession2().getXaTXID()!=null){
 			xaTXID = sc.getSession2().getXaTXID()+",'"+getSchema()+"'";
 		}
-		synAndDoExecute(xaTXID, rrn, sc.getCharsetIndex(), sc.getTxIsolation(),
+		boolean setSync = synAndDoExecute(xaTXID, rrn, sc.getCharsetIndex(), sc.getTxIsolation(),
 				autocommit);
+		if (setSync) {
+			setSyncCount++;
+		}
+		if (pool != null) {
+			pool.recordExecute(setSync);
+		}
 	}
 
-	private void synAndDoExecute(String xaTxID, RouteResultsetNode rrn,
+	/**
+	 * @return 是否需要先 SET 同步字符集、事务隔离级别或 autocommit
+	 */
+	private boolean synAndDoExecute(String xaTxID, RouteResultsetNode rrn,
 			int clientCharSetIndex, int clientTxIsoLation,
 			boolean clientAutoCommit) {
 		String xaCmd = null;
@@ -437,7 +471,7 @@ public class MySQLConnection extends BackendAIOConnection {
 				+this.getPool().getConfig());
 			}
 			sendQueryCmd(rrn.getStatement());
-			return;
+			return false;
 		}
 		CommandPacket schemaCmd = null;
 		StringBuilder sb = new StringBuilder();
@@ -476,7 +510,7 @@ public class MySQLConnection extends BackendAIOConnection {
 		// syn and execute others
 		this.sendQueryCmd(sb.toString());
 		// waiting syn result...
-
+		return charsetSyn + txIsoLationSyn + autoCommitSyn > 0;
 	}
 
 	private static CommandPacket getChangeSchemaCommand(String schema) {
@@ -700,6 +734,10 @@ public class MySQLConnection extends BackendAIOConnection {
 		return txIsolation;
 	}
 
+	public long getSetSyncCount() {
+		return setSyncCount;
+	}
+
 	
 
 }
@@ -25,7 +25,6 @@ package io.mycat.backend.mysql.nio;
 
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 
-import io.mycat.MycatServer;
 import io.mycat.backend.mysql.CharsetUtil;
 import io.mycat.backend.mysql.SecurityUtil;
 import io.mycat.backend.mysql.nio.handler.ResponseHandler;
@@ -74,9 +73,9 @@ public class MySQLConnectionAuthenticator implements NIOHandler {
 				// 处理认证结果
 				source.setHandler(new MySQLConnectionHandler(source));
 				source.setAuthenticated(true);
-				boolean clientCompress = Capabilities.CLIENT_COMPRESS==(Capabilities.CLIENT_COMPRESS & packet.serverCapabilities);
-				boolean usingCompress= MycatServer.getInstance().getConfig().getSystem().getUseCompression()==1 ;
-				if(clientCompress&&usingCompress)
+				// 双方都支持时才启用压缩
+				boolean serverCompress = Capabilities.CLIENT_COMPRESS==(Capabilities.CLIENT_COMPRESS & packet.serverCapabilities);
+				if(serverCompress && source.isRequestCompress())
 				{
 					source.setSupportCompress(true);
 				}
@@ -57,6 +57,9 @@ public class MySQLConnectionFactory extends BackendConnectionFactory {
 		c.setHandler(new MySQLConnectionAuthenticator(c, handler));
 		c.setPool(pool);
 		c.setIdleTimeout(pool.getConfig().getIdleTimeout());
+		if (pool.getHostConfig().isCompress()) {
+			c.setRequestCompress(true);
+		}
 		if (channel instanceof AsynchronousSocketChannel) {
 			((AsynchronousSocketChannel) channel).connect(
 					new InetSocketAddress(dsc.getIp(), dsc.getPort()), c,
@@ -44,11 +44,28 @@ public class KillConnectionHandler implements ResponseHandler {
 
 	private final MySQLConnection killee;
 	private final NonBlockingSession session;
+	private final boolean queryOnly;
 
 	public KillConnectionHandler(BackendConnection killee,
 			NonBlockingSession session) {
+		this(killee, session, false);
+	}
+
+	/**
+	 * @param queryOnly 为 true 时只 kill 正在执行的查询(KILL QUERY)，被 kill 的连接保留，
+	 *                  成功后调用 {@link #onQueryKilled()}；失败时仍关闭该连接
+	 */
+	public KillConnectionHandler(BackendConnection killee,
+			NonBlockingSession session, boolean queryOnly) {
 		this.killee = (MySQLConnection) killee;
 		this.session = session;
+		this.queryOnly = queryOnly;
+	}
+
+	/**
+	 * KILL QUERY 执行成功
+	 */
+	protected void onQueryKilled() {
 	}
 
 	@Override
@@ -58,7 +75,7 @@ public class KillConnectionHandler implements ResponseHandler {
 		CommandPacket packet = new CommandPacket();
 		packet.packetId = 0;
 		packet.command = MySQLPacket.COM_QUERY;
-		packet.arg = new StringBuilder("KILL ").append(killee.getThreadId())
+		packet.arg = new StringBuilder(queryOnly ? "KILL QUERY " : "KILL ").append(killee.getThreadId())
 				.toString().getBytes();
 		packet.write(mysqlCon);
 	}
@@ -75,7 +92,11 @@ public class KillConnectionHandler implements ResponseHandler {
 					+ killee.getThreadId());
 		}
 		conn.release();
-		killee.close("killed");
+		if (queryOnly) {
+			onQueryKilled();
+		} else {
+			killee.close("killed");
+		}
 
 	}
 
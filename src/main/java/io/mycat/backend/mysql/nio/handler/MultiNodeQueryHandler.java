@@ -29,10 +29,14 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.slf4j.Logger;
@@ -41,11 +45,14 @@ import org.slf4j.LoggerFactory;
 import io.mycat.MycatServer;
 import io.mycat.backend.BackendConnection;
 import io.mycat.backend.datasource.PhysicalDBNode;
+import io.mycat.backend.mysql.BufferUtil;
 import io.mycat.backend.mysql.LoadDataUtil;
+import io.mycat.backend.mysql.nio.MySQLConnection;
 import io.mycat.cache.LayerCachePool;
 import io.mycat.config.MycatConfig;
 import io.mycat.memory.unsafe.row.UnsafeRow;
 import io.mycat.net.mysql.BinaryRowDataPacket;
+import io.mycat.net.mysql.EOFPacket;
 import io.mycat.net.mysql.FieldPacket;
 import io.mycat.net.mysql.OkPacket;
 import io.mycat.net.mysql.ResultSetHeaderPacket;
@@ -60,9 +67,13 @@ import io.mycat.sqlengine.mpp.ColMeta;
 import io.mycat.sqlengine.mpp.DataMergeService;
 import io.mycat.sqlengine.mpp.DataNodeMergeManager;
 import io.mycat.sqlengine.mpp.MergeCol;
+import io.mycat.sqlengine.mpp.OrderCol;
+import io.mycat.sqlengine.mpp.ShardLimitTracker;
+import io.mycat.statistic.SqlTrace;
 import io.mycat.statistic.stat.QueryResult;
 import io.mycat.statistic.stat.QueryResultDispatcher;
 import io.mycat.util.ResultSetUtil;
+import io.mycat.util.StringUtil;
 
 /**
  * @author mycat
@@ -106,6 +117,14 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 
 	private int end = 0;
 
+	/**
+	 * limit 已经满足时取消其余分片的查询
+	 */
+	private volatile ShardLimitTracker limitTracker;
+	// 已取消分片的后端连接，查询结束且 KILL QUERY 已确认(或没有发送 kill)后才放回连接池
+	private final ConcurrentMap<BackendConnection, CancelledQuery> cancelledQueries =
+			new ConcurrentHashMap<BackendConnection, CancelledQuery>();
+
 	//huangyiming
 	private byte[] header = null;
 	private List<byte[]> fields = null;
@@ -205,6 +224,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 					if(LOGGER.isDebugEnabled()) {
 						LOGGER.debug("node.getRunOnSlave()-" + node.getRunOnSlave());
 					}
+					session.getTrace().markLast(SqlTrace.CONNECTION);
 					_execute(conn, node);
 				} else {
 					// create new connection
@@ -259,6 +279,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 			this.connectionClose(conn, "find error, so close this connection");
 			return ;
 		}
+		session.getTrace().markLast(SqlTrace.CONNECTION);
 		_execute(conn, node);
 	}
 
@@ -281,7 +302,11 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 			LOGGER.debug("received ok response ,executeResponse:"
 					+ executeResponse + " from " + conn);
 		}
-		if (executeResponse) {
+		if (!executeResponse) {
+			session.getTrace().markLast(SqlTrace.SYNC);
+		} else {
+			session.getTrace().mark(SqlTrace.FIRST_BYTE);
+			session.getTrace().markLast(SqlTrace.BACKEND_END);
 
 			ServerConnection source = session.getSource();
 			OkPacket ok = new OkPacket();
@@ -351,6 +376,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 					//  判断是否已经报错返回给前台了 2018.07 
 					if(source.canResponse()) {
 						ok.write(source);
+						session.getTrace().end();
 					}
 				} catch (Exception e) {
 					handleDataProcessException(e);
@@ -379,7 +405,14 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 		}
 
 		this.netOutBytes += eof.length;
-		MiddlerResultHandler middlerResultHandler = session.getMiddlerResultHandler();
+
+		ShardLimitTracker tracker = limitTracker;
+		if (tracker != null && conn instanceof MySQLConnection
+				&& !tracker.nodeEnd(((RouteResultsetNode) conn.getAttachment()).getName())) {
+			// 已取消的分片，等 kill 确认后再放回连接池
+			cancelledQueryEnd(conn);
+			return;
+		}
 
 		if (errorRepsponsed.get()) {
 			// the connection has been closed or set to "txInterrupt" properly
@@ -391,7 +424,6 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 			return;
 		}
 
-		final ServerConnection source = session.getSource();
 		if (!isCallProcedure) {
 			if (clearIfSessionClosed(session)) {
 				return;
@@ -400,6 +432,17 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 			}
 		}
 
+		nodeEnd(eof);
+	}
+
+	/**
+	 * 一个分片的数据全部返回
+	 */
+	private void nodeEnd(final byte[] eof) {
+		session.getTrace().markLast(SqlTrace.BACKEND_END);
+		final ServerConnection source = session.getSource();
+		MiddlerResultHandler middlerResultHandler = session.getMiddlerResultHandler();
+
 		if (decrementCountBy(1)) {
             if (!rrs.isCallStatement()||(rrs.isCallStatement()&&rrs.getProcedure().isResultSimpleValue())) {
 				if (this.autocommit && !session.getSource().isLocked()) {// clear all connections
@@ -434,6 +477,8 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 						//middlerResultHandler.secondEexcute();
 						if(source.canResponse()) {
 							source.write(eof);
+							session.getTrace().end();
+							session.getDataSetContext().endStoring();
 						}
 					}
  				} finally {
@@ -555,12 +600,15 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 				isMiddleResultDone.set(false);
 		}else{
 			ByteBuffer byteBuffer = source.writeToBuffer(eof, buffer);
+			session.getTrace().mark(SqlTrace.MERGE);
 
 			/**
 			 * 真正的开始把Writer Buffer的数据写入到channel 中
 			 */
 			if(source.canResponse()) {
 				source.write(byteBuffer);
+				session.getTrace().end();
+				session.getDataSetContext().endStoring();
 			}
 			
 		}
@@ -637,8 +685,12 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 			if (LOGGER.isDebugEnabled()) {
 				LOGGER.debug("last packet id:" + packetId);
 			}
+			buffer = source.writeToBuffer(eof, buffer);
+			session.getTrace().mark(SqlTrace.MERGE);
 			if(source.canResponse()) {
-				source.write(source.writeToBuffer(eof, buffer));
+				source.write(buffer);
+				session.getTrace().end();
+				session.getDataSetContext().endStoring();
 			}
 
 		} catch (Exception e) {
@@ -664,6 +716,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 			return;
 		}
 		
+		session.getTrace().mark(SqlTrace.FIRST_BYTE);
 		//huangyiming add
 		this.header = header;
 		this.fields = fields;
@@ -799,7 +852,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 
  			if (dataMergeSvr != null) {
 				dataMergeSvr.onRowMetaData(columToIndx, fieldCount);
-
+				limitTracker = createLimitTracker(columToIndx);
 			}
 		} catch (Exception e) {
 			handleDataProcessException(e);
@@ -840,6 +893,7 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 		}
 
 
+		List<String> cancelNodes = null;
 		lock.lock();
 		try {
 
@@ -853,7 +907,16 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 				// So the "isClosedByDiscard" variable is unnecessary.
 				// @author Uncle-pan
 				// @since 2016-03-25
+				ShardLimitTracker tracker = limitTracker;
+				if (tracker == null) {
 					dataMergeSvr.onNewRecord(dataNode, row);
+				} else {
+					// 不会出现在 limit 结果中的行直接丢弃
+					if (tracker.addRow(dataNode, row)) {
+						dataMergeSvr.onNewRecord(dataNode, row);
+					}
+					cancelNodes = tracker.takeCancelableNodes();
+				}
 
 				MiddlerResultHandler middlerResultHandler = session.getMiddlerResultHandler();
  				if(null != middlerResultHandler ){
@@ -903,6 +966,171 @@ public class MultiNodeQueryHandler extends MultiNodeHandler implements LoadDataR
 		} finally {
 			lock.unlock();
 		}
+		if (cancelNodes != null) {
+			cancelNodes(cancelNodes);
+		}
+	}
+
+	/**
+	 * 跨分片的 limit 查询(无 group by、聚合)在结果已经足够时取消其余分片的查询。
+	 * 取消是通过 KILL QUERY 完成的，所以只在自动提交且没有 lock tables 时启用，
+	 * 有排序时只支持比较结果与 mysql 一致的数值、日期类型的排序列
+	 */
+	private ShardLimitTracker createLimitTracker(Map<String, ColMeta> columToIndx) {
+		if (MycatServer.getInstance().getConfig().getSystem().getCancelShardsOnLimit() != 1
+				|| rrs.getLimitSize() <= 0 || rrs.getNodes().length < 2
+				|| rrs.getGroupByCols() != null || rrs.isHasAggrColumn() || rrs.getHavingCols() != null
+				|| !autocommit || session.getSource().isLocked()
+				|| session.getMiddlerResultHandler() != null || isCallProcedure) {
+			return null;
+		}
+		OrderCol[] orderCols = null;
+		LinkedHashMap<String, Integer> orders = rrs.getOrderByCols();
+		if (orders != null && !orders.isEmpty()) {
+			orderCols = new OrderCol[orders.size()];
+			int i = 0;
+			for (Map.Entry<String, Integer> entry : orders.entrySet()) {
+				ColMeta colMeta = columToIndx.get(StringUtil.removeBackquote(entry.getKey().toUpperCase()));
+				if (colMeta == null) {
+					return null;
+				}
+				orderCols[i++] = new OrderCol(colMeta, entry.getValue());
+			}
+			if (!ShardLimitTracker.isOrderSupported(orderCols)) {
+				return null;
+			}
+		}
+		List<String> dataNodes = new ArrayList<String>(rrs.getNodes().length);
+		for (RouteResultsetNode node : rrs.getNodes()) {
+			dataNodes.add(node.getName());
+		}
+		return new ShardLimitTracker(limitStart + limitSize, orderCols, fieldCount, dataNodes);
+	}
+
+	/**
+	 * 已取消分片上的查询：等待查询结束和 KILL QUERY 确认两件事都完成
+	 */
+	private final class CancelledQuery {
+		private final BackendConnection conn;
+		private final AtomicInteger pending;
+		private final AtomicBoolean done = new AtomicBoolean();
+
+		CancelledQuery(BackendConnection conn, int pending) {
+			this.conn = conn;
+			this.pending = new AtomicInteger(pending);
+		}
+
+		void countDown() {
+			if (pending.decrementAndGet() == 0 && done.compareAndSet(false, true)) {
+				cancelledNodeEnd(conn, false);
+			}
+		}
+	}
+
+	/**
+	 * 已取消分片上的查询结束(正常结束或被 KILL QUERY 中断)
+	 */
+	private void cancelledQueryEnd(BackendConnection conn) {
+		CancelledQuery query = new CancelledQuery(conn, 1);
+		CancelledQuery killing = cancelledQueries.putIfAbsent(conn, query);
+		// 没有发送 kill 时直接结束，之后也不会再发送
+		(killing == null ? query : killing).countDown();
+	}
+
+	/**
+	 * 已取消的分片按正常结束处理，连接未关闭时放回连接池
+	 */
+	private void cancelledNodeEnd(BackendConnection conn, boolean closed) {
+		if (closed) {
+			// 补充一个空闲连接，代替被关闭的连接
+			((MySQLConnection) conn).getPool().replaceClosedCon(conn.getSchema());
+		}
+		if (errorRepsponsed.get() || clearIfSessionClosed(session)) {
+			return;
+		}
+		session.releaseConnectionIfSafe(conn, LOGGER.isDebugEnabled(), false);
+		final EOFPacket eofp = new EOFPacket();
+		final ByteBuffer eof = ByteBuffer.allocate(9);
+		BufferUtil.writeUB3(eof, eofp.calcPacketSize());
+		eof.put(eofp.packetId);
+		eof.put(eofp.fieldCount);
+		BufferUtil.writeUB2(eof, eofp.warningCount);
+		BufferUtil.writeUB2(eof, eofp.status);
+		nodeEnd(eof.array());
+	}
+
+	/**
+	 * 用 KILL QUERY 中断已取消分片上的查询，连接保留；kill 失败时关闭连接，关闭后按该分片正常结束处理
+	 */
+	private void cancelNodes(List<String> dataNodes) {
+		MycatConfig conf = MycatServer.getInstance().getConfig();
+		for (RouteResultsetNode node : rrs.getNodes()) {
+			if (!dataNodes.contains(node.getName())) {
+				continue;
+			}
+			BackendConnection conn = session.getTarget(node);
+			// 连接还没有取到时，查询结束后再关闭连接
+			if (!(conn instanceof MySQLConnection) || conn.isClosedOrQuit()) {
+				continue;
+			}
+			final CancelledQuery query = new CancelledQuery(conn, 2);
+			if (cancelledQueries.putIfAbsent(conn, query) != null) {
+				// 查询已经结束，连接可能已放回连接池，不能再 kill
+				continue;
+			}
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("limit satisfied, cancel query on " + conn);
+			}
+			KillConnectionHandler kill = new KillConnectionHandler(conn, session, true) {
+				@Override
+				protected void onQueryKilled() {
+					query.countDown();
+				}
+			};
+			try {
+				PhysicalDBNode dn = conf.getDataNodes().get(node.getName());
+				dn.getConnectionFromSameSource(dn.getDatabase(), true, conn, kill, node);
+			} catch (Exception e) {
+				LOGGER.warn("get killer connection failed for " + node, e);
+				kill.connectionError(e, null);
+			}
+		}
+	}
+
+	private boolean isCancelled(BackendConnection conn) {
+		ShardLimitTracker tracker = limitTracker;
+		return tracker != null && conn instanceof MySQLConnection
+				&& conn.getAttachment() instanceof RouteResultsetNode
+				&& tracker.isCancelled(((RouteResultsetNode) conn.getAttachment()).getName());
+	}
+
+	@Override
+	public void errorResponse(byte[] data, BackendConnection conn) {
+		if (isCancelled(conn)) {
+			// 被 KILL QUERY 中断的查询
+			cancelledQueryEnd(conn);
+			return;
+		}
+		super.errorResponse(data, conn);
+	}
+
+	@Override
+	public void connectionClose(BackendConnection conn, String reason) {
+		if (!isCancelled(conn)) {
+			super.connectionClose(conn, reason);
+			return;
+		}
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("cancelled query connection closed: " + reason + " con:" + conn);
+		}
+		// kill 失败时关闭连接，查询和 kill 都不再等待；已经结束的不再重复处理
+		CancelledQuery query = new CancelledQuery(conn, 0);
+		query.done.set(true);
+		CancelledQuery old = cancelledQueries.putIfAbsent(conn, query);
+		if (old != null && !old.done.compareAndSet(false, true)) {
+			return;
+		}
+		cancelledNodeEnd(conn, true);
 	}
 
 	@Override
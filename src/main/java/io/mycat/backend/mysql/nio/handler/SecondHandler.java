@@ -2,6 +2,8 @@ package io.mycat.backend.mysql.nio.handler;
 
 import java.util.List;
 
+import com.alibaba.druid.sql.ast.expr.SQLCharExpr;
+
 /**
  * 查询分解后的第二部处理
  * @author huangyiming
@@ -9,5 +11,5 @@ import java.util.List;
  */
 public interface SecondHandler {
 	
-	public void doExecute(List params);
+	public void doExecute(List<SQLCharExpr> params);
 }
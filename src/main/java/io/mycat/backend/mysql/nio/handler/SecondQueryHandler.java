@@ -2,6 +2,8 @@ package io.mycat.backend.mysql.nio.handler;
 
 import java.util.List;
 
+import com.alibaba.druid.sql.ast.expr.SQLCharExpr;
+
 public class SecondQueryHandler implements SecondHandler {
 
 	public MiddlerResultHandler middlerResultHandler;
@@ -10,7 +12,7 @@ public class SecondQueryHandler implements SecondHandler {
 	}
 
 	@Override
-	public void doExecute(List params) {
+	public void doExecute(List<SQLCharExpr> params) {
 		// TODO Auto-generated method stub
 		
 	}
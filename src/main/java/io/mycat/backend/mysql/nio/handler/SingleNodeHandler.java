@@ -54,6 +54,7 @@ import io.mycat.server.parser.ServerParse;
 import io.mycat.server.parser.ServerParseShow;
 import io.mycat.server.response.ShowFullTables;
 import io.mycat.server.response.ShowTables;
+import io.mycat.statistic.SqlTrace;
 import io.mycat.statistic.stat.QueryResult;
 import io.mycat.statistic.stat.QueryResultDispatcher;
 import io.mycat.util.ResultSetUtil;
@@ -124,6 +125,10 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
         
 	}
 
+	public NonBlockingSession getSession() {
+		return session;
+	}
+
 	@Override
 	public void terminate(Runnable callback) {
 		boolean zeroReached = false;
@@ -173,6 +178,7 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 		 
 		try {
 			if (session.tryExistsCon(conn, node)) {
+				session.getTrace().mark(SqlTrace.CONNECTION);
 				_execute(conn);
 			} else {
 				// create new connection
@@ -200,6 +206,7 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 	@Override
 	public void connectionAcquired(final BackendConnection conn) {
 		session.bindConnection(node, conn);
+		session.getTrace().mark(SqlTrace.CONNECTION);
 		_execute(conn);
 
 	}
@@ -310,7 +317,11 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 		this.netOutBytes += data.length;
 		
 		boolean executeResponse = conn.syncAndExcute();		
-		if (executeResponse) {
+		if (!executeResponse) {
+			session.getTrace().markLast(SqlTrace.SYNC);
+		} else {
+			session.getTrace().mark(SqlTrace.FIRST_BYTE);
+			session.getTrace().mark(SqlTrace.BACKEND_END);
 			ServerConnection source = session.getSource();
 			OkPacket ok = new OkPacket();
 			ok.read(data);
@@ -337,6 +348,7 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 				//modify by zwy 2018.07
 				if(!errorRepsponsed.get() && !session.closed() && source.canResponse()) {
 					ok.write(source);	
+					session.getTrace().end();
 				}	
 			}
             
@@ -361,6 +373,7 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 	public void rowEofResponse(byte[] eof, BackendConnection conn) {
 		
 		this.netOutBytes += eof.length;
+		session.getTrace().mark(SqlTrace.BACKEND_END);
 		
 		ServerConnection source = session.getSource();
 		conn.recordSql(source.getHost(), source.getSchema(), node.getStatement());
@@ -383,6 +396,8 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 			//modify by zwy 2018.07
 			if(!errorRepsponsed.get()&& !session.closed()&& source.canResponse()) {
 				source.write(buffer);
+				session.getTrace().end();
+				session.getDataSetContext().endStoring();
 			}
 		}
 		source.setExecuteSql(null);
@@ -414,6 +429,7 @@ public class SingleNodeHandler implements ResponseHandler, Terminatable, LoadDat
 	@Override
 	public void fieldEofResponse(byte[] header, List<byte[]> fields,
 			byte[] eof, BackendConnection conn) {
+		session.getTrace().mark(SqlTrace.FIRST_BYTE);
 		this.header = header;
 		this.fields = fields;
 		MiddlerResultHandler middlerResultHandler = session.getMiddlerResultHandler();
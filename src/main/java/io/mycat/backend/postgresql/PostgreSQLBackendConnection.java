@@ -5,6 +5,10 @@ import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
 import java.nio.channels.NetworkChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -12,7 +16,13 @@ import io.mycat.backend.jdbc.ShowVariables;
 import io.mycat.backend.mysql.CharsetUtil;
 import io.mycat.backend.mysql.nio.MySQLConnectionHandler;
 import io.mycat.backend.mysql.nio.handler.ResponseHandler;
+import io.mycat.backend.postgresql.packet.Bind;
+import io.mycat.backend.postgresql.packet.Close;
+import io.mycat.backend.postgresql.packet.Describe;
+import io.mycat.backend.postgresql.packet.Execute;
+import io.mycat.backend.postgresql.packet.Parse;
 import io.mycat.backend.postgresql.packet.Query;
+import io.mycat.backend.postgresql.packet.Sync;
 import io.mycat.backend.postgresql.packet.Terminate;
 import io.mycat.backend.postgresql.utils.PIOUtils;
 import io.mycat.backend.postgresql.utils.PacketUtils;
@@ -90,10 +100,13 @@ public class PostgreSQLBackendConnection extends BackendAIOConnection {
 
 	private static final Query _COMMIT = new Query("commit");
 
+	// cached plan must not change result type
+	private static final String CACHED_PLAN_CHANGED = "0A000";
+
 	private static final Query _ROLLBACK = new Query("rollback");
 
-	private static void getCharsetCommand(StringBuilder sb, int clientCharIndex) {
-		sb.append("SET names '").append(CharsetUtil.getCharset(clientCharIndex).toUpperCase()).append("';");
+	private static String getCharsetCommand(int clientCharIndex) {
+		return "SET names '" + CharsetUtil.getCharset(clientCharIndex).toUpperCase() + "'";
 	}
 
 	/**
@@ -102,25 +115,62 @@ public class PostgreSQLBackendConnection extends BackendAIOConnection {
 	 * @param
 	 * @param txIsolation
 	 */
-	private static void getTxIsolationCommand(StringBuilder sb, int txIsolation) {
+	private static String getTxIsolationCommand(int txIsolation) {
 		switch (txIsolation) {
 		case Isolations.READ_UNCOMMITTED:
-			sb.append("SET SESSION TRANSACTION ISOLATION LEVEL READ UNCOMMITTED;");
-			return;
+			return "SET SESSION TRANSACTION ISOLATION LEVEL READ UNCOMMITTED";
 		case Isolations.READ_COMMITTED:
-			sb.append("SET SESSION TRANSACTION ISOLATION LEVEL READ COMMITTED;");
-			return;
+			return "SET SESSION TRANSACTION ISOLATION LEVEL READ COMMITTED";
 		case Isolations.REPEATED_READ:
-			sb.append("SET SESSION TRANSACTION ISOLATION LEVEL REPEATABLE READ;");
-			return;
+			return "SET SESSION TRANSACTION ISOLATION LEVEL REPEATABLE READ";
 		case Isolations.SERIALIZABLE:
-			sb.append("SET SESSION TRANSACTION ISOLATION LEVEL SERIALIZABLE;");
-			return;
+			return "SET SESSION TRANSACTION ISOLATION LEVEL SERIALIZABLE";
 		default:
 			throw new UnknownTxIsolationException("txIsolation:" + txIsolation);
 		}
 	}
 
+	/**
+	 * 只有一条语句才能走扩展查询协议，Parse 不接受多条语句
+	 */
+	static boolean isSingleStatement(String sql) {
+		char quote = 0;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (c == ';') {
+				for (int j = i + 1; j < sql.length(); j++) {
+					char n = sql.charAt(j);
+					if (n != ';' && !Character.isWhitespace(n)) {
+						return false;
+					}
+				}
+				return true;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 只缓存 DML 和查询语句
+	 */
+	private static boolean isCacheable(int sqlType) {
+		switch (sqlType) {
+		case ServerParse.SELECT:
+		case ServerParse.INSERT:
+		case ServerParse.UPDATE:
+		case ServerParse.DELETE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
 	private Object attachment;
 
 	private volatile boolean autocommit=true;
@@ -179,6 +229,21 @@ public class PostgreSQLBackendConnection extends BackendAIOConnection {
 	private volatile BackendConnectionState state = BackendConnectionState.connecting;
 	private volatile StatusSync statusSync;
 
+	/**
+	 * 命名语句缓存
+	 */
+	private PostgreSQLStatementCache statementCache;
+
+	/**
+	 * 当前请求使用的缓存语句对应的 sql，出错时让它失效
+	 */
+	private volatile String flightSql;
+
+	/**
+	 * 当前请求没有同步命令，计划失效时可以只重发查询
+	 */
+	private volatile boolean flightRetryable;
+
 	private volatile int txIsolation;
 
 	/***
@@ -239,11 +304,11 @@ public class PostgreSQLBackendConnection extends BackendAIOConnection {
 		return attachment;
 	}
 
-	private void getAutocommitCommand(StringBuilder sb, boolean autoCommit) {
+	private String getAutocommitCommand(boolean autoCommit) {
 		if (autoCommit) {
-			sb.append(/*"SET autocommit=1;"*/"");//Fix bug  由于 PG9.0 开始不支持此选项，默认是为自动提交逻辑。
+			return /*"SET autocommit=1;"*/null;//Fix bug  由于 PG9.0 开始不支持此选项，默认是为自动提交逻辑。
 		} else {
-			sb.append("begin transaction;");
+			return "begin transaction";
 		}
 	}
 
@@ -260,6 +325,43 @@ public class PostgreSQLBackendConnection extends BackendAIOConnection {
 		return pool;
 	}
 
+	public PostgreSQLStatementCache getStatementCache() {
+		return statementCache;
+	}
+
+	public void setStatementCache(PostgreSQLStatementCache statementCache) {
+		this.statementCache = statementCache;
+	}
+
+	/**
+	 * 后台返回 ErrorResponse，本次请求使用的命名语句可能没有建立或者计划已经失效，下次重新 Parse。
+	 * 表结构变化导致缓存的计划不能再用(0A000)且不在事务中时，用新的 Parse 重发一次。
+	 *
+	 * @return 已重发时返回 true，错误不再返回给前端
+	 */
+	public boolean onErrorResponse(String sqlState) {
+		String sql = flightSql;
+		if (sql == null) {
+			return false;
+		}
+		flightSql = null;
+		statementCache.remove(sql);
+		if (!flightRetryable || !CACHED_PLAN_CHANGED.equals(sqlState) || inTransaction || !autocommit) {
+			return false;
+		}
+		flightRetryable = false;
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("cached plan changed, parse again con={}, SQL={}", this, sql);
+		}
+		try {
+			writeExtendedQuery(Collections.<String>emptyList(), sql, true);
+		} catch (IOException e) {
+			LOGGER.warn("resend query to " + this + " error", e);
+			return false;
+		}
+		return true;
+	}
+
 	public ResponseHandler getResponseHandler() {
 		return responseHandler;
 	}
@@ -466,7 +568,7 @@ public class PostgreSQLBackendConnection extends BackendAIOConnection {
 		boolean expectAutocommit = !modifiedSQLExecuted || isFromSlaveDB() || clientAutoCommit;
 		if (!expectAutocommit && xaTxID != null && xaStatus == 0) {
 			clientTxIsoLation = Isolations.SERIALIZABLE;
-			xaCmd = "XA START " + xaTxID + ';';
+			xaCmd = "XA START " + xaTxID;
 			currentXaTxId = xaTxID;
 		}
 		int schemaSyn = conSchema.equals(oldSchema) ? 0 : 1;
@@ -475,48 +577,112 @@ public class PostgreSQLBackendConnection extends BackendAIOConnection {
 		int autoCommitSyn = (conAutoComit == expectAutocommit) ? 0 : 1;
 		int synCount = schemaSyn + charsetSyn + txIsoLationSyn + autoCommitSyn;
 
-		if (synCount == 0) {
-			String sql = rrn.getStatement();
-			Query query = new Query(PgSqlApaterUtils.apater(sql));
-			ByteBuffer buf = this.allocate();// XXX 此处处理问题
-			query.write(buf);
-			this.write(buf);
-			return;
-		}
-
-		// TODO COOLLF 此处大锅待实现. 相关 事物, 切换 库,自动提交等功能实现
-		StringBuilder sb = new StringBuilder();
+		// 需要同步的命令与查询放在同一批消息里发送，不单独往返
+		List<String> synCmds = new ArrayList<String>(4);
 		if (charsetSyn == 1) {
-			getCharsetCommand(sb, clientCharSetIndex);
+			synCmds.add(getCharsetCommand(clientCharSetIndex));
 		}
 		if (txIsoLationSyn == 1) {
-			getTxIsolationCommand(sb, clientTxIsoLation);
+			synCmds.add(getTxIsolationCommand(clientTxIsoLation));
 		}
-		if (autoCommitSyn == 1) {
-			getAutocommitCommand(sb, expectAutocommit);
+		if (autoCommitSyn == 1 && getAutocommitCommand(expectAutocommit) != null) {
+			synCmds.add(getAutocommitCommand(expectAutocommit));
 		}
 		if (xaCmd != null) {
-			sb.append(xaCmd);
+			synCmds.add(xaCmd);
 		}
-		if (LOGGER.isDebugEnabled()) {
-			LOGGER.debug("con need syn ,total syn cmd " + synCount + " commands " + sb.toString() + "schema change:"
-					+ ("" != null) + " con:" + this);
+
+		StatusSync sync = new StatusSync(xaCmd != null, conSchema, clientCharSetIndex, clientTxIsoLation,
+				expectAutocommit, synCmds.size());
+		if (synCmds.isEmpty()) {
+			if (synCount > 0) {
+				// 只有 schema 或者自动提交变化，没有要发送的命令
+				sync.updateConnectionInfo(this);
+			}
+		} else {
+			if (LOGGER.isDebugEnabled()) {
+				LOGGER.debug("con need syn ,total syn cmd " + synCmds.size() + " commands " + synCmds + " con:" + this);
+			}
+			metaDataSyned = false;
+			statusSync = sync;
 		}
 
-		metaDataSyned = false;
-		statusSync = new StatusSync(xaCmd != null, conSchema, clientCharSetIndex, clientTxIsoLation, expectAutocommit,
-				synCount);
-		String sql = sb.append(PgSqlApaterUtils.apater(rrn.getStatement())).toString();
+		String sql = PgSqlApaterUtils.apater(rrn.getStatement());
 		if(LOGGER.isDebugEnabled()){
 			LOGGER.debug("con={}, SQL={}", this, sql);
 		}
-		Query query = new Query(sql);
-		ByteBuffer buf = allocate();// 申请ByetBuffer
-		query.write(buf);
-		this.write(buf);
+		try {
+			if (isSingleStatement(sql)) {
+				flightRetryable = synCmds.isEmpty();
+				writeExtendedQuery(synCmds, sql, isCacheable(rrn.getSqlType()));
+			} else {
+				writeSimpleQuery(synCmds, sql);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException("write query to " + this + " error", e);
+		}
 		metaDataSyned = true;
 	}
 
+	/**
+	 * 扩展查询协议：待关闭的语句、同步命令和查询在同一批消息里发送，以一个 Sync 结束。
+	 * 其中任何一条出错，后台跳过其余消息直到 Sync，只返回一个 ErrorResponse。
+	 */
+	private void writeExtendedQuery(List<String> synCmds, String sql, boolean cacheable) throws IOException {
+		List<String> closing = statementCache.drainClosing();
+		// utf8 每个字符最多 3 个字节，另加消息头和语句名
+		int size = 160 + sql.length() * 3;
+		for (String cmd : synCmds) {
+			size += 64 + cmd.length() * 3;
+		}
+		if (closing != null) {
+			size += closing.size() * 64;
+		}
+		ByteBuffer buf = ByteBuffer.allocate(size);
+		if (closing != null) {
+			for (String name : closing) {
+				new Close(Close.STATEMENT, name).write(buf);
+			}
+		}
+		for (String cmd : synCmds) {
+			new Parse("", cmd).write(buf);
+			new Bind("", "").write(buf);
+			new Execute("", 0).write(buf);
+		}
+
+		String name = "";
+		if (cacheable) {
+			name = statementCache.get(sql);
+			if (name == null) {
+				name = statementCache.add(sql);
+				new Parse(name, sql).write(buf);
+			}
+		} else {
+			new Parse(name, sql).write(buf);
+		}
+		flightSql = name.length() > 0 ? sql : null;
+		new Bind("", name).write(buf);
+		new Describe(Describe.PORTAL, "").write(buf);
+		new Execute("", 0).write(buf);
+		new Sync().write(buf);
+		write(Arrays.copyOf(buf.array(), buf.position()));
+	}
+
+	/**
+	 * 多条语句只能用简单查询协议，同步命令拼在前面
+	 */
+	private void writeSimpleQuery(List<String> synCmds, String sql) {
+		flightSql = null;
+		StringBuilder sb = new StringBuilder();
+		for (String cmd : synCmds) {
+			sb.append(cmd).append(';');
+		}
+		Query query = new Query(sb.append(sql).toString());
+		ByteBuffer buf = ByteBuffer.allocate(query.getLength() + 1);
+		query.write(buf);
+		write(buf.array());
+	}
+
 	public void close(String reason) {
 		if (!isClosed.get()) {
 			isQuit.set(true);
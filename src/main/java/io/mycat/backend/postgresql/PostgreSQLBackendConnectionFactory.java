@@ -34,6 +34,8 @@ public class PostgreSQLBackendConnectionFactory extends
 		c.setPassword(dsc.getPassword());
 		c.setSchema(schema);
 		c.setPool(pool);
+		c.setStatementCache(new PostgreSQLStatementCache(MycatServer.getInstance().getConfig()
+				.getSystem().getPgStatementCacheSize(), pool.getStatementStat()));
 		c.setResponseHandler(handler);
 		c.setIdleTimeout(pool.getConfig().getIdleTimeout());
 		if (channel instanceof AsynchronousSocketChannel) {
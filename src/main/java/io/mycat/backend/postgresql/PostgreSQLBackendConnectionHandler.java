@@ -9,7 +9,6 @@ import io.mycat.backend.postgresql.packet.BackendKeyData;
 import io.mycat.backend.postgresql.packet.CommandComplete;
 import io.mycat.backend.postgresql.packet.CopyInResponse;
 import io.mycat.backend.postgresql.packet.CopyOutResponse;
-import io.mycat.backend.postgresql.packet.DataRow;
 import io.mycat.backend.postgresql.packet.EmptyQueryResponse;
 import io.mycat.backend.postgresql.packet.ErrorResponse;
 import io.mycat.backend.postgresql.packet.NoticeResponse;
@@ -17,6 +16,7 @@ import io.mycat.backend.postgresql.packet.NotificationResponse;
 import io.mycat.backend.postgresql.packet.ParameterStatus;
 import io.mycat.backend.postgresql.packet.PasswordMessage;
 import io.mycat.backend.postgresql.packet.PostgreSQLPacket;
+import io.mycat.backend.postgresql.packet.PostgreSQLPacket.PacketMarker;
 import io.mycat.backend.postgresql.packet.ReadyForQuery;
 import io.mycat.backend.postgresql.packet.ReadyForQuery.TransactionState;
 import io.mycat.backend.postgresql.packet.RowDescription;
@@ -30,7 +30,6 @@ import io.mycat.net.mysql.ErrorPacket;
 import io.mycat.net.mysql.FieldPacket;
 import io.mycat.net.mysql.OkPacket;
 import io.mycat.net.mysql.ResultSetHeaderPacket;
-import io.mycat.net.mysql.RowDataPacket;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -44,33 +43,6 @@ import org.slf4j.LoggerFactory;
 import com.alibaba.fastjson.JSON;
 
 public class PostgreSQLBackendConnectionHandler extends BackendAsyncHandler {
-	static class SelectResponse {
-		private List<DataRow> dataRows = new ArrayList<>();
-
-		private RowDescription description;
-
-		public SelectResponse(RowDescription description) {
-			this.description = description;
-		}
-
-		public void addDataRow(DataRow packet) {
-			this.dataRows.add(packet);
-		}
-
-		public List<DataRow> getDataRows() {
-			return dataRows;
-		}
-
-		public RowDescription getDescription() {
-			return description;
-		}
-
-		public void setDataRows(List<DataRow> dataRows) {
-			this.dataRows = dataRows;
-		}
-
-	}
-
 	private static final Logger LOGGER = LoggerFactory
 			.getLogger(PostgreSQLBackendConnection.class);
 	private static final int RESULT_STATUS_INIT = 0;
@@ -83,9 +55,9 @@ public class PostgreSQLBackendConnectionHandler extends BackendAsyncHandler {
 	private final PostgreSQLBackendConnection source;
 	
 	/**
-	 * 响应数据
+	 * 当前结果集的列描述，为空表示没有正在输出的结果集
 	 */
-	private volatile SelectResponse response = null;
+	private volatile RowDescription description = null;
 	
 	/**
 	 * 响应状态
@@ -159,6 +131,11 @@ public class PostgreSQLBackendConnectionHandler extends BackendAsyncHandler {
 	private void doHandleBusinessMsg(PostgreSQLBackendConnection con,
 			ByteBuffer buf, int start, int readedLength) {
 		try {
+			// 数据行直接从缓冲区转换成 mysql 行数据包，不再解析成 DataRow
+			if (buf.get(start) == PacketMarker.B_DataRow.getValue()) {
+				doProcessDataRow(con, buf, start);
+				return;
+			}
 			List<PostgreSQLPacket> packets = PacketUtils.parsePacket(buf, 0,
 					readedLength);
 			if (packets == null || packets.isEmpty()) {
@@ -170,14 +147,11 @@ public class PostgreSQLBackendConnectionHandler extends BackendAsyncHandler {
 				if (packet instanceof ErrorResponse) {
 					doProcessErrorResponse(con, (ErrorResponse) packet);
 				} else if (packet instanceof RowDescription) {
-					response = new SelectResponse((RowDescription) packet);
-				} else if (packet instanceof DataRow) {
-					response.addDataRow((DataRow) packet);
+					doProcessRowDescription(con, (RowDescription) packet);
 				} else if (packet instanceof ParameterStatus) {
 					doProcessParameterStatus(con, (ParameterStatus) packet);
 				} else if (packet instanceof CommandComplete) {
-					doProcessCommandComplete(con, (CommandComplete) packet,
-							response);
+					doProcessCommandComplete(con, (CommandComplete) packet);
 				} else if (packet instanceof NoticeResponse) {
 					doProcessNoticeResponse(con, (NoticeResponse) packet);
 				} else if (packet instanceof ReadyForQuery) {
@@ -211,21 +185,15 @@ public class PostgreSQLBackendConnectionHandler extends BackendAsyncHandler {
 
 
 	/***************
-	 *  处理简单查询结果 ,每一个查询都是一件 CommandComplete 为结束
+	 *  收到列描述即输出结果集头和列信息，之后的数据行逐行输出，不等 CommandComplete
 	 * @param con PostgreSQL 后端连接
-	 * @param response
-	 * @param commandComplete
-     */
-	private void doProcessBusinessQuery(PostgreSQLBackendConnection con,
-			SelectResponse response, CommandComplete commandComplete) {
-		RowDescription rowHd = response.getDescription();
+	 * @param rowHd
+	 */
+	private void doProcessRowDescription(PostgreSQLBackendConnection con,
+			RowDescription rowHd) {
+		description = rowHd;
 		List<FieldPacket> fieldPks = PgPacketApaterUtils
 				.rowDescConvertFieldPacket(rowHd);
-		List<RowDataPacket> rowDatas = new ArrayList<>();
-		for (DataRow dataRow : response.getDataRows()) {
-			rowDatas.add(PgPacketApaterUtils
-					.rowDataConvertRowDataPacket(dataRow));
-		}
 
 		BufferArray bufferArray = MycatServer.getInstance().getBufferPool()
 				.allocateArray();
@@ -259,37 +227,50 @@ public class PostgreSQLBackendConnectionHandler extends BackendAsyncHandler {
 		} else {
 			LOGGER.error("响应句柄为空");
 		}
-		// output row
-		for (RowDataPacket curRow : rowDatas) {
-			bufferArray = MycatServer.getInstance().getBufferPool()
-					.allocateArray();
-			curRow.packetId = ++packetId;
-			curRow.write(bufferArray);
-			byte[] row = bufferArray.writeToByteArrayAndRecycle();
-			con.getResponseHandler().rowResponse(row, con);
-		}
+	}
 
-		// end row
-		bufferArray = MycatServer.getInstance().getBufferPool().allocateArray();
-		eofPckg = new EOFPacket();
-		eofPckg.packetId = ++packetId;
-		eofPckg.write(bufferArray);
-		eof = bufferArray.writeToByteArrayAndRecycle();
-		if (con.getResponseHandler() != null) {
-			con.getResponseHandler().rowEofResponse(eof, con);
+	/***
+	 * 每收到一个 DataRow 就转换成 mysql 行数据包交给响应句柄
+	 * @param con
+	 * @param buf
+	 * @param offset
+	 */
+	private void doProcessDataRow(PostgreSQLBackendConnection con,
+			ByteBuffer buf, int offset) {
+		if (description == null) {
+			throw new RuntimeException(
+					"the select proess err ,the RowDescription is empty");
+		}
+		byte[] row = PgPacketApaterUtils.dataRowConvertRowDataBytes(buf,
+				offset, ++packetId);
+		ResponseHandler respHand = con.getResponseHandler();
+		if (respHand != null) {
+			respHand.rowResponse(row, con);
 		} else {
 			LOGGER.error("响应句柄为空");
 		}
 	}
 
 	private void doProcessCommandComplete(PostgreSQLBackendConnection con,
-			CommandComplete commandComplete, SelectResponse response) {
+			CommandComplete commandComplete) {
 		if (commandComplete.isSelectComplete()) {
-			if (response == null) {
+			if (description == null) {
 				throw new RuntimeException(
-						"the select proess err ,the SelectResponse is empty");
+						"the select proess err ,the RowDescription is empty");
+			}
+			description = null;
+			// end row
+			BufferArray bufferArray = MycatServer.getInstance().getBufferPool()
+					.allocateArray();
+			EOFPacket eofPckg = new EOFPacket();
+			eofPckg.packetId = ++packetId;
+			eofPckg.write(bufferArray);
+			byte[] eof = bufferArray.writeToByteArrayAndRecycle();
+			if (con.getResponseHandler() != null) {
+				con.getResponseHandler().rowEofResponse(eof, con);
+			} else {
+				LOGGER.error("响应句柄为空");
 			}
-			doProcessBusinessQuery(con, response, commandComplete);
 		} else {
 			OkPacket okPck = new OkPacket();
 			
@@ -325,6 +306,11 @@ public class PostgreSQLBackendConnectionHandler extends BackendAsyncHandler {
 	private void doProcessErrorResponse(PostgreSQLBackendConnection con,
 			ErrorResponse errorResponse) {
 		LOGGER.debug("查询出错了!");
+		description = null;
+		if (con.onErrorResponse(errorResponse.getSqlState())) {
+			// 缓存的计划失效，已经重新 Parse 并重发
+			return;
+		}
 		ErrorPacket err = new ErrorPacket();
 		err.packetId = ++packetId;
 		err.message = errorResponse.getErrMsg().trim().replaceAll("\0", " ")
@@ -382,10 +368,9 @@ public class PostgreSQLBackendConnectionHandler extends BackendAsyncHandler {
 	 */
 	@Override
 	protected void handleData(byte[] data) {
-		ByteBuffer theBuf = null;
+		// 每次是一个完整的消息，直接包装，不再拷贝到池化缓冲区
+		ByteBuffer theBuf = ByteBuffer.wrap(data);
 		try {
-			theBuf = source.allocate();
-			theBuf.put(data);
 			switch (source.getState()) {
 			case connecting: {
 				doConnecting(source, theBuf, 0, data.length);
@@ -409,10 +394,6 @@ public class PostgreSQLBackendConnectionHandler extends BackendAsyncHandler {
 			}
 		} catch (Exception e) {
 			LOGGER.error("读取数据包出错",e);
-		}finally{
-			if(theBuf!=null){
-				source.recycle(theBuf);
-			}
 		}
 	}
 
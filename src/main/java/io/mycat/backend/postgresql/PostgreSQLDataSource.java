@@ -16,6 +16,7 @@ import java.io.IOException;
  */
 public class PostgreSQLDataSource extends PhysicalDatasource {
 	private final PostgreSQLBackendConnectionFactory factory;
+	private final PostgreSQLStatementStat statementStat = new PostgreSQLStatementStat();
 
 	public PostgreSQLDataSource(DBHostConfig config, DataHostConfig hostConfig,
 			boolean isReadNode) {
@@ -40,4 +41,8 @@ public class PostgreSQLDataSource extends PhysicalDatasource {
 		return true;
 	}
 
+	public PostgreSQLStatementStat getStatementStat() {
+		return statementStat;
+	}
+
 }
@@ -0,0 +1,99 @@
+package io.mycat.backend.postgresql;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 后端连接上已经 Parse 过的命名语句，按 sql 缓存，超过容量时按 LRU 淘汰。
+ * 被淘汰或者出错失效的语句名放入待关闭列表，随该连接的下一个请求一起发送 Close。
+ * 语句名在连接内只增不复用，因此不会与服务端尚未关闭的同名语句冲突。
+ *
+ * @author mycat
+ */
+public class PostgreSQLStatementCache {
+
+	private static final String NAME_PREFIX = "mycat_s";
+
+	private final int maxSize;
+	private final PostgreSQLStatementStat stat;
+	private final Map<String, String> statements;
+	private final List<String> closing = new ArrayList<String>();
+	private long nextId;
+
+	public PostgreSQLStatementCache(final int maxSize, final PostgreSQLStatementStat stat) {
+		this.maxSize = maxSize;
+		this.stat = stat;
+		this.statements = new LinkedHashMap<String, String>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+				if (size() > maxSize) {
+					closing.add(eldest.getValue());
+					stat.addEviction();
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * @return 已经准备好的语句名，没有时返回 null
+	 */
+	public synchronized String get(String sql) {
+		if (maxSize <= 0) {
+			return null;
+		}
+		String name = statements.get(sql);
+		if (name != null) {
+			stat.addHit();
+		}
+		return name;
+	}
+
+	/**
+	 * 为即将 Parse 的 sql 分配语句名，容量为 0 时返回空串(未命名语句)
+	 */
+	public synchronized String add(String sql) {
+		stat.addParse();
+		if (maxSize <= 0) {
+			return "";
+		}
+		String name = NAME_PREFIX + (++nextId);
+		statements.put(sql, name);
+		return name;
+	}
+
+	/**
+	 * 语句执行出错，服务端可能没有这个语句或者计划已经失效，下次重新 Parse
+	 */
+	public synchronized void remove(String sql) {
+		String name = statements.remove(sql);
+		if (name != null) {
+			closing.add(name);
+		}
+	}
+
+	/**
+	 * 取出待关闭的语句名
+	 */
+	public synchronized List<String> drainClosing() {
+		if (closing.isEmpty()) {
+			return null;
+		}
+		List<String> names = new ArrayList<String>(closing);
+		closing.clear();
+		return names;
+	}
+
+	public synchronized int size() {
+		return statements.size();
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+}
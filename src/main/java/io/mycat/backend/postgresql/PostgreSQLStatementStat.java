@@ -0,0 +1,40 @@
+package io.mycat.backend.postgresql;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 命名语句缓存的统计，同一数据源的所有后端连接共用一个。
+ * HIT 为直接 Bind 已有语句(PostgreSQL 复用执行计划)的次数，PARSE 为重新 Parse 的次数。
+ *
+ * @author mycat
+ */
+public class PostgreSQLStatementStat {
+
+	private final AtomicLong hit = new AtomicLong();
+	private final AtomicLong parse = new AtomicLong();
+	private final AtomicLong eviction = new AtomicLong();
+
+	public void addHit() {
+		hit.incrementAndGet();
+	}
+
+	public void addParse() {
+		parse.incrementAndGet();
+	}
+
+	public void addEviction() {
+		eviction.incrementAndGet();
+	}
+
+	public long getHit() {
+		return hit.get();
+	}
+
+	public long getParse() {
+		return parse.get();
+	}
+
+	public long getEviction() {
+		return eviction.get();
+	}
+}
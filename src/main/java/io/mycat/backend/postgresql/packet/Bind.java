@@ -1,6 +1,9 @@
 package io.mycat.backend.postgresql.packet;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 
+import io.mycat.backend.postgresql.utils.PIOUtils;
 
 //		Bind (F)
 //		Byte1('B')
@@ -110,6 +113,34 @@ public class Bind extends PostgreSQLPacket {
 	private short resultNumber;	
 	private DataProtocol[] resultProtocol;
 
+	public Bind() {
+	}
+
+	/***
+	 * 无参数绑定，结果字段都使用文本格式
+	 * @param portal 入口名
+	 * @param statement 准备好语句名
+	 */
+	public Bind(String portal, String statement) {
+		this.marker = PacketMarker.F_Bind.getValue();
+		this.name = (portal == null) ? "\0" : (portal + "\0");
+		this.sql = (statement == null) ? "\0" : (statement + "\0");
+		this.parameterProtocol = new DataProtocol[0];
+		this.parameter = new DataParameter[0];
+		this.resultProtocol = new DataProtocol[0];
+		this.length = 4 + name.getBytes(UTF8).length + sql.getBytes(UTF8).length + 2 + 2 + 2;
+	}
+
+	public void write(ByteBuffer buffer) throws IOException {
+		PIOUtils.SendChar(marker, buffer);
+		PIOUtils.SendInteger4(getLength(), buffer);
+		PIOUtils.SendString(name, buffer);
+		PIOUtils.SendString(sql, buffer);
+		PIOUtils.SendInteger2(parameterProtocol.length, buffer);
+		PIOUtils.SendInteger2(parameter.length, buffer);
+		PIOUtils.SendInteger2(resultProtocol.length, buffer);
+	}
+
 	@Override
 	public int getLength() {
 		return length;
@@ -0,0 +1,55 @@
+package io.mycat.backend.postgresql.packet;
+
+import java.nio.ByteBuffer;
+
+import io.mycat.backend.postgresql.utils.PIOUtils;
+
+//		Close (F)
+//		Byte1('C')
+//		标识这条消息是一个 Close 命令。
+//		
+//		Int32
+//		以字节记的消息内容的长度，包括长度自身。
+//		
+//		Byte1
+//		'S' 关闭一个准备好的语句；或者 'P' 关闭一个入口。
+//		
+//		String
+//		要关闭的准备好语句或者入口的名字（空字串则选取未命名的准备好语句或者入口）。
+//		关闭不存在的语句或者入口不算错误。
+
+/***
+ * 关闭准备好的语句或者入口
+ * 
+ * @author mycat
+ *
+ */
+public class Close extends PostgreSQLPacket {
+	public static final char STATEMENT = 'S';
+	public static final char PORTAL = 'P';
+
+	private char type;
+	private String name;
+
+	public Close(char type, String name) {
+		this.type = type;
+		this.name = (name == null) ? "\0" : (name + "\0");
+	}
+
+	@Override
+	public int getLength() {
+		return 4 + 1 + name.getBytes(UTF8).length;
+	}
+
+	@Override
+	public char getMarker() {
+		return PacketMarker.F_Close.getValue();
+	}
+
+	public void write(ByteBuffer buffer) {
+		PIOUtils.SendChar(getMarker(), buffer);
+		PIOUtils.SendInteger4(getLength(), buffer);
+		PIOUtils.SendChar(type, buffer);
+		PIOUtils.SendString(name, buffer);
+	}
+}
@@ -0,0 +1,41 @@
+package io.mycat.backend.postgresql.packet;
+
+import java.nio.ByteBuffer;
+
+import io.mycat.backend.postgresql.utils.PIOUtils;
+
+//		CloseComplete (B)
+//		Byte1('3')
+//		标识消息是一个 Close 完毕指示器。
+//		
+//		Int32(4)
+//		以字节记的消息内容的长度，包括长度自身。
+
+/***
+ * 关闭语句或者入口成功
+ * 
+ * @author mycat
+ *
+ */
+public class CloseComplete extends PostgreSQLPacket {
+	private int length;
+
+	@Override
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public char getMarker() {
+		return PacketMarker.B_CloseComplete.getValue();
+	}
+
+	public static CloseComplete parse(ByteBuffer buffer, int offset) {
+		if ((char) buffer.get(offset) != PacketMarker.B_CloseComplete.getValue()) {
+			throw new IllegalArgumentException("this packet not is CloseComplete");
+		}
+		CloseComplete pack = new CloseComplete();
+		pack.length = PIOUtils.redInteger4(buffer, offset + 1);
+		return pack;
+	}
+}
@@ -43,6 +43,27 @@ public class ErrorResponse extends PostgreSQLPacket {
 			}
 			err.errMsg = new String(str,UTF8);
 		}
+		// 字段 C 为 SQLSTATE
+		int pos = offset + 1 + 4;
+		int end = offset + 1 + err.length;
+		while (pos < end) {
+			byte type = buffer.get(pos++);
+			if (type == 0) {
+				break;
+			}
+			int start = pos;
+			while (pos < end && buffer.get(pos) != 0) {
+				pos++;
+			}
+			if (type == 'C') {
+				byte[] code = new byte[pos - start];
+				for (int i = 0; i < code.length; i++) {
+					code[i] = buffer.get(start + i);
+				}
+				err.sqlState = new String(code, UTF8);
+			}
+			pos++;
+		}
 		return err;
 	}
 
@@ -52,10 +73,16 @@ public class ErrorResponse extends PostgreSQLPacket {
 
 	private String errMsg;
 
+	private String sqlState;
+
 	public String getErrMsg() {
 		return errMsg;
 	}
 
+	public String getSqlState() {
+		return sqlState;
+	}
+
 	@Override
 	public int getLength() {
 		return length;
@@ -0,0 +1,52 @@
+package io.mycat.backend.postgresql.packet;
+
+import java.nio.ByteBuffer;
+
+import io.mycat.backend.postgresql.utils.PIOUtils;
+
+//		Execute (F)
+//		Byte1('E')
+//		标识消息是一个 Execute 命令。
+//		
+//		Int32
+//		以字节记的消息内容的长度，包括长度自身。
+//		
+//		String
+//		要执行的入口的名字（空字串选定未命名的入口）。
+//		
+//		Int32
+//		要返回的最大行数，如果入口包含返回行的查询。零标识"没有限制"。
+
+/***
+ * 执行已经绑定的入口
+ * 
+ * @author mycat
+ *
+ */
+public class Execute extends PostgreSQLPacket {
+
+	private String portal;
+	private int maxRows;
+
+	public Execute(String portal, int maxRows) {
+		this.portal = (portal == null) ? "\0" : (portal + "\0");
+		this.maxRows = maxRows;
+	}
+
+	@Override
+	public int getLength() {
+		return 4 + portal.getBytes(UTF8).length + 4;
+	}
+
+	@Override
+	public char getMarker() {
+		return PacketMarker.F_Execute.getValue();
+	}
+
+	public void write(ByteBuffer buffer) {
+		PIOUtils.SendChar(getMarker(), buffer);
+		PIOUtils.SendInteger4(getLength(), buffer);
+		PIOUtils.SendString(portal, buffer);
+		PIOUtils.SendInteger4(maxRows, buffer);
+	}
+}
@@ -0,0 +1,41 @@
+package io.mycat.backend.postgresql.packet;
+
+import java.nio.ByteBuffer;
+
+import io.mycat.backend.postgresql.utils.PIOUtils;
+
+//		NoData (B)
+//		Byte1('n')
+//		标识这条消息是一个无数据指示器。
+//		
+//		Int32(4)
+//		以字节记的消息内容的长度，包括长度自身。
+
+/***
+ * Describe 的语句不返回数据行
+ * 
+ * @author mycat
+ *
+ */
+public class NoData extends PostgreSQLPacket {
+	private int length;
+
+	@Override
+	public int getLength() {
+		return length;
+	}
+
+	@Override
+	public char getMarker() {
+		return PacketMarker.B_NoData.getValue();
+	}
+
+	public static NoData parse(ByteBuffer buffer, int offset) {
+		if ((char) buffer.get(offset) != PacketMarker.B_NoData.getValue()) {
+			throw new IllegalArgumentException("this packet not is NoData");
+		}
+		NoData pack = new NoData();
+		pack.length = PIOUtils.redInteger4(buffer, offset + 1);
+		return pack;
+	}
+}
@@ -260,7 +260,42 @@ public abstract class PostgreSQLPacket {
 		/***
 		 * 绑定参数成功
 		 */
-		B_BindComplete('2');
+		B_BindComplete('2'),
+
+		/***
+		 * 绑定参数请求
+		 */
+		F_Bind('B'),
+
+		/***
+		 * 描述语句或者入口请求
+		 */
+		F_Describe('D'),
+
+		/***
+		 * 执行入口请求
+		 */
+		F_Execute('E'),
+
+		/***
+		 * 扩展查询同步请求
+		 */
+		F_Sync('S'),
+
+		/***
+		 * 关闭语句或者入口请求
+		 */
+		F_Close('C'),
+
+		/***
+		 * 语句没有结果列
+		 */
+		B_NoData('n'),
+
+		/***
+		 * 关闭语句或者入口成功
+		 */
+		B_CloseComplete('3');
 
 		private char value;
 
@@ -0,0 +1,36 @@
+package io.mycat.backend.postgresql.packet;
+
+import java.nio.ByteBuffer;
+
+import io.mycat.backend.postgresql.utils.PIOUtils;
+
+//		Sync (F)
+//		Byte1('S')
+//		标识消息为一个 Sync 命令。
+//		
+//		Int32(4)
+//		以字节记的消息内容的长度，包括长度自身。
+
+/***
+ * 结束一组扩展查询消息，后台处理完之后返回 ReadyForQuery，出错时丢弃消息直到 Sync
+ * 
+ * @author mycat
+ *
+ */
+public class Sync extends PostgreSQLPacket {
+
+	@Override
+	public int getLength() {
+		return 4;
+	}
+
+	@Override
+	public char getMarker() {
+		return PacketMarker.F_Sync.getValue();
+	}
+
+	public void write(ByteBuffer buffer) {
+		PIOUtils.SendChar(getMarker(), buffer);
+		PIOUtils.SendInteger4(getLength(), buffer);
+	}
+}
@@ -8,12 +8,15 @@ import java.util.TimeZone;
 
 import io.mycat.backend.postgresql.packet.AuthenticationPacket;
 import io.mycat.backend.postgresql.packet.BackendKeyData;
+import io.mycat.backend.postgresql.packet.BindComplete;
+import io.mycat.backend.postgresql.packet.CloseComplete;
 import io.mycat.backend.postgresql.packet.CommandComplete;
 import io.mycat.backend.postgresql.packet.CopyInResponse;
 import io.mycat.backend.postgresql.packet.CopyOutResponse;
 import io.mycat.backend.postgresql.packet.DataRow;
 import io.mycat.backend.postgresql.packet.EmptyQueryResponse;
 import io.mycat.backend.postgresql.packet.ErrorResponse;
+import io.mycat.backend.postgresql.packet.NoData;
 import io.mycat.backend.postgresql.packet.NoticeResponse;
 import io.mycat.backend.postgresql.packet.ParameterStatus;
 import io.mycat.backend.postgresql.packet.ParseComplete;
@@ -71,6 +74,15 @@ public class PacketUtils {
 			case '1':
 				pg = ParseComplete.parse(bytes, offset);
 				break;
+			case '2':
+				pg = BindComplete.parse(bytes, offset);
+				break;
+			case '3':
+				pg = CloseComplete.parse(bytes, offset);
+				break;
+			case 'n':
+				pg = NoData.parse(bytes, offset);
+				break;
 			default:
 				throw new RuntimeException("Unknown packet");
 			}
@@ -1,5 +1,6 @@
 package io.mycat.backend.postgresql.utils;
 
+import io.mycat.backend.mysql.BufferUtil;
 import io.mycat.backend.postgresql.packet.DataRow;
 import io.mycat.backend.postgresql.packet.DataRow.DataColumn;
 import io.mycat.backend.postgresql.packet.PostgreSQLPacket.DateType;
@@ -9,6 +10,7 @@ import io.mycat.config.Fields;
 import io.mycat.net.mysql.FieldPacket;
 import io.mycat.net.mysql.RowDataPacket;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -21,6 +23,7 @@ import java.util.List;
  */
 public class PgPacketApaterUtils {
 	private static final Charset UTF8 = Charset.forName("utf-8");
+	private static final byte NULL_MARK = (byte) 251;
 
 	/**
 	 * 列标示转换成Mysql的数据
@@ -73,4 +76,48 @@ public class PgPacketApaterUtils {
 		}		
 		return curRow;
 	}
+
+	/***
+	 * 把 pg 的 DataRow 消息直接转换成 mysql 的行数据包，不经过 DataRow、RowDataPacket 对象
+	 * @param buffer 含有完整 DataRow 消息的缓冲
+	 * @param offset 消息开始位置(标识字节 'D')
+	 * @param packetId mysql 包序号
+	 * @return 含包头的 mysql 行数据包
+	 */
+	public static byte[] dataRowConvertRowDataBytes(ByteBuffer buffer, int offset, byte packetId) {
+		int columnNumber = buffer.getShort(offset + 5);
+		// 先算出包体长度
+		int size = 0;
+		int pos = offset + 7;
+		for (int i = 0; i < columnNumber; i++) {
+			int length = buffer.getInt(pos);
+			pos += 4;
+			if (length == -1) {
+				size += 1;
+			} else {
+				size += BufferUtil.getLength(length) + length;
+				pos += length;
+			}
+		}
+
+		byte[] row = new byte[4 + size];
+		ByteBuffer out = ByteBuffer.wrap(row);
+		BufferUtil.writeUB3(out, size);
+		out.put(packetId);
+		ByteBuffer in = buffer.duplicate();
+		pos = offset + 7;
+		for (int i = 0; i < columnNumber; i++) {
+			int length = buffer.getInt(pos);
+			pos += 4;
+			if (length == -1) {
+				out.put(NULL_MARK);
+			} else {
+				BufferUtil.writeLength(out, length);
+				in.limit(pos + length).position(pos);
+				out.put(in);
+				pos += length;
+			}
+		}
+		return row;
+	}
 }
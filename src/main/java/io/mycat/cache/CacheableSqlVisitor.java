@@ -0,0 +1,87 @@
+package io.mycat.cache;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLMethodInvokeExpr;
+import com.alibaba.druid.sql.ast.expr.SQLVariantRefExpr;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+
+/**
+ * 判断 select 的结果能否进入结果缓存：包含时间、随机数、会话相关的函数，用户变量和系统变量，
+ * 加锁读(for update / lock in share mode)，SQL_NO_CACHE 或 SQL_CALC_FOUND_ROWS 时不缓存。
+ *
+ * @author mycat
+ */
+public class CacheableSqlVisitor extends MySqlASTVisitorAdapter {
+
+	// 每次执行结果可能不同或依赖当前会话的函数
+	private static final Set<String> FUNCTIONS = new HashSet<String>(Arrays.asList("NOW", "SYSDATE", "CURDATE",
+			"CURTIME", "CURRENT_DATE", "CURRENT_TIME", "CURRENT_TIMESTAMP", "LOCALTIME", "LOCALTIMESTAMP", "UTC_DATE",
+			"UTC_TIME", "UTC_TIMESTAMP", "RAND", "UUID", "UUID_SHORT", "LAST_INSERT_ID", "ROW_COUNT", "FOUND_ROWS",
+			"CONNECTION_ID", "DATABASE", "SCHEMA", "USER", "CURRENT_USER", "SESSION_USER", "SYSTEM_USER", "SLEEP",
+			"BENCHMARK", "GET_LOCK", "RELEASE_LOCK", "IS_FREE_LOCK", "IS_USED_LOCK", "MASTER_POS_WAIT"));
+	// 不带括号也可以调用的函数
+	private static final Set<String> KEYWORDS = new HashSet<String>(Arrays.asList("CURRENT_DATE", "CURRENT_TIME",
+			"CURRENT_TIMESTAMP", "LOCALTIME", "LOCALTIMESTAMP", "UTC_DATE", "UTC_TIME", "UTC_TIMESTAMP",
+			"CURRENT_USER"));
+
+	private boolean cacheable = true;
+
+	public static boolean isCacheable(SQLStatement stmt) {
+		CacheableSqlVisitor visitor = new CacheableSqlVisitor();
+		stmt.accept(visitor);
+		return visitor.cacheable;
+	}
+
+	/**
+	 * 路由时没有解析过的 sql(如非分片 schema)在这里解析，解析失败时不缓存
+	 */
+	public static boolean isCacheable(String sql) {
+		try {
+			return isCacheable(new MySqlStatementParser(sql).parseStatement());
+		} catch (Exception e) {
+			return false;
+		}
+	}
+
+	@Override
+	public boolean visit(MySqlSelectQueryBlock x) {
+		if (x.isForUpdate() || x.isLockInShareMode() || x.isCalcFoundRows() || Boolean.FALSE.equals(x.getCache())) {
+			cacheable = false;
+		}
+		return cacheable;
+	}
+
+	@Override
+	public boolean visit(SQLMethodInvokeExpr x) {
+		String name = x.getMethodName().toUpperCase();
+		// unix_timestamp(col) 是确定的，不带参数时取当前时间
+		if (FUNCTIONS.contains(name) || ("UNIX_TIMESTAMP".equals(name) && x.getParameters().isEmpty())) {
+			cacheable = false;
+		}
+		return cacheable;
+	}
+
+	@Override
+	public boolean visit(SQLIdentifierExpr x) {
+		if (KEYWORDS.contains(x.getName().toUpperCase())) {
+			cacheable = false;
+		}
+		return false;
+	}
+
+	@Override
+	public boolean visit(SQLVariantRefExpr x) {
+		// @var 和 @@var，预处理的占位符 ? 不算
+		if (x.getName().startsWith("@")) {
+			cacheable = false;
+		}
+		return false;
+	}
+}
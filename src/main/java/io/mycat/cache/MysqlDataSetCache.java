@@ -23,31 +23,60 @@
  */
 package io.mycat.cache;
 
-import java.io.FileOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.Serializable;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.mycat.net.FrontendConnection;
+import sun.misc.Cleaner;
+import sun.nio.ch.DirectBuffer;
 
 /**
  * cache mysql dataset ,for example "select * from A where .......",cache all
  * result
  * 
+ * 缓存的是发给前端的完整 mysql 报文(header、fields、rows、eof)，命中时原样写回前端。
+ * 报文先写入堆外内存，结束时超过内存上限的结果写入文件并 mmap，文件随即删除。
+ * 
+ * 堆外内存和 mmap 按引用计数立即释放，不依赖 GC：创建时计数为 1，归缓存方(正在缓存的会话或
+ * service)所有，命中时 {@link #retain()}，写完前端后 {@link #release()}。
+ * 
  * @author wuzhih
  * 
  */
-public class MysqlDataSetCache implements Serializable {
-	/**
-	 * 
-	 */
-	private static final long serialVersionUID = 5426632041410472392L;
-	// sql should not inlude page limit ,should store first record and sequnce
-	// next
-	private String sql;
-	private int total;
+public class MysqlDataSetCache {
+
+	private static final int CHUNK_SIZE = 32 * 1024;
+
+	// schema、字符集和规范化后的 sql
+	private final String sql;
+	// 依赖的 schema 和表，以及开始缓存时的版本号
+	private final String[] depends;
+	private final long[] versions;
+	private final long createTime;
+	private final long expireTime;
+	private final int maxSize;
+	private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+	private ByteBuffer mapped;
 	private String dataFile;
-	private long createTime;
-	private volatile int curCount;
+	private int total;
 	private volatile long lastAccesTime;
 	private volatile boolean storing = true;
+	private final AtomicInteger refCount = new AtomicInteger(1);
+
+	public MysqlDataSetCache(String sql, String[] depends, long[] versions, int expireSeconds, int maxSize) {
+		this.sql = sql;
+		this.depends = depends;
+		this.versions = versions;
+		this.createTime = System.currentTimeMillis();
+		this.expireTime = createTime + expireSeconds * 1000L;
+		this.maxSize = maxSize;
+	}
 
 	public String getSql() {
 		return sql;
@@ -61,32 +90,35 @@ public class MysqlDataSetCache implements Serializable {
 		this.storing = storing;
 	}
 
-	public void setSql(String sql) {
-		this.sql = sql;
-	}
-
+	/**
+	 * 缓存的字节数
+	 */
 	public int getTotal() {
 		return total;
 	}
 
-	public void setTotal(int total) {
-		this.total = total;
-	}
-
 	public String getDataFile() {
 		return dataFile;
 	}
 
-	public void setDataFile(String dataFile) {
-		this.dataFile = dataFile;
+	public boolean isMapped() {
+		return mapped != null;
+	}
+
+	public String[] getDepends() {
+		return depends;
+	}
+
+	public long[] getVersions() {
+		return versions;
 	}
 
 	public long getCreateTime() {
 		return createTime;
 	}
 
-	public void setCreateTime(long createTime) {
-		this.createTime = createTime;
+	public boolean isExpired(long now) {
+		return now >= expireTime;
 	}
 
 	public long getLastAccesTime() {
@@ -97,25 +129,153 @@ public class MysqlDataSetCache implements Serializable {
 		this.lastAccesTime = lastAccesTime;
 	}
 
-	public void addHeader(byte[] header) throws IOException  {
-		writeFile(header);
+	/**
+	 * 追加写往前端的 buffer，buffer 处于写模式，有效数据为 [0, position)
+	 * 
+	 * @return 超过 maxSize 或已结束时返回 false，不再缓存
+	 */
+	public synchronized boolean append(ByteBuffer buffer) {
+		if (!storing) {
+			return false;
+		}
+		int length = buffer.position();
+		if (total + length > maxSize) {
+			storing = false;
+			freeChunks();
+			return false;
+		}
+		ByteBuffer src = buffer.duplicate();
+		src.flip();
+		while (src.hasRemaining()) {
+			ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+			if (chunk == null || !chunk.hasRemaining()) {
+				chunk = ByteBuffer.allocateDirect(Math.min(CHUNK_SIZE, maxSize));
+				chunks.add(chunk);
+			}
+			int n = Math.min(chunk.remaining(), src.remaining());
+			ByteBuffer part = src.duplicate();
+			part.limit(part.position() + n);
+			chunk.put(part);
+			src.position(src.position() + n);
+		}
+		total += length;
+		return true;
 	}
 
-	private void writeFile(byte[] data) throws IOException {
-		FileOutputStream outf = null;
-		try {
-			outf = new FileOutputStream(dataFile, true);
-			outf.write(data);
+	/**
+	 * 缓存结束，后续只读
+	 */
+	public synchronized void finish() {
+		storing = false;
+		for (ByteBuffer chunk : chunks) {
+			chunk.flip();
+		}
+	}
 
+	/**
+	 * 把已缓存的数据写入文件并 mmap，释放堆外内存
+	 */
+	public synchronized void spill(File dir, String name) throws IOException {
+		if (!dir.exists() && !dir.mkdirs()) {
+			throw new IOException("can't create dir " + dir);
+		}
+		File file = new File(dir, name);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			for (ByteBuffer chunk : chunks) {
+				ByteBuffer src = chunk.duplicate();
+				while (src.hasRemaining()) {
+					channel.write(src);
+				}
+			}
+			mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, total);
 		} finally {
-			if (outf != null) {
-				outf.close();
+			raf.close();
+			// 映射在文件删除后仍然有效，删除失败时退出时再删
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+		dataFile = file.getPath();
+		freeChunks();
+	}
+
+	/**
+	 * 命中时增加引用，已释放时返回 false
+	 */
+	public boolean retain() {
+		for (;;) {
+			int count = refCount.get();
+			if (count <= 0) {
+				return false;
+			}
+			if (refCount.compareAndSet(count, count + 1)) {
+				return true;
 			}
 		}
 	}
 
-	public void appendRecord(byte[] row) throws IOException {
-		writeFile(row);
-		curCount++;
+	/**
+	 * 减少引用，最后一个引用释放时立即释放堆外内存和 mmap
+	 */
+	public void release() {
+		if (refCount.decrementAndGet() == 0) {
+			free();
+		}
+	}
+
+	private synchronized void free() {
+		storing = false;
+		freeChunks();
+		if (mapped != null) {
+			clean(mapped);
+		}
+	}
+
+	private void freeChunks() {
+		for (ByteBuffer chunk : chunks) {
+			clean(chunk);
+		}
+		chunks.clear();
+	}
+
+	private static void clean(ByteBuffer buffer) {
+		if (buffer instanceof DirectBuffer) {
+			Cleaner cleaner = ((DirectBuffer) buffer).cleaner();
+			if (cleaner != null) {
+				cleaner.clean();
+			}
+		}
+	}
+
+	/**
+	 * 把缓存的报文写到前端连接
+	 */
+	public void write(FrontendConnection c) {
+		ByteBuffer buffer = c.allocate();
+		if (mapped != null) {
+			buffer = copy(c, mapped.duplicate(), buffer);
+		} else {
+			for (ByteBuffer chunk : chunks) {
+				buffer = copy(c, chunk.duplicate(), buffer);
+			}
+		}
+		c.write(buffer);
+	}
+
+	private static ByteBuffer copy(FrontendConnection c, ByteBuffer src, ByteBuffer buffer) {
+		while (src.hasRemaining()) {
+			if (!buffer.hasRemaining()) {
+				c.write(buffer);
+				buffer = c.allocate();
+			}
+			int n = Math.min(buffer.remaining(), src.remaining());
+			ByteBuffer part = src.duplicate();
+			part.limit(part.position() + n);
+			buffer.put(part);
+			src.position(src.position() + n);
+		}
+		return buffer;
 	}
-}
\ No newline at end of file
+}
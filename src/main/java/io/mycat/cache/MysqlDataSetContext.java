@@ -0,0 +1,96 @@
+package io.mycat.cache;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 前端会话上的结果缓存状态：正在缓存的结果，以及需要在响应前端时再次失效的表
+ *
+ * @author mycat
+ */
+public final class MysqlDataSetContext {
+
+	private volatile MysqlDataSetCache storing;
+	// 当前事务中修改过的表，commit 时失效
+	private Set<String> dirtyKeys;
+	// 下一次写前端(即修改语句或 commit 的响应)时失效的表
+	private volatile Set<String> pendingKeys;
+
+	synchronized void startStoring(MysqlDataSetCache cache) {
+		this.storing = cache;
+	}
+
+	/**
+	 * 新的 sql 开始时丢弃上一条未完成的缓存
+	 */
+	public void reset() {
+		MysqlDataSetCache cache = takeStoring(null);
+		if (cache != null) {
+			cache.release();
+		}
+	}
+
+	/**
+	 * select 结果已完整写给前端
+	 */
+	public void endStoring() {
+		MysqlDataSetCache cache = takeStoring(null);
+		if (cache != null) {
+			MysqlDataSetService.getInstance().store(cache);
+		}
+	}
+
+	/**
+	 * 取走正在缓存的结果，expected 不为 null 时只取走该结果
+	 */
+	private synchronized MysqlDataSetCache takeStoring(MysqlDataSetCache expected) {
+		MysqlDataSetCache cache = storing;
+		if (cache == null || (expected != null && cache != expected)) {
+			return null;
+		}
+		storing = null;
+		return cache;
+	}
+
+	synchronized void addPending(Collection<String> keys) {
+		Set<String> set = pendingKeys == null ? new HashSet<String>() : new HashSet<String>(pendingKeys);
+		set.addAll(keys);
+		pendingKeys = set;
+	}
+
+	synchronized void addDirty(Collection<String> keys) {
+		if (dirtyKeys == null) {
+			dirtyKeys = new HashSet<String>();
+		}
+		dirtyKeys.addAll(keys);
+	}
+
+	public synchronized void commit() {
+		if (dirtyKeys != null) {
+			MysqlDataSetService.getInstance().invalidate(dirtyKeys);
+			addPending(dirtyKeys);
+			dirtyKeys = null;
+		}
+	}
+
+	public synchronized void rollback() {
+		dirtyKeys = null;
+	}
+
+	/**
+	 * 每次写前端前调用，buffer 处于写模式
+	 */
+	public void onWrite(ByteBuffer buffer) {
+		Set<String> keys = pendingKeys;
+		if (keys != null) {
+			pendingKeys = null;
+			MysqlDataSetService.getInstance().invalidate(keys);
+		}
+		MysqlDataSetCache cache = storing;
+		if (cache != null && !cache.append(buffer) && takeStoring(cache) != null) {
+			cache.release();
+		}
+	}
+}
@@ -24,16 +24,63 @@
 package io.mycat.cache;
 
 import java.io.File;
-import java.util.HashSet;
-import java.util.Set;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.mycat.config.model.SchemaConfig;
+import io.mycat.config.model.SystemConfig;
+import io.mycat.config.model.TableConfig;
+import io.mycat.route.RouteResultset;
+import io.mycat.server.NonBlockingSession;
+import io.mycat.server.ServerConnection;
+
+/**
+ * select 结果缓存，按 schema、字符集和规范化后的 sql 缓存发往前端的报文，命中时不访问后端。
+ * 
+ * 对配置了 resultCache="true" 的表或带 cache 注解的 sql 生效。每个 schema 和表有一个版本号，
+ * 路由到 insert/update/delete/ddl 时以及这些语句(或所在事务的 commit)响应前端时各递增一次，
+ * 缓存开始时记录依赖的版本号，版本变化的结果不再写入也不再命中。
+ * 
+ * 内存缓存超过 resultCacheMemorySize 后写文件 mmap，mmap 总量超过 resultCacheMappedSize 时
+ * 淘汰最久未访问的文件缓存。
+ * 
+ * 含时间、随机数、会话相关函数或变量的 sql、加锁读以及 SQL_NO_CACHE 不缓存，见 {@link CacheableSqlVisitor}。
+ */
 public class MysqlDataSetService {
+	private static final Logger LOGGER = LoggerFactory.getLogger(MysqlDataSetService.class);
+
 	private volatile boolean enabled = false;
-	// max expire time is 300 seconds
-	private int maxExpire = 300;
+	// 默认过期时间(秒)
+	private int maxExpire = 60;
+	private long memoryLimit = 64 * 1024 * 1024;
+	private long mappedLimit = 1024L * 1024 * 1024;
+	private int maxResultSize = 1024 * 1024;
+	private File dataDir = new File(System.getProperty("user.dir"), "resultcache");
 	private final ConcurrentHashMap<String, MysqlDataSetCache> cachedMap = new ConcurrentHashMap<String, MysqlDataSetCache>();
-	private volatile Set<String> needCachedSQL = new HashSet<String>();
+	// schema 或 schema.table 的版本号
+	private final ConcurrentMap<String, AtomicLong> versions = new ConcurrentHashMap<String, AtomicLong>();
+	private final AtomicLong memoryUsed = new AtomicLong();
+	private final AtomicLong mappedUsed = new AtomicLong();
+	private final AtomicLong fileIndex = new AtomicLong();
+	private volatile long lastSweepTime;
+
+	private final AtomicLong accessTimes = new AtomicLong();
+	private final AtomicLong hitTimes = new AtomicLong();
+	private final AtomicLong putTimes = new AtomicLong();
+	private final AtomicLong invalidateTimes = new AtomicLong();
+	private final AtomicLong bytesServed = new AtomicLong();
 
 	public boolean isEnabled() {
 		return enabled;
@@ -57,13 +104,187 @@ public class MysqlDataSetService {
 		return instance;
 	}
 
-	private MysqlDataSetService() {
+	MysqlDataSetService() {
 
 	}
 
+	public void init(SystemConfig system) {
+		this.maxExpire = system.getResultCacheExpire();
+		this.memoryLimit = system.getResultCacheMemorySize();
+		this.mappedLimit = system.getResultCacheMappedSize();
+		this.maxResultSize = system.getResultCacheMaxResultSize();
+		this.dataDir = new File(system.getDataNodeSortedTempDir(), "resultcache");
+		this.enabled = system.getUseResultCache() == 1;
+	}
+
+	/**
+	 * select 路由后调用，命中时直接把结果写给前端并返回 true，否则按需开始缓存本次结果
+	 */
+	public boolean query(ServerConnection sc, SchemaConfig schema, String sql, RouteResultset rrs) {
+		NonBlockingSession session = sc.getSession2();
+		MysqlDataSetContext context = session.getDataSetContext();
+		context.reset();
+		int expire = getExpire(schema, rrs);
+		if (expire <= 0 || !sc.isAutocommit() || session.getMiddlerResultHandler() != null
+				|| !isCacheable(sql, rrs)) {
+			return false;
+		}
+		String key = cacheKey(schema.getName(), sc.getCharset(), session.isPrepared(), sql);
+		MysqlDataSetCache cache = findDataSetCache(key);
+		if (cache != null) {
+			try {
+				cache.write(sc);
+			} finally {
+				cache.release();
+			}
+			bytesServed.addAndGet(cache.getTotal());
+			if (session.isPrepared()) {
+				session.setPrepared(false);
+			}
+			return true;
+		}
+		String[] depends = dependKeys(schema.getName(), rrs.getTables());
+		context.startStoring(new MysqlDataSetCache(key, depends, currentVersions(depends), expire, maxResultSize));
+		return false;
+	}
+
+	/**
+	 * 路由时已解析的 select 直接用解析结果，否则在这里解析一次
+	 */
+	static boolean isCacheable(String sql, RouteResultset rrs) {
+		Boolean cacheable = rrs.getDataSetCacheable();
+		if (cacheable == null) {
+			cacheable = CacheableSqlVisitor.isCacheable(sql);
+			rrs.setDataSetCacheable(cacheable);
+		}
+		return cacheable;
+	}
+
+	/**
+	 * cache 注解优先，否则 sql 涉及的表都配置了 resultCache 时使用默认过期时间
+	 */
+	int getExpire(SchemaConfig schema, RouteResultset rrs) {
+		if (rrs.getDataSetCacheExpire() > 0) {
+			return rrs.getDataSetCacheExpire();
+		}
+		List<String> tables = rrs.getTables();
+		if (tables == null || tables.isEmpty()) {
+			return 0;
+		}
+		for (String table : tables) {
+			TableConfig tc = schema.getTables().get(table.toUpperCase());
+			if (tc == null || !tc.isResultCache()) {
+				return 0;
+			}
+		}
+		return maxExpire;
+	}
+
+	/**
+	 * 空白(引号内除外)压缩为一个空格
+	 */
+	public static String normalize(String sql) {
+		StringBuilder sb = new StringBuilder(sql.length());
+		char quote = 0;
+		boolean space = false;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (quote != 0) {
+				sb.append(c);
+				if (c == '\\' && i + 1 < sql.length()) {
+					sb.append(sql.charAt(++i));
+				} else if (c == quote) {
+					quote = 0;
+				}
+				continue;
+			}
+			if (Character.isWhitespace(c)) {
+				space = true;
+				continue;
+			}
+			if (space && sb.length() > 0) {
+				sb.append(' ');
+			}
+			space = false;
+			if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	static String cacheKey(String schema, String charset, boolean binary, String sql) {
+		return new StringBuilder().append(schema).append(':').append(charset).append(binary ? ":b:" : ":t:")
+				.append(normalize(sql)).toString();
+	}
+
+	static String[] dependKeys(String schema, Collection<String> tables) {
+		schema = schema.toUpperCase();
+		if (tables == null || tables.isEmpty()) {
+			return new String[] { schema };
+		}
+		String[] keys = new String[tables.size() + 1];
+		keys[0] = schema;
+		int i = 1;
+		for (String table : tables) {
+			keys[i++] = schema + '.' + table.toUpperCase();
+		}
+		return keys;
+	}
+
+	private long[] currentVersions(String[] keys) {
+		long[] result = new long[keys.length];
+		for (int i = 0; i < keys.length; i++) {
+			AtomicLong version = versions.get(keys[i]);
+			result[i] = version == null ? 0 : version.get();
+		}
+		return result;
+	}
+
+	/**
+	 * insert/update/delete/ddl 路由后调用
+	 */
+	public void onUpdate(ServerConnection sc, String schema, List<String> tables) {
+		if (!enabled) {
+			return;
+		}
+		String[] depends = dependKeys(schema, tables);
+		// 表未知时失效整个 schema，否则只失效涉及的表
+		List<String> keys = Arrays.asList(depends);
+		if (depends.length > 1) {
+			keys = keys.subList(1, depends.length);
+		}
+		invalidate(keys);
+		if (sc != null) {
+			MysqlDataSetContext context = sc.getSession2().getDataSetContext();
+			if (sc.isAutocommit()) {
+				context.addPending(keys);
+			} else {
+				context.addDirty(keys);
+			}
+		}
+	}
+
+	public void invalidate(Collection<String> keys) {
+		for (String key : keys) {
+			AtomicLong version = versions.get(key);
+			if (version == null) {
+				AtomicLong old = versions.putIfAbsent(key, version = new AtomicLong());
+				if (old != null) {
+					version = old;
+				}
+			}
+			version.incrementAndGet();
+		}
+		invalidateTimes.incrementAndGet();
+	}
+
 	/**
 	 * sql should not include LIMIT range
 	 * 
+	 * 命中时已 retain，用完后需要调用 {@link MysqlDataSetCache#release()}
+	 * 
 	 * @param sql
 	 * @return
 	 */
@@ -71,29 +292,193 @@ public class MysqlDataSetService {
 		if (!enabled) {
 			return null;
 		}
+		accessTimes.incrementAndGet();
 		MysqlDataSetCache cache = cachedMap.get(sql);
-		if (validCache(cache)) {
-			return cache;
+		if (cache == null) {
+			return null;
+		}
+		long now = System.currentTimeMillis();
+		if (!validCache(cache, now)) {
+			remove(cache);
+			return null;
+		}
+		// 已被并发淘汰
+		if (!cache.retain()) {
+			return null;
+		}
+		cache.setLastAccesTime(now);
+		hitTimes.incrementAndGet();
+		return cache;
+	}
+
+	public boolean addIfNotExists(MysqlDataSetCache newCache) {
+		return (cachedMap.putIfAbsent(newCache.getSql(), newCache) == null);
+	}
+
+	/**
+	 * 结果已完整写给前端，保存缓存，超过内存上限时写文件 mmap。
+	 * 调用方把 cache 的引用交给 service，不保存时在这里释放。
+	 */
+	public void store(MysqlDataSetCache cache) {
+		if (!cache.isStoring()) {
+			cache.release();
+			return;
+		}
+		cache.finish();
+		long now = System.currentTimeMillis();
+		if (!validCache(cache, now)) {
+			cache.release();
+			return;
+		}
+		if (now - lastSweepTime > 1000) {
+			lastSweepTime = now;
+			sweep(now);
+		}
+		int size = cache.getTotal();
+		if (memoryUsed.addAndGet(size) > memoryLimit) {
+			memoryUsed.addAndGet(-size);
+			if (!reserveMapped(size)) {
+				cache.release();
+				return;
+			}
+			try {
+				cache.spill(dataDir, "resultset-" + fileIndex.incrementAndGet() + ".dat");
+			} catch (IOException e) {
+				LOGGER.warn("spill result cache error " + cache.getSql(), e);
+				mappedUsed.addAndGet(-size);
+				cache.release();
+				return;
+			}
+		}
+		cache.setLastAccesTime(now);
+		MysqlDataSetCache old = cachedMap.put(cache.getSql(), cache);
+		if (old != null) {
+			release(old);
+		}
+		putTimes.incrementAndGet();
+	}
+
+	/**
+	 * 为 mmap 预留空间，超过上限时淘汰最久未访问的文件缓存，仍然放不下时返回 false
+	 */
+	private boolean reserveMapped(int size) {
+		if (size > mappedLimit) {
+			return false;
+		}
+		long over = mappedUsed.addAndGet(size) - mappedLimit;
+		if (over <= 0) {
+			return true;
+		}
+		List<MysqlDataSetCache> mapped = new ArrayList<MysqlDataSetCache>();
+		for (MysqlDataSetCache cache : cachedMap.values()) {
+			if (cache.isMapped()) {
+				mapped.add(cache);
+			}
+		}
+		Collections.sort(mapped, new Comparator<MysqlDataSetCache>() {
+			@Override
+			public int compare(MysqlDataSetCache o1, MysqlDataSetCache o2) {
+				return Long.compare(o1.getLastAccesTime(), o2.getLastAccesTime());
+			}
+		});
+		for (MysqlDataSetCache cache : mapped) {
+			if (over <= 0) {
+				break;
+			}
+			if (remove(cache)) {
+				over -= cache.getTotal();
+			}
+		}
+		if (mappedUsed.get() <= mappedLimit) {
+			return true;
+		}
+		mappedUsed.addAndGet(-size);
+		return false;
+	}
+
+	private boolean validCache(MysqlDataSetCache cache, long now) {
+		if (cache.isExpired(now)) {
+			return false;
+		}
+		String[] depends = cache.getDepends();
+		long[] cached = cache.getVersions();
+		for (int i = 0; i < depends.length; i++) {
+			AtomicLong version = versions.get(depends[i]);
+			if ((version == null ? 0 : version.get()) != cached[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean remove(MysqlDataSetCache cache) {
+		if (cachedMap.remove(cache.getSql(), cache)) {
+			release(cache);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * 已从 cachedMap 移除，扣减用量并释放 service 持有的引用，正在写前端的命中释放后才真正释放内存
+	 */
+	private void release(MysqlDataSetCache cache) {
+		if (cache.isMapped()) {
+			mappedUsed.addAndGet(-cache.getTotal());
 		} else {
-			cachedMap.remove(sql);
+			memoryUsed.addAndGet(-cache.getTotal());
+		}
+		cache.release();
+	}
+
+	/**
+	 * 清理过期和已失效的缓存
+	 */
+	void sweep(long now) {
+		Iterator<MysqlDataSetCache> it = cachedMap.values().iterator();
+		while (it.hasNext()) {
+			MysqlDataSetCache cache = it.next();
+			if (!validCache(cache, now)) {
+				remove(cache);
+			}
 		}
+	}
 
-		return null;
+	public void clear() {
+		for (MysqlDataSetCache cache : cachedMap.values()) {
+			remove(cache);
+		}
+	}
 
+	public int getCount() {
+		return cachedMap.size();
 	}
 
-	public String needCache(String sql)
-	{
-		return needCachedSQL.contains(sql)?sql:null;
+	public long getMemoryUsed() {
+		return memoryUsed.get();
 	}
-	public boolean addIfNotExists(MysqlDataSetCache newCache) {
-		return (cachedMap.putIfAbsent(newCache.getSql(), newCache) == null);
+
+	public long getMappedUsed() {
+		return mappedUsed.get();
+	}
+
+	public long getAccessTimes() {
+		return accessTimes.get();
+	}
+
+	public long getHitTimes() {
+		return hitTimes.get();
+	}
+
+	public long getPutTimes() {
+		return putTimes.get();
+	}
+
+	public long getInvalidateTimes() {
+		return invalidateTimes.get();
 	}
 
-	private boolean validCache(MysqlDataSetCache cache) {
-		return (!cache.isStoring()
-				&& (cache.getCreateTime() + this.maxExpire * 1000 < System
-						.currentTimeMillis()) && (new File(cache.getDataFile())
-				.exists()));
+	public long getBytesServed() {
+		return bytesServed.get();
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,357 @@
+package io.mycat.catlets;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.mycat.MycatServer;
+import io.mycat.memory.MyCatMemory;
+import io.mycat.memory.unsafe.Platform;
+import io.mycat.memory.unsafe.map.BytesToBytesMap;
+import io.mycat.memory.unsafe.memory.mm.DataNodeMemoryManager;
+import io.mycat.memory.unsafe.storage.DataNodeFileManager;
+import io.mycat.memory.unsafe.storage.TempDataNodeId;
+
+/**
+ * ShareJoin 一个批次的 hash 表：join key -> 左表(build)的行
+ *
+ * 左表的行按 join key 写入堆外的 {@link BytesToBytesMap}，右表的行到达时按 join key 查找，
+ * 每行的探测代价是 O(1)，不再需要遍历整个批次。
+ *
+ * 当堆外内存不足、无法继续写入时，整个批次转为落盘：已写入的左表行和之后的左表行写入 build 文件，
+ * 之后到达的右表行写入 probe 文件，所有右表的查询结束后调用 {@link #finishProbe(Matcher)}，
+ * 再把 build 文件加载到内存中与 probe 文件做 join。单个批次的行数是有上限的，
+ * 因此重新加载一个批次不会占用过多内存。
+ *
+ * 未启用堆外内存(useOffHeapForMerge=0)时使用堆内的 HashMap。
+ *
+ * @author mycat
+ */
+public class JoinHashTable {
+	private static final Logger LOGGER = LoggerFactory.getLogger(JoinHashTable.class);
+
+	/**
+	 * 探测命中时回调，buildRow 为左表的行，probeRow 为右表的行
+	 */
+	public interface Matcher {
+		void onMatch(byte[] buildRow, byte[] probeRow);
+	}
+
+	private final MyCatMemory memory;
+	private BytesToBytesMap map;
+	private Map<String, List<byte[]>> heapMap;
+	private SpillFile buildSpill;
+	private SpillFile probeSpill;
+	private volatile boolean spilled;
+	private int buildRows;
+	private long probeRows;
+	private long matchedRows;
+
+	public JoinHashTable(int expectedRows) {
+		this(MycatServer.getInstance().getMyCatMemory(), expectedRows);
+	}
+
+	JoinHashTable(MyCatMemory memory, int expectedRows) {
+		this.memory = memory;
+		if (memory == null) {
+			heapMap = new HashMap<String, List<byte[]>>();
+			return;
+		}
+		try {
+			DataNodeMemoryManager dataNodeMemoryManager = new DataNodeMemoryManager(
+					memory.getResultMergeMemoryManager(), Thread.currentThread().getId());
+			map = new BytesToBytesMap(dataNodeMemoryManager, Math.max(64, expectedRows),
+					memory.getConf().getSizeAsBytes("mycat.buffer.pageSize", "32k"));
+		} catch (OutOfMemoryError e) {
+			// 连哈希数组都申请不到，直接落盘
+			spilled = true;
+		}
+	}
+
+	/**
+	 * 写入左表的一行，只在批次发送查询之前调用
+	 */
+	public synchronized void put(byte[] key, byte[] row) throws IOException {
+		buildRows++;
+		if (spilled) {
+			spillBuild(key, row);
+			return;
+		}
+		if (heapMap != null) {
+			String k = new String(key, "ISO-8859-1");
+			List<byte[]> rows = heapMap.get(k);
+			if (rows == null) {
+				rows = new ArrayList<byte[]>(1);
+				heapMap.put(k, rows);
+			}
+			rows.add(row);
+			return;
+		}
+		byte[] k = pad(key);
+		byte[] v = pad(row);
+		BytesToBytesMap.Location loc = map.lookup(k, Platform.BYTE_ARRAY_OFFSET, k.length);
+		if (!loc.append(k, Platform.BYTE_ARRAY_OFFSET, k.length, v, Platform.BYTE_ARRAY_OFFSET, v.length)) {
+			spillAll();
+			spillBuild(key, row);
+		}
+	}
+
+	/**
+	 * 用右表的一行探测，命中的左表行通过 matcher 输出；批次已落盘时只把右表的行写入 probe 文件
+	 */
+	public void probe(byte[] key, byte[] probeRow, Matcher matcher) throws IOException {
+		List<byte[]> matched;
+		synchronized (this) {
+			probeRows++;
+			if (spilled) {
+				if (probeSpill == null) {
+					probeSpill = SpillFile.create(memory);
+				}
+				probeSpill.write(key, probeRow);
+				return;
+			}
+			matched = lookup(key);
+			if (matched == null) {
+				return;
+			}
+			matchedRows += matched.size();
+		}
+		for (byte[] buildRow : matched) {
+			matcher.onMatch(buildRow, probeRow);
+		}
+	}
+
+	/**
+	 * 所有右表的查询都结束后调用，处理落盘的批次并释放内存和文件
+	 */
+	public void finishProbe(Matcher matcher) throws IOException {
+		try {
+			if (!spilled || probeSpill == null || buildSpill == null) {
+				return;
+			}
+			Map<String, List<byte[]>> rows = new HashMap<String, List<byte[]>>();
+			buildSpill.finishWrite();
+			DataInputStream in = buildSpill.openRead();
+			try {
+				byte[][] rec;
+				while ((rec = SpillFile.read(in)) != null) {
+					String k = new String(rec[0], "ISO-8859-1");
+					List<byte[]> list = rows.get(k);
+					if (list == null) {
+						list = new ArrayList<byte[]>(1);
+						rows.put(k, list);
+					}
+					list.add(rec[1]);
+				}
+			} finally {
+				in.close();
+			}
+			probeSpill.finishWrite();
+			in = probeSpill.openRead();
+			try {
+				byte[][] rec;
+				while ((rec = SpillFile.read(in)) != null) {
+					List<byte[]> matched = rows.get(new String(rec[0], "ISO-8859-1"));
+					if (matched == null) {
+						continue;
+					}
+					matchedRows += matched.size();
+					for (byte[] buildRow : matched) {
+						matcher.onMatch(buildRow, rec[1]);
+					}
+				}
+			} finally {
+				in.close();
+			}
+		} finally {
+			free();
+		}
+	}
+
+	public synchronized void free() {
+		if (map != null) {
+			map.free();
+			map = null;
+		}
+		heapMap = null;
+		if (buildSpill != null) {
+			buildSpill.delete();
+			buildSpill = null;
+		}
+		if (probeSpill != null) {
+			probeSpill.delete();
+			probeSpill = null;
+		}
+	}
+
+	public boolean isSpilled() {
+		return spilled;
+	}
+
+	public int getBuildRows() {
+		return buildRows;
+	}
+
+	public long getProbeRows() {
+		return probeRows;
+	}
+
+	public long getMatchedRows() {
+		return matchedRows;
+	}
+
+	private List<byte[]> lookup(byte[] key) throws IOException {
+		if (heapMap != null) {
+			return heapMap.get(new String(key, "ISO-8859-1"));
+		}
+		if (map == null) {
+			return null;
+		}
+		byte[] k = pad(key);
+		BytesToBytesMap.Location loc = map.lookup(k, Platform.BYTE_ARRAY_OFFSET, k.length);
+		if (!loc.isDefined()) {
+			return null;
+		}
+		List<byte[]> rows = new ArrayList<byte[]>(1);
+		do {
+			rows.add(unpad(loc.getValueBase(), loc.getValueOffset()));
+		} while (loc.nextValue());
+		return rows;
+	}
+
+	@VisibleForTesting
+	synchronized void spill() throws IOException {
+		if (!spilled && map != null) {
+			spillAll();
+		}
+	}
+
+	private void spillAll() throws IOException {
+		LOGGER.info("join hash table memory exhausted, spill " + map.numValues() + " rows to disk");
+		BytesToBytesMap.MapIterator it = map.iterator();
+		while (it.hasNext()) {
+			BytesToBytesMap.Location loc = it.next();
+			spillBuild(unpad(loc.getKeyBase(), loc.getKeyOffset()),
+					unpad(loc.getValueBase(), loc.getValueOffset()));
+		}
+		map.free();
+		map = null;
+		spilled = true;
+	}
+
+	private void spillBuild(byte[] key, byte[] row) throws IOException {
+		if (buildSpill == null) {
+			buildSpill = SpillFile.create(memory);
+		}
+		buildSpill.write(key, row);
+	}
+
+	/**
+	 * BytesToBytesMap 要求 key、value 的长度都是 8 的倍数：[4字节长度][数据][补齐]
+	 */
+	private static byte[] pad(byte[] src) {
+		int len = (4 + src.length + 7) & ~7;
+		byte[] dst = new byte[len];
+		Platform.putInt(dst, Platform.BYTE_ARRAY_OFFSET, src.length);
+		System.arraycopy(src, 0, dst, 4, src.length);
+		return dst;
+	}
+
+	private static byte[] unpad(Object base, long offset) {
+		int len = Platform.getInt(base, offset);
+		byte[] dst = new byte[len];
+		Platform.copyMemory(base, offset + 4, dst, Platform.BYTE_ARRAY_OFFSET, len);
+		return dst;
+	}
+
+	/**
+	 * 落盘文件，记录格式：[key长度][key][row长度][row]
+	 */
+	static final class SpillFile {
+		private final MyCatMemory memory;
+		private final TempDataNodeId blockId;
+		private final File file;
+		private DataOutputStream out;
+
+		private SpillFile(MyCatMemory memory, TempDataNodeId blockId, File file) throws IOException {
+			this.memory = memory;
+			this.blockId = blockId;
+			this.file = file;
+			this.out = new DataOutputStream(wrap(new BufferedOutputStream(new FileOutputStream(file))));
+		}
+
+		static SpillFile create(MyCatMemory memory) throws IOException {
+			if (memory == null) {
+				File file = File.createTempFile("mycat-join-", ".spill");
+				file.deleteOnExit();
+				return new SpillFile(null, null, file);
+			}
+			DataNodeFileManager fileManager = memory.getBlockManager().diskBlockManager();
+			TempDataNodeId blockId = fileManager.createTempLocalBlock();
+			return new SpillFile(memory, blockId, fileManager.getFile(blockId));
+		}
+
+		void write(byte[] key, byte[] row) throws IOException {
+			out.writeInt(key.length);
+			out.write(key);
+			out.writeInt(row.length);
+			out.write(row);
+		}
+
+		void finishWrite() throws IOException {
+			if (out != null) {
+				out.close();
+				out = null;
+			}
+		}
+
+		DataInputStream openRead() throws IOException {
+			BufferedInputStream in = new BufferedInputStream(new FileInputStream(file));
+			return new DataInputStream(memory == null ? in : memory.getSerializerManager().wrapForCompression(blockId, in));
+		}
+
+		static byte[][] read(DataInputStream in) throws IOException {
+			int keyLen;
+			try {
+				keyLen = in.readInt();
+			} catch (EOFException e) {
+				return null;
+			}
+			byte[] key = new byte[keyLen];
+			in.readFully(key);
+			byte[] row = new byte[in.readInt()];
+			in.readFully(row);
+			return new byte[][] { key, row };
+		}
+
+		private OutputStream wrap(OutputStream s) {
+			return memory == null ? s : memory.getSerializerManager().wrapForCompression(blockId, s);
+		}
+
+		void delete() {
+			try {
+				finishWrite();
+			} catch (IOException e) {
+				LOGGER.warn("close join spill file error:", e);
+			}
+			if (file.exists() && !file.delete()) {
+				LOGGER.warn("delete join spill file failed: " + file);
+			}
+		}
+	}
+}
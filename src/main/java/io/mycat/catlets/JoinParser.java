@@ -351,6 +351,11 @@ public class JoinParser {
 		return sql;
 	}
 	
+	//返回b表的表名
+	public String getChildTableName(){
+		return tableFilter.getTableJoin().getTableName();
+	}
+
 	public String getSql(){
 		stmt=tableFilter.getSQL();
 		return stmt;
@@ -1,10 +1,14 @@
 package io.mycat.catlets;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import com.alibaba.druid.sql.ast.SQLStatement;
 import com.alibaba.druid.sql.ast.statement.SQLSelectQuery;
@@ -19,11 +23,13 @@ import io.mycat.config.ErrorCode;
 import io.mycat.config.Fields;
 import io.mycat.config.model.SchemaConfig;
 import io.mycat.config.model.SystemConfig;
+import io.mycat.config.model.TableConfig;
 import io.mycat.net.mysql.FieldPacket;
 import io.mycat.net.mysql.RowDataPacket;
 import io.mycat.route.RouteResultset;
 import io.mycat.route.RouteResultsetNode;
 import io.mycat.route.factory.RouteStrategyFactory;
+import io.mycat.route.function.AbstractPartitionAlgorithm;
 import io.mycat.server.NonBlockingSession;
 import io.mycat.server.ServerConnection;
 import io.mycat.server.parser.ServerParse;
@@ -47,9 +53,12 @@ public class ShareJoin implements Catlet {
 	private RouteResultset rrs ;
 	private JoinParser joinParser;
 	
-	private Map<String, byte[]> rows = new ConcurrentHashMap<String, byte[]>();
-	private Map<String,String> ids = new ConcurrentHashMap<String,String>();
-	//private ConcurrentLinkedQueue<String> ids = new ConcurrentLinkedQueue<String>();
+	// 每个批次的左表行数，也是右表 in (...) 的上限
+	private static final int BATCH_SIZE = 1000;
+	// 当前正在收集的批次：join key -> 左表的行
+	private JoinHashTable batchTable;
+	private Set<String> batchKeys = new LinkedHashSet<String>();
+	private int batchRows;
 	
 	private List<byte[]> fields; //主表的字段
 	private ArrayList<byte[]> allfields;//所有的字段
@@ -193,18 +202,28 @@ public class ShareJoin implements Catlet {
 	
     
 
-	public void putDBRow(String id,String nid, byte[] rowData,int findex){
-    	rows.put(id, rowData);	// 主键 -> 一行数据
-    	ids.put(id, nid);       // 主键 ->  joinkey value
-    	joinindex=findex;
-		//ids.offer(nid);
-		int batchSize = 999;
-		// 满1000条，发送一个查询请求
-		if (ids.size() > batchSize) {
-			createQryJob(batchSize);
-		}            	
-    }
-    
+	public void putDBRow(byte[] joinValue, byte[] rowData, int findex) {
+		joinindex = findex;
+		if (joinValue == null) { // join key 为 null 的行不会被关联上
+			return;
+		}
+		synchronized (this) {
+			if (batchTable == null) {
+				batchTable = new JoinHashTable(BATCH_SIZE);
+			}
+			try {
+				batchTable.put(joinValue, rowData);
+			} catch (IOException e) {
+				throw new RuntimeException("sharejoin spill error", e);
+			}
+			batchKeys.add(new String(joinValue));
+			// 满一个批次，发送一个查询请求，左表继续拉取数据的同时右表开始探测
+			if (++batchRows >= BATCH_SIZE) {
+				createQryJob();
+			}
+		}
+	}
+
     public void putDBFields(List<byte[]> mFields){
     	 if (!isMfield){
     		 fields=mFields; 
@@ -216,64 +235,112 @@ public class ShareJoin implements Catlet {
 	   mjob++; //结束任务+1
 	   if (mjob>=maxjob){ 
 		   //发送最后一个右边表的查询语句。
-		 createQryJob(Integer.MAX_VALUE);
+		 synchronized (this) {
+			 createQryJob();
+		 }
 	     ctx.endJobInput();
 	   }
 	  // EngineCtx.LOGGER.info("完成"+mjob+":" + dataNode+" failed:"+failed);
    }
    
-	//private void createQryJob(String dataNode,int batchSize) {	
-	private void createQryJob(int batchSize) {	
-		int count = 0;
-		Map<String, byte[]> batchRows = new ConcurrentHashMap<String, byte[]>();
-		String theId = null;
+	// 发送当前批次的右表查询，调用者持有 this 的锁
+	private void createQryJob() {
+		if (batchRows == 0) {
+			return;
+		}
+		JoinHashTable table = batchTable;
+		Set<String> keys = batchKeys;
+		batchTable = null;
+		batchKeys = new LinkedHashSet<String>();
+		batchRows = 0;
+
+		jointTableIsData=true;
+		// 右表按 join key 分片时，每个分片只发送落在该分片上的 key
+		Map<String, List<String>> nodeKeys = groupKeysByDataNode(keys);
+		if (nodeKeys == null) {
+			//select * from tableB where joinKey in (id1,id2);
+			String sql = String.format(joinParser.getChildSQL(), toInList(keys));
+			getRoute(sql);
+			String[] dataNodes = getDataNodes();
+			ShareRowOutPutDataHandler handler = new ShareRowOutPutDataHandler(this, fields, joinParser.getJoinRkey(),
+					table, dataNodes.length, ctx.getSession());
+			ctx.executeNativeSQLParallJob(dataNodes, sql, handler);
+			EngineCtx.LOGGER.info("SQLParallJob:"+getDataNode(dataNodes)+" sql:" + sql);
+			return;
+		}
+		if (nodeKeys.isEmpty()) {
+			table.free();
+			return;
+		}
+		ShareRowOutPutDataHandler handler = new ShareRowOutPutDataHandler(this, fields, joinParser.getJoinRkey(),
+				table, nodeKeys.size(), ctx.getSession());
+		for (Map.Entry<String, List<String>> e : nodeKeys.entrySet()) {
+			String sql = String.format(joinParser.getChildSQL(), toInList(e.getValue()));
+			ctx.executeNativeSQLParallJob(new String[] { e.getKey() }, sql, handler);
+			EngineCtx.LOGGER.info("SQLParallJob:" + e.getKey() + " sql:" + sql);
+		}
+	}
+
+	private String toInList(Collection<String> keys) {
 		StringBuilder sb = new StringBuilder().append('(');
-		String svalue="";
-		for(Map.Entry<String,String> e: ids.entrySet() ){
-			theId=e.getKey();
-			byte[] rowbyte = rows.remove(theId);
-			if(rowbyte!=null){
-				batchRows.put(theId, rowbyte);
-			}			
-			if (!svalue.equals(e.getValue())){
-				if(joinKeyType == Fields.FIELD_TYPE_VAR_STRING 
-						|| joinKeyType == Fields.FIELD_TYPE_STRING){ // joinkey 为varchar
-						sb.append("'").append(e.getValue()).append("'").append(','); // ('digdeep','yuanfang') 
-				}else{ // 默认joinkey为int/long
-					sb.append(e.getValue()).append(','); // (1,2,3) 
-				}
+		for (String key : keys) {
+			if(joinKeyType == Fields.FIELD_TYPE_VAR_STRING
+					|| joinKeyType == Fields.FIELD_TYPE_STRING){ // joinkey 为varchar
+				sb.append('\'').append(key.replace("'", "''")).append('\'').append(','); // ('digdeep','yuanfang')
+			}else{ // 默认joinkey为int/long
+				sb.append(key).append(','); // (1,2,3)
 			}
-			svalue=e.getValue();
-			if (count++ > batchSize) {
-				break;
-			}			
 		}
-		/*
-		while ((theId = ids.poll()) != null) {
-			batchRows.put(theId, rows.remove(theId));
-			sb.append(theId).append(',');
-			if (count++ > batchSize) {
-				break;
-			}
+		return sb.deleteCharAt(sb.length() - 1).append(')').toString();
+	}
+
+	/**
+	 * 右表的分片字段就是 join 字段时，按分片规则把 key 分配到各个 dataNode；
+	 * 返回 null 表示无法裁剪，需要把完整的 in 列表发送到路由出的所有节点
+	 */
+	private Map<String, List<String>> groupKeysByDataNode(Set<String> keys) {
+		if (schema == null) {
+			return null;
 		}
-		*/
-		if (count == 0) {
-			return;
+		String tableName = joinParser.getChildTableName();
+		if (tableName == null) {
+			return null;
 		}
-		jointTableIsData=true;
-		sb.deleteCharAt(sb.length() - 1).append(')');
-		//select * from tableB where joinKey in (id1,id2);
-		String sql = String.format(joinParser.getChildSQL(), sb);
-		
-		//if (!childRoute){
-		  getRoute(sql);
-		 //childRoute=true;
-		//}
-		 
-		 //
-		ctx.executeNativeSQLParallJob(getDataNodes(),sql, new ShareRowOutPutDataHandler(this,fields,joinindex,joinParser.getJoinRkey(), batchRows,ctx.getSession()));
-		EngineCtx.LOGGER.info("SQLParallJob:"+getDataNode(getDataNodes())+" sql:" + sql);		
-	}  
+		tableName = tableName.replace("`", "");
+		int dot = tableName.indexOf('.');
+		if (dot >= 0) {
+			tableName = tableName.substring(dot + 1);
+		}
+		TableConfig tc = schema.getTables().get(tableName.toUpperCase());
+		if (tc == null || tc.isGlobalTable() || tc.getRule() == null
+				|| tc.getRule().getRuleAlgorithm() == null
+				|| !joinParser.getJoinRkey().equalsIgnoreCase(tc.getPartitionColumn())) {
+			return null;
+		}
+		AbstractPartitionAlgorithm algorithm = tc.getRule().getRuleAlgorithm();
+		List<String> dataNodes = tc.getDataNodes();
+		Map<String, List<String>> nodeKeys = new LinkedHashMap<String, List<String>>();
+		try {
+			for (String key : keys) {
+				Integer index = algorithm.calculate(key);
+				if (index == null || index < 0 || index >= dataNodes.size()) {
+					return null;
+				}
+				String dataNode = dataNodes.get(index);
+				List<String> list = nodeKeys.get(dataNode);
+				if (list == null) {
+					list = new ArrayList<String>();
+					nodeKeys.put(dataNode, list);
+				}
+				list.add(key);
+			}
+		} catch (Exception e) {
+			EngineCtx.LOGGER.warn("sharejoin prune in list by partition rule failed: " + e.getMessage());
+			return null;
+		}
+		return nodeKeys;
+	}
+
 	public void writeHeader(String dataNode,List<byte[]> afields, List<byte[]> bfields) {
 		sendField++;
 		if (sendField==1){		  	
@@ -409,6 +476,7 @@ public class ShareJoin implements Catlet {
 
 class ShareDBJoinHandler implements SQLJobHandler {
 	private List<byte[]> fields;
+	private int fid = -1; // joinKey 字段的位置
 	private final ShareJoin ctx;
 	private String joinkey;
 	private NonBlockingSession session;
@@ -426,6 +494,7 @@ class ShareDBJoinHandler implements SQLJobHandler {
 	@Override
 	public void onHeader(String dataNode, byte[] header, List<byte[]> fields) {
 		this.fields = fields;
+		this.fid = -1;
 		ctx.putDBFields(fields);
 	}
 	
@@ -449,12 +518,12 @@ class ShareDBJoinHandler implements SQLJobHandler {
 	*/
 	@Override
 	public boolean onRowData(String dataNode, byte[] rowData) {
-		int fid=this.ctx.getFieldIndex(fields,joinkey);
-		String id = ResultSetUtil.getColumnValAsString(rowData, fields, 0);//主键，默认id
-		String nid = ResultSetUtil.getColumnValAsString(rowData, fields, fid); //joinKey 的value
+		if (fid < 0) {
+			fid = this.ctx.getFieldIndex(fields, joinkey);
+		}
+		byte[] nid = ResultSetUtil.getColumnVal(rowData, fields, fid); //joinKey 的value
 		// 放入结果集
-		//rows.put(id, rowData);
-		ctx.putDBRow(id,nid, rowData,fid);
+		ctx.putDBRow(nid, rowData, fid);
 		return false;
 	}
 	// 收到结束包调用 或者发生错误时候调用。
@@ -469,25 +538,24 @@ class ShareDBJoinHandler implements SQLJobHandler {
 
 }
 
-class ShareRowOutPutDataHandler implements SQLJobHandler {
+class ShareRowOutPutDataHandler implements SQLJobHandler, JoinHashTable.Matcher {
 	private final List<byte[]> afields; // a表的字段信息
 	private List<byte[]> bfields; //B表(右边) 字段信息
 	private final ShareJoin ctx; //  sharejoin 的context 
-	private final Map<String, byte[]> arows; //	 map a表的记录值  id -> 行记录
-	private int joinL;//A表(左边)关联字段的位置
-	private int joinR;//B表(右边)关联字段的位置
+	private final JoinHashTable table; // 本批次 a表的记录  joinKey -> 行记录
+	private final AtomicInteger runningJobs; // 本批次还未结束的 b表查询
+	private volatile int joinR;//B表(右边)关联字段的位置
 	private String joinRkey;//B表(右边)关联字段
 	public NonBlockingSession session;
 
-	public ShareRowOutPutDataHandler(ShareJoin ctx,List<byte[]> afields,int joini,String joinField,Map<String, byte[]> arows,NonBlockingSession session) {
+	public ShareRowOutPutDataHandler(ShareJoin ctx,List<byte[]> afields,String joinField,JoinHashTable table,int jobs,NonBlockingSession session) {
 		super();
 		this.afields = afields; // a表的字段信息
 		this.ctx = ctx;   //  sharejoin 的context 
-		this.arows = arows;	 //	 map a表的记录值  id -> 行记录
-		this.joinL =joini; //a 表 joinKey的索引位置。
+		this.table = table;
+		this.runningJobs = new AtomicInteger(jobs);
 		this.joinRkey= joinField; // b 表 joinKey的字段名称。
 		this.session = session; // mycatSession
-		//EngineCtx.LOGGER.info("二次查询:" +arows.size()+ " afields："+FenDBJoinHandler.getFieldNames(afields));
     }
 
 	@Override
@@ -502,76 +570,82 @@ class ShareRowOutPutDataHandler implements SQLJobHandler {
 			} 
  	}
 
-	//不是主键，获取join左边的的记录
-	private byte[] getRow(Map<String, byte[]> batchRowsCopy,String value,int index){
-		for(Map.Entry<String,byte[]> e: batchRowsCopy.entrySet() ){
-			String key=e.getKey();
-			RowDataPacket rowDataPkg = ResultSetUtil.parseRowData(e.getValue(), afields);
-			
-			byte[] columnValue = rowDataPkg.fieldValues.get(index); //a 表记录 joinKey的value 
-			if(columnValue == null )
-				continue;
-			
-			String id = ByteUtil.getString(columnValue);
-			if (id.equals(value)){
-				return batchRowsCopy.remove(key);
-			}
-		}
-		return null;
-	}
-
 	@Override
 	public boolean onRowData(String dataNode, byte[] rowData) {
-		RowDataPacket rowDataPkgold = ResultSetUtil.parseRowData(rowData, bfields);
-		//拷贝一份batchRows
-		Map<String, byte[]> batchRowsCopy = new ConcurrentHashMap<String, byte[]>();
-		batchRowsCopy.putAll(arows);
+		final RowDataPacket rowDataPkgold = ResultSetUtil.parseRowData(rowData, bfields);
 		// 获取Id字段，
-		String id = ByteUtil.getString(rowDataPkgold.fieldValues.get(joinR));
+		byte[] id = rowDataPkgold.fieldValues.get(joinR);
+		if (id == null) {
+			return false;
+		}
 		// 查找ID对应的A表的记录
-		byte[] arow = getRow(batchRowsCopy,id,joinL);//arows.remove(id);
-//		byte[] arow = getRow(id,joinL);//arows.remove(id);
-		while (arow!=null) {
-			RowDataPacket rowDataPkg = ResultSetUtil.parseRowData(arow,afields );//ctx.getAllFields());
-			//将 b记录的值 复制到 a记录中 成为新的记录。
-			for (int i=1;i<rowDataPkgold.fieldCount;i++){
-				// 设置b.name 字段
-				byte[] bname = rowDataPkgold.fieldValues.get(i);
-				rowDataPkg.add(bname);
-				rowDataPkg.addFieldCount(1);
-			}
-			//RowData(rowDataPkg);
-			// huangyiming add
-			MiddlerResultHandler middlerResultHandler = session.getMiddlerResultHandler();
-			if(null == middlerResultHandler ){
-				// 
-				ctx.writeRow(rowDataPkg);
-				
-			}else{
-				
-				 if(middlerResultHandler instanceof MiddlerQueryResultHandler){
-					// if(middlerResultHandler.getDataType().equalsIgnoreCase("string")){
-						 byte[] columnData = rowDataPkg.fieldValues.get(0);
-						 if(columnData !=null && columnData.length >0){
- 							 String rowValue =    new String(columnData);
-							 middlerResultHandler.add(rowValue);	
-						 }
-				   //}
-				 }
-				
-			} 
-			
-			arow = getRow(batchRowsCopy,id,joinL);
-//		   arow = getRow(id,joinL);
+		try {
+			table.probe(id, rowData, new JoinHashTable.Matcher() {
+				@Override
+				public void onMatch(byte[] buildRow, byte[] probeRow) {
+					outputRow(buildRow, rowDataPkgold);
+				}
+			});
+		} catch (IOException e) {
+			throw new RuntimeException("sharejoin spill error", e);
 		}
 		return false;
 	}
-	
+
+	// 落盘批次的延迟探测
+	@Override
+	public void onMatch(byte[] buildRow, byte[] probeRow) {
+		outputRow(buildRow, ResultSetUtil.parseRowData(probeRow, bfields));
+	}
+
+	private void outputRow(byte[] arow, RowDataPacket rowDataPkgold) {
+		RowDataPacket rowDataPkg = ResultSetUtil.parseRowData(arow,afields );//ctx.getAllFields());
+		//将 b记录的值 复制到 a记录中 成为新的记录。
+		for (int i=1;i<rowDataPkgold.fieldCount;i++){
+			// 设置b.name 字段
+			byte[] bname = rowDataPkgold.fieldValues.get(i);
+			rowDataPkg.add(bname);
+			rowDataPkg.addFieldCount(1);
+		}
+		//RowData(rowDataPkg);
+		// huangyiming add
+		MiddlerResultHandler middlerResultHandler = session.getMiddlerResultHandler();
+		if(null == middlerResultHandler ){
+			// 
+			ctx.writeRow(rowDataPkg);
+			
+		}else{
+			
+			 if(middlerResultHandler instanceof MiddlerQueryResultHandler){
+				// if(middlerResultHandler.getDataType().equalsIgnoreCase("string")){
+					 byte[] columnData = rowDataPkg.fieldValues.get(0);
+					 if(columnData !=null && columnData.length >0){
+						 String rowValue =    new String(columnData);
+						 middlerResultHandler.add(rowValue);	
+					 }
+			   //}
+			 }
+			
+		} 
+	}
 
 	@Override
 	public void finished(String dataNode, boolean failed, String errorMsg) {
 		if(failed){
 			session.getSource().writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, errorMsg);
 		}
+		// 本批次最后一个 b表查询结束，处理落盘的数据并释放 hash 表
+		if (runningJobs.decrementAndGet() == 0) {
+			try {
+				if (failed) {
+					table.free();
+				} else {
+					table.finishProbe(this);
+				}
+			} catch (IOException e) {
+				EngineCtx.LOGGER.error("sharejoin spill error", e);
+				session.getSource().writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, "sharejoin spill error: " + e.getMessage());
+			}
+		}
 	}
-}
\ No newline at end of file
+}
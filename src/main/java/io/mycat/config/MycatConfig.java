@@ -290,7 +290,10 @@ public class MycatConfig {
 			this.schemas = newSchemas;
 			this.cluster = newCluster;
 			this.firewall = newFirewall;
-			
+
+			// 用户权限及防火墙规则可能变化，清空权限检查结论缓存
+			PrivilegeVerdictCache.onConfigReload();
+
 		} finally {
 			lock.unlock();
 		}
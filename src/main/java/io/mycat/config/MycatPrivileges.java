@@ -45,6 +45,8 @@ import com.alibaba.druid.wall.WallCheckResult;
 import com.alibaba.druid.wall.WallProvider;
 
 import io.mycat.MycatServer;
+import io.mycat.config.PrivilegeVerdictCache.DmlVerdict;
+import io.mycat.config.PrivilegeVerdictCache.FirewallVerdict;
 import io.mycat.config.model.FirewallConfig;
 import io.mycat.config.model.UserConfig;
 import io.mycat.config.model.UserPrivilegesConfig;
@@ -62,9 +64,6 @@ public class MycatPrivileges implements FrontendPrivileges {
 	private static MycatPrivileges instance = new MycatPrivileges();
 	
     private static final Logger ALARM = LoggerFactory.getLogger("alarm");
-    
-    private static boolean check = false;	
-	private final static ThreadLocal<WallProvider> contextLocal = new ThreadLocal<WallProvider>();
 
     public static MycatPrivileges instance() {
     	return instance;
@@ -200,18 +199,30 @@ public class MycatPrivileges implements FrontendPrivileges {
 		
 		boolean isPassed = true;
 		
-		if( contextLocal.get() == null ){
-			FirewallConfig firewallConfig = MycatServer.getInstance().getConfig().getFirewall();
-			if ( firewallConfig != null) {
-				if ( firewallConfig.isCheck() ) {
-					contextLocal.set(firewallConfig.getProvider());
-					check = true;
+		// 先取配置代次再读配置，检查期间重新加载配置时结论不写入缓存
+		PrivilegeVerdictCache cache = PrivilegeVerdictCache.getInstance();
+		long generation = cache.getGeneration();
+		
+		// 每次取当前配置，重新加载防火墙规则后立即生效
+		FirewallConfig firewallConfig = MycatServer.getInstance().getConfig().getFirewall();
+		if ( firewallConfig != null && firewallConfig.isCheck() ) {
+			
+			// 同一用户、同一指纹的 sql 检查结论相同，命中缓存时不再解析
+			String cacheKey = null;
+			if ( cache.isEnabled() ) {
+				cacheKey = cache.firewallKey(user, sql);
+				FirewallVerdict verdict = cache.getFirewall(cacheKey);
+				if ( verdict != null ) {
+					if ( !verdict.isPassed() ) {
+						ALARM.warn("Firewall to intercept the '" + user + "' unsafe SQL , errMsg:"
+								+ verdict.getMessage() + " \r\n " + sql);
+					}
+					return verdict.isPassed();
 				}
 			}
-		}
-		
-		if( check ){
-			WallCheckResult result = contextLocal.get().check(sql);
+			
+			WallProvider provider = firewallConfig.getProvider();
+			WallCheckResult result = provider.check(sql);
 			
 			// 修复 druid 防火墙在处理SHOW FULL TABLES WHERE Table_type != 'VIEW' 的时候存在的 BUG
 			// 此代码有问题，由于Druid WallCheck 对同一条SQL语句只做一次解析，下面代码会导致第二次拦截失效
@@ -226,14 +237,18 @@ public class MycatPrivileges implements FrontendPrivileges {
 //		        }				
 //			}
 			
+			String message = null;
 			if ( !result.getViolations().isEmpty()) {				
 				isPassed = false;
+				message = result.getViolations().get(0).getMessage();
 				ALARM.warn("Firewall to intercept the '" + user + "' unsafe SQL , errMsg:"
-						+ result.getViolations().get(0).getMessage() +
+						+ message +
 						" \r\n " + sql);
 	        }	
 			
-			
+			if ( cacheKey != null ) {
+				cache.putFirewall(cacheKey, new FirewallVerdict(isPassed, message), generation);
+			}
 		}
 		return isPassed;
 	}
@@ -248,6 +263,10 @@ public class MycatPrivileges implements FrontendPrivileges {
 		
 		boolean isPassed = false;
 
+		// 先取配置代次再读配置，检查期间重新加载配置时结论不写入缓存
+		PrivilegeVerdictCache cache = PrivilegeVerdictCache.getInstance();
+		long generation = cache.getGeneration();
+
 		MycatConfig conf = MycatServer.getInstance().getConfig();
 		UserConfig userConfig = conf.getUsers().get(user);
 		if (userConfig != null) {
@@ -258,11 +277,6 @@ public class MycatPrivileges implements FrontendPrivileges {
 				UserPrivilegesConfig.SchemaPrivilege schemaPrivilege = userPrivilege.getSchemaPrivilege( schema );
 				if ( schemaPrivilege != null ) {
 		
-					String tableName = null;
-					int index = -1;
-					
-					//TODO 此处待优化，寻找更优SQL 解析器
-					
 					//修复bug
 					// https://github.com/alibaba/druid/issues/1309
 					//com.alibaba.druid.sql.parser.ParserException: syntax error, error in :'begin',expect END, actual EOF begin
@@ -270,52 +284,17 @@ public class MycatPrivileges implements FrontendPrivileges {
 						return true;
 					}
 					
-					SQLStatementParser parser = new MycatStatementParser(sql);			
-					SQLStatement stmt = parser.parseStatement();
-
-					if (stmt instanceof MySqlReplaceStatement || stmt instanceof SQLInsertStatement ) {
-						index = 0;
-					} else if (stmt instanceof SQLUpdateStatement ) {
-						index = 1;
-					} else if (stmt instanceof SQLSelectStatement ) {
-						index = 2;
-					} else if (stmt instanceof SQLDeleteStatement ) {
-						index = 3;
-					}
-
-					if ( index > -1) {
-						
-						SchemaStatVisitor schemaStatVisitor = new MycatSchemaStatVisitor();
-						stmt.accept(schemaStatVisitor);
-						String key = schemaStatVisitor.getCurrentTable();
-						if ( key != null ) {
-							
-							if (key.contains("`")) {
-								key = key.replaceAll("`", "");
-							}
-							
-							int dotIndex = key.indexOf(".");
-							if (dotIndex > 0) {
-								tableName = key.substring(dotIndex + 1);
-							} else {
-								tableName = key;
-							}							
-							
-							//获取table 权限, 此处不需要检测空值, 无设置则自动继承父级权限
-							UserPrivilegesConfig.TablePrivilege tablePrivilege = schemaPrivilege.getTablePrivilege( tableName );
-							if ( tablePrivilege.getDml()[index] > 0 ) {
-								isPassed = true;
-							}
-							
-						} else {
-							//skip
-							isPassed = true;
+					// 命中缓存时跳过 sql 解析，解析失败的 sql 不缓存
+					if ( cache.isEnabled() ) {
+						String cacheKey = cache.dmlKey(user, schema, sql);
+						DmlVerdict verdict = cache.getDml(cacheKey);
+						if ( verdict == null ) {
+							verdict = checkTablePrivilege(schemaPrivilege, sql);
+							cache.putDml(cacheKey, verdict, generation);
 						}
-						
-						
-					} else {						
-						//skip
-						isPassed = true;
+						isPassed = verdict.isPassed();
+					} else {
+						isPassed = checkTablePrivilege(schemaPrivilege, sql).isPassed();
 					}
 					
 				} else {					
@@ -341,6 +320,56 @@ public class MycatPrivileges implements FrontendPrivileges {
 		return isPassed;
 	}
 
+	/**
+	 * 解析 sql 得到操作类型及表名，按表的 DML 权限判断
+	 */
+	private DmlVerdict checkTablePrivilege(UserPrivilegesConfig.SchemaPrivilege schemaPrivilege, String sql) {
+		
+		String tableName = null;
+		int index = -1;
+		
+		//TODO 此处待优化，寻找更优SQL 解析器
+		SQLStatementParser parser = new MycatStatementParser(sql);			
+		SQLStatement stmt = parser.parseStatement();
+
+		if (stmt instanceof MySqlReplaceStatement || stmt instanceof SQLInsertStatement ) {
+			index = 0;
+		} else if (stmt instanceof SQLUpdateStatement ) {
+			index = 1;
+		} else if (stmt instanceof SQLSelectStatement ) {
+			index = 2;
+		} else if (stmt instanceof SQLDeleteStatement ) {
+			index = 3;
+		}
+
+		if ( index > -1) {
+			
+			SchemaStatVisitor schemaStatVisitor = new MycatSchemaStatVisitor();
+			stmt.accept(schemaStatVisitor);
+			String key = schemaStatVisitor.getCurrentTable();
+			if ( key != null ) {
+				
+				if (key.contains("`")) {
+					key = key.replaceAll("`", "");
+				}
+				
+				int dotIndex = key.indexOf(".");
+				if (dotIndex > 0) {
+					tableName = key.substring(dotIndex + 1);
+				} else {
+					tableName = key;
+				}							
+				
+				//获取table 权限, 此处不需要检测空值, 无设置则自动继承父级权限
+				UserPrivilegesConfig.TablePrivilege tablePrivilege = schemaPrivilege.getTablePrivilege( tableName );
+				return new DmlVerdict(tablePrivilege.getDml()[index] > 0, tableName);
+			}
+		}
+		
+		//skip
+		return new DmlVerdict(true, tableName);
+	}
+
 	@Override
 	public boolean checkDataNodeDmlPrivilege(String user, String dataNode, String sql) {
 		if (dataNode == null) {
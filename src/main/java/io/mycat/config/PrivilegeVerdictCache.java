@@ -0,0 +1,399 @@
+package io.mycat.config;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.mycat.MycatServer;
+
+/**
+ * 防火墙及 DML 权限检查结论的缓存，避免每条 sql 都在 reactor 线程上做 druid 解析。
+ *
+ * 防火墙结论按 用户 + sql 指纹 缓存，DML 权限结论按 用户 + schema + sql 指纹 缓存，
+ * 同时保存解析出的表名。重新加载配置(用户权限、防火墙规则)时全部清空。
+ *
+ * 检查前先取配置代次 {@link #getGeneration()}，写入时代次已变化说明结论可能基于旧配置，不再写入。
+ *
+ * 指纹只把不会影响 druid wall 判断的字面量替换为 ?：列与常量的比较、列 IN 列表、
+ * VALUES 元组及 LIMIT 中的常量，常量之间的比较(如 1 = 1)等保持原样，
+ * 因此同一指纹的 sql 检查结论一定相同。
+ *
+ * @author mycat
+ */
+public final class PrivilegeVerdictCache {
+
+	private static volatile PrivilegeVerdictCache instance;
+
+	// 配置代次，重新加载配置时递增，实例尚未创建时也要递增
+	private static final AtomicLong GENERATION = new AtomicLong();
+
+	// 同一条 sql 先后做防火墙和 DML 检查，记住上一次的指纹
+	private static final ThreadLocal<String[]> LAST_FINGERPRINT = new ThreadLocal<String[]>() {
+		@Override
+		protected String[] initialValue() {
+			return new String[2];
+		}
+	};
+
+	private final int maxSize;
+	private final Cache<String, FirewallVerdict> firewallCache;
+	private final Cache<String, DmlVerdict> dmlCache;
+
+	/**
+	 * 防火墙检查结论，拒绝时保存第一条违规信息
+	 */
+	public static final class FirewallVerdict {
+		private final boolean passed;
+		private final String message;
+
+		public FirewallVerdict(boolean passed, String message) {
+			this.passed = passed;
+			this.message = message;
+		}
+
+		public boolean isPassed() {
+			return passed;
+		}
+
+		public String getMessage() {
+			return message;
+		}
+	}
+
+	/**
+	 * DML 权限检查结论及解析出的表名，没有表时为 null
+	 */
+	public static final class DmlVerdict {
+		private final boolean passed;
+		private final String table;
+
+		public DmlVerdict(boolean passed, String table) {
+			this.passed = passed;
+			this.table = table;
+		}
+
+		public boolean isPassed() {
+			return passed;
+		}
+
+		public String getTable() {
+			return table;
+		}
+	}
+
+	PrivilegeVerdictCache(int maxSize) {
+		this.maxSize = maxSize;
+		if (maxSize > 0) {
+			firewallCache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+			dmlCache = CacheBuilder.newBuilder().maximumSize(maxSize).recordStats().build();
+		} else {
+			firewallCache = null;
+			dmlCache = null;
+		}
+	}
+
+	public static PrivilegeVerdictCache getInstance() {
+		if (instance == null) {
+			synchronized (PrivilegeVerdictCache.class) {
+				if (instance == null) {
+					instance = new PrivilegeVerdictCache(
+							MycatServer.getInstance().getConfig().getSystem().getPrivilegeCacheSize());
+				}
+			}
+		}
+		return instance;
+	}
+
+	public boolean isEnabled() {
+		return maxSize > 0;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	public String firewallKey(String user, String sql) {
+		return new StringBuilder().append(user).append('\0').append(lastFingerprint(sql)).toString();
+	}
+
+	public String dmlKey(String user, String schema, String sql) {
+		return new StringBuilder().append(user).append('\0').append(schema).append('\0')
+				.append(lastFingerprint(sql)).toString();
+	}
+
+	public FirewallVerdict getFirewall(String key) {
+		return firewallCache.getIfPresent(key);
+	}
+
+	/**
+	 * @param generation 读取配置、开始检查之前取得的代次
+	 */
+	public void putFirewall(String key, FirewallVerdict verdict, long generation) {
+		if (GENERATION.get() != generation) {
+			return;
+		}
+		firewallCache.put(key, verdict);
+		// 写入与清空并发时，写入晚于清空的结论在这里删除
+		if (GENERATION.get() != generation) {
+			firewallCache.invalidate(key);
+		}
+	}
+
+	public DmlVerdict getDml(String key) {
+		return dmlCache.getIfPresent(key);
+	}
+
+	/**
+	 * @param generation 读取配置、开始检查之前取得的代次
+	 */
+	public void putDml(String key, DmlVerdict verdict, long generation) {
+		if (GENERATION.get() != generation) {
+			return;
+		}
+		dmlCache.put(key, verdict);
+		if (GENERATION.get() != generation) {
+			dmlCache.invalidate(key);
+		}
+	}
+
+	public long getGeneration() {
+		return GENERATION.get();
+	}
+
+	public long getFirewallSize() {
+		return firewallCache == null ? 0 : firewallCache.size();
+	}
+
+	public long getDmlSize() {
+		return dmlCache == null ? 0 : dmlCache.size();
+	}
+
+	public CacheStats getFirewallStats() {
+		return firewallCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : firewallCache.stats();
+	}
+
+	public CacheStats getDmlStats() {
+		return dmlCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : dmlCache.stats();
+	}
+
+	/**
+	 * 用户权限或防火墙规则变化后调用
+	 */
+	public void clear() {
+		GENERATION.incrementAndGet();
+		if (firewallCache != null) {
+			firewallCache.invalidateAll();
+			dmlCache.invalidateAll();
+		}
+	}
+
+	/**
+	 * 配置重新加载后清空缓存，未使用过时不创建实例
+	 */
+	static void onConfigReload() {
+		GENERATION.incrementAndGet();
+		PrivilegeVerdictCache cache = instance;
+		if (cache != null) {
+			cache.clear();
+		}
+	}
+
+	private static String lastFingerprint(String sql) {
+		String[] last = LAST_FINGERPRINT.get();
+		if (last[0] != sql) {
+			last[1] = fingerprint(sql);
+			last[0] = sql;
+		}
+		return last[1];
+	}
+
+	private static final int NONE = 0;
+	private static final int IDENT = 1;
+	private static final int WORD = 2;
+	private static final int LITERAL = 3;
+	private static final int COMPARE = 4;
+	private static final int OPEN = 5;
+	private static final int COMMA = 6;
+	private static final int OTHER = 7;
+
+	/**
+	 * 计算 sql 指纹：连续空白合并为一个空格，注释原样保留，
+	 * 不影响防火墙判断位置上的字面量替换为 ?
+	 */
+	public static String fingerprint(String sql) {
+		int length = sql.length();
+		StringBuilder sb = new StringBuilder(length);
+		int prevType = NONE;
+		int prev2Type = NONE;
+		int depth = 0;
+		// VALUES 关键字所在深度，元组中的常量在其下一层
+		int valuesDepth = -1;
+		// 列 IN ( 列表所在深度
+		int inDepth = -1;
+		boolean inPending = false;
+		boolean limit = false;
+		boolean prevLimitWord = false;
+		boolean prevNot = false;
+		boolean identBeforeNot = false;
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			int start = i;
+			int type;
+			String word = null;
+			if (Character.isWhitespace(c)) {
+				while (i < length && Character.isWhitespace(sql.charAt(i))) {
+					i++;
+				}
+				sb.append(' ');
+				continue;
+			} else if (c == '/' && i + 1 < length && sql.charAt(i + 1) == '*') {
+				int end = sql.indexOf("*/", i + 2);
+				i = end < 0 ? length : end + 2;
+				sb.append(sql, start, i);
+				continue;
+			} else if (c == '#' || (c == '-' && i + 1 < length && sql.charAt(i + 1) == '-')) {
+				while (i < length && sql.charAt(i) != '\n') {
+					i++;
+				}
+				i = Math.min(length, i + 1);
+				sb.append(sql, start, i);
+				continue;
+			} else if (c == '\'' || c == '"') {
+				i = skipQuoted(sql, i, c);
+				type = LITERAL;
+			} else if (c == '`') {
+				i = skipQuoted(sql, i, c);
+				type = IDENT;
+			} else if (c >= '0' && c <= '9') {
+				while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.'
+						|| sql.charAt(i) == '_')) {
+					i++;
+				}
+				type = LITERAL;
+			} else if (isWordChar(c)) {
+				while (i < length && isWordChar(sql.charAt(i))) {
+					i++;
+				}
+				word = sql.substring(start, i);
+				type = isConstantWord(word) ? OTHER : IDENT;
+			} else if (c == '=' || c == '<' || c == '>' || (c == '!' && i + 1 < length && sql.charAt(i + 1) == '=')) {
+				i++;
+				while (i < length && (sql.charAt(i) == '=' || sql.charAt(i) == '>')) {
+					i++;
+				}
+				type = COMPARE;
+			} else if (c == '(') {
+				i++;
+				type = OPEN;
+			} else if (c == ',') {
+				i++;
+				type = COMMA;
+			} else {
+				i++;
+				type = OTHER;
+			}
+
+			boolean replace = false;
+			if (type == LITERAL) {
+				replace = (prevType == COMPARE && prev2Type == IDENT)
+						|| ((prevType == OPEN || prevType == COMMA)
+								&& ((valuesDepth >= 0 && depth == valuesDepth + 1) || depth == inDepth))
+						|| (limit && (prevLimitWord || prevType == COMMA));
+			} else if (type == OPEN) {
+				depth++;
+				if (inPending) {
+					inDepth = depth;
+				}
+			} else if (c == ')') {
+				if (depth == inDepth) {
+					inDepth = -1;
+				}
+				depth--;
+			}
+
+			// 维护 IN / VALUES / LIMIT 状态
+			boolean limitWord = false;
+			if (word != null) {
+				boolean identBefore = prevType == IDENT && !prevNot;
+				if (word.equalsIgnoreCase("in")) {
+					inPending = identBefore || (prevNot && identBeforeNot);
+				} else {
+					inPending = false;
+				}
+				if (word.equalsIgnoreCase("values") || word.equalsIgnoreCase("value")) {
+					valuesDepth = depth;
+				} else if (depth == valuesDepth || word.equalsIgnoreCase("select")) {
+					valuesDepth = -1;
+					inDepth = word.equalsIgnoreCase("select") && depth == inDepth ? -1 : inDepth;
+				}
+				limitWord = word.equalsIgnoreCase("limit") || (limit && word.equalsIgnoreCase("offset"));
+				limit = limitWord;
+				identBeforeNot = word.equalsIgnoreCase("not") && prevType == IDENT && !prevNot;
+				prevNot = word.equalsIgnoreCase("not");
+				// 关键字不能作为比较的左边
+				if (isKeyword(word)) {
+					type = WORD;
+				}
+			} else {
+				if (type != OPEN) {
+					inPending = false;
+				}
+				if (type != LITERAL && type != COMMA) {
+					limit = false;
+				}
+				prevNot = false;
+			}
+			prevLimitWord = limitWord;
+
+			if (replace) {
+				sb.append('?');
+			} else {
+				sb.append(sql, start, i);
+			}
+			prev2Type = prevType;
+			prevType = type;
+		}
+		return sb.toString();
+	}
+
+	private static int skipQuoted(String sql, int i, char quote) {
+		int length = sql.length();
+		i++;
+		while (i < length) {
+			char c = sql.charAt(i++);
+			if (c == '\\' && quote != '`') {
+				i++;
+			} else if (c == quote) {
+				if (i < length && sql.charAt(i) == quote) {
+					i++;
+				} else {
+					break;
+				}
+			}
+		}
+		return Math.min(i, length);
+	}
+
+	private static boolean isWordChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '$' || c == '@' || c == '.';
+	}
+
+	/**
+	 * 值固定的关键字，与常量比较时可能恒真或恒假
+	 */
+	private static boolean isConstantWord(String word) {
+		return word.equalsIgnoreCase("null") || word.equalsIgnoreCase("true") || word.equalsIgnoreCase("false")
+				|| word.equalsIgnoreCase("unknown");
+	}
+
+	private static boolean isKeyword(String word) {
+		return word.equalsIgnoreCase("in") || word.equalsIgnoreCase("not") || word.equalsIgnoreCase("values")
+				|| word.equalsIgnoreCase("value") || word.equalsIgnoreCase("limit") || word.equalsIgnoreCase("offset")
+				|| word.equalsIgnoreCase("select") || word.equalsIgnoreCase("where") || word.equalsIgnoreCase("and")
+				|| word.equalsIgnoreCase("or") || word.equalsIgnoreCase("set") || word.equalsIgnoreCase("on")
+				|| word.equalsIgnoreCase("when") || word.equalsIgnoreCase("having");
+	}
+}
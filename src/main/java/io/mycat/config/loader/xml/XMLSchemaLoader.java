@@ -325,6 +325,11 @@ public class XMLSchemaLoader implements SchemaLoader {
             if (tableElement.hasAttribute("needAddLimit")) {
                 needAddLimit = Boolean.parseBoolean(tableElement.getAttribute("needAddLimit"));
             }
+            //记录是否缓存查询结果，默认不缓存
+            boolean resultCache = false;
+            if (tableElement.hasAttribute("resultCache")) {
+                resultCache = Boolean.parseBoolean(tableElement.getAttribute("resultCache"));
+            }
             //记录type，是否为global
             String tableTypeStr = tableElement.hasAttribute("type") ? tableElement.getAttribute("type") : null;
             int tableType = TableConfig.TYPE_GLOBAL_DEFAULT;
@@ -384,6 +389,7 @@ public class XMLSchemaLoader implements SchemaLoader {
                         getDbType(dataNode),
                         (tableRuleConfig != null) ? tableRuleConfig.getRule() : null,
                         ruleRequired, null, false, null, null, subTables);
+                table.setResultCache(resultCache);
                 //因为需要等待TableConfig构造完毕才可以拿到dataNode节点数量,所以Rule构造延后到此处 @cjw
                 if ((tableRuleConfig != null) && (tableRuleConfig.getRule().getRuleAlgorithm() instanceof TableRuleAware)) {
                     AbstractPartitionAlgorithm newRuleAlgorithm = tableRuleConfig.getRule().getRuleAlgorithm();
@@ -767,6 +773,7 @@ public class XMLSchemaLoader implements SchemaLoader {
             String logTimeStr = element.getAttribute("logTime");
             String slaveIDs = element.getAttribute("slaveIDs");
             String maxRetryCountStr = element.getAttribute("maxRetryCount");
+            boolean compress = Boolean.parseBoolean(element.getAttribute("compress"));
             int maxRetryCount;
             if (StringUtil.isEmpty(maxRetryCountStr)) {
                 maxRetryCount = 3;
@@ -832,6 +839,7 @@ public class XMLSchemaLoader implements SchemaLoader {
             hostConf.setSlaveIDs(slaveIDs);
 			hostConf.setNotSwitch(notSwitch);
             hostConf.setMaxRetryCount(maxRetryCount);
+            hostConf.setCompress(compress);
             dataHosts.put(hostConf.getName(), hostConf);
         }
     }
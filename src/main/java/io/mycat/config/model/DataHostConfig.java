@@ -66,6 +66,8 @@ public class DataHostConfig {
 	private final Set<String> dataNodes; //包含的所有dataNode名字
 	private String slaveIDs;
 	private int maxRetryCount = 3; // 心跳失败时候重试的次数. @auth zwy
+	// 后端连接是否申请 mysql 压缩协议，跨机房的 dataHost 可以打开
+	private boolean compress;
 	public static final String FOVER_NOT_SWITCH_DS = "1";
 	public static final String CAN_SWITCH_DS = "0";
 
@@ -246,5 +248,13 @@ public class DataHostConfig {
 	public void setNotSwitch(String notSwitch) {
 		this.notSwitch = notSwitch;
 	}
+
+	public boolean isCompress() {
+		return compress;
+	}
+
+	public void setCompress(boolean compress) {
+		this.compress = compress;
+	}
 	
 }
\ No newline at end of file
@@ -89,6 +89,45 @@ public final class SystemConfig {
 	// sql execute timeout (second)
 	private long sqlExecuteTimeout = 300;
 	private long processorCheckPeriod;
+	// 1: 连接的空闲、SQL执行超时检查使用时间轮，0: 按 processorCheckPeriod 全量扫描连接
+	private int useTimingWheel = 1;
+	private long timingWheelTickMillis = 100;
+	// 每个 JDBC 数据源独立的执行线程数及等待队列长度，不再占用 BusinessExecutor
+	private int jdbcExecutorThreads = 8;
+	private int jdbcExecutorQueueSize = 256;
+	// JDBC 查询的 fetchSize，0 表示使用驱动的默认值
+	private int jdbcFetchSize = 1000;
+	// 前端写队列中的 buffer 超过此数量时暂停从 JDBC 结果集拉取数据
+	private int jdbcWriteQueueHighWater = 64;
+	// 收缩空闲连接时，按各会话状态(字符集、隔离级别、autocommit)的请求比例保留的空闲连接百分比
+	private int backendStateReservePercent = 50;
+	// 1 表示跨分片 limit 查询的结果已经足够时，用 KILL QUERY 取消其余分片上还在执行的查询，
+	// 每次取消都要从同一数据源借一个连接发送 kill，默认关闭
+	private int cancelShardsOnLimit = 0;
+	// 迁移时全量拷贝的并行线程数，0 表示仍使用 mysqldump
+	private int migrateCopyThreads = 4;
+	// 迁移全量拷贝时每个 insert 语句的行数
+	private int migrateCopyBatchSize = 1000;
+	// 迁移增量阶段并行回放 binlog 的线程数
+	private int migrateApplyThreads = 4;
+	// 回放线程每次最多取出合并执行的事件数
+	private int migrateApplyBatchSize = 500;
+	// sql 分阶段耗时采样，每 N 条 sql 随机采样一条，0 表示关闭
+	private int sqlTraceSampleRate = 0;
+	// 保留的最近采样记录条数，通过 show @@sql.trace 查看
+	private int sqlTraceBufferSize = 1024;
+	// 查询结果缓存，1 开启后对配置了 resultCache 的表或带 cache 注解的 select 生效
+	private int useResultCache = 0;
+	// 结果缓存默认过期时间(秒)
+	private int resultCacheExpire = 60;
+	// 结果缓存使用的堆外内存上限，超过后写入 dataNodeSortedTempDir 下的文件并 mmap
+	private long resultCacheMemorySize = 64 * 1024 * 1024;
+	// 结果缓存 mmap 文件的总大小上限，超过后淘汰最久未访问的文件缓存
+	private long resultCacheMappedSize = 1024L * 1024 * 1024;
+	// 单个结果集超过此大小(字节)时不缓存
+	private int resultCacheMaxResultSize = 1024 * 1024;
+	// 防火墙及 DML 权限检查结论的缓存条数，0 表示不缓存
+	private int privilegeCacheSize = 10000;
 	private long dataNodeIdleCheckPeriod;
 	private long dataNodeHeartbeatPeriod;
 	private String clusterHeartbeatUser;
@@ -136,6 +175,18 @@ public final class SystemConfig {
 
 	private int sequnceMySqlRetryCount = DEFAULT_SEQUNCE_MYSQL_RETRY_COUT;
 	private long sequnceMySqlWaitTime = DEFAULT_SEQUNCE_MYSQL_WATI_TIME;
+	// 本地文件方式每次刷盘预留的 id 个数，宕机后最多跳过这么多 id
+	private int sequnceLocalLeaseSize = 10000;
+	// PostgreSQL 后端每个连接缓存的命名语句个数，0 表示不缓存
+	private int pgStatementCacheSize = 256;
+	// 服务端口的 accept 线程数(nio)，共用一个监听端口
+	private int acceptorCount = 1;
+	// 监听端口的 accept 队列长度，实际值不超过系统的 somaxconn
+	private int acceptBacklog = 2048;
+	// 跨分片 merge 时 row 交接环的槽位数(2 的 n 次方)
+	private int mergeRingBufferSize = 1024;
+	// merge 线程等待 row 的方式：0 自旋后 park，1 阻塞，2 忙等
+	private int mergeWaitStrategy = 0;
 	
 	
 	
@@ -184,6 +235,17 @@ public final class SystemConfig {
 	
 	private long glableTableCheckPeriod;
 
+	// 定时任务中是否执行全局表分段校验和检查(会扫描全表)，1-启用，0-不启用，默认不启用
+	private int useGlobalTableChecksumCheck = 0;
+	// 全局表分段校验和检查：每次把主键区间切分的桶数
+	private int globalTableCheckFanout = 16;
+	// 不一致区间细分到该宽度(主键个数)以内即停止细分
+	private long globalTableCheckLeafSize = 1000;
+	// 两轮范围校验查询之间的休眠时间(毫秒)，用于限制检查IO
+	private long globalTableCheckThrottle = 20;
+	// 单表最多报告的不一致区间数量
+	private int globalTableCheckMaxRanges = 100;
+
 	// 如果为true的话 严格遵守隔离级别,不会在仅仅只有select语句的时候在事务中切换连接
 	private boolean strictTxIsolation = false;
 	/**
@@ -207,6 +269,11 @@ public final class SystemConfig {
 	 */
 	private String spillsFileBufferSize;
 
+	/**
+	 * 落盘文件的压缩算法：lz(默认，速度优先)、deflate(压缩率优先)、none(不压缩)
+	 */
+	private String spillsCompressCodec;
+
 	/**
 	 * 启用结果集流输出，不经过merge模块,
 	 */
@@ -289,6 +356,7 @@ public final class SystemConfig {
 		this.useOffHeapForMerge = 1;
 		this.memoryPageSize = MEMORY_PAGE_SIZE;
 		this.spillsFileBufferSize = SPILLS_FILE_BUFFER_SIZE;
+		this.spillsCompressCodec = "lz";
 		this.useStreamOutput = 0;
 		this.systemReserveMemorySize = RESERVED_SYSTEM_MEMORY_BYTES;
 		this.dataNodeSortedTempDir = System.getProperty("user.dir");
@@ -300,6 +368,10 @@ public final class SystemConfig {
 		return dataNodeSortedTempDir;
 	}
 
+	public void setDataNodeSortedTempDir(String dataNodeSortedTempDir) {
+		this.dataNodeSortedTempDir = dataNodeSortedTempDir;
+	}
+
 	public int getUseOffHeapForMerge() {
 		return useOffHeapForMerge;
 	}
@@ -324,6 +396,14 @@ public final class SystemConfig {
 		this.spillsFileBufferSize = spillsFileBufferSize;
 	}
 
+	public String getSpillsCompressCodec() {
+		return spillsCompressCodec;
+	}
+
+	public void setSpillsCompressCodec(String spillsCompressCodec) {
+		this.spillsCompressCodec = spillsCompressCodec;
+	}
+
 	public int getUseStreamOutput() {
 		return useStreamOutput;
 	}
@@ -380,6 +460,46 @@ public final class SystemConfig {
 		this.glableTableCheckPeriod = glableTableCheckPeriod;
 	}
 
+	public int getUseGlobalTableChecksumCheck() {
+		return useGlobalTableChecksumCheck;
+	}
+
+	public void setUseGlobalTableChecksumCheck(int useGlobalTableChecksumCheck) {
+		this.useGlobalTableChecksumCheck = useGlobalTableChecksumCheck;
+	}
+
+	public int getGlobalTableCheckFanout() {
+		return globalTableCheckFanout;
+	}
+
+	public void setGlobalTableCheckFanout(int globalTableCheckFanout) {
+		this.globalTableCheckFanout = globalTableCheckFanout;
+	}
+
+	public long getGlobalTableCheckLeafSize() {
+		return globalTableCheckLeafSize;
+	}
+
+	public void setGlobalTableCheckLeafSize(long globalTableCheckLeafSize) {
+		this.globalTableCheckLeafSize = globalTableCheckLeafSize;
+	}
+
+	public long getGlobalTableCheckThrottle() {
+		return globalTableCheckThrottle;
+	}
+
+	public void setGlobalTableCheckThrottle(long globalTableCheckThrottle) {
+		this.globalTableCheckThrottle = globalTableCheckThrottle;
+	}
+
+	public int getGlobalTableCheckMaxRanges() {
+		return globalTableCheckMaxRanges;
+	}
+
+	public void setGlobalTableCheckMaxRanges(int globalTableCheckMaxRanges) {
+		this.globalTableCheckMaxRanges = globalTableCheckMaxRanges;
+	}
+
 	public String getSqlInterceptor() {
 		return sqlInterceptor;
 	}
@@ -579,6 +699,166 @@ public final class SystemConfig {
 		this.processorCheckPeriod = processorCheckPeriod;
 	}
 
+	public int getUseTimingWheel() {
+		return useTimingWheel;
+	}
+
+	public void setUseTimingWheel(int useTimingWheel) {
+		this.useTimingWheel = useTimingWheel;
+	}
+
+	public long getTimingWheelTickMillis() {
+		return timingWheelTickMillis;
+	}
+
+	public void setTimingWheelTickMillis(long timingWheelTickMillis) {
+		this.timingWheelTickMillis = timingWheelTickMillis;
+	}
+
+	public int getJdbcExecutorThreads() {
+		return jdbcExecutorThreads;
+	}
+
+	public void setJdbcExecutorThreads(int jdbcExecutorThreads) {
+		this.jdbcExecutorThreads = jdbcExecutorThreads;
+	}
+
+	public int getJdbcExecutorQueueSize() {
+		return jdbcExecutorQueueSize;
+	}
+
+	public void setJdbcExecutorQueueSize(int jdbcExecutorQueueSize) {
+		this.jdbcExecutorQueueSize = jdbcExecutorQueueSize;
+	}
+
+	public int getJdbcFetchSize() {
+		return jdbcFetchSize;
+	}
+
+	public void setJdbcFetchSize(int jdbcFetchSize) {
+		this.jdbcFetchSize = jdbcFetchSize;
+	}
+
+	public int getJdbcWriteQueueHighWater() {
+		return jdbcWriteQueueHighWater;
+	}
+
+	public void setJdbcWriteQueueHighWater(int jdbcWriteQueueHighWater) {
+		this.jdbcWriteQueueHighWater = jdbcWriteQueueHighWater;
+	}
+
+	public int getBackendStateReservePercent() {
+		return backendStateReservePercent;
+	}
+
+	public void setBackendStateReservePercent(int backendStateReservePercent) {
+		this.backendStateReservePercent = backendStateReservePercent;
+	}
+
+	public int getCancelShardsOnLimit() {
+		return cancelShardsOnLimit;
+	}
+
+	public void setCancelShardsOnLimit(int cancelShardsOnLimit) {
+		this.cancelShardsOnLimit = cancelShardsOnLimit;
+	}
+
+	public int getMigrateCopyThreads() {
+		return migrateCopyThreads;
+	}
+
+	public void setMigrateCopyThreads(int migrateCopyThreads) {
+		this.migrateCopyThreads = migrateCopyThreads;
+	}
+
+	public int getMigrateCopyBatchSize() {
+		return migrateCopyBatchSize;
+	}
+
+	public void setMigrateCopyBatchSize(int migrateCopyBatchSize) {
+		this.migrateCopyBatchSize = migrateCopyBatchSize;
+	}
+
+	public int getMigrateApplyThreads() {
+		return migrateApplyThreads;
+	}
+
+	public void setMigrateApplyThreads(int migrateApplyThreads) {
+		this.migrateApplyThreads = migrateApplyThreads;
+	}
+
+	public int getMigrateApplyBatchSize() {
+		return migrateApplyBatchSize;
+	}
+
+	public void setMigrateApplyBatchSize(int migrateApplyBatchSize) {
+		this.migrateApplyBatchSize = migrateApplyBatchSize;
+	}
+
+	public int getSqlTraceSampleRate() {
+		return sqlTraceSampleRate;
+	}
+
+	public void setSqlTraceSampleRate(int sqlTraceSampleRate) {
+		this.sqlTraceSampleRate = sqlTraceSampleRate;
+	}
+
+	public int getSqlTraceBufferSize() {
+		return sqlTraceBufferSize;
+	}
+
+	public void setSqlTraceBufferSize(int sqlTraceBufferSize) {
+		this.sqlTraceBufferSize = sqlTraceBufferSize;
+	}
+
+	public int getUseResultCache() {
+		return useResultCache;
+	}
+
+	public void setUseResultCache(int useResultCache) {
+		this.useResultCache = useResultCache;
+	}
+
+	public int getResultCacheExpire() {
+		return resultCacheExpire;
+	}
+
+	public void setResultCacheExpire(int resultCacheExpire) {
+		this.resultCacheExpire = resultCacheExpire;
+	}
+
+	public long getResultCacheMemorySize() {
+		return resultCacheMemorySize;
+	}
+
+	public void setResultCacheMemorySize(long resultCacheMemorySize) {
+		this.resultCacheMemorySize = resultCacheMemorySize;
+	}
+
+	public long getResultCacheMappedSize() {
+		return resultCacheMappedSize;
+	}
+
+	public void setResultCacheMappedSize(long resultCacheMappedSize) {
+		this.resultCacheMappedSize = resultCacheMappedSize;
+	}
+
+	public int getResultCacheMaxResultSize() {
+		return resultCacheMaxResultSize;
+	}
+
+	public void setResultCacheMaxResultSize(int resultCacheMaxResultSize) {
+		this.resultCacheMaxResultSize = resultCacheMaxResultSize;
+	}
+
+	public int getPrivilegeCacheSize() {
+		return privilegeCacheSize;
+	}
+
+	public void setPrivilegeCacheSize(int privilegeCacheSize) {
+		this.privilegeCacheSize = privilegeCacheSize;
+	}
+
 	public long getDataNodeIdleCheckPeriod() {
 		return dataNodeIdleCheckPeriod;
 	}
@@ -991,4 +1271,52 @@ public final class SystemConfig {
 	public void setSequnceMySqlWaitTime(long sequnceMySqlWaitTime) {
 		this.sequnceMySqlWaitTime = sequnceMySqlWaitTime;
 	}
+
+	public int getSequnceLocalLeaseSize() {
+		return sequnceLocalLeaseSize;
+	}
+
+	public void setSequnceLocalLeaseSize(int sequnceLocalLeaseSize) {
+		this.sequnceLocalLeaseSize = sequnceLocalLeaseSize;
+	}
+
+	public int getPgStatementCacheSize() {
+		return pgStatementCacheSize;
+	}
+
+	public void setPgStatementCacheSize(int pgStatementCacheSize) {
+		this.pgStatementCacheSize = pgStatementCacheSize;
+	}
+
+	public int getAcceptorCount() {
+		return acceptorCount;
+	}
+
+	public void setAcceptorCount(int acceptorCount) {
+		this.acceptorCount = acceptorCount;
+	}
+
+	public int getAcceptBacklog() {
+		return acceptBacklog;
+	}
+
+	public void setAcceptBacklog(int acceptBacklog) {
+		this.acceptBacklog = acceptBacklog;
+	}
+
+	public int getMergeRingBufferSize() {
+		return mergeRingBufferSize;
+	}
+
+	public void setMergeRingBufferSize(int mergeRingBufferSize) {
+		this.mergeRingBufferSize = mergeRingBufferSize;
+	}
+
+	public int getMergeWaitStrategy() {
+		return mergeWaitStrategy;
+	}
+
+	public void setMergeWaitStrategy(int mergeWaitStrategy) {
+		this.mergeWaitStrategy = mergeWaitStrategy;
+	}
 }
@@ -56,6 +56,8 @@ public class TableConfig {
     private final boolean secondLevel;
     private final boolean partionKeyIsPrimaryKey;
     private final Random rand = new Random();
+    // 是否缓存该表的查询结果
+    private boolean resultCache;
 
     private volatile List<SQLTableElement> tableElementList;
     private volatile String tableStructureSQL;
@@ -136,6 +138,14 @@ public class TableConfig {
         return needAddLimit;
     }
 
+    public boolean isResultCache() {
+        return resultCache;
+    }
+
+    public void setResultCache(boolean resultCache) {
+        this.resultCache = resultCache;
+    }
+
     public boolean isSecondLevel() {
         return secondLevel;
     }
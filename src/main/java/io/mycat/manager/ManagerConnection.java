@@ -27,7 +27,6 @@ import java.io.IOException;
 import java.nio.channels.NetworkChannel;
 
 import io.mycat.net.FrontendConnection;
-import io.mycat.util.TimeUtil;
 
 /**
  * @author mycat
@@ -40,12 +39,11 @@ public class ManagerConnection extends FrontendConnection {
 	}
 
 	@Override
-	public boolean isIdleTimeout() {
+	public long getIdleDeadline() {
 		if (isAuthenticated) {
-			return super.isIdleTimeout();
+			return super.getIdleDeadline();
 		} else {
-			return TimeUtil.currentTimeMillis() > Math.max(lastWriteTime,
-					lastReadTime) + AUTH_TIMEOUT;
+			return Math.max(lastWriteTime, lastReadTime) + AUTH_TIMEOUT;
 		}
 	}
 
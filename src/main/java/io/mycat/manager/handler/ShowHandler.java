@@ -26,6 +26,7 @@ package io.mycat.manager.handler;
 import io.mycat.config.ErrorCode;
 import io.mycat.manager.ManagerConnection;
 import io.mycat.manager.response.CheckGlobalTable;
+import io.mycat.manager.response.ShowAcceptor;
 import io.mycat.manager.response.ShowBackend;
 import io.mycat.manager.response.ShowBackendOld;
 import io.mycat.manager.response.ShowCollation;
@@ -36,13 +37,17 @@ import io.mycat.manager.response.ShowDataNode;
 import io.mycat.manager.response.ShowDataSource;
 import io.mycat.manager.response.ShowDatabase;
 import io.mycat.manager.response.ShowDatasourceCluster;
+import io.mycat.manager.response.ShowDatasourceCompress;
+import io.mycat.manager.response.ShowDatasourcePrepared;
 import io.mycat.manager.response.ShowDatasourceSyn;
 import io.mycat.manager.response.ShowDatasourceSynDetail;
 import io.mycat.manager.response.ShowHeartbeat;
 import io.mycat.manager.response.ShowHeartbeatDetail;
 import io.mycat.manager.response.ShowHelp;
 import io.mycat.manager.response.ShowParser;
+import io.mycat.manager.response.ShowPrivilegeCache;
 import io.mycat.manager.response.ShowProcessor;
+import io.mycat.manager.response.ShowResultCache;
 import io.mycat.manager.response.ShowRouter;
 import io.mycat.manager.response.ShowSQL;
 import io.mycat.manager.response.ShowSQLCondition;
@@ -56,6 +61,8 @@ import io.mycat.manager.response.ShowSQLSumUser;
 import io.mycat.manager.response.ShowServer;
 import io.mycat.manager.response.ShowSession;
 import io.mycat.manager.response.ShowSqlResultSet;
+import io.mycat.manager.response.ShowSpill;
+import io.mycat.manager.response.ShowSqlTrace;
 import io.mycat.manager.response.ShowSysLog;
 import io.mycat.manager.response.ShowSysParam;
 import io.mycat.manager.response.ShowThreadPool;
@@ -96,6 +103,12 @@ public final class ShowHandler {
 		case ManagerParseShow.BACKEND:
 			ShowBackend.execute(c);
 			break;
+		case ManagerParseShow.ACCEPTOR:
+			ShowAcceptor.execute(c);
+			break;
+		case ManagerParseShow.SPILL:
+			ShowSpill.execute(c);
+			break;
 		case ManagerParseShow.BACKEND_OLD:
 			ShowBackendOld.execute(c);
 			break;
@@ -181,6 +194,13 @@ public final class ShowHandler {
 		case ManagerParseShow.SQL_RESULTSET:
 			ShowSqlResultSet.execute(c);
 			break;	
+		case ManagerParseShow.SQL_TRACE:
+			boolean isClearTrace = Boolean.valueOf( stmt.substring(rs >>> 8).trim() );
+			ShowSqlTrace.execute(c, isClearTrace);
+			break;
+		case ManagerParseShow.SQL_TRACE_STAGE:
+			ShowSqlTrace.executeStage(c);
+			break;
 		case ManagerParseShow.SQL_SUM_USER:
 			boolean isClearSum = Boolean.valueOf( stmt.substring(rs >>> 8).trim() );
 			ShowSQLSumUser.execute(c,isClearSum);
@@ -215,6 +235,12 @@ public final class ShowHandler {
 		case ManagerParseShow.CACHE:
 			ShowCache.execute(c);
 			break;
+		case ManagerParseShow.CACHE_RESULT:
+			ShowResultCache.execute(c);
+			break;
+		case ManagerParseShow.CACHE_PRIVILEGE:
+			ShowPrivilegeCache.execute(c);
+			break;
 		case ManagerParseShow.SESSION:
 			ShowSession.execute(c);
 			break;
@@ -242,6 +268,12 @@ public final class ShowHandler {
 		case ManagerParseShow.DATASOURCE_CLUSTER://by songwie
 			ShowDatasourceCluster.response(c,stmt);
 			break;	
+		case ManagerParseShow.DATASOURCE_COMPRESS:
+			ShowDatasourceCompress.execute(c);
+			break;
+		case ManagerParseShow.DATASOURCE_PREPARED:
+			ShowDatasourcePrepared.execute(c);
+			break;
 		case ManagerParseShow.DIRECTMEMORY_DETAILl:
 			ShowDirectMemory.execute(c,2);
 			break;
@@ -33,6 +33,8 @@ import com.google.common.base.Splitter;
 
 import io.mycat.MycatServer;
 import io.mycat.backend.heartbeat.ConsistenCollectHandler;
+import io.mycat.backend.heartbeat.GlobalTableChecksumChecker;
+import io.mycat.backend.heartbeat.GlobalTableChecksumResult;
 import io.mycat.backend.mysql.PacketUtil;
 import io.mycat.config.ErrorCode;
 import io.mycat.config.Fields;
@@ -44,6 +46,7 @@ import io.mycat.net.mysql.EOFPacket;
 import io.mycat.net.mysql.FieldPacket;
 import io.mycat.net.mysql.ResultSetHeaderPacket;
 import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.server.interceptor.impl.GlobalTableUtil;
 import io.mycat.util.LongUtil;
 import io.mycat.util.StringUtil;
 
@@ -71,12 +74,43 @@ public final class CheckGlobalTable {
         fields[i] = PacketUtil.getField("TABLENAME", Fields.FIELD_TYPE_VARCHAR);
         fields[i++].packetId = ++packetId;
         
-        fields[i] = PacketUtil.getField("RESTULT", Fields.FIELD_TYPE_VARCHAR);
+        fields[i] = PacketUtil.getField("RESULT", Fields.FIELD_TYPE_VARCHAR);
         fields[i++].packetId = ++packetId;
                 
         eof.packetId = ++packetId;
     }
-    
+
+    private static final int CHECKSUM_FIELD_COUNT = 6;
+    private static final ResultSetHeaderPacket checksumHeader = PacketUtil.getHeader(CHECKSUM_FIELD_COUNT);
+    private static final FieldPacket[] checksumFields = new FieldPacket[CHECKSUM_FIELD_COUNT];
+    private static final EOFPacket checksumEof = new EOFPacket();
+
+    static {
+        int i = 0;
+        byte packetId = 0;
+        checksumHeader.packetId = ++packetId;
+
+        checksumFields[i] = PacketUtil.getField("ID", Fields.FIELD_TYPE_LONGLONG);
+        checksumFields[i++].packetId = ++packetId;
+
+        checksumFields[i] = PacketUtil.getField("TABLENAME", Fields.FIELD_TYPE_VARCHAR);
+        checksumFields[i++].packetId = ++packetId;
+
+        checksumFields[i] = PacketUtil.getField("RESULT", Fields.FIELD_TYPE_VARCHAR);
+        checksumFields[i++].packetId = ++packetId;
+
+        checksumFields[i] = PacketUtil.getField("LOW_KEY", Fields.FIELD_TYPE_LONGLONG);
+        checksumFields[i++].packetId = ++packetId;
+
+        checksumFields[i] = PacketUtil.getField("HIGH_KEY", Fields.FIELD_TYPE_LONGLONG);
+        checksumFields[i++].packetId = ++packetId;
+
+        checksumFields[i] = PacketUtil.getField("DETAIL", Fields.FIELD_TYPE_VARCHAR);
+        checksumFields[i++].packetId = ++packetId;
+
+        checksumEof.packetId = ++packetId;
+    }
+
     private static Map<String, String> parse(String sql) {
         Map<String, String> map = new HashMap<>();
         List<String> rtn = Splitter.on(CharMatcher.whitespace()).omitEmptyStrings().splitToList(sql);
@@ -119,6 +153,7 @@ public final class CheckGlobalTable {
     		if(schemaConfig == null){
         		c.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR,
         				"schemaName is null, please add paramster  -schema=schemaname ");
+        		return;
 
     		}
     	} 
@@ -129,6 +164,15 @@ public final class CheckGlobalTable {
     		 table = schemaConfig.getTables().get(tableName.toUpperCase());
 
     	}
+    	if(table == null) {
+    		c.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, "table " + tableName + " not found in schema " + schemaName);
+    		return;
+    	}
+    	// -mode=checksum 分段校验和检查，不需要 retry 和 interval 参数
+    	if("checksum".equalsIgnoreCase(paramster.get("mode"))) {
+    		checksum(c, table);
+    		return;
+    	}
     	if(StringUtil.isEmpty(retryTimeStr)) {
     		c.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, "retryTime is null, please add paramster  -retry= ");
     		return;
@@ -156,6 +200,73 @@ public final class CheckGlobalTable {
     	//c.writeErrMessage(ErrorCode.ER_BAD_TABLE_ERROR, "XXX");
     }
 
+    private static void checksum(final ManagerConnection c, final TableConfig table) {
+    	if(!table.isGlobalTable()) {
+    		c.writeErrMessage(ErrorCode.ER_UNKNOWN_ERROR, table.getName() + " is not a global table");
+    		return;
+    	}
+    	// 检查可能持续较长时间，放到单独的校验和线程中执行，完成后再写回结果
+    	GlobalTableUtil.executeChecksum(new Runnable() {
+			@Override
+			public void run() {
+				GlobalTableChecksumResult result = GlobalTableChecksumChecker.create(table).check();
+				GlobalTableUtil.getChecksumResults().put(table.getName().toUpperCase(), result);
+				if(!result.isSuccess()) {
+					c.writeErrMessage(ErrorCode.ERR_HANDLE_DATA, result.getErrMsg());
+				} else {
+					responseChecksum(c, result);
+				}
+			}
+		});
+    }
+
+    /**
+     * 第一行为汇总信息，之后每行为一个不一致的主键区间
+     */
+    public static void responseChecksum(ManagerConnection c, GlobalTableChecksumResult result) {
+    	ByteBuffer buffer = c.allocate();
+    	buffer = checksumHeader.write(buffer, c, true);
+    	for (FieldPacket field : checksumFields) {
+    		buffer = field.write(buffer, c, true);
+    	}
+    	buffer = checksumEof.write(buffer, c, true);
+
+    	String charset = c.getCharset();
+    	byte packetId = checksumEof.packetId;
+    	int id = 0;
+    	RowDataPacket row = new RowDataPacket(CHECKSUM_FIELD_COUNT);
+    	row.add(LongUtil.toBytes(++id));
+    	row.add(StringUtil.encode(result.getTableName(), charset));
+    	row.add(StringUtil.encode(result.isConsistent() ? "Yes" : "No", charset));
+    	row.add(result.getMinKey() == null ? null : LongUtil.toBytes(result.getMinKey()));
+    	row.add(result.getMaxKey() == null ? null : LongUtil.toBytes(result.getMaxKey()));
+    	row.add(StringUtil.encode("rangeQueries=" + result.getRangeQueries()
+    			+ ", buckets=" + result.getBucketsCompared()
+    			+ ", bucketRows=" + result.getBucketRowsRead()
+    			+ ", divergentRanges=" + result.getDivergentRanges().size()
+    			+ (result.isTruncated() ? "(truncated)" : "")
+    			+ ", time=" + result.getElapsedMillis() + "ms", charset));
+    	row.packetId = ++packetId;
+    	buffer = row.write(buffer, c, true);
+
+    	for (GlobalTableChecksumResult.DivergentRange range : result.getDivergentRanges()) {
+    		row = new RowDataPacket(CHECKSUM_FIELD_COUNT);
+    		row.add(LongUtil.toBytes(++id));
+    		row.add(StringUtil.encode(result.getTableName(), charset));
+    		row.add(StringUtil.encode("Divergent", charset));
+    		row.add(LongUtil.toBytes(range.getLowKey()));
+    		row.add(LongUtil.toBytes(range.getHighKey()));
+    		row.add(StringUtil.encode(range.getNodeChecksums().toString(), charset));
+    		row.packetId = ++packetId;
+    		buffer = row.write(buffer, c, true);
+    	}
+
+    	EOFPacket lastEof = new EOFPacket();
+    	lastEof.packetId = ++packetId;
+    	buffer = lastEof.write(buffer, c, true);
+    	c.write(buffer);
+    }
+
 	private static RowDataPacket getRow(int i, String tableName, String result,String charset) {
 		RowDataPacket row = new RowDataPacket(FIELD_COUNT);
 		row.add(LongUtil.toBytes(i));
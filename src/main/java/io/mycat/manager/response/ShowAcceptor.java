@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013, OpenCloudDB/MyCAT and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software;Designed and Developed mainly by many Chinese 
+ * opensource volunteers. you can redistribute it and/or modify it under the 
+ * terms of the GNU General Public License version 2 only, as published by the
+ * Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Any questions about this component can be directed to it's project Web address 
+ * https://code.google.com/p/opencloudb/.
+ *
+ */
+package io.mycat.manager.response;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteBuffer;
+
+import io.mycat.MycatServer;
+import io.mycat.backend.mysql.PacketUtil;
+import io.mycat.config.Fields;
+import io.mycat.manager.ManagerConnection;
+import io.mycat.net.AcceptStat;
+import io.mycat.net.SocketAcceptor;
+import io.mycat.net.mysql.EOFPacket;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.mysql.ResultSetHeaderPacket;
+import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.util.IntegerUtil;
+import io.mycat.util.LongUtil;
+import io.mycat.util.StringUtil;
+
+/**
+ * 监听端口的接入情况，RATE/PEAK_RATE 为每秒新建连接数
+ *
+ * @author mycat
+ */
+public final class ShowAcceptor {
+
+    private static final int FIELD_COUNT = 7;
+    private static final ResultSetHeaderPacket header = PacketUtil.getHeader(FIELD_COUNT);
+    private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
+    private static final EOFPacket eof = new EOFPacket();
+
+    static {
+        int i = 0;
+        byte packetId = 0;
+        header.packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("NAME", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("PORT", Fields.FIELD_TYPE_LONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("THREADS", Fields.FIELD_TYPE_LONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("ACCEPTED", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("FAILED", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("RATE", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("PEAK_RATE", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        eof.packetId = ++packetId;
+    }
+
+    public static void execute(ManagerConnection c) {
+        ByteBuffer buffer = c.allocate();
+
+        // write header
+        buffer = header.write(buffer, c, true);
+
+        // write fields
+        for (FieldPacket field : fields) {
+            buffer = field.write(buffer, c, true);
+        }
+
+        // write eof
+        buffer = eof.write(buffer, c, true);
+
+        // write rows
+        byte packetId = eof.packetId;
+        SocketAcceptor[] acceptors = MycatServer.getInstance().getAcceptors();
+        if (acceptors != null) {
+            for (SocketAcceptor acceptor : acceptors) {
+                RowDataPacket row = getRow(acceptor, c.getCharset());
+                row.packetId = ++packetId;
+                buffer = row.write(buffer, c, true);
+            }
+        }
+
+        // write last eof
+        EOFPacket lastEof = new EOFPacket();
+        lastEof.packetId = ++packetId;
+        buffer = lastEof.write(buffer, c, true);
+
+        // write buffer
+        c.write(buffer);
+    }
+
+    private static RowDataPacket getRow(SocketAcceptor acceptor, String charset) {
+        AcceptStat stat = acceptor.getAcceptStat();
+        RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+        row.add(StringUtil.encode(acceptor.getName(), charset));
+        row.add(IntegerUtil.toBytes(acceptor.getPort()));
+        row.add(IntegerUtil.toBytes(acceptor.getAcceptorCount()));
+        row.add(LongUtil.toBytes(stat.getAccepted()));
+        row.add(LongUtil.toBytes(stat.getFailed()));
+        row.add(LongUtil.toBytes(stat.getRate()));
+        row.add(LongUtil.toBytes(stat.getPeakRate()));
+        return row;
+    }
+
+}
@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 
 import io.mycat.MycatServer;
 import io.mycat.backend.BackendConnection;
+import io.mycat.backend.datasource.PhysicalDatasource;
 import io.mycat.backend.jdbc.JDBCConnection;
 import io.mycat.backend.mysql.PacketUtil;
 import io.mycat.backend.mysql.nio.MySQLConnection;
@@ -50,7 +51,7 @@ import io.mycat.util.TimeUtil;
  */
 public class ShowBackend {
 
-	private static final int FIELD_COUNT = 16;
+	private static final int FIELD_COUNT = 19;
 	private static final ResultSetHeaderPacket header = PacketUtil
 			.getHeader(FIELD_COUNT);
 	private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
@@ -98,6 +99,15 @@ public class ShowBackend {
 		fields[i] = PacketUtil.getField("autocommit",
 				Fields.FIELD_TYPE_VAR_STRING);
 		fields[i++].packetId = ++packetId;
+		fields[i] = PacketUtil.getField("datasource",
+				Fields.FIELD_TYPE_VAR_STRING);
+		fields[i++].packetId = ++packetId;
+		fields[i] = PacketUtil.getField("set_sync", Fields.FIELD_TYPE_LONGLONG);
+		fields[i++].packetId = ++packetId;
+		// 所属数据源中需要先 SET 同步会话状态的 SQL 占比
+		fields[i] = PacketUtil.getField("ds_set_sync_rate",
+				Fields.FIELD_TYPE_VAR_STRING);
+		fields[i++].packetId = ++packetId;
 		eof.packetId = ++packetId;
 	}
 
@@ -158,6 +168,9 @@ public class ShowBackend {
 		String charsetInf = "";
 		String txLevel = "";
 		String txAutommit = "";
+		String dsName = "";
+		long setSync = 0;
+		String dsSyncRate = "";
 
 		if (c instanceof MySQLConnection) {
 			MySQLConnection mysqlC = (MySQLConnection) c;
@@ -166,12 +179,34 @@ public class ShowBackend {
 			charsetInf = mysqlC.getCharset() + ":" + mysqlC.getCharsetIndex();
 			txLevel = mysqlC.getTxIsolation() + "";
 			txAutommit = mysqlC.isAutocommit() + "";
+			setSync = mysqlC.getSetSyncCount();
+			PhysicalDatasource ds = mysqlC.getPool();
+			if (ds != null) {
+				dsName = ds.getName();
+				dsSyncRate = getSyncRate(ds);
+			}
+		} else if (c instanceof JDBCConnection) {
+			PhysicalDatasource ds = ((JDBCConnection) c).getPool();
+			if (ds != null) {
+				dsName = ds.getName();
+			}
 		}
 		row.add(IntegerUtil.toBytes(writeQueueSize));
 		row.add(schema.getBytes());
 		row.add(charsetInf.getBytes());
 		row.add(txLevel.getBytes());
 		row.add(txAutommit.getBytes());
+		row.add(StringUtil.encode(dsName, charset));
+		row.add(LongUtil.toBytes(setSync));
+		row.add(dsSyncRate.getBytes());
 		return row;
 	}
+
+	private static String getSyncRate(PhysicalDatasource ds) {
+		long total = ds.getExecuteSqlCount();
+		if (total == 0) {
+			return "0.00%";
+		}
+		return String.format("%.2f%%", ds.getSetSyncCount() * 100.0 / total);
+	}
 }
\ No newline at end of file
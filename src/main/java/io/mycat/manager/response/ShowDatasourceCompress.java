@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2013, OpenCloudDB/MyCAT and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software;Designed and Developed mainly by many Chinese 
+ * opensource volunteers. you can redistribute it and/or modify it under the 
+ * terms of the GNU General Public License version 2 only, as published by the
+ * Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Any questions about this component can be directed to it's project Web address 
+ * https://code.google.com/p/opencloudb/.
+ *
+ */
+package io.mycat.manager.response;
+
+import java.nio.ByteBuffer;
+
+import io.mycat.MycatServer;
+import io.mycat.backend.datasource.PhysicalDBPool;
+import io.mycat.backend.datasource.PhysicalDatasource;
+import io.mycat.backend.mysql.PacketUtil;
+import io.mycat.config.Fields;
+import io.mycat.manager.ManagerConnection;
+import io.mycat.net.CompressStat;
+import io.mycat.net.mysql.EOFPacket;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.mysql.ResultSetHeaderPacket;
+import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.util.IntegerUtil;
+import io.mycat.util.LongUtil;
+import io.mycat.util.StringUtil;
+
+/**
+ * 各数据源压缩连接的网络字节数与解压后字节数
+ *
+ * @author mycat
+ */
+public final class ShowDatasourceCompress {
+
+    private static final int FIELD_COUNT = 11;
+    private static final ResultSetHeaderPacket header = PacketUtil.getHeader(FIELD_COUNT);
+    private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
+    private static final EOFPacket eof = new EOFPacket();
+
+    static {
+        int i = 0;
+        byte packetId = 0;
+        header.packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("DATAHOST", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("NAME", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("HOST", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("PORT", Fields.FIELD_TYPE_LONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("COMPRESS", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("NET_IN", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("RAW_IN", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("IN_RATIO", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("NET_OUT", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("RAW_OUT", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("OUT_RATIO", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        eof.packetId = ++packetId;
+    }
+
+    public static void execute(ManagerConnection c) {
+        ByteBuffer buffer = c.allocate();
+
+        // write header
+        buffer = header.write(buffer, c, true);
+
+        // write fields
+        for (FieldPacket field : fields) {
+            buffer = field.write(buffer, c, true);
+        }
+
+        // write eof
+        buffer = eof.write(buffer, c, true);
+
+        // write rows
+        byte packetId = eof.packetId;
+        for (PhysicalDBPool pool : MycatServer.getInstance().getConfig().getDataHosts().values()) {
+            for (PhysicalDatasource ds : pool.getAllDataSources()) {
+                RowDataPacket row = getRow(pool.getHostName(), ds, c.getCharset());
+                row.packetId = ++packetId;
+                buffer = row.write(buffer, c, true);
+            }
+        }
+
+        // write last eof
+        EOFPacket lastEof = new EOFPacket();
+        lastEof.packetId = ++packetId;
+        buffer = lastEof.write(buffer, c, true);
+
+        // write buffer
+        c.write(buffer);
+    }
+
+    private static RowDataPacket getRow(String dataHost, PhysicalDatasource ds, String charset) {
+        CompressStat stat = ds.getCompressStat();
+        RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+        row.add(StringUtil.encode(dataHost, charset));
+        row.add(StringUtil.encode(ds.getName(), charset));
+        row.add(StringUtil.encode(ds.getConfig().getIp(), charset));
+        row.add(IntegerUtil.toBytes(ds.getConfig().getPort()));
+        row.add(StringUtil.encode(String.valueOf(ds.getHostConfig().isCompress()), charset));
+        row.add(LongUtil.toBytes(stat.getNetInBytes()));
+        row.add(LongUtil.toBytes(stat.getRawInBytes()));
+        row.add(StringUtil.encode(ratio(stat.getNetInBytes(), stat.getRawInBytes()), charset));
+        row.add(LongUtil.toBytes(stat.getNetOutBytes()));
+        row.add(LongUtil.toBytes(stat.getRawOutBytes()));
+        row.add(StringUtil.encode(ratio(stat.getNetOutBytes(), stat.getRawOutBytes()), charset));
+        return row;
+    }
+
+    /**
+     * 网络字节数占解压后字节数的百分比
+     */
+    private static String ratio(long net, long raw) {
+        return raw == 0 ? "0%" : String.format("%.2f%%", net * 100.0 / raw);
+    }
+
+}
@@ -121,10 +121,16 @@ public final class ShowHelp {
         helps.put("show @@datasource.synstatus", "Report datasource data synchronous");
         helps.put("show @@datasource.syndetail where name=?", "Report datasource data synchronous detail");
         helps.put("show @@datasource.cluster", "Report datasource galary cluster variables");
+        helps.put("show @@datasource.compress", "Report datasource compressed protocol traffic");
+        helps.put("show @@datasource.prepared", "Report PostgreSQL datasource prepared statement cache");
         helps.put("show @@processor", "Report processor status");
+        helps.put("show @@acceptor", "Report acceptor threads and connection accept rate");
         helps.put("show @@command", "Report commands status");
         helps.put("show @@connection", "Report connection status");
         helps.put("show @@cache", "Report system cache usage");
+        helps.put("show @@spill", "Report sort spill count and spill file compression");
+        helps.put("show @@cache.result", "Report query result cache usage");
+        helps.put("show @@cache.privilege", "Report firewall and DML privilege verdict cache usage");
         helps.put("show @@backend", "Report backend connection status");
         helps.put("show @@session", "Report front session details");
         helps.put("show @@connection.sql", "Report connection sql");
@@ -135,6 +141,8 @@ public final class ShowHelp {
         helps.put("show @@sql.high", "Report Hight Frequency SQL");
         helps.put("show @@sql.slow", "Report slow SQL");
         helps.put("show @@sql.resultset", "Report BIG RESULTSET SQL");
+        helps.put("show @@sql.trace", "Report sampled SQL stage timing");
+        helps.put("show @@sql.trace.stage", "Report SQL stage timing histogram");
         helps.put("show @@sql.sum", "Report  User RW Stat ");
         helps.put("show @@sql.sum.user", "Report  User RW Stat ");
         helps.put("show @@sql.sum.table", "Report  Table RW Stat ");
@@ -150,6 +158,7 @@ public final class ShowHelp {
         helps.put("show @@white.set=?,?", "set mycat white host,[ip,user]");
 		helps.put("show @@directmemory=1 or 2", "show mycat direct memory usage");
 		helps.put("show @@check_global -SCHEMA= ? -TABLE=? -retry=? -interval=?", "check mycat global table consistency ");
+		helps.put("show @@check_global -SCHEMA= ? -TABLE=? -mode=checksum", "check mycat global table consistency by range checksum");
 
         // switch
         helps.put("switch @@datasource name:index", "Switch dataSource");
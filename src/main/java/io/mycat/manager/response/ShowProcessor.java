@@ -38,6 +38,7 @@ import io.mycat.net.mysql.ResultSetHeaderPacket;
 import io.mycat.net.mysql.RowDataPacket;
 import io.mycat.util.IntegerUtil;
 import io.mycat.util.LongUtil;
+import io.mycat.util.TimingWheel;
 
 /**
  * 查看处理器状态
@@ -47,7 +48,7 @@ import io.mycat.util.LongUtil;
  */
 public final class ShowProcessor {
 
-    private static final int FIELD_COUNT = 12;
+    private static final int FIELD_COUNT = 16;
     private static final ResultSetHeaderPacket header = PacketUtil.getHeader(FIELD_COUNT);
     private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
     private static final EOFPacket eof = new EOFPacket();
@@ -92,6 +93,18 @@ public final class ShowProcessor {
         fields[i] = PacketUtil.getField("BC_COUNT", Fields.FIELD_TYPE_LONG);
         fields[i++].packetId = ++packetId;
 
+        fields[i] = PacketUtil.getField("TW_TIMEOUTS", Fields.FIELD_TYPE_LONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("TW_EXPIRED", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("TW_REARMED", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("TW_MAX_TICK_US", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
         eof.packetId = ++packetId;
     }
 
@@ -145,6 +158,18 @@ public final class ShowProcessor {
         row.add(LongUtil.toBytes(bufferSharedOpts));
         row.add(IntegerUtil.toBytes(processor.getFrontends().size()));
         row.add(IntegerUtil.toBytes(processor.getBackends().size()));
+        TimingWheel wheel = processor.getTimingWheel();
+        if (wheel != null) {
+            row.add(IntegerUtil.toBytes(wheel.size()));
+            row.add(LongUtil.toBytes(wheel.getExpiredCount()));
+            row.add(LongUtil.toBytes(wheel.getRearmedCount()));
+            row.add(LongUtil.toBytes(wheel.getMaxTickCostNanos() / 1000));
+        } else {
+            row.add(null);
+            row.add(null);
+            row.add(null);
+            row.add(null);
+        }
         return row;
     }
 
@@ -0,0 +1,205 @@
+/*
+ * Copyright (c) 2013, OpenCloudDB/MyCAT and/or its affiliates. All rights reserved.
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS FILE HEADER.
+ *
+ * This code is free software;Designed and Developed mainly by many Chinese 
+ * opensource volunteers. you can redistribute it and/or modify it under the 
+ * terms of the GNU General Public License version 2 only, as published by the
+ * Free Software Foundation.
+ *
+ * This code is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE.  See the GNU General Public License
+ * version 2 for more details (a copy is included in the LICENSE file that
+ * accompanied this code).
+ *
+ * You should have received a copy of the GNU General Public License version
+ * 2 along with this work; if not, write to the Free Software Foundation,
+ * Inc., 51 Franklin St, Fifth Floor, Boston, MA 02110-1301 USA.
+ * 
+ * Any questions about this component can be directed to it's project Web address 
+ * https://code.google.com/p/opencloudb/.
+ *
+ */
+package io.mycat.manager.response;
+
+import java.nio.ByteBuffer;
+
+import io.mycat.backend.mysql.PacketUtil;
+import io.mycat.config.Fields;
+import io.mycat.manager.ManagerConnection;
+import io.mycat.net.mysql.EOFPacket;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.mysql.ResultSetHeaderPacket;
+import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.statistic.SqlTrace;
+import io.mycat.statistic.SqlTraceRecorder;
+import io.mycat.util.LongUtil;
+import io.mycat.util.StringUtil;
+
+/**
+ * 查询采样 sql 的分阶段耗时(微秒)，需要开启 sqlTraceSampleRate
+ *
+ * show @@sql.trace 为最近的采样记录，show @@sql.trace.stage 为各阶段耗时分布
+ *
+ * @author mycat
+ */
+public final class ShowSqlTrace {
+
+    // START_TIME, USER, NODES, TOTAL_US, 各阶段(不含 RECEIVE), SQL
+    private static final int FIELD_COUNT = 4 + SqlTrace.STAGE_COUNT - 1 + 1;
+    private static final ResultSetHeaderPacket header = PacketUtil.getHeader(FIELD_COUNT);
+    private static final FieldPacket[] fields = new FieldPacket[FIELD_COUNT];
+    private static final EOFPacket eof = new EOFPacket();
+
+    private static final int STAGE_FIELD_COUNT = 7;
+    private static final ResultSetHeaderPacket stageHeader = PacketUtil.getHeader(STAGE_FIELD_COUNT);
+    private static final FieldPacket[] stageFields = new FieldPacket[STAGE_FIELD_COUNT];
+    private static final EOFPacket stageEof = new EOFPacket();
+
+    static {
+        int i = 0;
+        byte packetId = 0;
+        header.packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("START_TIME", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("USER", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("NODES", Fields.FIELD_TYPE_LONG);
+        fields[i++].packetId = ++packetId;
+
+        fields[i] = PacketUtil.getField("TOTAL_US", Fields.FIELD_TYPE_LONGLONG);
+        fields[i++].packetId = ++packetId;
+
+        for (int stage = SqlTrace.PARSE; stage < SqlTrace.STAGE_COUNT; stage++) {
+            fields[i] = PacketUtil.getField(SqlTrace.STAGE_NAMES[stage] + "_US", Fields.FIELD_TYPE_LONGLONG);
+            fields[i++].packetId = ++packetId;
+        }
+
+        fields[i] = PacketUtil.getField("SQL", Fields.FIELD_TYPE_VAR_STRING);
+        fields[i++].packetId = ++packetId;
+
+        eof.packetId = ++packetId;
+
+        i = 0;
+        packetId = 0;
+        stageHeader.packetId = ++packetId;
+
+        stageFields[i] = PacketUtil.getField("STAGE", Fields.FIELD_TYPE_VAR_STRING);
+        stageFields[i++].packetId = ++packetId;
+
+        stageFields[i] = PacketUtil.getField("COUNT", Fields.FIELD_TYPE_LONGLONG);
+        stageFields[i++].packetId = ++packetId;
+
+        stageFields[i] = PacketUtil.getField("AVG_US", Fields.FIELD_TYPE_LONGLONG);
+        stageFields[i++].packetId = ++packetId;
+
+        stageFields[i] = PacketUtil.getField("P50_US", Fields.FIELD_TYPE_LONGLONG);
+        stageFields[i++].packetId = ++packetId;
+
+        stageFields[i] = PacketUtil.getField("P90_US", Fields.FIELD_TYPE_LONGLONG);
+        stageFields[i++].packetId = ++packetId;
+
+        stageFields[i] = PacketUtil.getField("P99_US", Fields.FIELD_TYPE_LONGLONG);
+        stageFields[i++].packetId = ++packetId;
+
+        stageFields[i] = PacketUtil.getField("MAX_US", Fields.FIELD_TYPE_LONGLONG);
+        stageFields[i++].packetId = ++packetId;
+
+        stageEof.packetId = ++packetId;
+    }
+
+    public static void execute(ManagerConnection c, boolean isClear) {
+        ByteBuffer buffer = c.allocate();
+
+        // write header
+        buffer = header.write(buffer, c, true);
+
+        // write fields
+        for (FieldPacket field : fields) {
+            buffer = field.write(buffer, c, true);
+        }
+
+        // write eof
+        buffer = eof.write(buffer, c, true);
+
+        // write rows
+        byte packetId = eof.packetId;
+        SqlTraceRecorder recorder = SqlTraceRecorder.getInstance();
+        for (SqlTraceRecorder.Record record : recorder.getRecords()) {
+            RowDataPacket row = getRow(record, c.getCharset());
+            row.packetId = ++packetId;
+            buffer = row.write(buffer, c, true);
+        }
+        if (isClear) {
+            recorder.clear();
+        }
+
+        // write last eof
+        EOFPacket lastEof = new EOFPacket();
+        lastEof.packetId = ++packetId;
+        buffer = lastEof.write(buffer, c, true);
+
+        // write buffer
+        c.write(buffer);
+    }
+
+    public static void executeStage(ManagerConnection c) {
+        ByteBuffer buffer = c.allocate();
+
+        // write header
+        buffer = stageHeader.write(buffer, c, true);
+
+        // write fields
+        for (FieldPacket field : stageFields) {
+            buffer = field.write(buffer, c, true);
+        }
+
+        // write eof
+        buffer = stageEof.write(buffer, c, true);
+
+        // write rows
+        byte packetId = stageEof.packetId;
+        SqlTraceRecorder recorder = SqlTraceRecorder.getInstance();
+        for (int stage = SqlTrace.PARSE; stage <= SqlTraceRecorder.TOTAL; stage++) {
+            String name = stage == SqlTraceRecorder.TOTAL ? "TOTAL" : SqlTrace.STAGE_NAMES[stage];
+            RowDataPacket row = new RowDataPacket(STAGE_FIELD_COUNT);
+            row.add(StringUtil.encode(name, c.getCharset()));
+            row.add(LongUtil.toBytes(recorder.getCount(stage)));
+            row.add(LongUtil.toBytes(recorder.getAvg(stage)));
+            row.add(LongUtil.toBytes(recorder.getPercentile(stage, 50)));
+            row.add(LongUtil.toBytes(recorder.getPercentile(stage, 90)));
+            row.add(LongUtil.toBytes(recorder.getPercentile(stage, 99)));
+            row.add(LongUtil.toBytes(recorder.getMax(stage)));
+            row.packetId = ++packetId;
+            buffer = row.write(buffer, c, true);
+        }
+
+        // write last eof
+        EOFPacket lastEof = new EOFPacket();
+        lastEof.packetId = ++packetId;
+        buffer = lastEof.write(buffer, c, true);
+
+        // write buffer
+        c.write(buffer);
+    }
+
+    private static RowDataPacket getRow(SqlTraceRecorder.Record record, String charset) {
+        RowDataPacket row = new RowDataPacket(FIELD_COUNT);
+        row.add(LongUtil.toBytes(record.startTime));
+        row.add(StringUtil.encode(record.user, charset));
+        row.add(LongUtil.toBytes(record.nodes));
+        row.add(LongUtil.toBytes(record.getTotalMicros()));
+        for (int stage = SqlTrace.PARSE; stage < SqlTrace.STAGE_COUNT; stage++) {
+            // 未经过的阶段返回 NULL
+            long micros = record.micros[stage];
+            row.add(micros < 0 ? null : LongUtil.toBytes(micros));
+        }
+        row.add(StringUtil.encode(record.sql, charset));
+        return row;
+    }
+
+}
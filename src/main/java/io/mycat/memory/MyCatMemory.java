@@ -116,6 +116,10 @@ public class MyCatMemory {
 			conf.set("mycat.merge.file.buffer","32k");
 		}
 
+		if(system.getSpillsCompressCodec() != null){
+			conf.set("mycat.spill.compress.codec",system.getSpillsCompressCodec());
+		}
+
 		conf.set("mycat.pointer.array.len","1k")
 			.set("mycat.memory.offHeap.size", JavaUtils.bytesToString2(resultSetBufferSize));
 
@@ -126,7 +130,7 @@ public class MyCatMemory {
 				new ResultMergeMemoryManager(conf,numCores,maxOnHeapMemory);
 
 
-		serializerManager = new SerializerManager();
+		serializerManager = new SerializerManager(conf);
 
 		blockManager = new DataNodeDiskManager(conf,true,serializerManager);
 
@@ -2,16 +2,19 @@ package io.mycat.memory.unsafe.ringbuffer;
 
 
 import io.mycat.memory.unsafe.Platform;
-import io.mycat.memory.unsafe.memory.mm.MemoryConsumer;
 import io.mycat.memory.unsafe.ringbuffer.common.Cursored;
+import io.mycat.memory.unsafe.ringbuffer.common.barrier.SequenceBarrier;
 import io.mycat.memory.unsafe.ringbuffer.common.event.*;
+import io.mycat.memory.unsafe.ringbuffer.common.sequence.Sequence;
+import io.mycat.memory.unsafe.ringbuffer.common.waitStrategy.WaitStrategy;
 import io.mycat.memory.unsafe.ringbuffer.exception.InsufficientCapacityException;
+import io.mycat.memory.unsafe.ringbuffer.producer.MultiProducerSequencer;
 import io.mycat.memory.unsafe.ringbuffer.producer.Sequencer;
 
 /**
- * 环形buffer 待实现，
+ * 环形buffer，槽位在创建时由EventFactory一次性分配，之后反复复用
  */
-public class RingBuffer<E extends MemoryConsumer> implements Cursored, EventSequencer<E>, EventSink<E> {
+public class RingBuffer<E> implements Cursored, EventSequencer<E>, EventSink<E> {
     //Buffer数组填充
     private static final int BUFFER_PAD;
     //Buffer数组起始基址
@@ -69,6 +72,17 @@ public class RingBuffer<E extends MemoryConsumer> implements Cursored, EventSequ
         fill(eventFactory);
     }
 
+    /**
+     * 创建多生产者的RingBuffer
+     *
+     * @param bufferSize 必须是2的n次方
+     */
+    public static <E> RingBuffer<E> createMultiProducer(
+            EventFactory<E> factory, int bufferSize, WaitStrategy waitStrategy) {
+        MultiProducerSequencer sequencer = new MultiProducerSequencer(bufferSize, waitStrategy);
+        return new RingBuffer<E>(factory, sequencer);
+    }
+
     private void fill(EventFactory<E> eventFactory) {
         for (int i = 0; i < bufferSize; i++) {
             entries[BUFFER_PAD + i] = eventFactory.newInstance();
@@ -587,6 +601,24 @@ public class RingBuffer<E extends MemoryConsumer> implements Cursored, EventSequ
         return bufferSize;
     }
 
+    /**
+     * 添加消费者的Sequence，生产者不会覆盖还未被这些消费者处理的槽
+     */
+    public void addGatingSequences(Sequence... gatingSequences) {
+        sequencer.addGatingSequences(gatingSequences);
+    }
+
+    public boolean removeGatingSequence(Sequence sequence) {
+        return sequencer.removeGatingSequence(sequence);
+    }
+
+    /**
+     * 创建消费者等待用的SequenceBarrier
+     */
+    public SequenceBarrier newBarrier(Sequence... sequencesToTrack) {
+        return sequencer.newBarrier(sequencesToTrack);
+    }
+
     @Override
     public boolean hasAvailableCapacity(int requiredCapacity) {
         return sequencer.hasAvailableCapacity(requiredCapacity);
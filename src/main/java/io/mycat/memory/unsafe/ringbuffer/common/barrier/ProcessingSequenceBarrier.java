@@ -0,0 +1,104 @@
+package io.mycat.memory.unsafe.ringbuffer.common.barrier;
+
+import io.mycat.memory.unsafe.ringbuffer.common.sequence.FixedSequenceGroup;
+import io.mycat.memory.unsafe.ringbuffer.common.sequence.Sequence;
+import io.mycat.memory.unsafe.ringbuffer.common.waitStrategy.WaitStrategy;
+import io.mycat.memory.unsafe.ringbuffer.exception.AlertException;
+import io.mycat.memory.unsafe.ringbuffer.exception.TimeoutException;
+import io.mycat.memory.unsafe.ringbuffer.producer.Sequencer;
+
+/**
+ * 消费者使用的SequenceBarrier，跟踪生产者的cursor以及所依赖的其他消费者的Sequence
+ *
+ * @author lmax.Disruptor
+ * @version 3.3.5
+ */
+public final class ProcessingSequenceBarrier implements SequenceBarrier {
+    private final WaitStrategy waitStrategy;
+    //所依赖的消费者的Sequence，没有依赖时就是cursor
+    private final Sequence dependentSequence;
+    private volatile boolean alerted = false;
+    private final Sequence cursorSequence;
+    private final Sequencer sequencer;
+    //限时等待的截止时间(System.nanoTime)，0表示不限时，只在消费者线程里读写
+    private long deadline;
+
+    public ProcessingSequenceBarrier(
+            final Sequencer sequencer,
+            final WaitStrategy waitStrategy,
+            final Sequence cursorSequence,
+            final Sequence[] dependentSequences) {
+        this.sequencer = sequencer;
+        this.waitStrategy = waitStrategy;
+        this.cursorSequence = cursorSequence;
+        if (0 == dependentSequences.length) {
+            dependentSequence = cursorSequence;
+        } else {
+            dependentSequence = new FixedSequenceGroup(dependentSequences);
+        }
+    }
+
+    @Override
+    public long waitFor(final long sequence)
+            throws AlertException, InterruptedException, TimeoutException {
+        checkAlert();
+
+        long availableSequence = waitStrategy.waitFor(sequence, cursorSequence, dependentSequence, this);
+
+        if (availableSequence < sequence) {
+            return availableSequence;
+        }
+        //多生产者时cursor只是抢占的位置，要找出连续已发布的最大值
+        return sequencer.getHighestPublishedSequence(sequence, availableSequence);
+    }
+
+    /**
+     * 最多等待timeoutNanos纳秒，超时抛出{@link TimeoutException}。
+     * 等待策略每次检查alert时顺带检查截止时间，所以对不限时的策略同样有效
+     */
+    public long waitFor(final long sequence, final long timeoutNanos)
+            throws AlertException, InterruptedException, TimeoutException {
+        deadline = System.nanoTime() + timeoutNanos;
+        if (deadline == 0) {
+            deadline = 1;
+        }
+        try {
+            return waitFor(sequence);
+        } catch (AlertException e) {
+            if (alerted) {
+                throw e;
+            }
+            throw TimeoutException.INSTANCE;
+        } finally {
+            deadline = 0;
+        }
+    }
+
+    @Override
+    public long getCursor() {
+        return dependentSequence.get();
+    }
+
+    @Override
+    public boolean isAlerted() {
+        return alerted;
+    }
+
+    @Override
+    public void alert() {
+        alerted = true;
+        waitStrategy.signalAllWhenBlocking();
+    }
+
+    @Override
+    public void clearAlert() {
+        alerted = false;
+    }
+
+    @Override
+    public void checkAlert() throws AlertException {
+        if (alerted || (deadline != 0 && System.nanoTime() - deadline > 0)) {
+            throw AlertException.INSTANCE;
+        }
+    }
+}
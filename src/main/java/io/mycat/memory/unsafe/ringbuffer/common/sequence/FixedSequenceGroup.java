@@ -0,0 +1,49 @@
+package io.mycat.memory.unsafe.ringbuffer.common.sequence;
+
+import io.mycat.memory.unsafe.ringbuffer.utils.Util;
+
+import java.util.Arrays;
+
+/**
+ * 一组固定的Sequence，只读，get()返回其中最小的值
+ *
+ * @author lmax.Disruptor
+ * @version 3.3.5
+ */
+public final class FixedSequenceGroup extends Sequence {
+    private final Sequence[] sequences;
+
+    public FixedSequenceGroup(Sequence[] sequences) {
+        this.sequences = Arrays.copyOf(sequences, sequences.length);
+    }
+
+    @Override
+    public long get() {
+        return Util.getMinimumSequence(sequences);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(sequences);
+    }
+
+    @Override
+    public void set(long value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean compareAndSet(long expectedValue, long newValue) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long incrementAndGet() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public long addAndGet(long increment) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,68 @@
+package io.mycat.memory.unsafe.ringbuffer.common.waitStrategy.impl;
+
+import io.mycat.memory.unsafe.ringbuffer.common.barrier.SequenceBarrier;
+import io.mycat.memory.unsafe.ringbuffer.common.sequence.Sequence;
+import io.mycat.memory.unsafe.ringbuffer.common.waitStrategy.WaitStrategy;
+import io.mycat.memory.unsafe.ringbuffer.exception.AlertException;
+import io.mycat.memory.unsafe.ringbuffer.exception.TimeoutException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 与BlockingWaitStrategy相同，但最多等待给定的时间，超时抛出TimeoutException
+ *
+ * @author lmax.Disruptor
+ * @version 3.3.5
+ */
+public class TimeoutBlockingWaitStrategy implements WaitStrategy {
+    private final Lock lock = new ReentrantLock();
+    private final Condition processorNotifyCondition = lock.newCondition();
+    private final long timeoutInNanos;
+
+    public TimeoutBlockingWaitStrategy(final long timeout, final TimeUnit units) {
+        timeoutInNanos = units.toNanos(timeout);
+    }
+
+    @Override
+    public long waitFor(
+            final long sequence, final Sequence cursorSequence, final Sequence dependentSequence,
+            final SequenceBarrier barrier)
+            throws AlertException, InterruptedException, TimeoutException {
+        long nanos = timeoutInNanos;
+
+        long availableSequence;
+        if (cursorSequence.get() < sequence) {
+            lock.lock();
+            try {
+                while (cursorSequence.get() < sequence) {
+                    barrier.checkAlert();
+                    nanos = processorNotifyCondition.awaitNanos(nanos);
+                    if (nanos <= 0) {
+                        throw TimeoutException.INSTANCE;
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        while ((availableSequence = dependentSequence.get()) < sequence) {
+            barrier.checkAlert();
+        }
+
+        return availableSequence;
+    }
+
+    @Override
+    public void signalAllWhenBlocking() {
+        lock.lock();
+        try {
+            processorNotifyCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package io.mycat.memory.unsafe.ringbuffer.producer;
 
 import io.mycat.memory.unsafe.ringbuffer.common.sequence.Sequence;
+import io.mycat.memory.unsafe.ringbuffer.common.barrier.ProcessingSequenceBarrier;
 import io.mycat.memory.unsafe.ringbuffer.common.barrier.SequenceBarrier;
 import io.mycat.memory.unsafe.ringbuffer.common.sequence.SequenceGroups;
 import io.mycat.memory.unsafe.ringbuffer.common.waitStrategy.WaitStrategy;
@@ -67,10 +68,9 @@ public abstract class AbstractSequencer implements Sequencer {
         return Util.getMinimumSequence(gatingSequences, cursor.get());
     }
 
+    @Override
     public SequenceBarrier newBarrier(Sequence... sequencesToTrack)
     {
-        return null;
-        //TODO 完成SequenceBarrier
-//        return new ProcessingSequenceBarrier(this, waitStrategy, cursor, sequencesToTrack);
+        return new ProcessingSequenceBarrier(this, waitStrategy, cursor, sequencesToTrack);
     }
 }
@@ -0,0 +1,130 @@
+package io.mycat.memory.unsafe.storage;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.CRC32;
+
+/**
+ * 读取 {@link BlockCompressionOutputStream} 写出的数据，每个块解压后校验 CRC32
+ */
+public final class BlockCompressionInputStream extends InputStream {
+
+    private final InputStream in;
+    private final byte[] header = new byte[BlockCompressionOutputStream.HEADER_LENGTH];
+    private final CRC32 crc = new CRC32();
+    private final CompressionCodec[] codecs = new CompressionCodec[3];
+    private byte[] buffer = new byte[0];
+    private byte[] compressed = new byte[0];
+    private int pos;
+    private int limit;
+    private boolean eof;
+
+    public BlockCompressionInputStream(InputStream in) {
+        this.in = in;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit && !readBlock()) {
+            return -1;
+        }
+        return buffer[pos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (pos == limit && !readBlock()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buffer, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return limit - pos;
+    }
+
+    private boolean readBlock() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int n = readFully(header, 0, header.length);
+        if (n == 0) {
+            eof = true;
+            return false;
+        }
+        if (n < header.length) {
+            throw new EOFException("truncated spill block header");
+        }
+        byte id = header[0];
+        int rawLength = BlockCompressionOutputStream.readInt(header, 1);
+        int storedLength = BlockCompressionOutputStream.readInt(header, 5);
+        int checksum = BlockCompressionOutputStream.readInt(header, 9);
+        if (rawLength < 0 || storedLength < 0) {
+            throw new IOException("corrupted spill block header");
+        }
+        if (buffer.length < rawLength) {
+            buffer = new byte[rawLength];
+        }
+        if (id == CompressionCodec.NONE) {
+            if (readFully(buffer, 0, rawLength) < rawLength) {
+                throw new EOFException("truncated spill block");
+            }
+        } else {
+            if (compressed.length < storedLength) {
+                compressed = new byte[storedLength];
+            }
+            if (readFully(compressed, 0, storedLength) < storedLength) {
+                throw new EOFException("truncated spill block");
+            }
+            codec(id).decompress(compressed, 0, storedLength, buffer, 0, rawLength);
+        }
+        crc.reset();
+        crc.update(buffer, 0, rawLength);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("spill block checksum mismatch");
+        }
+        pos = 0;
+        limit = rawLength;
+        return true;
+    }
+
+    private CompressionCodec codec(byte id) throws IOException {
+        if (id < 0 || id >= codecs.length) {
+            throw new IOException("unknown spill compression codec id: " + id);
+        }
+        if (codecs[id] == null) {
+            codecs[id] = CompressionCodec.forId(id);
+        }
+        return codecs[id];
+    }
+
+    private int readFully(byte[] b, int off, int len) throws IOException {
+        int total = 0;
+        while (total < len) {
+            int r = in.read(b, off + total, len - total);
+            if (r < 0) {
+                break;
+            }
+            total += r;
+        }
+        return total;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (CompressionCodec codec : codecs) {
+            if (codec != null) {
+                codec.close();
+            }
+        }
+        in.close();
+    }
+}
@@ -0,0 +1,128 @@
+package io.mycat.memory.unsafe.storage;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+/**
+ * 按块压缩的输出流，每个块的格式：
+ *
+ *   [codec id (1 byte)][原始长度 (int)][存储长度 (int)][原始数据的 CRC32 (int)][数据]
+ *
+ * 压缩后没有变小的块以 codec id 0 原样存储。
+ */
+public final class BlockCompressionOutputStream extends FilterOutputStream {
+
+    static final int HEADER_LENGTH = 13;
+
+    private final CompressionCodec codec;
+    private final SerializerManager metrics;
+    private final byte[] buffer;
+    private final byte[] compressed;
+    private final CRC32 crc = new CRC32();
+    private int count;
+    private long rawBytes;
+    private long compressedBytes;
+    private boolean closed;
+
+    public BlockCompressionOutputStream(OutputStream out, CompressionCodec codec, int blockSize,
+                                        SerializerManager metrics) {
+        super(out);
+        this.codec = codec;
+        this.metrics = metrics;
+        this.buffer = new byte[blockSize];
+        this.compressed = new byte[HEADER_LENGTH + codec.maxCompressedLength(blockSize)];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buffer.length) {
+            flushBlock();
+        }
+        buffer[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buffer.length) {
+                flushBlock();
+            }
+            int n = Math.min(len, buffer.length - count);
+            System.arraycopy(b, off, buffer, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBlock();
+        out.flush();
+    }
+
+    private void flushBlock() throws IOException {
+        if (count == 0) {
+            return;
+        }
+        crc.reset();
+        crc.update(buffer, 0, count);
+        int n = codec.compress(buffer, 0, count, compressed, HEADER_LENGTH);
+        byte id = codec.id();
+        if (n < 0) {
+            id = CompressionCodec.NONE;
+            n = count;
+        }
+        compressed[0] = id;
+        writeInt(compressed, 1, count);
+        writeInt(compressed, 5, n);
+        writeInt(compressed, 9, (int) crc.getValue());
+        if (id == CompressionCodec.NONE) {
+            out.write(compressed, 0, HEADER_LENGTH);
+            out.write(buffer, 0, count);
+        } else {
+            out.write(compressed, 0, HEADER_LENGTH + n);
+        }
+        rawBytes += count;
+        compressedBytes += HEADER_LENGTH + n;
+        count = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            flushBlock();
+        } finally {
+            codec.close();
+            out.close();
+            if (metrics != null) {
+                metrics.onSpillWritten(rawBytes, compressedBytes);
+            }
+        }
+    }
+
+    public long getRawBytes() {
+        return rawBytes + count;
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes;
+    }
+
+    static void writeInt(byte[] b, int off, int v) {
+        b[off] = (byte) (v >>> 24);
+        b[off + 1] = (byte) (v >>> 16);
+        b[off + 2] = (byte) (v >>> 8);
+        b[off + 3] = (byte) v;
+    }
+
+    static int readInt(byte[] b, int off) {
+        return ((b[off] & 0xff) << 24) | ((b[off + 1] & 0xff) << 16) | ((b[off + 2] & 0xff) << 8) | (b[off + 3] & 0xff);
+    }
+}
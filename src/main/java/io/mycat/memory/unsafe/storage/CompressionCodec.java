@@ -0,0 +1,61 @@
+package io.mycat.memory.unsafe.storage;
+
+import java.io.IOException;
+
+/**
+ * 落盘文件的块压缩算法
+ *
+ * 实例不是线程安全的，每个压缩/解压流使用自己的实例。
+ */
+public abstract class CompressionCodec {
+
+    public static final byte NONE = 0;
+    public static final byte LZ = 1;
+    public static final byte DEFLATE = 2;
+
+    /**
+     * @param name lz、deflate 或 none
+     * @return none 时返回 null
+     */
+    public static CompressionCodec forName(String name) {
+        if (name == null || "none".equalsIgnoreCase(name) || "false".equalsIgnoreCase(name)) {
+            return null;
+        }
+        if ("deflate".equalsIgnoreCase(name)) {
+            return new DeflateCompressionCodec();
+        }
+        if ("lz".equalsIgnoreCase(name) || "true".equalsIgnoreCase(name)) {
+            return new LZCompressionCodec();
+        }
+        throw new IllegalArgumentException("unknown spill compression codec: " + name);
+    }
+
+    public static CompressionCodec forId(byte id) throws IOException {
+        switch (id) {
+            case LZ:
+                return new LZCompressionCodec();
+            case DEFLATE:
+                return new DeflateCompressionCodec();
+            default:
+                throw new IOException("unknown spill compression codec id: " + id);
+        }
+    }
+
+    public abstract byte id();
+
+    /**
+     * 压缩结果可能的最大长度，dst 至少要有这么大的空间
+     */
+    public abstract int maxCompressedLength(int length);
+
+    /**
+     * @return 压缩后的长度，压缩后没有变小时返回 -1，调用者应直接存储原始数据
+     */
+    public abstract int compress(byte[] src, int srcOff, int length, byte[] dst, int dstOff);
+
+    public abstract void decompress(byte[] src, int srcOff, int length, byte[] dst, int dstOff, int rawLength)
+            throws IOException;
+
+    public void close() {
+    }
+}
@@ -39,7 +39,9 @@ public class DataNodeDiskManager {
             SerializerInstance serializerInstance,
             int bufferSize) throws IOException {
         boolean syncWrites = conf.getBoolean("mycat.merge.sync", false);
-        return new DiskRowWriter(file, serializerInstance, bufferSize,new FileOutputStream(file),
+        // 总是写一个新文件，清空可能残留的旧内容
+        new FileOutputStream(file).close();
+        return new DiskRowWriter(file, serializerInstance, bufferSize,serializerManager,
                 syncWrites,blockId);
     }
 }
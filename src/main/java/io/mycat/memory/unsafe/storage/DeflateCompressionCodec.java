@@ -0,0 +1,78 @@
+package io.mycat.memory.unsafe.storage;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 基于 JDK Deflater 的块压缩，压缩率比 lz 高，速度慢，适合磁盘带宽很紧张的场景
+ */
+public final class DeflateCompressionCodec extends CompressionCodec {
+
+    private Deflater deflater;
+    private Inflater inflater;
+
+    @Override
+    public byte id() {
+        return DEFLATE;
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        // zlib 的上界: 存储块每 16K 5 字节开销加上头尾
+        return length + (length >>> 12) + (length >>> 14) + (length >>> 25) + 13;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.BEST_SPEED, true);
+        }
+        deflater.reset();
+        deflater.setInput(src, srcOff, length);
+        deflater.finish();
+        int n = deflater.deflate(dst, dstOff, length);
+        if (!deflater.finished() || n >= length) {
+            return -1;
+        }
+        return n;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int length, byte[] dst, int dstOff, int rawLength)
+            throws IOException {
+        if (inflater == null) {
+            inflater = new Inflater(true);
+        }
+        inflater.reset();
+        inflater.setInput(src, srcOff, length);
+        try {
+            int n = 0;
+            while (n < rawLength) {
+                int r = inflater.inflate(dst, dstOff + n, rawLength - n);
+                if (r == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                n += r;
+            }
+            if (n != rawLength) {
+                throw new IOException("corrupted deflate block, expect " + rawLength + " bytes but got " + n);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupted deflate block", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (deflater != null) {
+            deflater.end();
+            deflater = null;
+        }
+        if (inflater != null) {
+            inflater.end();
+            inflater = null;
+        }
+    }
+}
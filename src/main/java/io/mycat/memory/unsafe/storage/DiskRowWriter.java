@@ -73,6 +73,11 @@ public  class DiskRowWriter extends OutputStream {
   private SerializerInstance serializerInstance;
   private int bufferSize;
   private  OutputStream compressStream;
+  private final SerializerManager serializerManager;
+  // 写入的原始字节数，以及压缩后实际写入磁盘的字节数和耗时
+  private long rawBytesWritten = 0;
+  private long diskBytesWritten = 0;
+  private long writeTimeNanos = 0;
   private boolean syncWrites;
   // These write metrics concurrently shared with other active DiskBlockObjectWriters who
   // are themselves performing writes. All updates must be relative.
@@ -84,14 +89,14 @@ public  class DiskRowWriter extends OutputStream {
           File file,
           SerializerInstance serializerInstance,
           int bufferSize,
-          OutputStream compressStream ,
+          SerializerManager serializerManager,
           boolean syncWrites,
           ConnectionId blockId) throws IOException {
 
     this.file = file;
     this.serializerInstance = serializerInstance;
     this.bufferSize = bufferSize;
-    this.compressStream = compressStream;
+    this.serializerManager = serializerManager;
     this.syncWrites = syncWrites;
     this.blockId = blockId;
     initialPosition = file.length();
@@ -108,7 +113,8 @@ public  class DiskRowWriter extends OutputStream {
     fos = new FileOutputStream(file,true);
     ts = new TimeTrackingOutputStream(/**writeMetrics,*/ fos);
     channel = fos.getChannel();
-    bs = new BufferedOutputStream(ts,bufferSize);
+    compressStream = serializerManager == null ? ts : serializerManager.wrapForCompression(blockId, ts);
+    bs = new BufferedOutputStream(compressStream,bufferSize);
     objOut = serializerInstance.serializeStream(bs);
     initialized = true;
 
@@ -132,6 +138,8 @@ public  class DiskRowWriter extends OutputStream {
         LOG.error(e.getMessage());
       }finally {
         objOut.close();
+        diskBytesWritten += ts.getBytesWritten();
+        writeTimeNanos += ts.getWriteTimeNanos();
       }
       channel = null;
       bs = null;
@@ -222,6 +230,22 @@ public  class DiskRowWriter extends OutputStream {
     }
 
     bs.write(kvBytes,offs, len);
+    rawBytesWritten += len;
+  }
+
+  public long getRawBytesWritten() {
+    return rawBytesWritten;
+  }
+
+  /**
+   * 压缩后实际写入文件的字节数，close 之后才准确
+   */
+  public long getDiskBytesWritten() {
+    return diskBytesWritten;
+  }
+
+  public long getWriteTimeNanos() {
+    return writeTimeNanos;
   }
 
   /**
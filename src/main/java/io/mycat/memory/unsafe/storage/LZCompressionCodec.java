@@ -0,0 +1,161 @@
+package io.mycat.memory.unsafe.storage;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 纯 Java 实现的 LZ77 变种块压缩，序列的编码方式借鉴 LZ4：
+ *
+ *   [token][literal 长度扩展][literals][offset(2字节小端)][match 长度扩展] ...
+ *
+ * token 高 4 位为 literal 长度，低 4 位为 match 长度 - 4，等于 15 时后面跟扩展字节。
+ * 最后一个序列只有 literals。压缩速度优先，只用一个 4 字节哈希表查找候选匹配。
+ *
+ * 注意这不是 LZ4 block 格式：没有遵守 LZ4 对块尾的限制(最后 5 字节必须是 literals 等)，
+ * 解码也依赖外层记录的原始长度，与 LZ4 实现互不兼容，只用于 mycat 自己的落盘文件。
+ */
+public final class LZCompressionCodec extends CompressionCodec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int HASH_LOG = 12;
+    private static final int MAX_OFFSET = 65535;
+
+    // 位置 + 1，0 表示空
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    @Override
+    public byte id() {
+        return LZ;
+    }
+
+    @Override
+    public int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    @Override
+    public int compress(byte[] src, int srcOff, int length, byte[] dst, int dstOff) {
+        Arrays.fill(hashTable, 0);
+        final int end = srcOff + length;
+        int anchor = srcOff;
+        int ip = srcOff;
+        int op = dstOff;
+        while (ip <= end - MIN_MATCH) {
+            int seq = readInt(src, ip);
+            int h = hash(seq);
+            int ref = hashTable[h] - 1 + srcOff;
+            hashTable[h] = ip - srcOff + 1;
+            if (ref >= srcOff && ip - ref <= MAX_OFFSET && readInt(src, ref) == seq) {
+                int matchLen = MIN_MATCH;
+                while (ip + matchLen < end && src[ref + matchLen] == src[ip + matchLen]) {
+                    matchLen++;
+                }
+                op = writeSequence(src, anchor, ip - anchor, dst, op, ip - ref, matchLen);
+                ip += matchLen;
+                anchor = ip;
+            } else {
+                ip++;
+            }
+        }
+        op = writeSequence(src, anchor, end - anchor, dst, op, 0, 0);
+        int compressed = op - dstOff;
+        return compressed < length ? compressed : -1;
+    }
+
+    @Override
+    public void decompress(byte[] src, int srcOff, int length, byte[] dst, int dstOff, int rawLength)
+            throws IOException {
+        final int end = srcOff + length;
+        final int dstEnd = dstOff + rawLength;
+        int ip = srcOff;
+        int op = dstOff;
+        try {
+            while (true) {
+                int token = src[ip++] & 0xff;
+                int literalLen = token >>> 4;
+                if (literalLen == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        literalLen += b;
+                    } while (b == 255);
+                }
+                if (op + literalLen > dstEnd || ip + literalLen > end) {
+                    throw new IOException("corrupted lz block");
+                }
+                System.arraycopy(src, ip, dst, op, literalLen);
+                ip += literalLen;
+                op += literalLen;
+                if (ip >= end) {
+                    break;
+                }
+                int offset = (src[ip++] & 0xff) | ((src[ip++] & 0xff) << 8);
+                int matchLen = token & 0x0f;
+                if (matchLen == 15) {
+                    int b;
+                    do {
+                        b = src[ip++] & 0xff;
+                        matchLen += b;
+                    } while (b == 255);
+                }
+                matchLen += MIN_MATCH;
+                int ref = op - offset;
+                if (offset == 0 || ref < dstOff || op + matchLen > dstEnd) {
+                    throw new IOException("corrupted lz block");
+                }
+                if (offset >= matchLen) {
+                    System.arraycopy(dst, ref, dst, op, matchLen);
+                    op += matchLen;
+                } else { // 重叠复制
+                    for (int i = 0; i < matchLen; i++) {
+                        dst[op++] = dst[ref++];
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            throw new IOException("corrupted lz block", e);
+        }
+        if (op != dstEnd) {
+            throw new IOException("corrupted lz block, expect " + rawLength + " bytes but got " + (op - dstOff));
+        }
+    }
+
+    private static int writeSequence(byte[] src, int literalOff, int literalLen, byte[] dst, int op,
+                                     int offset, int matchLen) {
+        int tokenPos = op++;
+        int token = (Math.min(literalLen, 15) << 4);
+        if (literalLen >= 15) {
+            op = writeLength(dst, op, literalLen - 15);
+        }
+        System.arraycopy(src, literalOff, dst, op, literalLen);
+        op += literalLen;
+        if (matchLen > 0) {
+            dst[op++] = (byte) offset;
+            dst[op++] = (byte) (offset >>> 8);
+            int m = matchLen - MIN_MATCH;
+            token |= Math.min(m, 15);
+            if (m >= 15) {
+                op = writeLength(dst, op, m - 15);
+            }
+        }
+        dst[tokenPos] = (byte) token;
+        return op;
+    }
+
+    private static int writeLength(byte[] dst, int op, int len) {
+        while (len >= 255) {
+            dst[op++] = (byte) 255;
+            len -= 255;
+        }
+        dst[op++] = (byte) len;
+        return op;
+    }
+
+    private static int readInt(byte[] b, int i) {
+        return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8) | ((b[i + 2] & 0xff) << 16) | ((b[i + 3] & 0xff) << 24);
+    }
+
+    private static int hash(int seq) {
+        return (seq * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -0,0 +1,139 @@
+package io.mycat.memory.unsafe.storage;
+
+import io.mycat.util.NameableThreadFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * 双缓冲的预读输入流：调用方消费当前 buffer 时，后台线程已经在读取下一个 buffer，
+ * 读落盘文件的磁盘 IO 与解压、归并排序重叠进行。
+ *
+ * 非线程安全，同一时刻只有一个后台读请求。
+ */
+public final class ReadAheadInputStream extends InputStream {
+
+    private static final ExecutorService READ_AHEAD_EXECUTOR =
+            Executors.newCachedThreadPool(new NameableThreadFactory("SpillReadAhead", true));
+
+    private final InputStream underlying;
+    private byte[] active;
+    private byte[] readAhead;
+    private int position;
+    private int limit;
+    private boolean eof;
+    private Future<Integer> pending;
+
+    public ReadAheadInputStream(InputStream underlying, int bufferSize) {
+        this.underlying = underlying;
+        this.active = new byte[bufferSize];
+        this.readAhead = new byte[bufferSize];
+        submitReadAhead();
+    }
+
+    private void submitReadAhead() {
+        final byte[] target = readAhead;
+        pending = READ_AHEAD_EXECUTOR.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws IOException {
+                int n = 0;
+                while (n < target.length) {
+                    int r = underlying.read(target, n, target.length - n);
+                    if (r < 0) {
+                        break;
+                    }
+                    n += r;
+                }
+                return n;
+            }
+        });
+    }
+
+    /**
+     * 等待后台读完成，交换两个 buffer 并提交下一次预读
+     */
+    private boolean fill() throws IOException {
+        if (eof) {
+            return false;
+        }
+        int n = waitPending();
+        byte[] tmp = active;
+        active = readAhead;
+        readAhead = tmp;
+        position = 0;
+        limit = n;
+        if (n < active.length) {
+            // 没有读满说明已经到文件尾
+            eof = true;
+        } else {
+            submitReadAhead();
+        }
+        return n > 0;
+    }
+
+    private int waitPending() throws IOException {
+        Future<Integer> f = pending;
+        pending = null;
+        if (f == null) {
+            return 0;
+        }
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while reading spill file");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        return active[position++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (position >= limit && !fill()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - position);
+        System.arraycopy(active, position, b, off, n);
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return limit - position;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // 等后台读结束再关闭文件，避免并发访问底层流
+            waitPending();
+        } catch (IOException e) {
+            // ignore, closing anyway
+        } finally {
+            eof = true;
+            underlying.close();
+        }
+    }
+}
@@ -1,25 +1,107 @@
 package io.mycat.memory.unsafe.storage;
 
+import io.mycat.memory.unsafe.utils.MycatPropertyConf;
+
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Created by zagnix on 2016/6/3.
+ *
+ * 落盘文件的压缩配置：
+ *   mycat.spill.compress.codec     lz(默认)、deflate 或 none
+ *   mycat.spill.compress.blockSize 压缩块大小，默认 64k
+ *   mycat.spill.readAhead          读落盘文件时是否异步预读，默认 true
  */
 public class SerializerManager  {
 
+    private final String codecName;
+    private final boolean compress;
+    private final int blockSize;
+    private final boolean readAhead;
+
+    /**
+     * 全局统计：落盘的原始字节数和实际写入磁盘的字节数
+     */
+    private final AtomicLong spillRawBytes = new AtomicLong();
+    private final AtomicLong spillCompressedBytes = new AtomicLong();
+    /**
+     * 全局统计：外部排序的落盘次数和耗时
+     */
+    private final AtomicLong sortSpillCount = new AtomicLong();
+    private final AtomicLong sortSpillTimeNanos = new AtomicLong();
+
+    public SerializerManager() {
+        this.codecName = "none";
+        this.compress = false;
+        this.blockSize = 64 * 1024;
+        this.readAhead = false;
+    }
+
+    public SerializerManager(MycatPropertyConf conf) {
+        this.codecName = conf.getString("mycat.spill.compress.codec", "lz");
+        this.blockSize = (int) conf.getSizeAsBytes("mycat.spill.compress.blockSize", "64k");
+        this.readAhead = conf.getBoolean("mycat.spill.readAhead", true);
+        // 配置错误时尽早报出来
+        CompressionCodec codec = CompressionCodec.forName(codecName);
+        this.compress = codec != null;
+        if (codec != null) {
+            codec.close();
+        }
+    }
+
     /**
      * Wrap an output stream for compression if block compression is enabled for its block type
      */
     public  OutputStream wrapForCompression(ConnectionId blockId , OutputStream s){
-        return  s;
+        if (!compress) {
+            return s;
+        }
+        return new BlockCompressionOutputStream(s, CompressionCodec.forName(codecName), blockSize, this);
     }
 
     /**
      * Wrap an input stream for compression if block compression is enabled for its block type
      */
     public InputStream wrapForCompression(ConnectionId blockId, InputStream s){
-        return  s;
+        if (!compress) {
+            return s;
+        }
+        return new BlockCompressionInputStream(s);
+    }
+
+    public boolean isReadAhead() {
+        return readAhead;
     }
 
+    public String getCodecName() {
+        return codecName;
+    }
+
+    void onSpillWritten(long rawBytes, long compressedBytes) {
+        spillRawBytes.addAndGet(rawBytes);
+        spillCompressedBytes.addAndGet(compressedBytes);
+    }
+
+    public long getSpillRawBytes() {
+        return spillRawBytes.get();
+    }
+
+    public long getSpillCompressedBytes() {
+        return spillCompressedBytes.get();
+    }
+
+    public void onSortSpill(long timeNanos) {
+        sortSpillCount.incrementAndGet();
+        sortSpillTimeNanos.addAndGet(timeNanos);
+    }
+
+    public long getSortSpillCount() {
+        return sortSpillCount.get();
+    }
+
+    public long getSortSpillTimeNanos() {
+        return sortSpillTimeNanos.get();
+    }
 }
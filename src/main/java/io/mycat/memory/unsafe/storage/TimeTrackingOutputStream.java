@@ -13,6 +13,8 @@ public final class TimeTrackingOutputStream extends OutputStream {
 
   /**private final ShuffleWriteMetrics writeMetrics;*/
   private final OutputStream outputStream;
+  private long writeTimeNanos;
+  private long bytesWritten;
 
   public TimeTrackingOutputStream(OutputStream outputStream) {
     this.outputStream = outputStream;
@@ -22,29 +24,48 @@ public final class TimeTrackingOutputStream extends OutputStream {
   public void write(int b) throws IOException {
     final long startTime = System.nanoTime();
     outputStream.write(b);
+    writeTimeNanos += System.nanoTime() - startTime;
+    bytesWritten++;
   }
 
   @Override
   public void write(byte[] b) throws IOException {
     final long startTime = System.nanoTime();
     outputStream.write(b);
+    writeTimeNanos += System.nanoTime() - startTime;
+    bytesWritten += b.length;
   }
 
   @Override
   public void write(byte[] b, int off, int len) throws IOException {
     final long startTime = System.nanoTime();
     outputStream.write(b, off, len);
+    writeTimeNanos += System.nanoTime() - startTime;
+    bytesWritten += len;
   }
 
   @Override
   public void flush() throws IOException {
     final long startTime = System.nanoTime();
     outputStream.flush();
+    writeTimeNanos += System.nanoTime() - startTime;
   }
 
   @Override
   public void close() throws IOException {
     final long startTime = System.nanoTime();
     outputStream.close();
+    writeTimeNanos += System.nanoTime() - startTime;
+  }
+
+  public long getWriteTimeNanos() {
+    return writeTimeNanos;
+  }
+
+  /**
+   * 实际写入下层流(磁盘)的字节数
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
   }
 }
@@ -105,6 +105,22 @@ public final class UnsafeExternalRowSorter {
     return sorter.getSortTimeNanos();
   }
 
+  public int getSpillCount() {
+    return sorter.getSpillCount();
+  }
+
+  public long getSpillRawBytes() {
+    return sorter.getSpillRawBytes();
+  }
+
+  public long getSpillDiskBytes() {
+    return sorter.getSpillDiskBytes();
+  }
+
+  public long getSpillTimeNanos() {
+    return sorter.getSpillTimeNanos();
+  }
+
   public void cleanupResources() {
       sorter.cleanupResources();
   }
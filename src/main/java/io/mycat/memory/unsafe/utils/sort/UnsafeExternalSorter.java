@@ -61,6 +61,11 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
   private long pageCursor = -1;
   private long peakMemoryUsedBytes = 0;
   private long totalSpillBytes = 0L;
+  // 落盘统计：次数、原始字节数、压缩后写入磁盘的字节数、耗时
+  private int spillCount = 0;
+  private long spillRawBytes = 0L;
+  private long spillDiskBytes = 0L;
+  private long spillTimeNanos = 0L;
   private long totalSortTimeNanos = 0L;
   private volatile SpillableIterator readingIterator = null;
 
@@ -169,6 +174,7 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
 
     // We only write out contents of the inMemSorter if it is not empty.
     if (inMemSorter.numRecords() > 0) {
+      final long spillStart = System.nanoTime();
 
       /**
        * 创建一个写外存的SpillWriter，当前内存数据已经排序了，直接写到磁盘中.
@@ -217,6 +223,7 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
          * 关闭spillWriter
          */
       spillWriter.close();
+      recordSpill(spillWriter, spillStart);
     }
 
     /**
@@ -280,6 +287,39 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
     return totalSpillBytes;
   }
 
+  private void recordSpill(UnsafeSorterSpillWriter spillWriter, long spillStart) {
+    long cost = System.nanoTime() - spillStart;
+    spillCount++;
+    spillRawBytes += spillWriter.getRawBytesWritten();
+    spillDiskBytes += spillWriter.getDiskBytesWritten();
+    spillTimeNanos += cost;
+    if (serializerManager != null) {
+      serializerManager.onSortSpill(cost);
+    }
+  }
+
+  public int getSpillCount() {
+    return spillCount;
+  }
+
+  /**
+   * 落盘的原始字节数
+   */
+  public long getSpillRawBytes() {
+    return spillRawBytes;
+  }
+
+  /**
+   * 压缩后实际写入磁盘的字节数
+   */
+  public long getSpillDiskBytes() {
+    return spillDiskBytes;
+  }
+
+  public long getSpillTimeNanos() {
+    return spillTimeNanos;
+  }
+
   @VisibleForTesting
   public int getNumberOfAllocatedPages() {
     return allocatedPages.size();
@@ -559,6 +599,7 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
 
         UnsafeInMemorySorter.SortedIterator inMemIterator =
           ((UnsafeInMemorySorter.SortedIterator) upstream).clone();
+        final long spillStart = System.nanoTime();
 
         // Iterate over the records that have not been returned and spill them.
         final UnsafeSorterSpillWriter spillWriter =
@@ -571,6 +612,7 @@ public final class UnsafeExternalSorter extends MemoryConsumer {
           spillWriter.write(baseObject, baseOffset, recordLength, inMemIterator.getKeyPrefix());
         }
         spillWriter.close();
+        recordSpill(spillWriter, spillStart);
         spillWriters.add(spillWriter);
         nextUpstream = spillWriter.getReader(serializerManager);
 
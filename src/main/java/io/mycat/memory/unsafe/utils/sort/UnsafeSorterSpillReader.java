@@ -21,6 +21,7 @@ import com.google.common.io.ByteStreams;
 import com.google.common.io.Closeables;
 import io.mycat.memory.unsafe.Platform;
 import io.mycat.memory.unsafe.storage.ConnectionId;
+import io.mycat.memory.unsafe.storage.ReadAheadInputStream;
 import io.mycat.memory.unsafe.storage.SerializerManager;
 
 
@@ -32,6 +33,8 @@ import java.io.*;
  */
 public final class UnsafeSorterSpillReader extends UnsafeSorterIterator implements Closeable {
 
+  private static final int READ_AHEAD_BUFFER_SIZE = 64 * 1024;
+
   private InputStream in;
   private DataInputStream din;
 
@@ -50,7 +53,10 @@ public final class UnsafeSorterSpillReader extends UnsafeSorterIterator implemen
       File file,
       ConnectionId blockId) throws IOException {
     assert (file.length() > 0);
-    final BufferedInputStream bs = new BufferedInputStream(new FileInputStream(file));
+    // 预读时磁盘 IO 与解压、归并重叠进行
+    final InputStream bs = serializerManager.isReadAhead()
+        ? new ReadAheadInputStream(new FileInputStream(file), READ_AHEAD_BUFFER_SIZE)
+        : new BufferedInputStream(new FileInputStream(file));
     try {
       this.in = serializerManager.wrapForCompression(blockId,bs);
       this.din = new DataInputStream(this.in);
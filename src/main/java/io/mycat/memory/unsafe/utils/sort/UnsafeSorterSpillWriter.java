@@ -45,6 +45,8 @@ public final class UnsafeSorterSpillWriter {
   private DiskRowWriter writer;
   private DataNodeFileManager diskBlockManager;
   private int numRecordsSpilled = 0;
+  private long rawBytesWritten = 0;
+  private long diskBytesWritten = 0;
 
   public UnsafeSorterSpillWriter(
       DataNodeDiskManager blockManager,
@@ -185,10 +187,26 @@ public final class UnsafeSorterSpillWriter {
 
   public void close() throws IOException {
     writer.commitAndClose();
+    rawBytesWritten = writer.getRawBytesWritten();
+    diskBytesWritten = writer.getDiskBytesWritten();
     writer = null;
     writeBuffer = null;
   }
 
+  /**
+   * 落盘的原始字节数
+   */
+  public long getRawBytesWritten() {
+    return rawBytesWritten;
+  }
+
+  /**
+   * 压缩后实际写入磁盘的字节数
+   */
+  public long getDiskBytesWritten() {
+    return diskBytesWritten;
+  }
+
   public File getFile() {
     return file;
   }
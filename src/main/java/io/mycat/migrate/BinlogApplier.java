@@ -0,0 +1,431 @@
+package io.mycat.migrate;
+
+import com.alibaba.druid.util.JdbcUtils;
+import com.alibaba.fastjson.JSON;
+import io.mycat.MycatServer;
+import io.mycat.backend.datasource.PhysicalDBNode;
+import io.mycat.backend.datasource.PhysicalDBPool;
+import io.mycat.config.model.DBHostConfig;
+import io.mycat.util.NameableThreadFactory;
+import io.mycat.util.ZKUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 迁移增量阶段的并行 binlog 回放
+ *
+ * 行事件按表名 + 主键 hash 到固定的回放线程，同一行的修改保持原来的顺序；
+ * 每个线程一次取出一批事件，连续的 insert 合并成多行 insert，
+ * 连续的单列主键 delete 合并成 delete ... in (...)，一批在目标节点上一个事务内提交。
+ *
+ * 源事务不在目标上原样重放，只有 ddl 等语句以及修改主键的 update 需要等所有线程回放完再单独执行。
+ * 切换前会等待回放全部完成，最终数据与源一致。
+ */
+public class BinlogApplier {
+    private static final Logger LOGGER = LoggerFactory.getLogger(BinlogApplier.class);
+
+    private final BinlogStream binlogStream;
+    private final int batchSize;
+    private final Worker[] workers;
+    private final AtomicLong receivedEvents = new AtomicLong();
+    private final AtomicLong appliedEvents = new AtomicLong();
+    private final Map<MigrateTask, int[]> taskPending = new IdentityHashMap<>();
+    private final Object drainLock = new Object();
+    private volatile boolean stopped;
+
+    public BinlogApplier(BinlogStream binlogStream, int threads, int batchSize) {
+        this.binlogStream = binlogStream;
+        this.batchSize = Math.max(1, batchSize);
+        this.workers = new Worker[Math.max(1, threads)];
+        NameableThreadFactory factory = new NameableThreadFactory("BinlogApplier", true);
+        for (int i = 0; i < workers.length; i++) {
+            workers[i] = new Worker(this.batchSize * 4);
+            factory.newThread(workers[i]).start();
+        }
+    }
+
+    /**
+     * 一行修改，insert 和单列主键的 delete 可以与相邻的同类修改合并
+     */
+    static final class RowChange {
+        static final int INSERT = 1;
+        static final int DELETE = 2;
+        static final int SQL = 3;
+
+        final int type;
+        final MigrateTask task;
+        final String table;
+        // 分配回放线程用，同一个 key 的修改在同一个线程上按顺序执行
+        final String key;
+        // insert 为列名列表，delete 为主键列名
+        final String columns;
+        // insert 为 (v1,v2..)，delete 为主键值
+        final String values;
+        final String sql;
+        final long timestamp;
+
+        private RowChange(int type, MigrateTask task, String table, String key, String columns, String values, String sql, long timestamp) {
+            this.type = type;
+            this.task = task;
+            this.table = table;
+            this.key = key;
+            this.columns = columns;
+            this.values = values;
+            this.sql = sql;
+            this.timestamp = timestamp;
+        }
+
+        static RowChange insert(MigrateTask task, String table, String key, String columns, String values, long timestamp) {
+            return new RowChange(INSERT, task, table, key, columns, values, null, timestamp);
+        }
+
+        static RowChange delete(MigrateTask task, String table, String key, String pkColumn, String pkValue, long timestamp) {
+            return new RowChange(DELETE, task, table, key, pkColumn, pkValue, null, timestamp);
+        }
+
+        static RowChange sql(MigrateTask task, String table, String key, String sql, long timestamp) {
+            return new RowChange(SQL, task, table, key, null, null, sql, timestamp);
+        }
+
+        boolean canMerge(RowChange other) {
+            return type != SQL && type == other.type && task == other.task
+                    && table.equals(other.table) && columns.equals(other.columns);
+        }
+    }
+
+    static final class ApplyStatement {
+        final MigrateTask task;
+        final String sql;
+        final int events;
+
+        ApplyStatement(MigrateTask task, String sql, int events) {
+            this.task = task;
+            this.sql = sql;
+            this.events = events;
+        }
+    }
+
+    /**
+     * 把一批修改中相邻的可合并修改拼成一条语句
+     */
+    static List<ApplyStatement> merge(List<RowChange> changes) {
+        List<ApplyStatement> statements = new ArrayList<>();
+        int i = 0;
+        while (i < changes.size()) {
+            RowChange first = changes.get(i);
+            if (first.type == RowChange.SQL) {
+                statements.add(new ApplyStatement(first.task, first.sql, 1));
+                i++;
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            if (first.type == RowChange.INSERT) {
+                sb.append("insert into ").append(first.table).append("(").append(first.columns).append(")  values ");
+            } else {
+                sb.append("delete from ").append(first.table).append(" where ").append(first.columns).append(" in (");
+            }
+            int j = i;
+            while (j < changes.size() && (j == i || first.canMerge(changes.get(j)))) {
+                if (j > i) {
+                    sb.append(",");
+                }
+                sb.append(changes.get(j).values);
+                j++;
+            }
+            if (first.type == RowChange.DELETE) {
+                sb.append(")");
+            }
+            statements.add(new ApplyStatement(first.task, sb.toString(), j - i));
+            i = j;
+        }
+        return statements;
+    }
+
+    public void apply(RowChange change) throws InterruptedException {
+        if (stopped || change.task.isHaserror()) {
+            return;
+        }
+        int index = (change.key.hashCode() & Integer.MAX_VALUE) % workers.length;
+        enqueue(workers[index], change);
+    }
+
+    /**
+     * 需要等之前的修改都回放完再执行，执行完之后才能继续回放
+     */
+    public void applyBarrier(RowChange change) throws InterruptedException {
+        if (stopped || change.task.isHaserror()) {
+            return;
+        }
+        awaitDrained();
+        enqueue(workers[0], change);
+        awaitDrained();
+    }
+
+    private void enqueue(Worker worker, RowChange change) throws InterruptedException {
+        synchronized (taskPending) {
+            int[] pending = taskPending.get(change.task);
+            if (pending == null) {
+                pending = new int[1];
+                taskPending.put(change.task, pending);
+            }
+            pending[0]++;
+            change.task.setHasExecute(true);
+            change.task.setLastBinlogDate(new Date());
+        }
+        receivedEvents.incrementAndGet();
+        while (!worker.queue.offer(change, 1, TimeUnit.SECONDS)) {
+            if (stopped) {
+                return;
+            }
+        }
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        synchronized (drainLock) {
+            while (!stopped && appliedEvents.get() < receivedEvents.get()) {
+                drainLock.wait(1000);
+            }
+        }
+    }
+
+    private void applied(List<RowChange> batch) {
+        synchronized (taskPending) {
+            for (RowChange change : batch) {
+                int[] pending = taskPending.get(change.task);
+                if (pending != null && --pending[0] == 0) {
+                    change.task.setHasExecute(false);
+                }
+            }
+        }
+        appliedEvents.addAndGet(batch.size());
+        synchronized (drainLock) {
+            drainLock.notifyAll();
+        }
+    }
+
+    /**
+     * 还没有回放的事件数
+     */
+    public long getLagEvents() {
+        return receivedEvents.get() - appliedEvents.get();
+    }
+
+    /**
+     * 最早一个未回放事件的 binlog 时间到现在的秒数，没有积压时为 0
+     */
+    public long getLagSeconds() {
+        long oldest = Long.MAX_VALUE;
+        for (Worker worker : workers) {
+            long applying = worker.applyingTimestamp;
+            if (applying > 0) {
+                oldest = Math.min(oldest, applying);
+            }
+            RowChange head = worker.queue.peek();
+            if (head != null) {
+                oldest = Math.min(oldest, head.timestamp);
+            }
+        }
+        if (oldest == Long.MAX_VALUE) {
+            return 0;
+        }
+        return Math.max(0, (System.currentTimeMillis() - oldest) / 1000);
+    }
+
+    public void shutdown() {
+        stop();
+        for (Worker worker : workers) {
+            worker.stop();
+        }
+    }
+
+    /**
+     * 不再接收和回放事件，唤醒阻塞在队列或等待回放完成的 binlog 线程
+     */
+    private void stop() {
+        stopped = true;
+        synchronized (drainLock) {
+            drainLock.notifyAll();
+        }
+    }
+
+    private void onError(MigrateTask task, String sql, Exception e) {
+        LOGGER.error("migrate binlog apply error, sql:" + sql, e);
+        if (task.isHaserror()) {
+            return;
+        }
+        task.setHaserror(true);
+        try {
+            reportError(task, sql, e);
+        } catch (Exception e1) {
+            LOGGER.error("error:", e1);
+        }
+        // binlog 线程可能正阻塞在已满的队列上，先让它退出，否则断开连接会一直等它释放连接锁；
+        // 断开连接会中断回放线程，交给单独的线程执行
+        stop();
+        Thread disconnect = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    binlogStream.disconnect();
+                } catch (Exception e1) {
+                    LOGGER.error("disconnect binlog stream error:", e1);
+                }
+            }
+        }, "BinlogApplierDisconnect");
+        disconnect.setDaemon(true);
+        disconnect.start();
+    }
+
+    /**
+     * 把任务失败状态写入 zk
+     */
+    void reportError(MigrateTask task, String sql, Exception e) throws Exception {
+        String path = task.getZkpath() + "/" + task.getFrom() + "-" + task.getTo();
+        TaskStatus taskStatus = new TaskStatus();
+        taskStatus.setMsg("sql:" + sql + ";" + e.getMessage());
+        taskStatus.setStatus(2);
+        task.setStatus(2);
+        if (ZKUtils.getConnection().checkExists().forPath(path) == null) {
+            ZKUtils.getConnection().create().forPath(path, JSON.toJSONBytes(taskStatus));
+        } else {
+            ZKUtils.getConnection().setData().forPath(path, JSON.toJSONBytes(taskStatus));
+        }
+    }
+
+    /**
+     * 打开到目标 dataNode 的连接，手动提交
+     */
+    Connection openConnection(String dataNode) throws SQLException {
+        PhysicalDBNode dbNode = MycatServer.getInstance().getConfig().getDataNodes().get(dataNode);
+        PhysicalDBPool dbPool = dbNode.getDbPool();
+        DBHostConfig config = dbPool.getSources()[dbPool.getActivedIndex()].getConfig();
+        Connection con = DriverManager.getConnection("jdbc:mysql://" + config.getUrl() + "/" + dbNode.getDatabase(), config.getUser(), config.getPassword());
+        con.setAutoCommit(false);
+        return con;
+    }
+
+    private final class Worker implements Runnable {
+        private final BlockingQueue<RowChange> queue;
+        // 目标 dataNode 到连接
+        private final Map<String, Connection> connections = new HashMap<>();
+        private volatile long applyingTimestamp;
+        private volatile Thread thread;
+
+        Worker(int capacity) {
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        @Override
+        public void run() {
+            thread = Thread.currentThread();
+            List<RowChange> batch = new ArrayList<>(batchSize);
+            try {
+                while (!stopped) {
+                    RowChange first = queue.poll(1, TimeUnit.SECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    applyingTimestamp = first.timestamp;
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    execute(batch);
+                    applyingTimestamp = 0;
+                    applied(batch);
+                    batch.clear();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                for (Connection con : connections.values()) {
+                    JdbcUtils.close(con);
+                }
+                connections.clear();
+            }
+        }
+
+        void stop() {
+            Thread t = thread;
+            if (t != null) {
+                t.interrupt();
+            }
+        }
+
+        private void execute(List<RowChange> batch) {
+            List<RowChange> valid = new ArrayList<>(batch.size());
+            for (RowChange change : batch) {
+                if (!change.task.isHaserror()) {
+                    valid.add(change);
+                }
+            }
+            Map<String, Connection> used = new HashMap<>();
+            for (ApplyStatement statement : merge(valid)) {
+                if (statement.task.isHaserror()) {
+                    continue;
+                }
+                try {
+                    Connection con = getConnection(statement.task.getTo());
+                    used.put(statement.task.getTo(), con);
+                    Statement stmt = con.createStatement();
+                    try {
+                        stmt.execute(statement.sql);
+                    } finally {
+                        JdbcUtils.close(stmt);
+                    }
+                } catch (SQLException e) {
+                    closeConnection(statement.task.getTo());
+                    used.remove(statement.task.getTo());
+                    onError(statement.task, statement.sql, e);
+                }
+            }
+            for (Map.Entry<String, Connection> entry : used.entrySet()) {
+                try {
+                    entry.getValue().commit();
+                } catch (SQLException e) {
+                    closeConnection(entry.getKey());
+                    LOGGER.error("migrate binlog apply commit error:", e);
+                    for (RowChange change : valid) {
+                        if (change.task.getTo().equals(entry.getKey())) {
+                            onError(change.task, "commit", e);
+                        }
+                    }
+                }
+            }
+        }
+
+        private Connection getConnection(String dataNode) throws SQLException {
+            Connection con = connections.get(dataNode);
+            if (con == null) {
+                con = openConnection(dataNode);
+                connections.put(dataNode, con);
+            }
+            return con;
+        }
+
+        private void closeConnection(String dataNode) {
+            Connection con = connections.remove(dataNode);
+            if (con != null) {
+                try {
+                    con.rollback();
+                } catch (SQLException e) {
+                    // ignore
+                }
+                JdbcUtils.close(con);
+            }
+        }
+    }
+}
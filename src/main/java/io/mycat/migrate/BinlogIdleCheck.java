@@ -16,6 +16,8 @@ import java.util.List;
 public class BinlogIdleCheck implements Runnable {
     private BinlogStream binlogStream;
     private static final Logger LOGGER = LoggerFactory.getLogger(BinlogIdleCheck.class);
+    //回放延迟在此秒数以内时认为增量已经追上
+    private static final long MAX_SWITCH_LAG_SECONDS = 5;
     public BinlogIdleCheck(BinlogStream binlogStream) {
         this.binlogStream = binlogStream;
     }
@@ -32,9 +34,17 @@ public class BinlogIdleCheck implements Runnable {
                 taskPath=zkPath.substring(0,zkPath.lastIndexOf("/")) ;
                 dataHost=zkPath.substring(zkPath.lastIndexOf("/")+1);
             }
-            if(migrateTask.isHaserror()||migrateTask.isHasExecute())
+            if(migrateTask.isHaserror())
             {
                 continue;
+            }
+            if(migrateTask.isHasExecute())
+            {
+                //持续有写入时，回放延迟足够小也可以开始切换，切换前会等待回放完成
+                if(binlogStream.getApplyLagSeconds()<=MAX_SWITCH_LAG_SECONDS){
+                    sucessSwitchTask=sucessSwitchTask+1;
+                }
+                continue;
             }
                 Date lastDate=       migrateTask.getLastBinlogDate();
                 long diff = (new Date().getTime() - lastDate.getTime())/1000;
@@ -92,7 +102,7 @@ public class BinlogIdleCheck implements Runnable {
 
 
           //全部空闲后，如果已经开始切换了，则修改每个子任务状态
-        if(fullSucessSwitchTask==migrateTaskList.size()){
+        if(fullSucessSwitchTask==migrateTaskList.size()&&binlogStream.getApplyLagEvents()==0){
             try {
                 TaskNode taskNode=JSON.parseObject(new String( ZKUtils.getConnection().getData().forPath(taskPath),"UTF-8"),TaskNode.class);
                  if(taskNode.getStatus()==2) {
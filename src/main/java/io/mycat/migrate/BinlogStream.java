@@ -5,11 +5,9 @@ import com.github.shyiko.mysql.binlog.BinaryLogClient;
 import com.github.shyiko.mysql.binlog.event.*;
 import com.google.common.base.Strings;
 import io.mycat.MycatServer;
-import io.mycat.backend.datasource.PhysicalDBNode;
+import io.mycat.config.model.SystemConfig;
 import io.mycat.route.function.PartitionByCRC32PreSlot;
 import io.mycat.server.util.SchemaUtil;
-import io.mycat.sqlengine.OneRawSQLQueryResultHandler;
-import io.mycat.sqlengine.SQLJob;
 import io.mycat.util.DateUtil;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
@@ -43,7 +41,7 @@ public class BinlogStream {
     private long binlogPos;
 
     private Set<String> databaseSet = new HashSet<>();
-    private Map<String, Semaphore> semaphoreMap = new ConcurrentHashMap<>();
+    private volatile BinlogApplier applier;
 
 
     private List<MigrateTask> migrateTaskList;
@@ -56,11 +54,6 @@ public class BinlogStream {
         this.migrateTaskList = migrateTaskList;
         for (MigrateTask migrateTask : migrateTaskList) {
             databaseSet.add(MigrateUtils.getDatabaseFromDataNode(migrateTask.getFrom()));
-            String dataHostTo = MigrateUtils.getDataHostFromDataNode(migrateTask.getTo());
-            if (!semaphoreMap.containsKey(dataHostTo)) {
-                int count = Double.valueOf(MycatServer.getInstance().getConfig().getDataHosts().get(dataHostTo).getSource().getSize() * 0.8).intValue();
-                semaphoreMap.put(dataHostTo, new Semaphore(1));
-            }
         }
     }
 
@@ -116,6 +109,24 @@ public class BinlogStream {
         for (MigrateTask migrateTask : migrateTaskList) {
             migrateTask.setLastBinlogDate(curDate);
         }
+        SystemConfig system = MycatServer.getInstance().getConfig().getSystem();
+        applier = new BinlogApplier(this, system.getMigrateApplyThreads(), system.getMigrateApplyBatchSize());
+    }
+
+    /**
+     * 已收到但还没有回放到目标节点的事件数
+     */
+    public long getApplyLagEvents() {
+        BinlogApplier curApplier = applier;
+        return curApplier == null ? 0 : curApplier.getLagEvents();
+    }
+
+    /**
+     * 最早一个未回放事件的 binlog 时间到现在的秒数
+     */
+    public long getApplyLagSeconds() {
+        BinlogApplier curApplier = applier;
+        return curApplier == null ? 0 : curApplier.getLagSeconds();
     }
 
     public void connect(long timeoutInMilliseconds) throws IOException, TimeoutException {
@@ -144,6 +155,10 @@ public class BinlogStream {
 
 
     public synchronized void disconnect() throws IOException {
+        // 先停止回放，binlog 线程不再阻塞在回放队列上，断开连接才能等到它释放连接锁
+        if (applier != null) {
+            applier.shutdown();
+        }
         if (binaryLogClient != null) {
             binaryLogClient.disconnect();
             binaryLogClient = null;
@@ -187,7 +202,7 @@ public class BinlogStream {
             Connection con = null;
             try {
                 con = DriverManager.getConnection("jdbc:mysql://" + hostname + ":" + port, username, password);
-                list = executeQuery(con, "select  COLUMN_NAME, ORDINAL_POSITION, DATA_TYPE, CHARACTER_SET_NAME from INFORMATION_SCHEMA.COLUMNS where table_name='" + table + "' and TABLE_SCHEMA='" + database + "'");
+                list = executeQuery(con, "select  COLUMN_NAME, ORDINAL_POSITION, DATA_TYPE, CHARACTER_SET_NAME, COLUMN_KEY from INFORMATION_SCHEMA.COLUMNS where table_name='" + table + "' and TABLE_SCHEMA='" + database + "'");
 
             } catch (SQLException e) {
                 throw new RuntimeException(e);
@@ -254,26 +269,16 @@ public class BinlogStream {
             }
         }
 
-        private void exeSql(MigrateTask task, String sql) {
-            if (task.isHaserror())
-                return;
-            task.setHasExecute(true);
-            String dataHostTo = MigrateUtils.getDataHostFromDataNode(task.getTo());
-            Semaphore semaphore = semaphoreMap.get(dataHostTo);
+        private void apply(BinlogApplier.RowChange change, boolean barrier) {
             try {
-                semaphore.acquire();
+                if (barrier) {
+                    applier.applyBarrier(change);
+                } else {
+                    applier.apply(change);
+                }
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
-            SqlExecuteListener listener = new SqlExecuteListener(task, sql, BinlogStream.this,
-                    semaphore);
-            OneRawSQLQueryResultHandler resultHandler = new OneRawSQLQueryResultHandler(new String[0],
-                    listener);
-            resultHandler.setMark("binlog execute");
-            PhysicalDBNode dn = MycatServer.getInstance().getConfig().getDataNodes().get(task.getTo());
-            SQLJob sqlJob = new SQLJob(sql, dn.getDatabase(), resultHandler, dn.getDbPool().getSource());
-            listener.setSqlJob(sqlJob);
-            sqlJob.run();
         }
 
         private void handleOtherSqlEvent(Event event) {
@@ -286,7 +291,8 @@ public class BinlogStream {
             for (MigrateTask migrateTask : migrateTaskList) {
                 if (schemaInfo.table.equalsIgnoreCase(migrateTask.getTable())
                         && queryEventData.getDatabase().equalsIgnoreCase(MigrateUtils.getDatabaseFromDataNode(migrateTask.getFrom()))) {
-                    exeSql(migrateTask, query);
+                    apply(BinlogApplier.RowChange.sql(migrateTask, migrateTask.getTable(), migrateTask.getTable(), query,
+                            event.getHeader().getTimestamp()), true);
                 }
             }
 
@@ -319,25 +325,23 @@ public class BinlogStream {
                 return;
             Map<Integer, Map<String, Object>> xxx = tablesColumnMap.get(tableMapEvent.getDatabase() + "." + tableMapEvent.getTable());
             BitSet inculudeColumn = eventData.getIncludedColumns();
-            StringBuilder sb = new StringBuilder("insert into  ");
-            sb.append(tableMapEvent.getTable());
-            sb.append("(");
+            StringBuilder columns = new StringBuilder();
             int size = inculudeColumn.length();
             List<Serializable[]> rows = eventData.getRows();
 
-            int slot = -1;
             for (int i = 0; i < size; i++) {
                 int column = inculudeColumn.nextSetBit(i);
                 Map<String, Object> coumnMap = xxx.get(column + 1);
-                sb.append(coumnMap.get("COLUMN_NAME"));
+                columns.append(coumnMap.get("COLUMN_NAME"));
                 if (i != size - 1) {
-                    sb.append(",");
+                    columns.append(",");
                 }
             }
-            sb.append(")  values  ");
-            for (int i = 0; i < rows.size(); i++) {
-                Serializable[] value = rows.get(i);
-                sb.append(" (");
+            //每行单独分配到回放线程，回放时再把相邻的行合并成一条 insert
+            for (Serializable[] value : rows) {
+                StringBuilder sb = new StringBuilder(" (");
+                StringBuilder key = new StringBuilder(tableMapEvent.getTable());
+                int slot = -1;
                 for (int y = 0; y < size; y++) {
                     int column = inculudeColumn.nextSetBit(y);
                     Map<String, Object> coumnMap = xxx.get(column + 1);
@@ -346,35 +350,43 @@ public class BinlogStream {
                     if ("_slot".equalsIgnoreCase(columnName)) {
                         slot = value[y] instanceof BigInteger ? ((BigInteger) value[y]).intValue() : ((Integer) value[y]);
                     }
-                    sb.append(convertBinlogValue(value[y], dataType));
+                    Object literal = convertBinlogValue(value[y], dataType);
+                    sb.append(literal);
+                    if (isPrimaryKey(coumnMap)) {
+                        key.append(",").append(literal);
+                    }
 
                     if (y != size - 1) {
                         sb.append(",");
                     }
                 }
                 sb.append(")");
-                if (i != rows.size() - 1) {
-                    sb.append(",");
+                MigrateTask task = findTask(tableMapEvent, slot);
+                if (task != null) {
+                    apply(BinlogApplier.RowChange.insert(task, tableMapEvent.getTable(), key.toString(), columns.toString(),
+                            sb.toString(), event.getHeader().getTimestamp()), false);
                 }
             }
 
-            checkIfExeSql(tableMapEvent, sb, slot);
+        }
 
+        private boolean isPrimaryKey(Map<String, Object> coumnMap) {
+            return "PRI".equals(coumnMap.get("COLUMN_KEY"));
         }
 
-        private void checkIfExeSql(TableMapEventData tableMapEvent, StringBuilder sb, int slot) {
+        private MigrateTask findTask(TableMapEventData tableMapEvent, int slot) {
             for (MigrateTask migrateTask : migrateTaskList) {
                 if (tableMapEvent.getTable().equalsIgnoreCase(migrateTask.getTable())
                         && tableMapEvent.getDatabase().equalsIgnoreCase(MigrateUtils.getDatabaseFromDataNode(migrateTask.getFrom()))) {
                     for (PartitionByCRC32PreSlot.Range range : migrateTask.getSlots()) {
                         if (range.end >= slot && range.start <= slot) {
-                            exeSql(migrateTask, sb.toString());
-                            return;
+                            return migrateTask;
                         }
                     }
 
                 }
             }
+            return null;
         }
 
         private Object convertBinlogValue(Serializable value, String dataType) {
@@ -449,6 +461,8 @@ public class BinlogStream {
             List<Map.Entry<Serializable[], Serializable[]>> rows = eventData.getRows();
             for (Map.Entry<Serializable[], Serializable[]> row : rows) {
                 StringBuilder sb = new StringBuilder(sba);
+                StringBuilder newKey = new StringBuilder(tableMapEvent.getTable());
+                StringBuilder oldKey = new StringBuilder(tableMapEvent.getTable());
                 int slot = -1;
                 Map.Entry<Serializable[], Serializable[]> rowMap = row;
                 Serializable[] value = rowMap.getValue();
@@ -459,7 +473,11 @@ public class BinlogStream {
                     sb.append(coumnMap.get("COLUMN_NAME"));
                     sb.append("=");
                     String dataType = (String) coumnMap.get("DATA_TYPE");
-                    sb.append(convertBinlogValue(value[i], dataType));
+                    Object literal = convertBinlogValue(value[i], dataType);
+                    sb.append(literal);
+                    if (isPrimaryKey(coumnMap)) {
+                        newKey.append(",").append(literal);
+                    }
 
                     if (i != size - 1) {
                         sb.append(",");
@@ -481,6 +499,9 @@ public class BinlogStream {
 
                         sb.append(convertBinlogValue(value1, dataType));
                     }
+                    if (isPrimaryKey(coumnMap)) {
+                        oldKey.append(",").append(convertBinlogValue(value1, (String) coumnMap.get("DATA_TYPE")));
+                    }
                     String columnName = (String) coumnMap.get("COLUMN_NAME");
                     if ("_slot".equalsIgnoreCase(columnName)) {
                         slot = value1 instanceof BigInteger ? ((BigInteger) value1).intValue() : ((Integer) value1);
@@ -490,7 +511,13 @@ public class BinlogStream {
                     }
                 }
 
-                checkIfExeSql(tableMapEvent, sb, slot);
+                MigrateTask task = findTask(tableMapEvent, slot);
+                if (task != null) {
+                    //修改了主键时新旧两行可能在不同的回放线程上，需要等其它线程回放完
+                    String oldKeyStr = oldKey.toString();
+                    apply(BinlogApplier.RowChange.sql(task, tableMapEvent.getTable(), oldKeyStr, sb.toString(),
+                            event.getHeader().getTimestamp()), !oldKeyStr.equals(newKey.toString()));
+                }
             }
 
 
@@ -510,8 +537,11 @@ public class BinlogStream {
             List<Serializable[]> rows = eventData.getRows();
             for (Serializable[] row : rows) {
                 StringBuilder sb = new StringBuilder(sba);
+                StringBuilder key = new StringBuilder(tableMapEvent.getTable());
                 Serializable[] value = row;
-
+                int pkCount = 0;
+                String pkColumn = null;
+                Object pkValue = null;
 
                 int slot = -1;
                 for (int i = 0; i < size; i++) {
@@ -519,15 +549,23 @@ public class BinlogStream {
                     Map<String, Object> coumnMap = xxx.get(column + 1);
                     sb.append(coumnMap.get("COLUMN_NAME"));
                     Serializable value1 = value[i];
+                    Object literal = null;
                     if (value1 == null) {
                         sb.append(" is null");
                     } else {
                         sb.append("=");
                         String dataType = (String) coumnMap.get("DATA_TYPE");
 
-                        sb.append(convertBinlogValue(value1, dataType));
+                        literal = convertBinlogValue(value1, dataType);
+                        sb.append(literal);
                     }
                     String columnName = (String) coumnMap.get("COLUMN_NAME");
+                    if (isPrimaryKey(coumnMap)) {
+                        key.append(",").append(literal);
+                        pkCount++;
+                        pkColumn = columnName;
+                        pkValue = literal;
+                    }
                     if ("_slot".equalsIgnoreCase(columnName)) {
                         slot = value1 instanceof BigInteger ? ((BigInteger) value1).intValue() : ((Integer) value1);
                     }
@@ -535,7 +573,18 @@ public class BinlogStream {
                         sb.append(" and ");
                     }
                 }
-                checkIfExeSql(tableMapEvent, sb, slot);
+                MigrateTask task = findTask(tableMapEvent, slot);
+                if (task == null) {
+                    continue;
+                }
+                //单列主键的 delete 回放时可以合并成 in
+                if (pkCount == 1 && pkValue != null) {
+                    apply(BinlogApplier.RowChange.delete(task, tableMapEvent.getTable(), key.toString(), pkColumn,
+                            String.valueOf(pkValue), event.getHeader().getTimestamp()), false);
+                } else {
+                    apply(BinlogApplier.RowChange.sql(task, tableMapEvent.getTable(), key.toString(), sb.toString(),
+                            event.getHeader().getTimestamp()), false);
+                }
 
             }
 
@@ -0,0 +1,521 @@
+package io.mycat.migrate;
+
+import com.alibaba.druid.util.JdbcUtils;
+import com.alibaba.fastjson.JSON;
+import com.google.common.base.Strings;
+import io.mycat.MycatServer;
+import io.mycat.backend.datasource.PhysicalDBNode;
+import io.mycat.backend.datasource.PhysicalDBPool;
+import io.mycat.backend.datasource.PhysicalDatasource;
+import io.mycat.config.model.DBHostConfig;
+import io.mycat.util.KeyRangeUtil;
+import io.mycat.util.ZKUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 不依赖 mysqldump 的全量拷贝，替代 MigrateDumpRunner
+ *
+ * 1. 对源表 flush tables with read lock，在多个连接上开启一致性快照事务，记录 binlog 位置和 gtid，然后解锁；
+ * 2. 按主键把 slot 范围切成多段，每段在自己的快照连接上流式读取，按批 replace into 到目标节点，不落临时文件；
+ * 3. 拷贝过程中定期把行数、速度和剩余时间写到 zk 的任务状态节点上。
+ *
+ * 源连接的结果集使用 binary 字符集，按原始字节拷贝，不做字符集转换；json 列按 utf8mb4 文本读取和写入。
+ * 生成列不拷贝，由目标库自己计算。
+ */
+public class MigrateCopyRunner implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(MigrateCopyRunner.class);
+    private static final long PROGRESS_INTERVAL = 5000;
+    private static final int STATUS_RUNNING = 5;
+    /**
+     * 每批 replace into 的数据字节数上限，转义后可能翻倍，留足余量保证不超过默认 4M 的 max_allowed_packet
+     */
+    static final int MAX_BATCH_BYTES = 1024 * 1024;
+    /**
+     * 每个值在语句中的额外开销估算（引号、逗号、_binary 前缀等）
+     */
+    private static final int VALUE_OVERHEAD = 16;
+
+    private MigrateTask task;
+    private CountDownLatch latch;
+    private AtomicInteger sucessTask;
+    private int threads;
+    private int batchSize;
+
+    private final AtomicLong copiedRows = new AtomicLong();
+    private volatile long totalRows = -1;
+    private long startTime;
+
+    public MigrateCopyRunner(MigrateTask task, CountDownLatch latch, AtomicInteger sucessTask, int threads, int batchSize) {
+        this.task = task;
+        this.latch = latch;
+        this.sucessTask = sucessTask;
+        this.threads = Math.max(1, threads);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public void run() {
+        Connection lockCon = null;
+        List<Connection> snapshotCons = new ArrayList<>();
+        ExecutorService executor = null;
+        try {
+            DBHostConfig config = getDataNodeConfig(task.getFrom());
+            String database = MigrateUtils.getDatabaseFromDataNode(task.getFrom());
+            String table = task.getTable();
+            String where = MigrateUtils.makeSlotWhere(task);
+            if (Strings.isNullOrEmpty(where)) {
+                where = "1=1";
+            }
+
+            lockCon = open(config, database);
+            String createSql = queryCreateTable(lockCon, table);
+            String primaryKey = queryPrimaryKey(lockCon, table);
+            List<CopyColumn> columns = queryColumns(lockCon, database, table);
+            LOGGER.info("migrate 中 准备自动创建新的table:" + createSql);
+            MigrateUtils.execulteSql(createSql, task.getTo());
+
+            //第一个连接用于统计，其余的用于拷贝
+            for (int i = 0; i <= threads; i++) {
+                snapshotCons.add(open(config, database));
+            }
+            String[] position = startSnapshot(lockCon, snapshotCons, table);
+            task.setBinlogFile(position[0]);
+            task.setPos(Integer.parseInt(position[1]));
+            task.setGtidSet(position[2]);
+            JdbcUtils.close(lockCon);
+            lockCon = null;
+            LOGGER.info("migrate 中 全量拷贝 " + task.getFrom() + "-" + task.getTo() + " binlog:" + position[0] + ":" + position[1]);
+
+            Connection statCon = snapshotCons.get(0);
+            List<String> splits = new ArrayList<>();
+            if (primaryKey != null && threads > 1) {
+                splits = querySplitPoints(statCon, table, primaryKey, where, threads);
+            }
+            startTime = System.currentTimeMillis();
+            executor = Executors.newFixedThreadPool(splits.size() + 1);
+            List<Future<Long>> futures = new ArrayList<>();
+            for (int i = 0; i <= splits.size(); i++) {
+                String lower = i == 0 ? null : splits.get(i - 1);
+                String upper = i == splits.size() ? null : splits.get(i);
+                String sql = makeSelectSql(table, columns, primaryKey, where, lower, upper);
+                futures.add(executor.submit(new CopyWorker(snapshotCons.get(i + 1), sql, table, columns)));
+            }
+
+            totalRows = queryCount(statCon, table, where);
+            waitWorkers(futures, snapshotCons);
+
+            for (Connection con : snapshotCons) {
+                execute(con, "COMMIT");
+            }
+            TaskStatus taskStatus = makeProgress(1, "sucess");
+            taskStatus.setBinlogFile(position[0]);
+            taskStatus.setPos(Long.parseLong(position[1]));
+            taskStatus.setGtidSet(position[2]);
+            pushStatusToZK(taskStatus);
+            sucessTask.getAndIncrement();
+        } catch (Exception e) {
+            LOGGER.error("error:", e);
+            try {
+                pushStatusToZK(makeProgress(0, e.getLocalizedMessage()));
+            } catch (Exception e1) {
+                LOGGER.error("push migrate task failure status to zk error:", e1);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            JdbcUtils.close(lockCon);
+            for (Connection con : snapshotCons) {
+                JdbcUtils.close(con);
+            }
+            latch.countDown();
+        }
+    }
+
+    /**
+     * 锁表期间在所有连接上开启快照，保证各个连接读到的数据和记录的 binlog 位置一致
+     *
+     * @return binlog 文件名、位置、gtid
+     */
+    private String[] startSnapshot(Connection lockCon, List<Connection> snapshotCons, String table) throws SQLException {
+        for (Connection con : snapshotCons) {
+            execute(con, "SET SESSION TRANSACTION ISOLATION LEVEL REPEATABLE READ");
+            execute(con, "SET SESSION time_zone = '+00:00'");
+        }
+        execute(lockCon, "FLUSH TABLES `" + table + "` WITH READ LOCK");
+        try {
+            for (Connection con : snapshotCons) {
+                execute(con, "START TRANSACTION WITH CONSISTENT SNAPSHOT");
+            }
+            Statement stmt = lockCon.createStatement();
+            try {
+                ResultSet rs = stmt.executeQuery("SHOW MASTER STATUS");
+                if (!rs.next()) {
+                    throw new SQLException("binlog is not enabled on " + task.getFrom());
+                }
+                String gtidSet = rs.getMetaData().getColumnCount() >= 5 ? rs.getString(5) : null;
+                return new String[]{rs.getString(1), rs.getString(2), gtidSet};
+            } finally {
+                JdbcUtils.close(stmt);
+            }
+        } finally {
+            execute(lockCon, "UNLOCK TABLES");
+        }
+    }
+
+    private void waitWorkers(List<Future<Long>> futures, List<Connection> snapshotCons) throws Exception {
+        long lastPush = System.currentTimeMillis();
+        for (Future<Long> future : futures) {
+            while (true) {
+                try {
+                    future.get(1, TimeUnit.SECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (System.currentTimeMillis() - lastPush >= PROGRESS_INTERVAL) {
+                        lastPush = System.currentTimeMillis();
+                        pushStatusToZK(makeProgress(STATUS_RUNNING, "running"));
+                    }
+                } catch (ExecutionException e) {
+                    //关闭快照连接，让其它还在读取的线程尽快结束
+                    for (Connection con : snapshotCons) {
+                        JdbcUtils.close(con);
+                    }
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+            }
+        }
+    }
+
+    private TaskStatus makeProgress(int status, String msg) {
+        TaskStatus taskStatus = new TaskStatus();
+        taskStatus.setStatus(status);
+        taskStatus.setMsg(msg);
+        long copied = copiedRows.get();
+        long total = totalRows;
+        long rate = 0;
+        if (startTime > 0) {
+            long elapsed = Math.max(1, System.currentTimeMillis() - startTime);
+            rate = copied * 1000 / elapsed;
+        }
+        taskStatus.setCopiedRows(copied);
+        taskStatus.setTotalRows(total);
+        taskStatus.setRowsPerSecond(rate);
+        if (total >= 0 && rate > 0) {
+            taskStatus.setEta(Math.max(0, total - copied) / rate);
+        }
+        return taskStatus;
+    }
+
+    private void pushStatusToZK(TaskStatus taskStatus) throws Exception {
+        String path = task.getZkpath() + "/" + task.getFrom() + "-" + task.getTo();
+        task.setStatus(taskStatus.getStatus());
+        if (ZKUtils.getConnection().checkExists().forPath(path) == null) {
+            ZKUtils.getConnection().create().forPath(path, JSON.toJSONBytes(taskStatus));
+        } else {
+            ZKUtils.getConnection().setData().forPath(path, JSON.toJSONBytes(taskStatus));
+        }
+    }
+
+    /**
+     * 在快照连接上流式读取一段数据并写入目标节点
+     */
+    private class CopyWorker implements Callable<Long> {
+        private final Connection source;
+        private final String sql;
+        private final String table;
+        private final List<CopyColumn> columns;
+        private PreparedStatement fullInsert;
+
+        CopyWorker(Connection source, String sql, String table, List<CopyColumn> columns) {
+            this.source = source;
+            this.sql = sql;
+            this.table = table;
+            this.columns = columns;
+        }
+
+        @Override
+        public Long call() throws Exception {
+            PhysicalDBNode dbNode = MycatServer.getInstance().getConfig().getDataNodes().get(task.getTo());
+            Connection target = null;
+            Statement stmt = null;
+            long rows = 0;
+            try {
+                target = open(getDataNodeConfig(task.getTo()), dbNode.getDatabase());
+                execute(target, "SET SESSION sql_mode = 'NO_AUTO_VALUE_ON_ZERO'");
+                execute(target, "SET SESSION foreign_key_checks = 0");
+                execute(target, "SET SESSION time_zone = '+00:00'");
+                execute(source, "SET SESSION character_set_results = binary");
+
+                stmt = source.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                stmt.setFetchSize(Integer.MIN_VALUE);
+                ResultSet rs = stmt.executeQuery(sql);
+                int columnCount = columns.size();
+                List<byte[][]> batch = new ArrayList<>(batchSize);
+                long batchBytes = 0;
+                try {
+                    while (rs.next()) {
+                        byte[][] row = new byte[columnCount][];
+                        for (int i = 0; i < columnCount; i++) {
+                            row[i] = rs.getBytes(i + 1);
+                            batchBytes += (row[i] == null ? 0 : row[i].length) + VALUE_OVERHEAD;
+                        }
+                        batch.add(row);
+                        //按行数或字节数满一批就写入，避免大字段把语句撑过 max_allowed_packet
+                        if (batch.size() == batchSize || batchBytes >= MAX_BATCH_BYTES) {
+                            rows += flush(target, batch);
+                            batchBytes = 0;
+                        }
+                    }
+                    if (!batch.isEmpty()) {
+                        rows += flush(target, batch);
+                    }
+                } finally {
+                    JdbcUtils.close(fullInsert);
+                }
+                return rows;
+            } finally {
+                JdbcUtils.close(stmt);
+                JdbcUtils.close(target);
+            }
+        }
+
+        /**
+         * 满批复用同一个语句，按字节提前结束的批和最后一批单独准备语句
+         */
+        private int flush(Connection target, List<byte[][]> batch) throws SQLException {
+            if (batch.size() == batchSize) {
+                if (fullInsert == null) {
+                    fullInsert = target.prepareStatement(makeInsertSql(table, columns, batchSize));
+                }
+                return flush(fullInsert, batch);
+            }
+            PreparedStatement insert = target.prepareStatement(makeInsertSql(table, columns, batch.size()));
+            try {
+                return flush(insert, batch);
+            } finally {
+                JdbcUtils.close(insert);
+            }
+        }
+
+        private int flush(PreparedStatement insert, List<byte[][]> batch) throws SQLException {
+            int index = 1;
+            for (byte[][] row : batch) {
+                for (byte[] value : row) {
+                    if (value == null) {
+                        insert.setNull(index++, Types.NULL);
+                    } else {
+                        insert.setBytes(index++, value);
+                    }
+                }
+            }
+            insert.executeUpdate();
+            int size = batch.size();
+            copiedRows.addAndGet(size);
+            batch.clear();
+            return size;
+        }
+    }
+
+    /**
+     * 需要拷贝的列，json 列按 utf8mb4 文本读取
+     */
+    static class CopyColumn {
+        final String name;
+        final boolean json;
+
+        CopyColumn(String name, boolean json) {
+            this.name = name;
+            this.json = json;
+        }
+    }
+
+    static String makeSelectSql(String table, List<CopyColumn> columns, String primaryKey, String where, String lower, String upper) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("select ");
+        for (int i = 0; i < columns.size(); i++) {
+            CopyColumn column = columns.get(i);
+            if (i > 0) {
+                sb.append(',');
+            }
+            if (column.json) {
+                sb.append("convert(`").append(column.name).append("` using utf8mb4)");
+            } else {
+                sb.append('`').append(column.name).append('`');
+            }
+        }
+        sb.append(" from `").append(table).append("` where (").append(where).append(")");
+        if (lower != null) {
+            sb.append(" and `").append(primaryKey).append("` > ").append(lower);
+        }
+        if (upper != null) {
+            sb.append(" and `").append(primaryKey).append("` <= ").append(upper);
+        }
+        return sb.toString();
+    }
+
+    static String makeInsertSql(String table, List<CopyColumn> columns, int rows) {
+        int columnCount = columns.size();
+        StringBuilder sb = new StringBuilder();
+        sb.append("replace into `").append(table).append("` (");
+        for (int i = 0; i < columnCount; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append('`').append(columns.get(i).name).append('`');
+        }
+        sb.append(") values ");
+        for (int r = 0; r < rows; r++) {
+            if (r > 0) {
+                sb.append(',');
+            }
+            sb.append('(');
+            for (int i = 0; i < columnCount; i++) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                //binary 参数直接写 json 列会报错，按 utf8mb4 解释
+                sb.append(columns.get(i).json ? "convert(? using utf8mb4)" : "?");
+            }
+            sb.append(')');
+        }
+        return sb.toString();
+    }
+
+    private static List<String> querySplitPoints(Connection con, String table, String primaryKey, String where, int parts) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("select min(`" + primaryKey + "`), max(`" + primaryKey + "`) from `" + table + "` where " + where);
+            if (!rs.next() || rs.getString(1) == null || !isIntegral(rs.getMetaData().getColumnType(1))) {
+                return new ArrayList<>();
+            }
+            List<String> points = new ArrayList<>();
+            for (BigInteger point : KeyRangeUtil.splitPoints(new BigInteger(rs.getString(1)), new BigInteger(rs.getString(2)), parts)) {
+                points.add(point.toString());
+            }
+            return points;
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    private static boolean isIntegral(int type) {
+        return type == Types.TINYINT || type == Types.SMALLINT || type == Types.INTEGER || type == Types.BIGINT;
+    }
+
+    private static long queryCount(Connection con, String table, String where) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("select count(*) from `" + table + "` where " + where);
+            return rs.next() ? rs.getLong(1) : -1;
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    /**
+     * 只有单列主键时才能按主键切分，否则返回 null
+     */
+    private static String queryPrimaryKey(Connection con, String table) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("SHOW KEYS FROM `" + table + "` WHERE Key_name = 'PRIMARY'");
+            String column = null;
+            int count = 0;
+            while (rs.next()) {
+                column = rs.getString("Column_name");
+                count++;
+            }
+            return count == 1 ? column : null;
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    /**
+     * 按定义顺序查询需要拷贝的列，跳过 VIRTUAL / STORED 生成列（DEFAULT_GENERATED 只是默认值表达式，仍需拷贝）
+     */
+    private static List<CopyColumn> queryColumns(Connection con, String database, String table) throws SQLException {
+        PreparedStatement stmt = con.prepareStatement("select COLUMN_NAME, DATA_TYPE, EXTRA from information_schema.COLUMNS"
+                + " where TABLE_SCHEMA = ? and TABLE_NAME = ? order by ORDINAL_POSITION");
+        try {
+            stmt.setString(1, database);
+            stmt.setString(2, table);
+            ResultSet rs = stmt.executeQuery();
+            List<CopyColumn> columns = new ArrayList<>();
+            while (rs.next()) {
+                if (isGenerated(rs.getString(3))) {
+                    continue;
+                }
+                columns.add(new CopyColumn(rs.getString(1), "json".equalsIgnoreCase(rs.getString(2))));
+            }
+            if (columns.isEmpty()) {
+                throw new SQLException("table " + table + " has no columns to copy");
+            }
+            return columns;
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    static boolean isGenerated(String extra) {
+        if (extra == null) {
+            return false;
+        }
+        String upper = extra.toUpperCase();
+        return upper.contains("VIRTUAL GENERATED") || upper.contains("STORED GENERATED") || upper.contains("PERSISTENT GENERATED");
+    }
+
+    private static String queryCreateTable(Connection con, String table) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            ResultSet rs = stmt.executeQuery("SHOW CREATE TABLE `" + table + "`");
+            if (!rs.next()) {
+                throw new SQLException("table " + table + " not exists");
+            }
+            return rs.getString(2).replaceFirst("CREATE TABLE", "CREATE TABLE IF not EXISTS");
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    private static void execute(Connection con, String sql) throws SQLException {
+        Statement stmt = con.createStatement();
+        try {
+            stmt.execute(sql);
+        } finally {
+            JdbcUtils.close(stmt);
+        }
+    }
+
+    private static DBHostConfig getDataNodeConfig(String dataNode) {
+        PhysicalDBPool dbPool = MycatServer.getInstance().getConfig().getDataNodes().get(dataNode).getDbPool();
+        PhysicalDatasource datasource = dbPool.getSources()[dbPool.getActivedIndex()];
+        return datasource.getConfig();
+    }
+
+    private static Connection open(DBHostConfig config, String database) throws SQLException {
+        return DriverManager.getConnection("jdbc:mysql://" + config.getUrl() + "/" + database, config.getUser(), config.getPassword());
+    }
+}
@@ -2,7 +2,6 @@ package io.mycat.migrate;
 
 import com.alibaba.druid.util.JdbcUtils;
 import com.alibaba.fastjson.JSON;
-import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.io.Files;
 import io.mycat.MycatServer;
@@ -12,7 +11,6 @@ import io.mycat.backend.datasource.PhysicalDatasource;
 import io.mycat.config.model.DBHostConfig;
 import io.mycat.config.model.SystemConfig;
 import io.mycat.memory.environment.OperatingSystem;
-import io.mycat.route.function.PartitionByCRC32PreSlot.Range;
 import io.mycat.util.ProcessUtil;
 import io.mycat.util.StringUtil;
 import io.mycat.util.ZKUtils;
@@ -194,17 +192,7 @@ public class MigrateDumpRunner implements Runnable {
     }
 
     private String makeWhere(MigrateTask task) {
-        List<String> whereList = new ArrayList<>();
-        List<Range> slotRanges = task.getSlots();
-        for (Range slotRange : slotRanges) {
-            if (slotRange.start == slotRange.end) {
-                whereList.add("_slot =" + slotRange.start);
-            } else {
-                whereList.add("(_slot >=" + slotRange.start + " and _slot <=" + slotRange.end + ")");
-            }
-        }
-
-        return Joiner.on(" or  ").join(whereList);
+        return MigrateUtils.makeSlotWhere(task);
     }
 
     private static String querySecurePath(DBHostConfig config) {
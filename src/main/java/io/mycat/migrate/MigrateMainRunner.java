@@ -5,6 +5,7 @@ import io.mycat.MycatServer;
 import io.mycat.backend.datasource.PhysicalDBPool;
 import io.mycat.backend.datasource.PhysicalDatasource;
 import io.mycat.config.model.DBHostConfig;
+import io.mycat.config.model.SystemConfig;
 import io.mycat.util.ZKUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -40,10 +41,20 @@ public class MigrateMainRunner implements Runnable {
         try{
         AtomicInteger sucessTask = new AtomicInteger(0);
         if (!forceBinlog) {
-            LOGGER.info("migrate 中 进入 mysqldump阶段");
+            SystemConfig system = MycatServer.getInstance().getConfig().getSystem();
+            int copyThreads = system.getMigrateCopyThreads();
             CountDownLatch downLatch = new CountDownLatch(migrateTaskList.size());
-            for (MigrateTask migrateTask : migrateTaskList) {
-                MycatServer.getInstance().getBusinessExecutor().submit(new MigrateDumpRunner(migrateTask, downLatch, sucessTask));
+            if (copyThreads > 0) {
+                LOGGER.info("migrate 中 进入 全量拷贝阶段");
+                for (MigrateTask migrateTask : migrateTaskList) {
+                    MycatServer.getInstance().getBusinessExecutor().submit(new MigrateCopyRunner(migrateTask, downLatch, sucessTask,
+                            copyThreads, system.getMigrateCopyBatchSize()));
+                }
+            } else {
+                LOGGER.info("migrate 中 进入 mysqldump阶段");
+                for (MigrateTask migrateTask : migrateTaskList) {
+                    MycatServer.getInstance().getBusinessExecutor().submit(new MigrateDumpRunner(migrateTask, downLatch, sucessTask));
+                }
             }
             try {
                 //modify by jian.xie 需要等到dumprunner执行结束 timeout需要改成用户指定的超时时间@cjw
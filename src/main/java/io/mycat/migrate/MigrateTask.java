@@ -30,6 +30,7 @@ public class MigrateTask implements Serializable {
     								//
     private transient String binlogFile;
     private transient int pos;
+    private transient String gtidSet; //全量拷贝时的 Executed_Gtid_Set
     private transient volatile Date lastBinlogDate;
     private transient volatile boolean haserror=false;
     private transient volatile int status;
@@ -92,6 +93,14 @@ public class MigrateTask implements Serializable {
         this.pos = pos;
     }
 
+    public String getGtidSet() {
+        return gtidSet;
+    }
+
+    public void setGtidSet(String gtidSet) {
+        this.gtidSet = gtidSet;
+    }
+
     public String getFrom() {
         return from;
     }
@@ -59,6 +59,46 @@ public class MigrateTaskWatch {
     }
 
 
+    //  ......./migrate/schemal/taskid/datahost 下的子节点为各个子任务的状态
+    private static class DataHostPathChildrenCacheListener implements PathChildrenCacheListener {
+        @Override
+        public void childEvent(CuratorFramework curatorFramework,
+                               PathChildrenCacheEvent event) throws Exception {
+            if (event.getType() == PathChildrenCacheEvent.Type.CHILD_ADDED) {
+                String path = event.getData().getPath();
+                if (!path.substring(path.lastIndexOf("/") + 1).startsWith("_")) {
+                    ZKUtils.addChildPathCache(path, new CopyProgressListener());
+                }
+            }
+        }
+    }
+
+    //输出全量拷贝的进度
+    private static class CopyProgressListener implements PathChildrenCacheListener {
+        @Override
+        public void childEvent(CuratorFramework curatorFramework,
+                               PathChildrenCacheEvent event) throws Exception {
+            switch (event.getType()) {
+                case CHILD_ADDED:
+                case CHILD_UPDATED:
+                    byte[] data = event.getData().getData();
+                    if (data == null || data.length == 0) {
+                        break;
+                    }
+                    TaskStatus taskStatus = JSON.parseObject(new String(data, "UTF-8"), TaskStatus.class);
+                    if (taskStatus.getStatus() == 5 || (taskStatus.getStatus() == 1 && taskStatus.getCopiedRows() > 0)) {
+                        LOGGER.info("migrate copy " + event.getData().getPath() + " rows:" + taskStatus.getCopiedRows()
+                                + "/" + (taskStatus.getTotalRows() < 0 ? "?" : String.valueOf(taskStatus.getTotalRows()))
+                                + " " + taskStatus.getRowsPerSecond() + " rows/s eta:"
+                                + (taskStatus.getEta() < 0 ? "?" : taskStatus.getEta() + "s"));
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
     private static class TaskPathChildrenCacheListener implements PathChildrenCacheListener {
         @Override
         public void childEvent(CuratorFramework curatorFramework,
@@ -85,6 +125,7 @@ public class MigrateTaskWatch {
                         curatorFramework.create().creatingParentsIfNeeded().forPath(cleanPath);
                     }
                     ZKUtils.addChildPathCache(cleanPath, new SwitchCleanListener());
+                    ZKUtils.addChildPathCache(event.getData().getPath(), new DataHostPathChildrenCacheListener());
                     LOGGER.info("table CHILD_ADDED: " + event.getData().getPath());
                     break;
                 case CHILD_UPDATED:
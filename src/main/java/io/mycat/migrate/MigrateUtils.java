@@ -243,6 +243,21 @@ public class MigrateUtils {
         return sb.toString();
     }
 
+    /**
+     * 任务中 slot 范围对应的 where 条件
+     */
+    public static String makeSlotWhere(MigrateTask task) {
+        List<String> whereList = new ArrayList<>();
+        for (Range slotRange : task.getSlots()) {
+            if (slotRange.start == slotRange.end) {
+                whereList.add("_slot =" + slotRange.start);
+            } else {
+                whereList.add("(_slot >=" + slotRange.start + " and _slot <=" + slotRange.end + ")");
+            }
+        }
+        return Joiner.on(" or  ").join(whereList);
+    }
+
     public static void execulteSql(String sql, String toDn) throws SQLException, IOException {
         PhysicalDBNode dbNode = MycatServer.getInstance().getConfig().getDataNodes().get(toDn);
         PhysicalDBPool dbPool = dbNode.getDbPool();
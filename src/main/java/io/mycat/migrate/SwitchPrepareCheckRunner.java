@@ -102,9 +102,14 @@ public class SwitchPrepareCheckRunner implements Runnable {
                         }
                     }
                 }
+                BinlogStream stream=         BinlogStreamHoder.binlogStreamMap.get(taskID);
+                if(allIncrentmentSucess&&stream!=null&&stream.getApplyLagEvents()>0){
+                    //还有没回放完的binlog，等回放完再切换
+                    LOGGER.info("migrate 中 等待binlog回放完成, 剩余事件:"+stream.getApplyLagEvents()+" 延迟秒数:"+stream.getApplyLagSeconds());
+                    allIncrentmentSucess=false;
+                }
                 if(allIncrentmentSucess) {
                     //需要关闭binlog，不然后续的清楚老数据会删除数据
-                  BinlogStream stream=         BinlogStreamHoder.binlogStreamMap.get(taskID);
                     if(stream!=null){
                         BinlogStreamHoder.binlogStreamMap.remove(taskID);
                         stream.disconnect();
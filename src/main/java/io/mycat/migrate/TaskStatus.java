@@ -6,11 +6,17 @@ import java.io.Serializable;
  * Created by nange on 2016/12/7.
  */
 public class TaskStatus implements Serializable {
-    private int status;         //0= dump error     1=dump sucess     2=increnment error     3=increment sucess    4=other error
+    private int status;         //0= dump error     1=dump sucess     2=increnment error     3=increment sucess    4=other error    5=dump running
     private String msg;
     private String binlogFile;
     private long pos;
+    private String gtidSet;
     private String lastDate;
+    //全量拷贝进度
+    private long copiedRows;
+    private long totalRows = -1;
+    private long rowsPerSecond;
+    private long eta = -1;      //剩余秒数，-1 表示未知
 
     public int getStatus() {
         return status;
@@ -43,4 +49,44 @@ public class TaskStatus implements Serializable {
     public void setPos(long pos) {
         this.pos = pos;
     }
+
+    public String getGtidSet() {
+        return gtidSet;
+    }
+
+    public void setGtidSet(String gtidSet) {
+        this.gtidSet = gtidSet;
+    }
+
+    public long getCopiedRows() {
+        return copiedRows;
+    }
+
+    public void setCopiedRows(long copiedRows) {
+        this.copiedRows = copiedRows;
+    }
+
+    public long getTotalRows() {
+        return totalRows;
+    }
+
+    public void setTotalRows(long totalRows) {
+        this.totalRows = totalRows;
+    }
+
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+
+    public void setRowsPerSecond(long rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+
+    public long getEta() {
+        return eta;
+    }
+
+    public void setEta(long eta) {
+        this.eta = eta;
+    }
 }
@@ -50,12 +50,18 @@ public final class AIOAcceptor implements SocketAcceptor,
 	private final AsynchronousServerSocketChannel serverChannel;
 	private final FrontendConnectionFactory factory;
 
-	private long acceptCount;
+	private final AcceptStat acceptStat = new AcceptStat();
 	private final String name;
 
 	public AIOAcceptor(String name, String ip, int port,
 			FrontendConnectionFactory factory, AsynchronousChannelGroup group)
 			throws IOException {
+		this(name, ip, port, 100, factory, group);
+	}
+
+	public AIOAcceptor(String name, String ip, int port, int backlog,
+			FrontendConnectionFactory factory, AsynchronousChannelGroup group)
+			throws IOException {
 		this.name = name;
 		this.port = port;
 		this.factory = factory;
@@ -63,8 +69,7 @@ public final class AIOAcceptor implements SocketAcceptor,
 		/** 设置TCP属性 */
 		serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
 		serverChannel.setOption(StandardSocketOptions.SO_RCVBUF, 1024 * 16 * 2);
-		// backlog=100
-		serverChannel.bind(new InetSocketAddress(ip, port), 100);
+		serverChannel.bind(new InetSocketAddress(ip, port), backlog);
 	}
 
 	public String getName() {
@@ -80,7 +85,17 @@ public final class AIOAcceptor implements SocketAcceptor,
 	}
 
 	public long getAcceptCount() {
-		return acceptCount;
+		return acceptStat.getAccepted();
+	}
+
+	@Override
+	public int getAcceptorCount() {
+		return 1;
+	}
+
+	@Override
+	public AcceptStat getAcceptStat() {
+		return acceptStat;
 	}
 
 	private void accept(NetworkChannel channel, Long id) {
@@ -91,10 +106,13 @@ public final class AIOAcceptor implements SocketAcceptor,
 			NIOProcessor processor = MycatServer.getInstance().nextProcessor();
 			c.setProcessor(processor);
 			c.register();
+			acceptStat.addAccepted(1);
 		} catch (Exception e) {
 		    LOGGER.error("AioAcceptorError", e);
 			closeChannel(channel);
+			acceptStat.addFailed();
 		}
+		acceptStat.tick(System.currentTimeMillis());
 	}
 
 	private void pendingAccept() {
@@ -118,6 +136,7 @@ public final class AIOAcceptor implements SocketAcceptor,
 	@Override
 	public void failed(Throwable exc, Long id) {
 		LOGGER.info("acception connect failed:" + exc);
+		acceptStat.addFailed();
 		// next pending waiting
 		pendingAccept();
 
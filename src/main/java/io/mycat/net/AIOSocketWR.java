@@ -136,6 +136,7 @@ public class AIOSocketWR extends SocketWR
         con.netOutBytes += result;
         con.processor.addNetOutBytes(result);
         con.lastWriteTime = TimeUtil.currentTimeMillis();
+        con.onWriteQueueDrained();
         boolean noMoreData = this.write0();
         if (noMoreData)
         {
@@ -29,14 +29,12 @@ import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousChannel;
 import java.nio.channels.NetworkChannel;
 import java.nio.channels.SocketChannel;
-import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.google.common.base.Strings;
 
 import io.mycat.backend.mysql.CharsetUtil;
-import io.mycat.util.CompressUtil;
 import io.mycat.util.TimeUtil;
 
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
@@ -76,14 +74,22 @@ public abstract class AbstractConnection implements NIOConnection {
 	protected long netInBytes;
 	protected long netOutBytes;
 	protected int writeAttempts;
+	// 是否已在时间轮中登记写队列检查
+	final AtomicBoolean writeCheckArmed = new AtomicBoolean(false);
+	// 等待写队列消化的线程数，socket 写出数据后有等待者时才唤醒
+	private final Object writeDrainLock = new Object();
+	private volatile int writeDrainWaiters;
 	
 	protected volatile boolean isSupportCompress = false;
-    protected final ConcurrentLinkedQueue<byte[]> decompressUnfinishedDataQueue = new ConcurrentLinkedQueue<byte[]>();
-    protected final ConcurrentLinkedQueue<byte[]> compressUnfinishedDataQueue = new ConcurrentLinkedQueue<byte[]>();
+	protected volatile CompressedPacketCodec compressCodec;
 
 	private long idleTimeout;
 
 	private final SocketWR socketWR;
+	// NIO 方式下包处理完后归还读缓冲，AIO 始终有一个挂起的读，不能归还
+	private final boolean releaseIdleReadBuffer;
+	// 当前正在使用的 reactor 共享读缓冲，不属于连接，不能归还给 BufferPool
+	private ByteBuffer sharedReadBuffer;
 
 	public AbstractConnection(NetworkChannel channel) {
 		this.channel = channel;
@@ -93,6 +99,7 @@ public abstract class AbstractConnection implements NIOConnection {
 		} else {
 			socketWR = new NIOSocketWR(this);
 		}
+		this.releaseIdleReadBuffer = !isAIO;
 		this.isClosed = new AtomicBoolean(false);
 		this.startupTime = TimeUtil.currentTimeMillis();
 		this.lastReadTime = startupTime;
@@ -125,6 +132,10 @@ public abstract class AbstractConnection implements NIOConnection {
 	}
 
 	public void setSupportCompress(boolean isSupportCompress) {
+		if (isSupportCompress && compressCodec == null) {
+			// 前端连接作为服务端，后端连接作为客户端
+			compressCodec = new CompressedPacketCodec(processor.getBufferPool(), !(this instanceof FrontendConnection));
+		}
 		this.isSupportCompress = isSupportCompress;
 	}
 
@@ -177,7 +188,14 @@ public abstract class AbstractConnection implements NIOConnection {
 	}
 
 	public boolean isIdleTimeout() {
-		return TimeUtil.currentTimeMillis() > Math.max(lastWriteTime, lastReadTime) + idleTimeout;
+		return TimeUtil.currentTimeMillis() > getIdleDeadline();
+	}
+
+	/**
+	 * 空闲超时的截止时间，随读写活动向后推移
+	 */
+	public long getIdleDeadline() {
+		return Math.max(lastWriteTime, lastReadTime) + idleTimeout;
 	}
 
 	public NetworkChannel getChannel() {
@@ -209,9 +227,8 @@ public abstract class AbstractConnection implements NIOConnection {
 	}
 
 	public void setProcessor(NIOProcessor processor) {
+		// 读缓冲在第一次有数据可读时才分配
 		this.processor = processor;
-		int size = processor.getBufferPool().getChunkSize();
-		this.readBuffer = processor.getBufferPool().allocate(size);
 	}
 
 	public long getLastWriteTime() {
@@ -252,6 +269,12 @@ public abstract class AbstractConnection implements NIOConnection {
 		this.processor.getBufferPool().recycle(buffer);
 	}
 
+	private void recycleReadBuffer(ByteBuffer buffer) {
+		if (buffer != sharedReadBuffer) {
+			recycle(buffer);
+		}
+	}
+
 	public void setHandler(NIOHandler handler) {
 		this.handler = handler;
 	}
@@ -259,11 +282,8 @@ public abstract class AbstractConnection implements NIOConnection {
 	@Override
 	public void handle(byte[] data) {
 		if (isSupportCompress()) {
-			List<byte[]> packs = CompressUtil.decompressMysqlPacket(data, decompressUnfinishedDataQueue);
-			for (byte[] pack : packs) {
-				if (pack.length != 0) {
-					handler.handle(pack);
-				}
+			for (byte[] pack : compressCodec.read(data)) {
+				handler.handle(pack);
 			}
 		} else {
 			handler.handle(data);
@@ -283,6 +303,35 @@ public abstract class AbstractConnection implements NIOConnection {
 		this.socketWR.doNextWriteCheck();
 	}
 
+	/**
+	 * 连接没有未处理完的包时，数据读在 reactor 共享的缓冲中。
+	 * 处理完后如果还剩半个包，复制到从 BufferPool 分配的连接自己的缓冲，否则连接不占用读缓冲
+	 */
+	void onSharedReadData(int got, ByteBuffer shared) throws IOException {
+		sharedReadBuffer = shared;
+		readBuffer = shared;
+		readBufferOffset = 0;
+		try {
+			onReadData(got);
+		} finally {
+			sharedReadBuffer = null;
+			if (readBuffer == shared) {
+				int offset = readBufferOffset;
+				if (shared.position() > offset && !isClosed.get()) {
+					ByteBuffer own = processor.getBufferPool().allocate(processor.getBufferPool().getChunkSize());
+					shared.limit(shared.position());
+					shared.position(offset);
+					own.put(shared);
+					readBuffer = own;
+				} else {
+					readBuffer = null;
+				}
+				readBufferOffset = 0;
+			}
+			shared.clear();
+		}
+	}
+
 	/**
 	 * 读取可能的Socket字节流
 	 */
@@ -339,7 +388,12 @@ public abstract class AbstractConnection implements NIOConnection {
 					// if cur buffer is temper none direct byte buffer and not
 					// received large message in recent 30 seconds
 					// then change to direct buffer for performance
-					if (readBuffer != null && !readBuffer.isDirect()
+					if (readBuffer != null && readBuffer != sharedReadBuffer && releaseIdleReadBuffer
+							&& (readBuffer.isDirect() || lastLargeMessageTime < lastReadTime - 30 * 1000L)) {
+						// 没有未处理完的包，归还读缓冲，下次读先用 reactor 共享的缓冲
+						recycle(readBuffer);
+						readBuffer = null;
+					} else if (readBuffer != null && !readBuffer.isDirect()
 							&& lastLargeMessageTime < lastReadTime - 30 * 1000L) {  // used temp heap
 						if (LOGGER.isDebugEnabled()) {
 							LOGGER.debug("change to direct con read buffer ,cur temp buf size :" + readBuffer.capacity());
@@ -393,7 +447,7 @@ public abstract class AbstractConnection implements NIOConnection {
 			newBuffer.put(buffer);
 			readBuffer = newBuffer;
 
-			recycle(buffer);
+			recycleReadBuffer(buffer);
 			readBufferOffset = 0;
 			return newBuffer;
 
@@ -426,10 +480,10 @@ public abstract class AbstractConnection implements NIOConnection {
 	}
 
 	private final void writeNotSend(ByteBuffer buffer) {
+		onWrite(buffer);
 		if (isSupportCompress()) {
-			ByteBuffer newBuffer = CompressUtil.compressMysqlPacket(buffer, this, compressUnfinishedDataQueue);
-			writeQueue.offer(newBuffer);
-			
+			// 攒满一帧才压缩放入写队列，等最终的 write 再 flush
+			compressCodec.write(buffer, false, writeQueue);
 		} else {
 			writeQueue.offer(buffer);
 		}
@@ -444,13 +498,15 @@ public abstract class AbstractConnection implements NIOConnection {
 
     @Override
 	public final void write(ByteBuffer buffer) {
-    	
+		onWrite(buffer);
 		if (isSupportCompress()) {
-			ByteBuffer newBuffer = CompressUtil.compressMysqlPacket(buffer, this, compressUnfinishedDataQueue);
-			writeQueue.offer(newBuffer);
+			compressCodec.write(buffer, true, writeQueue);
 		} else {
 			writeQueue.offer(buffer);
 		}
+		if (processor != null && !writeCheckArmed.get()) {
+			processor.armWriteCheck(this);
+		}
 
 		// if ansyn write finishe event got lock before me ,then writing
 		// flag is set false but not start a write request
@@ -464,6 +520,12 @@ public abstract class AbstractConnection implements NIOConnection {
 	}
 
 	
+	/**
+	 * buffer 放入写队列前调用，buffer 处于写模式，有效数据为 [0, position)
+	 */
+	protected void onWrite(ByteBuffer buffer) {
+	}
+
 	public ByteBuffer checkWriteBuffer(ByteBuffer buffer, int capacity, boolean writeSocketIfFull) {
 		if (capacity > buffer.remaining()) {
 			if (writeSocketIfFull) {
@@ -512,6 +574,7 @@ public abstract class AbstractConnection implements NIOConnection {
 			}
 			this.cleanup();
 			isSupportCompress = false;
+			onWriteQueueDrained();
 
 			// ignore null information
 			if (Strings.isNullOrEmpty(reason)) {
@@ -546,7 +609,7 @@ public abstract class AbstractConnection implements NIOConnection {
 		
 		// 清理资源占用
 		if (readBuffer != null) {
-			this.recycle(readBuffer);
+			recycleReadBuffer(readBuffer);
 			this.readBuffer = null;
 			this.readBufferOffset = 0;
 		}
@@ -556,12 +619,8 @@ public abstract class AbstractConnection implements NIOConnection {
 			this.writeBuffer = null;
 		}
 		
-		if (!decompressUnfinishedDataQueue.isEmpty()) {
-			decompressUnfinishedDataQueue.clear();
-		}
-		
-		if (!compressUnfinishedDataQueue.isEmpty()) {
-			compressUnfinishedDataQueue.clear();
+		if (compressCodec != null) {
+			compressCodec.release();
 		}
 		
 		ByteBuffer buffer = null;
@@ -590,6 +649,37 @@ public abstract class AbstractConnection implements NIOConnection {
 		return writeQueue;
 	}
 
+	/**
+	 * 写队列长度超过 maxSize 时等待 socket 写出数据，最多等待 timeoutMillis，
+	 * 供在独立线程中产生结果的连接(如 jdbc)做背压，不能在 reactor 线程中调用
+	 *
+	 * @return 写队列长度是否已不超过 maxSize
+	 */
+	public boolean awaitWriteQueue(int maxSize, long timeoutMillis) throws InterruptedException {
+		synchronized (writeDrainLock) {
+			writeDrainWaiters++;
+			try {
+				if (writeQueue.size() > maxSize && !isClosed()) {
+					writeDrainLock.wait(timeoutMillis);
+				}
+			} finally {
+				writeDrainWaiters--;
+			}
+		}
+		return writeQueue.size() <= maxSize;
+	}
+
+	/**
+	 * socket 写出数据或连接关闭后调用
+	 */
+	void onWriteQueueDrained() {
+		if (writeDrainWaiters > 0) {
+			synchronized (writeDrainLock) {
+				writeDrainLock.notifyAll();
+			}
+		}
+	}
+
 	private void closeSocket() {
 		if (channel != null) {
 			if (channel instanceof SocketChannel) {
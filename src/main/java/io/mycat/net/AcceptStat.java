@@ -0,0 +1,71 @@
+package io.mycat.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 监听端口的 accept 统计，同一端口的所有 accept 线程共用一个。
+ * RATE 为最近一个统计窗口(至少 1 秒)每秒 accept 的连接数，PEAK_RATE 为启动以来的最大值。
+ *
+ * @author mycat
+ */
+public class AcceptStat {
+
+	private static final long WINDOW_MILLIS = 1000L;
+
+	private final AtomicLong accepted = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	private volatile long windowStart = System.currentTimeMillis();
+	private long windowAccepted;
+	private volatile long rate;
+	private volatile long peakRate;
+
+	public void addAccepted(int count) {
+		accepted.addAndGet(count);
+	}
+
+	public void addFailed() {
+		failed.incrementAndGet();
+	}
+
+	/**
+	 * 窗口到期时计算速率，accept 线程每轮 select 之后调用，查询时也会调用
+	 */
+	public void tick(long now) {
+		if (now - windowStart < WINDOW_MILLIS) {
+			return;
+		}
+		synchronized (this) {
+			long elapsed = now - windowStart;
+			if (elapsed < WINDOW_MILLIS) {
+				return;
+			}
+			long total = accepted.get();
+			long r = (total - windowAccepted) * 1000L / elapsed;
+			rate = r;
+			if (r > peakRate) {
+				peakRate = r;
+			}
+			windowAccepted = total;
+			windowStart = now;
+		}
+	}
+
+	public long getAccepted() {
+		return accepted.get();
+	}
+
+	public long getFailed() {
+		return failed.get();
+	}
+
+	public long getRate() {
+		tick(System.currentTimeMillis());
+		return rate;
+	}
+
+	public long getPeakRate() {
+		tick(System.currentTimeMillis());
+		return peakRate;
+	}
+}
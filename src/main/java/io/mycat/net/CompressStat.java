@@ -0,0 +1,43 @@
+package io.mycat.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 压缩连接的流量统计，NET 为网络上的字节数(含 7 字节帧头)，RAW 为解压后的字节数。
+ * 同一数据源的所有后端连接共用一个。
+ *
+ * @author mycat
+ */
+public class CompressStat {
+
+	private final AtomicLong netInBytes = new AtomicLong();
+	private final AtomicLong rawInBytes = new AtomicLong();
+	private final AtomicLong netOutBytes = new AtomicLong();
+	private final AtomicLong rawOutBytes = new AtomicLong();
+
+	public void addIn(long netBytes, long rawBytes) {
+		netInBytes.addAndGet(netBytes);
+		rawInBytes.addAndGet(rawBytes);
+	}
+
+	public void addOut(long netBytes, long rawBytes) {
+		netOutBytes.addAndGet(netBytes);
+		rawOutBytes.addAndGet(rawBytes);
+	}
+
+	public long getNetInBytes() {
+		return netInBytes.get();
+	}
+
+	public long getRawInBytes() {
+		return rawInBytes.get();
+	}
+
+	public long getNetOutBytes() {
+		return netOutBytes.get();
+	}
+
+	public long getRawOutBytes() {
+		return rawOutBytes.get();
+	}
+}
@@ -0,0 +1,341 @@
+package io.mycat.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import io.mycat.buffer.BufferPool;
+import io.mycat.util.CompressUtil;
+
+/**
+ * 连接级的 mysql 压缩协议编解码，协议格式见 {@link CompressUtil}。
+ *
+ * 写出时把字节流攒到 MAX_FRAME_LENGTH 或遇到 flush 再压成一帧，一帧可以包含多个 mysql 包，
+ * 也可以在包中间截断(协议允许)，小于 50 字节或压不动的帧原样发送。
+ * Deflater/Inflater 和中间数组按连接复用，压缩结果直接写入 BufferPool 分配的 buffer。
+ *
+ * 压缩序号与包序号独立：服务端回包接着收到的最后一帧序号递增，
+ * 客户端每发起一个新命令时从 0 开始。客户端按包头长度跟踪写出字节流中的包边界，
+ * 只有从帧开头起的包序号为 0，且收到过回包或上一个包序号不是 255(包序号回绕)时才认为是新命令，
+ * 不会把大包中间恰好为 0 的字节当成包头。
+ *
+ * @author mycat
+ */
+public class CompressedPacketCodec {
+
+	// 单帧压缩前的最大长度
+	public static final int MAX_FRAME_LENGTH = 64 * 1024;
+	private static final int HEADER_SIZE = 7;
+
+	private final BufferPool bufferPool;
+	private final boolean client;
+
+	private final Deflater deflater = new Deflater();
+	private final byte[] header = new byte[HEADER_SIZE];
+	private byte[] pending;
+	private int pendingLength;
+	private byte[] deflated;
+	private ByteBuffer out;
+
+	private final Inflater inflater = new Inflater();
+	private byte[] inflated;
+	private byte[] partial;
+	private int partialLength;
+
+	// 客户端写出方向的包边界：当前包剩余的数据长度、已读到的包头字节
+	private final byte[] packetHeader = new byte[4];
+	private int headerRead;
+	private boolean headerAtFrameStart;
+	private long packetRemaining;
+	private int lastSeq = -1;
+	// 上一个包写出后是否收到过服务端的帧
+	private volatile boolean responded;
+
+	private volatile int sequence;
+	private volatile boolean closed;
+	private volatile CompressStat stat;
+
+	/**
+	 * @param client true 表示作为客户端(后端连接)，false 表示作为服务端(前端连接)
+	 */
+	public CompressedPacketCodec(BufferPool bufferPool, boolean client) {
+		this.bufferPool = bufferPool;
+		this.client = client;
+	}
+
+	/**
+	 * 设置流量统计，为 null 时不统计
+	 */
+	public void setStat(CompressStat stat) {
+		this.stat = stat;
+	}
+
+	/**
+	 * 压缩 buffer 中 [0, position) 的数据，buffer 随后被回收。
+	 * 攒满一帧的数据立即放入 queue，flush 为 true 时剩余数据也压成一帧放入。
+	 */
+	public void write(ByteBuffer buffer, boolean flush, Queue<ByteBuffer> queue) {
+		synchronized (deflater) {
+			if (closed) {
+				bufferPool.recycle(buffer);
+				return;
+			}
+			buffer.flip();
+			if (client) {
+				trackPackets(buffer);
+			}
+			while (buffer.hasRemaining()) {
+				int n = Math.min(buffer.remaining(), MAX_FRAME_LENGTH - pendingLength);
+				pending = ensureCapacity(pending, pendingLength, pendingLength + n);
+				buffer.get(pending, pendingLength, n);
+				pendingLength += n;
+				if (pendingLength == MAX_FRAME_LENGTH) {
+					writeFrame(queue);
+				}
+			}
+			bufferPool.recycle(buffer);
+			if (flush && pendingLength > 0) {
+				writeFrame(queue);
+			}
+			if (out != null) {
+				if (out.position() > 0) {
+					queue.offer(out);
+				} else {
+					bufferPool.recycle(out);
+				}
+				out = null;
+			}
+		}
+	}
+
+	/**
+	 * 扫描 buffer 中 [position, limit) 的字节更新包边界，不移动 position。
+	 * 新命令的包头必然在帧开头(上一个命令已经 flush)，此时把压缩序号重置为 0。
+	 */
+	private void trackPackets(ByteBuffer buffer) {
+		int i = buffer.position();
+		int limit = buffer.limit();
+		while (i < limit) {
+			if (packetRemaining > 0) {
+				int n = (int) Math.min(packetRemaining, limit - i);
+				packetRemaining -= n;
+				i += n;
+				continue;
+			}
+			if (headerRead == 0) {
+				headerAtFrameStart = pendingLength == 0 && i == buffer.position();
+			}
+			packetHeader[headerRead++] = buffer.get(i++);
+			if (headerRead < packetHeader.length) {
+				continue;
+			}
+			headerRead = 0;
+			packetRemaining = readUB3(packetHeader, 0);
+			int seq = packetHeader[3] & 0xff;
+			if (headerAtFrameStart && seq == 0 && (responded || lastSeq != 255)) {
+				sequence = 0;
+			}
+			lastSeq = seq;
+			responded = false;
+		}
+	}
+
+	private void writeFrame(Queue<ByteBuffer> queue) {
+		int length = pendingLength;
+		int compressedLength = length < CompressUtil.MINI_LENGTH_TO_COMPRESS ? -1 : deflate(length);
+		int seq = sequence;
+		sequence = (seq + 1) & 0xff;
+		if (compressedLength > 0) {
+			writeHeader(compressedLength, seq, length, queue);
+			put(deflated, compressedLength, queue);
+		} else {
+			// 压缩前的长度为 0 表示未压缩
+			compressedLength = length;
+			writeHeader(length, seq, 0, queue);
+			put(pending, length, queue);
+		}
+		pendingLength = 0;
+		CompressStat stat = this.stat;
+		if (stat != null) {
+			stat.addOut(HEADER_SIZE + compressedLength, length);
+		}
+	}
+
+	/**
+	 * @return 压缩后的长度，不比原数据短时返回 -1
+	 */
+	private int deflate(int length) {
+		if (deflated == null || deflated.length < length) {
+			deflated = new byte[Math.max(length, MAX_FRAME_LENGTH)];
+		}
+		deflater.reset();
+		deflater.setInput(pending, 0, length);
+		deflater.finish();
+		int n = 0;
+		while (!deflater.finished() && n < length) {
+			n += deflater.deflate(deflated, n, length - n);
+		}
+		return deflater.finished() && n < length ? n : -1;
+	}
+
+	private void writeHeader(int length, int seq, int rawLength, Queue<ByteBuffer> queue) {
+		header[0] = (byte) length;
+		header[1] = (byte) (length >>> 8);
+		header[2] = (byte) (length >>> 16);
+		header[3] = (byte) seq;
+		header[4] = (byte) rawLength;
+		header[5] = (byte) (rawLength >>> 8);
+		header[6] = (byte) (rawLength >>> 16);
+		put(header, HEADER_SIZE, queue);
+	}
+
+	private void put(byte[] src, int length, Queue<ByteBuffer> queue) {
+		int offset = 0;
+		while (offset < length) {
+			if (out == null) {
+				out = bufferPool.allocate(bufferPool.getChunkSize());
+			} else if (!out.hasRemaining()) {
+				queue.offer(out);
+				out = bufferPool.allocate(bufferPool.getChunkSize());
+			}
+			int n = Math.min(length - offset, out.remaining());
+			out.put(src, offset, n);
+			offset += n;
+		}
+	}
+
+	/**
+	 * 解压一个完整的压缩帧(含 7 字节帧头)，返回其中完整的 mysql 包，
+	 * 跨帧的半包留到下一帧拼接。
+	 */
+	public List<byte[]> read(byte[] frame) {
+		synchronized (inflater) {
+			if (closed) {
+				return Collections.emptyList();
+			}
+			int length = readUB3(frame, 0);
+			sequence = (frame[3] + 1) & 0xff;
+			if (client) {
+				responded = true;
+			}
+			int rawLength = readUB3(frame, 4);
+			List<byte[]> packets = new ArrayList<byte[]>();
+			if (rawLength == 0) {
+				split(frame, HEADER_SIZE, length, packets);
+			} else {
+				byte[] data = inflated;
+				if (data == null || data.length < rawLength) {
+					data = new byte[Math.max(rawLength, MAX_FRAME_LENGTH)];
+					// 超大帧的数组不保留
+					inflated = data.length == MAX_FRAME_LENGTH ? data : inflated;
+				}
+				inflate(frame, length, data, rawLength);
+				split(data, 0, rawLength, packets);
+			}
+			CompressStat stat = this.stat;
+			if (stat != null) {
+				stat.addIn(frame.length, rawLength == 0 ? length : rawLength);
+			}
+			return packets;
+		}
+	}
+
+	private void inflate(byte[] frame, int length, byte[] data, int rawLength) {
+		inflater.reset();
+		inflater.setInput(frame, HEADER_SIZE, length);
+		int n = 0;
+		try {
+			while (n < rawLength) {
+				int got = inflater.inflate(data, n, rawLength - n);
+				if (got == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+					break;
+				}
+				n += got;
+			}
+		} catch (DataFormatException e) {
+			throw new RuntimeException(e);
+		}
+		if (n != rawLength) {
+			throw new RuntimeException("compressed frame length mismatch, expect " + rawLength + " but " + n);
+		}
+	}
+
+	private void split(byte[] data, int offset, int length, List<byte[]> packets) {
+		if (partialLength > 0) {
+			partial = ensureCapacity(partial, partialLength, partialLength + length);
+			System.arraycopy(data, offset, partial, partialLength, length);
+			data = partial;
+			length += partialLength;
+			offset = 0;
+		}
+		int end = offset + length;
+		while (end - offset >= 4) {
+			int packetLength = readUB3(data, offset) + 4;
+			if (end - offset < packetLength) {
+				break;
+			}
+			packets.add(Arrays.copyOfRange(data, offset, offset + packetLength));
+			offset += packetLength;
+		}
+		partialLength = end - offset;
+		if (partialLength > 0) {
+			if (data != partial) {
+				partial = ensureCapacity(partial, 0, partialLength);
+			}
+			System.arraycopy(data, offset, partial, 0, partialLength);
+		} else if (partial != null && partial.length > MAX_FRAME_LENGTH) {
+			partial = null;
+		}
+	}
+
+	private static byte[] ensureCapacity(byte[] array, int used, int capacity) {
+		if (array != null && array.length >= capacity) {
+			return array;
+		}
+		int size = array == null ? 1024 : array.length;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		byte[] newArray = new byte[size];
+		if (used > 0) {
+			System.arraycopy(array, 0, newArray, 0, used);
+		}
+		return newArray;
+	}
+
+	private static int readUB3(byte[] data, int offset) {
+		return (data[offset] & 0xff) | (data[offset + 1] & 0xff) << 8 | (data[offset + 2] & 0xff) << 16;
+	}
+
+	/**
+	 * 连接关闭时释放 zlib 资源，之后的写入直接回收 buffer
+	 */
+	public void release() {
+		synchronized (deflater) {
+			synchronized (inflater) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+				deflater.end();
+				inflater.end();
+				if (out != null) {
+					bufferPool.recycle(out);
+					out = null;
+				}
+				pending = null;
+				deflated = null;
+				inflated = null;
+				partial = null;
+				pendingLength = 0;
+				partialLength = 0;
+			}
+		}
+	}
+}
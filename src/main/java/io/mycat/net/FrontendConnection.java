@@ -29,7 +29,6 @@ import java.net.InetSocketAddress;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.NetworkChannel;
 import java.nio.channels.SocketChannel;
-import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicLong;
 
@@ -41,18 +40,15 @@ import io.mycat.backend.mysql.CharsetUtil;
 import io.mycat.backend.mysql.MySQLMessage;
 import io.mycat.config.Capabilities;
 import io.mycat.config.ErrorCode;
-import io.mycat.config.Versions;
 import io.mycat.net.handler.FrontendAuthenticator;
 import io.mycat.net.handler.FrontendPrepareHandler;
 import io.mycat.net.handler.FrontendPrivileges;
 import io.mycat.net.handler.FrontendQueryHandler;
 import io.mycat.net.handler.LoadDataInfileHandler;
 import io.mycat.net.mysql.ErrorPacket;
-import io.mycat.net.mysql.HandshakePacket;
-import io.mycat.net.mysql.HandshakeV10Packet;
+import io.mycat.net.mysql.HandshakeTemplate;
 import io.mycat.net.mysql.MySQLPacket;
 import io.mycat.net.mysql.OkPacket;
-import io.mycat.util.CompressUtil;
 import io.mycat.util.RandomUtil;
 
 /**
@@ -475,43 +471,13 @@ public abstract class FrontendConnection extends AbstractConnection {
 	public void register() throws IOException {
 		if (!isClosed.get()) {
 
-			// 生成认证数据
-			byte[] rand1 = RandomUtil.randomBytes(8);
-			byte[] rand2 = RandomUtil.randomBytes(12);
-
-			// 保存认证数据
-			byte[] seed = new byte[rand1.length + rand2.length];
-			System.arraycopy(rand1, 0, seed, 0, rand1.length);
-			System.arraycopy(rand2, 0, seed, rand1.length, rand2.length);
+			// 生成并保存认证数据，前 8 字节为 seed，后 12 字节为 restOfScrambleBuff
+			byte[] seed = RandomUtil.randomSeed(HandshakeTemplate.SEED_LENGTH);
 			this.seed = seed;
 
-			// 发送握手数据包
+			// 发送握手数据包，按模板只填连接 id 和认证数据
 			boolean useHandshakeV10 = MycatServer.getInstance().getConfig().getSystem().getUseHandshakeV10() == 1;
-			if(useHandshakeV10) {
-				HandshakeV10Packet hs = new HandshakeV10Packet();
-				hs.packetId = 0;
-				hs.protocolVersion = Versions.PROTOCOL_VERSION;
-				hs.serverVersion = Versions.SERVER_VERSION;
-				hs.threadId = id;
-				hs.seed = rand1;
-				hs.serverCapabilities = getServerCapabilities();
-				hs.serverCharsetIndex = (byte) (charsetIndex & 0xff);
-				hs.serverStatus = 2;
-				hs.restOfScrambleBuff = rand2;
-				hs.write(this);
-			} else {
-				HandshakePacket hs = new HandshakePacket();
-				hs.packetId = 0;
-				hs.protocolVersion = Versions.PROTOCOL_VERSION;
-				hs.serverVersion = Versions.SERVER_VERSION;
-				hs.threadId = id;
-				hs.seed = rand1;
-				hs.serverCapabilities = getServerCapabilities();
-				hs.serverCharsetIndex = (byte) (charsetIndex & 0xff);
-				hs.serverStatus = 2;
-				hs.restOfScrambleBuff = rand2;
-				hs.write(this);
-			}
+			write(HandshakeTemplate.make(useHandshakeV10, getServerCapabilities(), charsetIndex, id, seed));
 
 			// asynread response
 			this.asynRead();
@@ -521,14 +487,11 @@ public abstract class FrontendConnection extends AbstractConnection {
 	@Override
 	public void handle(final byte[] data) {
 		this.executeSqlId ++;
-		if (isSupportCompress()) {			
-			List<byte[]> packs = CompressUtil.decompressMysqlPacket(data, decompressUnfinishedDataQueue);
-			for (byte[] pack : packs) {
-				if (pack.length != 0) {
-					rawHandle(pack);
-				}
+		if (isSupportCompress()) {
+			for (byte[] pack : compressCodec.read(data)) {
+				rawHandle(pack);
 			}
-			
+
 		} else {
 			rawHandle(data);
 		}
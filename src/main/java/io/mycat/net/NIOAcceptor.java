@@ -31,6 +31,8 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
 
 import io.mycat.util.SelectorUtil;
@@ -40,108 +42,191 @@ import io.mycat.MycatServer;
 import io.mycat.net.factory.FrontendConnectionFactory;
 
 /**
+ * 多个 accept 线程共用一个监听端口，每个线程有自己的 Selector。
+ * jdk7 不支持 SO_REUSEPORT，这里让同一个 ServerSocketChannel 注册到多个 Selector 上，
+ * 连接到来时几个线程都会被唤醒，没抢到的 accept 返回 null 后继续等待。
+ * 每次唤醒连续 accept 一批连接，放入 reactor 的注册队列，整批结束后每个 reactor 只唤醒一次。
+ *
  * @author mycat
  */
-public final class NIOAcceptor extends Thread implements SocketAcceptor{
+public final class NIOAcceptor implements SocketAcceptor {
 	private static final Logger LOGGER = LoggerFactory.getLogger(NIOAcceptor.class);
 	private static final AcceptIdGenerator ID_GENERATOR = new AcceptIdGenerator();
+	// 一次唤醒最多连续 accept 的连接数
+	private static final int ACCEPT_BATCH = 64;
 
+	private final String name;
 	private final int port;
-	private volatile Selector selector;
 	private final ServerSocketChannel serverChannel;
 	private final FrontendConnectionFactory factory;
-	private long acceptCount;
 	private final NIOReactorPool reactorPool;
+	private final Acceptor[] acceptors;
+	private final AcceptStat acceptStat = new AcceptStat();
 
 	public NIOAcceptor(String name, String bindIp,int port, 
 			FrontendConnectionFactory factory, NIOReactorPool reactorPool)
 			throws IOException {
-		super.setName(name);
+		this(name, bindIp, port, 1, 100, factory, reactorPool);
+	}
+
+	/**
+	 * @param acceptorCount accept 线程数
+	 * @param backlog 监听端口的 accept 队列长度
+	 */
+	public NIOAcceptor(String name, String bindIp, int port, int acceptorCount, int backlog,
+			FrontendConnectionFactory factory, NIOReactorPool reactorPool)
+			throws IOException {
+		this.name = name;
 		this.port = port;
-		this.selector = Selector.open();
 		this.serverChannel = ServerSocketChannel.open();
 		this.serverChannel.configureBlocking(false);
 		/** 设置TCP属性 */
 		serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
 		serverChannel.setOption(StandardSocketOptions.SO_RCVBUF, 1024 * 16 * 2);
-		// backlog=100
-		serverChannel.bind(new InetSocketAddress(bindIp, port), 100);
-		this.serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		serverChannel.bind(new InetSocketAddress(bindIp, port), backlog);
 		this.factory = factory;
 		this.reactorPool = reactorPool;
+		this.acceptors = new Acceptor[Math.max(1, acceptorCount)];
+		for (int i = 0; i < acceptors.length; i++) {
+			acceptors[i] = new Acceptor(acceptors.length == 1 ? name : name + "-" + i);
+		}
+	}
+
+	@Override
+	public void start() {
+		for (Acceptor acceptor : acceptors) {
+			acceptor.start();
+		}
 	}
 
+	@Override
+	public String getName() {
+		return name;
+	}
+
+	@Override
 	public int getPort() {
 		return port;
 	}
 
-	public long getAcceptCount() {
-		return acceptCount;
+	@Override
+	public int getAcceptorCount() {
+		return acceptors.length;
 	}
 
 	@Override
-	public void run() {
-		int invalidSelectCount = 0;
-		for (;;) {
-			final Selector tSelector = this.selector;
-			++acceptCount;
-			try {
-				long start = System.nanoTime();
-			    tSelector.select(1000L);
-				long end = System.nanoTime();
-				Set<SelectionKey> keys = tSelector.selectedKeys();
-				if (keys.size() == 0 && (end - start) < SelectorUtil.MIN_SELECT_TIME_IN_NANO_SECONDS )
-				{
-					invalidSelectCount++;
-				}
-				else
-                {
-					try {
-						for (SelectionKey key : keys) {
-							if (key.isValid() && key.isAcceptable()) {
-								accept();
-							} else {
-								key.cancel();
+	public AcceptStat getAcceptStat() {
+		return acceptStat;
+	}
+
+	public long getAcceptCount() {
+		return acceptStat.getAccepted();
+	}
+
+	private final class Acceptor extends Thread {
+		private volatile Selector selector;
+		// 本批放入了连接、需要唤醒的 reactor
+		private final List<NIOReactor> pendingReactors = new ArrayList<NIOReactor>();
+
+		private Acceptor(String name) throws IOException {
+			super(name);
+			this.selector = Selector.open();
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+		}
+
+		@Override
+		public void run() {
+			int invalidSelectCount = 0;
+			for (;;) {
+				final Selector tSelector = this.selector;
+				try {
+					long start = System.nanoTime();
+				    tSelector.select(1000L);
+					long end = System.nanoTime();
+					Set<SelectionKey> keys = tSelector.selectedKeys();
+					if (keys.size() == 0 && (end - start) < SelectorUtil.MIN_SELECT_TIME_IN_NANO_SECONDS )
+					{
+						invalidSelectCount++;
+					}
+					else
+	                {
+						try {
+							for (SelectionKey key : keys) {
+								if (key.isValid() && key.isAcceptable()) {
+									acceptBatch();
+								} else {
+									key.cancel();
+								}
 							}
+						} finally {
+							keys.clear();
+							invalidSelectCount = 0;
+						}
+					}
+					if (invalidSelectCount > SelectorUtil.REBUILD_COUNT_THRESHOLD)
+					{
+						final Selector rebuildSelector = SelectorUtil.rebuildSelector(this.selector);
+						if (rebuildSelector != null)
+						{
+							this.selector = rebuildSelector;
 						}
-					} finally {
-						keys.clear();
 						invalidSelectCount = 0;
 					}
+					acceptStat.tick(System.currentTimeMillis());
+				} catch (Exception e) {
+					LOGGER.warn(getName(), e);
 				}
-				if (invalidSelectCount > SelectorUtil.REBUILD_COUNT_THRESHOLD)
-				{
-					final Selector rebuildSelector = SelectorUtil.rebuildSelector(this.selector);
-					if (rebuildSelector != null)
-					{
-						this.selector = rebuildSelector;
+			}
+		}
+
+		private void acceptBatch() {
+			int accepted = 0;
+			try {
+				while (accepted < ACCEPT_BATCH) {
+					SocketChannel channel = serverChannel.accept();
+					if (channel == null) {
+						// 队列已空，或者被其他 accept 线程抢走
+						break;
+					}
+					if (accept(channel)) {
+						accepted++;
 					}
-					invalidSelectCount = 0;
 				}
-			} catch (Exception e) {
+			} catch (IOException e) {
+				// 例如文件句柄用完，这一批到此为止
+				acceptStat.addFailed();
 				LOGGER.warn(getName(), e);
+			} finally {
+				for (NIOReactor reactor : pendingReactors) {
+					reactor.wakeup();
+				}
+				pendingReactors.clear();
+				acceptStat.addAccepted(accepted);
 			}
 		}
-	}
 
-	private void accept() {
-		SocketChannel channel = null;
-		try {
-			channel = serverChannel.accept();
-			channel.configureBlocking(false);
-			FrontendConnection c = factory.make(channel);
-			c.setAccepted(true);
-			c.setId(ID_GENERATOR.getId());
-			NIOProcessor processor = (NIOProcessor) MycatServer.getInstance()
-					.nextProcessor();
-			c.setProcessor(processor);
-			
-			NIOReactor reactor = reactorPool.getNextReactor();
-			reactor.postRegister(c);
-
-		} catch (Exception e) {
-	        LOGGER.warn(getName(), e);
-			closeChannel(channel);
+		private boolean accept(SocketChannel channel) {
+			try {
+				channel.configureBlocking(false);
+				FrontendConnection c = factory.make(channel);
+				c.setAccepted(true);
+				c.setId(ID_GENERATOR.getId());
+				NIOProcessor processor = (NIOProcessor) MycatServer.getInstance()
+						.nextProcessor();
+				c.setProcessor(processor);
+				
+				NIOReactor reactor = reactorPool.getNextReactor();
+				reactor.postRegisterLater(c);
+				if (!pendingReactors.contains(reactor)) {
+					pendingReactors.add(reactor);
+				}
+				return true;
+			} catch (Exception e) {
+		        LOGGER.warn(getName(), e);
+				closeChannel(channel);
+				acceptStat.addFailed();
+				return false;
+			}
 		}
 	}
 
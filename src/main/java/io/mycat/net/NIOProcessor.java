@@ -39,8 +39,10 @@ import org.slf4j.LoggerFactory;
 import io.mycat.MycatServer;
 import io.mycat.backend.BackendConnection;
 import io.mycat.statistic.CommandCount;
+import io.mycat.config.model.SystemConfig;
 import io.mycat.util.NameableExecutor;
 import io.mycat.util.TimeUtil;
+import io.mycat.util.TimingWheel;
 
 /**
  * @author mycat
@@ -57,6 +59,10 @@ public final class NIOProcessor {
 	private final CommandCount commands;
 	private long netInBytes;
 	private long netOutBytes;
+	// 空闲、SQL执行超时和写队列检查的时间轮，为 null 时使用周期全量扫描
+	private final TimingWheel timingWheel;
+	// 连接在时间轮中登记的任务，连接移除时取消，不再等到任务到期才释放连接
+	private final ConcurrentMap<ClosableConnection, ConnectionTimeouts> timeouts;
 	
 	// TODO: add by zhuam
 	// reload @@config_all 后, 老的backends  全部移往 backends_old, 待检测任务进行销毁
@@ -73,6 +79,10 @@ public final class NIOProcessor {
 		this.frontends = new ConcurrentHashMap<Long, FrontendConnection>();
 		this.backends = new ConcurrentHashMap<Long, BackendConnection>();
 		this.commands = new CommandCount();
+		SystemConfig system = MycatServer.getInstance().getConfig().getSystem();
+		this.timingWheel = system.getUseTimingWheel() == 1
+				? new TimingWheel(system.getTimingWheelTickMillis(), 512, TimeUtil.currentTimeMillis()) : null;
+		this.timeouts = timingWheel != null ? new ConcurrentHashMap<ClosableConnection, ConnectionTimeouts>() : null;
 	}
 
 	public String getName() {
@@ -124,6 +134,11 @@ public final class NIOProcessor {
 	public void addFrontend(FrontendConnection c) {
 		this.frontends.put(c.getId(), c);
 		this.frontendsLength.incrementAndGet();
+		if (timingWheel != null) {
+			ConnectionTimeouts t = new ConnectionTimeouts();
+			t.idle = timingWheel.schedule(new IdleCheckTask(c), c.getIdleDeadline());
+			timeouts.put(c, t);
+		}
 	}
 
 	public ConcurrentMap<Long, FrontendConnection> getFrontends() {
@@ -136,6 +151,171 @@ public final class NIOProcessor {
 
 	public void addBackend(BackendConnection c) {
 		this.backends.put(c.getId(), c);
+		if (timingWheel != null) {
+			long now = TimeUtil.currentTimeMillis();
+			ConnectionTimeouts t = new ConnectionTimeouts();
+			t.idle = timingWheel.schedule(new IdleCheckTask(c),
+					c instanceof AbstractConnection ? ((AbstractConnection) c).getIdleDeadline() : now);
+			t.sql = timingWheel.schedule(new SqlTimeoutTask(c), now + getSqlTimeout());
+			timeouts.put(c, t);
+		}
+	}
+
+	public TimingWheel getTimingWheel() {
+		return timingWheel;
+	}
+
+	/**
+	 * 时间轮 tick，到期的连接才会被检查
+	 */
+	public void checkTimeouts() {
+		if (timingWheel != null) {
+			timingWheel.advance(TimeUtil.currentTimeMillis());
+		}
+	}
+
+	/**
+	 * 写队列中有数据时登记一次重试检查，防止数据残留在队列中没有发送
+	 */
+	void armWriteCheck(AbstractConnection c) {
+		if (timingWheel != null && c.writeCheckArmed.compareAndSet(false, true)) {
+			TimingWheel.Timeout timeout = timingWheel.schedule(new WriteCheckTask(c),
+					TimeUtil.currentTimeMillis() + getCheckPeriod());
+			ConnectionTimeouts t = timeouts.get(c);
+			if (t != null) {
+				t.write = timeout;
+			}
+		}
+	}
+
+	private void cancelTimeouts(ClosableConnection c) {
+		if (timeouts != null) {
+			ConnectionTimeouts t = timeouts.remove(c);
+			if (t != null) {
+				t.cancel();
+			}
+		}
+	}
+
+	private static long getSqlTimeout() {
+		return MycatServer.getInstance().getConfig().getSystem().getSqlExecuteTimeout() * 1000L;
+	}
+
+	private static long getCheckPeriod() {
+		return MycatServer.getInstance().getConfig().getSystem().getProcessorCheckPeriod();
+	}
+
+	private void removeClosed(ClosableConnection c) {
+		cancelTimeouts(c);
+		if (c instanceof BackendConnection) {
+			backends.remove(((BackendConnection) c).getId());
+		} else if (frontends.remove(((FrontendConnection) c).getId()) != null) {
+			this.frontendsLength.decrementAndGet();
+		}
+	}
+
+	private static final class ConnectionTimeouts {
+		volatile TimingWheel.Timeout idle;
+		volatile TimingWheel.Timeout sql;
+		volatile TimingWheel.Timeout write;
+
+		void cancel() {
+			cancel(idle);
+			cancel(sql);
+			cancel(write);
+		}
+
+		private static void cancel(TimingWheel.Timeout timeout) {
+			if (timeout != null) {
+				timeout.cancel();
+			}
+		}
+	}
+
+	/**
+	 * 空闲超时检查，截止时间为最后一次读写时间 + idleTimeout
+	 */
+	private final class IdleCheckTask implements TimingWheel.TimerTask {
+		private final ClosableConnection c;
+
+		IdleCheckTask(ClosableConnection c) {
+			this.c = c;
+		}
+
+		@Override
+		public long run(long now) {
+			if (!c.isClosed()) {
+				c.idleCheck();
+			}
+			if (c.isClosed()) {
+				removeClosed(c);
+				return -1;
+			}
+			if (c instanceof AbstractConnection) {
+				return ((AbstractConnection) c).getIdleDeadline();
+			}
+			// jdbc 连接没有读写时间，按检查周期检查
+			return now + getCheckPeriod();
+		}
+	}
+
+	/**
+	 * SQL执行超时检查，借出的连接截止时间为 lastTime + sqlExecuteTimeout，
+	 * 未借出的连接 sqlExecuteTimeout 后再检查，借出后的真正截止时间不会早于该时间
+	 */
+	private static final class SqlTimeoutTask implements TimingWheel.TimerTask {
+		private final BackendConnection c;
+
+		SqlTimeoutTask(BackendConnection c) {
+			this.c = c;
+		}
+
+		@Override
+		public long run(long now) {
+			if (c.isClosed()) {
+				return -1;
+			}
+			long sqlTimeout = getSqlTimeout();
+			if (!c.isBorrowed()) {
+				return now + sqlTimeout;
+			}
+			long deadline = c.getLastTime() + sqlTimeout;
+			if (deadline < now) {
+				LOGGER.warn("found backend connection SQL timeout ,close it " + c);
+				c.close("sql timeout");
+				return -1;
+			}
+			return deadline;
+		}
+	}
+
+	/**
+	 * 写队列检查，队列为空后任务结束，下次写入时重新登记
+	 */
+	private static final class WriteCheckTask implements TimingWheel.TimerTask {
+		private final AbstractConnection c;
+
+		WriteCheckTask(AbstractConnection c) {
+			this.c = c;
+		}
+
+		@Override
+		public long run(long now) {
+			if (c.isClosed()) {
+				c.writeCheckArmed.set(false);
+				return -1;
+			}
+			if (!c.writeQueue.isEmpty()) {
+				c.getSocketWR().doNextWriteCheck();
+				return now + getCheckPeriod();
+			}
+			c.writeCheckArmed.set(false);
+			// 清除标记后可能又有数据写入但没有登记成功
+			if (!c.writeQueue.isEmpty() && c.writeCheckArmed.compareAndSet(false, true)) {
+				return now + getCheckPeriod();
+			}
+			return -1;
+		}
 	}
 
 	public ConcurrentMap<Long, BackendConnection> getBackends() {
@@ -224,6 +404,7 @@ public final class NIOProcessor {
 	}
 
 	public void removeConnection(AbstractConnection con) {
+		cancelTimeouts(con);
 		if (con instanceof BackendConnection) {
 			this.backends.remove(con.getId());
 		} else {
@@ -234,6 +415,7 @@ public final class NIOProcessor {
 	}
 	//jdbc连接用这个释放
 	public void removeConnection(BackendConnection con){
+	    cancelTimeouts(con);
 	    this.backends.remove(con.getId());
 	}
 
@@ -24,6 +24,7 @@
 package io.mycat.net;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.CancelledKeyException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
@@ -47,14 +48,40 @@ import org.slf4j.Logger; import org.slf4j.LoggerFactory;
  */
 public final class NIOReactor {
 	private static final Logger LOGGER = LoggerFactory.getLogger(NIOReactor.class);
+	// reactor 线程共享的读缓冲，连接没有未处理完的包时先读到这里
+	private static final ThreadLocal<ByteBuffer> SHARED_READ_BUFFER = new ThreadLocal<ByteBuffer>();
+	private static final int DEFAULT_SHARED_READ_BUFFER_SIZE = 4096;
+
 	private final String name;
 	private final RW reactorR;
+	private final int sharedReadBufferSize;
 
 	public NIOReactor(String name) throws IOException {
+		this(name, DEFAULT_SHARED_READ_BUFFER_SIZE);
+	}
+
+	public NIOReactor(String name, int sharedReadBufferSize) throws IOException {
 		this.name = name;
+		this.sharedReadBufferSize = sharedReadBufferSize;
 		this.reactorR = new RW();
 	}
 
+	/**
+	 * 取出当前 reactor 线程的共享读缓冲，用完后通过 {@link #returnSharedReadBuffer(ByteBuffer)} 放回。
+	 * 不在 reactor 线程或者已被取出(处理包的过程中又触发了读)时返回 null
+	 */
+	static ByteBuffer takeSharedReadBuffer() {
+		ByteBuffer buffer = SHARED_READ_BUFFER.get();
+		if (buffer != null) {
+			SHARED_READ_BUFFER.set(null);
+		}
+		return buffer;
+	}
+
+	static void returnSharedReadBuffer(ByteBuffer buffer) {
+		SHARED_READ_BUFFER.set(buffer);
+	}
+
 	final void startup() {
 		new Thread(reactorR, name + "-RW").start();
 	}
@@ -64,6 +91,17 @@ public final class NIOReactor {
 		reactorR.selector.wakeup();
 	}
 
+	/**
+	 * 只放入注册队列，不唤醒 selector，调用方放完一批连接后再调用 {@link #wakeup()}
+	 */
+	final void postRegisterLater(AbstractConnection c) {
+		reactorR.registerQueue.offer(c);
+	}
+
+	final void wakeup() {
+		reactorR.selector.wakeup();
+	}
+
 	final Queue<AbstractConnection> getRegisterQueue() {
 		return reactorR.registerQueue;
 	}
@@ -84,6 +122,7 @@ public final class NIOReactor {
 
 		@Override
 		public void run() {
+			SHARED_READ_BUFFER.set(ByteBuffer.allocateDirect(sharedReadBufferSize));
 			int invalidSelectCount = 0;
 			Set<SelectionKey> keys = null;
 			for (;;) {
@@ -7,9 +7,16 @@ public class NIOReactorPool {
 	private volatile int nextReactor;
 
 	public NIOReactorPool(String name, int poolSize) throws IOException {
+		this(name, poolSize, 4096);
+	}
+
+	/**
+	 * @param sharedReadBufferSize 每个 reactor 共享读缓冲的大小
+	 */
+	public NIOReactorPool(String name, int poolSize, int sharedReadBufferSize) throws IOException {
 		reactors = new NIOReactor[poolSize];
 		for (int i = 0; i < poolSize; i++) {
-			NIOReactor reactor = new NIOReactor(name + "-" + i);
+			NIOReactor reactor = new NIOReactor(name + "-" + i, sharedReadBufferSize);
 			reactors[i] = reactor;
 			reactor.startup();
 		}
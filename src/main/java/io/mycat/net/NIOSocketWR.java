@@ -44,6 +44,7 @@ public class NIOSocketWR extends SocketWR {
 			}
 			boolean noMoreData = write0();
 			writing.set(false);
+			con.onWriteQueueDrained();
 			if (noMoreData && con.writeQueue.isEmpty()) {
 				if ((processKey.isValid() && (processKey.interestOps() & SelectionKey.OP_WRITE) != 0)) {
 					disableWrite();
@@ -190,6 +191,18 @@ public class NIOSocketWR extends SocketWR {
 	public void asynRead() throws IOException {
 		ByteBuffer theBuffer = con.readBuffer;
 		if (theBuffer == null) {
+			// 没有未处理完的包，先读到 reactor 共享的缓冲，剩下半个包时连接才分配自己的缓冲
+			ByteBuffer shared = NIOReactor.takeSharedReadBuffer();
+			if (shared != null) {
+				try {
+					shared.clear();
+					int got = channel.read(shared);
+					con.onSharedReadData(got, shared);
+				} finally {
+					NIOReactor.returnSharedReadBuffer(shared);
+				}
+				return;
+			}
 
 			theBuffer = con.processor.getBufferPool().allocate(con.processor.getBufferPool().getChunkSize());
 
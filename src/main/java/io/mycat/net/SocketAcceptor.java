@@ -8,4 +8,11 @@ public interface SocketAcceptor {
 
 	int getPort();
 
+	/**
+	 * accept 线程数
+	 */
+	int getAcceptorCount();
+
+	AcceptStat getAcceptStat();
+
 }
@@ -95,6 +95,11 @@ public class HandshakePacket extends MySQLPacket {
 
     public void write(FrontendConnection c) {
         ByteBuffer buffer = c.allocate();
+        write(buffer);
+        c.write(buffer);
+    }
+
+    void write(ByteBuffer buffer) {
         BufferUtil.writeUB3(buffer, calcPacketSize());
         buffer.put(packetId);
         buffer.put(protocolVersion);
@@ -107,7 +112,6 @@ public class HandshakePacket extends MySQLPacket {
         buffer.put(FILLER_13);
         //        buffer.position(buffer.position() + 13);
         BufferUtil.writeWithNull(buffer, restOfScrambleBuff);
-        c.write(buffer);
     }
 
     @Override
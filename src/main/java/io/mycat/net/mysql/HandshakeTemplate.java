@@ -0,0 +1,108 @@
+package io.mycat.net.mysql;
+
+import java.nio.ByteBuffer;
+
+import io.mycat.config.Capabilities;
+import io.mycat.config.Versions;
+
+/**
+ * 前端握手包模板。
+ *
+ * 同一配置下各连接的握手包只有连接 id 和认证随机数不同，预先编码一次，
+ * 之后每个连接复制模板再填入这两项，连接风暴时省去逐个字段的编码。
+ *
+ * @author mycat
+ */
+public final class HandshakeTemplate {
+
+    /** 认证随机数长度，前 8 字节为 seed，后 12 字节为 restOfScrambleBuff */
+    public static final int SEED_LENGTH = 20;
+    private static final int SEED1_LENGTH = 8;
+
+    private static volatile HandshakeTemplate current;
+
+    private final boolean v10;
+    private final int capabilities;
+    private final int charsetIndex;
+    private final byte[] serverVersion;
+    private final byte[] template;
+    private final int threadIdOffset;
+    private final int seed1Offset;
+    private final int seed2Offset;
+
+    private HandshakeTemplate(boolean v10, int capabilities, int charsetIndex) {
+        this.v10 = v10;
+        this.capabilities = capabilities;
+        this.charsetIndex = charsetIndex;
+        this.serverVersion = Versions.SERVER_VERSION;
+
+        byte[] seed = new byte[SEED1_LENGTH];
+        byte[] rest = new byte[SEED_LENGTH - SEED1_LENGTH];
+        ByteBuffer buffer;
+        if (v10) {
+            HandshakeV10Packet hs = new HandshakeV10Packet();
+            hs.packetId = 0;
+            hs.protocolVersion = Versions.PROTOCOL_VERSION;
+            hs.serverVersion = serverVersion;
+            hs.seed = seed;
+            hs.serverCapabilities = capabilities;
+            hs.serverCharsetIndex = (byte) (charsetIndex & 0xff);
+            hs.serverStatus = 2;
+            hs.restOfScrambleBuff = rest;
+            buffer = ByteBuffer.allocate(MySQLPacket.packetHeaderSize + hs.calcPacketSize());
+            hs.write(buffer);
+        } else {
+            HandshakePacket hs = new HandshakePacket();
+            hs.packetId = 0;
+            hs.protocolVersion = Versions.PROTOCOL_VERSION;
+            hs.serverVersion = serverVersion;
+            hs.seed = seed;
+            hs.serverCapabilities = capabilities;
+            hs.serverCharsetIndex = (byte) (charsetIndex & 0xff);
+            hs.serverStatus = 2;
+            hs.restOfScrambleBuff = rest;
+            buffer = ByteBuffer.allocate(MySQLPacket.packetHeaderSize + hs.calcPacketSize());
+            hs.write(buffer);
+        }
+        this.template = buffer.array();
+
+        // 包头(4) + protocol_version(1) + server_version(以 0 结尾)
+        this.threadIdOffset = 4 + 1 + serverVersion.length + 1;
+        this.seed1Offset = threadIdOffset + 4;
+        // seed 之后：filler(1) capabilities(2) charset(1) status(2)，两种包都是 13 字节的保留区
+        if (!v10 || (capabilities & Capabilities.CLIENT_SECURE_CONNECTION) != 0) {
+            this.seed2Offset = seed1Offset + SEED1_LENGTH + 19;
+        } else {
+            this.seed2Offset = -1;
+        }
+    }
+
+    private boolean matches(boolean v10, int capabilities, int charsetIndex) {
+        return this.v10 == v10 && this.capabilities == capabilities && this.charsetIndex == charsetIndex
+                && this.serverVersion == Versions.SERVER_VERSION;
+    }
+
+    /**
+     * 生成完整的握手包(含包头)
+     *
+     * @param seed 长度为 {@link #SEED_LENGTH} 的认证随机数
+     */
+    public static byte[] make(boolean v10, int capabilities, int charsetIndex, long threadId, byte[] seed) {
+        HandshakeTemplate t = current;
+        if (t == null || !t.matches(v10, capabilities, charsetIndex)) {
+            t = new HandshakeTemplate(v10, capabilities, charsetIndex);
+            current = t;
+        }
+        byte[] data = t.template.clone();
+        int offset = t.threadIdOffset;
+        data[offset] = (byte) (threadId & 0xff);
+        data[offset + 1] = (byte) (threadId >>> 8);
+        data[offset + 2] = (byte) (threadId >>> 16);
+        data[offset + 3] = (byte) (threadId >>> 24);
+        System.arraycopy(seed, 0, data, t.seed1Offset, SEED1_LENGTH);
+        if (t.seed2Offset > 0) {
+            System.arraycopy(seed, SEED1_LENGTH, data, t.seed2Offset, SEED_LENGTH - SEED1_LENGTH);
+        }
+        return data;
+    }
+}
@@ -27,6 +27,7 @@ import java.nio.ByteBuffer;
 
 import io.mycat.config.Capabilities;
 import io.mycat.backend.mysql.BufferUtil;
+import io.mycat.buffer.BufferArray;
 import io.mycat.net.FrontendConnection;
 
 /**
@@ -82,6 +83,15 @@ public class HandshakeV10Packet extends MySQLPacket {
     public void write(FrontendConnection c) {
 
     	ByteBuffer buffer = c.allocate();
+        write(buffer);
+        c.write(buffer);
+    }
+
+    public void write(BufferArray bufferArray) {
+        write(bufferArray.checkWriteBuffer(packetHeaderSize + calcPacketSize()));
+    }
+
+    void write(ByteBuffer buffer) {
         BufferUtil.writeUB3(buffer, calcPacketSize());
         buffer.put(packetId);
         buffer.put(protocolVersion);
@@ -115,7 +125,6 @@ public class HandshakeV10Packet extends MySQLPacket {
         if((serverCapabilities & Capabilities.CLIENT_PLUGIN_AUTH) != 0) {
         	BufferUtil.writeWithNull(buffer, authPluginName);
         }
-        c.write(buffer);
     }
 
     @Override
@@ -28,6 +28,7 @@ import java.nio.ByteBuffer;
 import io.mycat.MycatServer;
 import io.mycat.backend.mysql.BufferUtil;
 import io.mycat.backend.mysql.MySQLMessage;
+import io.mycat.buffer.BufferArray;
 import io.mycat.net.FrontendConnection;
 
 /**
@@ -123,6 +124,21 @@ public class OkPacket extends MySQLPacket {
 		c.write(buffer);
 	}
 
+	public void write(BufferArray bufferArray) {
+		int size = calcPacketSize();
+		ByteBuffer buffer = bufferArray.checkWriteBuffer(packetHeaderSize + size);
+		BufferUtil.writeUB3(buffer, size);
+		buffer.put(packetId);
+		buffer.put(fieldCount);
+		BufferUtil.writeLength(buffer, affectedRows);
+		BufferUtil.writeLength(buffer, insertId);
+		BufferUtil.writeUB2(buffer, serverStatus);
+		BufferUtil.writeUB2(buffer, warningCount);
+		if (message != null) {
+			BufferUtil.writeWithLength(buffer, message);
+		}
+	}
+
 	@Override
 	public int calcPacketSize() {
 		int i = 1;
@@ -77,6 +77,28 @@ public final class RouteResultset implements Serializable {
 
     private boolean selectForUpdate;
 
+    // cache 注解指定的结果缓存时间(秒)，0 表示按表配置
+    private int dataSetCacheExpire;
+
+    public int getDataSetCacheExpire() {
+        return dataSetCacheExpire;
+    }
+
+    public void setDataSetCacheExpire(int dataSetCacheExpire) {
+        this.dataSetCacheExpire = dataSetCacheExpire;
+    }
+
+    // 路由解析时判断结果能否进入结果缓存，null 表示没有解析过
+    private Boolean dataSetCacheable;
+
+    public Boolean getDataSetCacheable() {
+        return dataSetCacheable;
+    }
+
+    public void setDataSetCacheable(Boolean dataSetCacheable) {
+        this.dataSetCacheable = dataSetCacheable;
+    }
+
     public boolean isSelectForUpdate() {
         return selectForUpdate;
     }
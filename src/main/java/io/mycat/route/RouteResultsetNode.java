@@ -86,14 +86,14 @@ public final class RouteResultsetNode implements Serializable , Comparable<Route
 	public void setRunOnSlave(Boolean runOnSlave) {
 		this.runOnSlave = runOnSlave;
 	}
-	  private Map hintMap;
+	  private Map<String, String> hintMap;
 
-    public Map getHintMap()
+    public Map<String, String> getHintMap()
     {
         return hintMap;
     }
 
-    public void setHintMap(Map hintMap)
+    public void setHintMap(Map<String, String> hintMap)
     {
         this.hintMap = hintMap;
     }
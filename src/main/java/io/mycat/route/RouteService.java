@@ -36,6 +36,7 @@ import org.slf4j.LoggerFactory;
 import io.mycat.cache.CachePool;
 import io.mycat.cache.CacheService;
 import io.mycat.cache.LayerCachePool;
+import io.mycat.cache.MysqlDataSetService;
 import io.mycat.config.model.SchemaConfig;
 import io.mycat.config.model.SystemConfig;
 import io.mycat.route.factory.RouteStrategyFactory;
@@ -70,13 +71,22 @@ public class RouteService {
 	public RouteResultset route(SystemConfig sysconf, SchemaConfig schema,
 			int sqlType, String stmt, String charset, ServerConnection sc)
 			throws SQLNonTransientException {
+		return route(sysconf, schema, sqlType, stmt, charset, sc, true);
+	}
+
+	/**
+	 * @param useCache 为 false 时不查也不放入 sql 路由缓存，调用方会修改路由结果时使用
+	 */
+	public RouteResultset route(SystemConfig sysconf, SchemaConfig schema,
+			int sqlType, String stmt, String charset, ServerConnection sc, boolean useCache)
+			throws SQLNonTransientException {
 		RouteResultset rrs = null;
 		String cacheKey = null;
 
 		/**
 		 *  SELECT 类型的SQL, 检测
 		 */
-		if (sqlType == ServerParse.SELECT) {
+		if (useCache && sqlType == ServerParse.SELECT) {
 			cacheKey = schema.getName() + stmt;			
 			rrs = (RouteResultset) sqlRouteCache.get(cacheKey);
 			if (rrs != null) {
@@ -100,9 +110,9 @@ public class RouteService {
 				
                 int firstSplitPos = hint.indexOf(HINT_SPLIT);                
                 if(firstSplitPos > 0 ){
-                    Map hintMap=    parseHint(hint);
-                	String hintType = (String) hintMap.get(MYCAT_HINT_TYPE);
-                    String hintSql = (String) hintMap.get(hintType);
+                    Map<String, String> hintMap=    parseHint(hint);
+                	String hintType = hintMap.get(MYCAT_HINT_TYPE);
+                    String hintSql = hintMap.get(hintType);
                     if( hintSql.length() == 0 ) {
                     	LOGGER.warn("comment int sql must meet :/*!mycat:type=value*/ or /*#mycat:type=value*/ or /*mycat:type=value*/: "+stmt);
                     	throw new SQLSyntaxErrorException("comment int sql must meet :/*!mycat:type=value*/ or /*#mycat:type=value*/ or /*mycat:type=value*/: "+stmt);
@@ -139,10 +149,16 @@ public class RouteService {
 					charset, sc, tableId2DataNodeCache);
 		}
 
-		if (rrs != null && sqlType == ServerParse.SELECT && rrs.isCacheAble()) {
+		if (useCache && rrs != null && sqlType == ServerParse.SELECT && rrs.isCacheAble()) {
 			sqlRouteCache.putIfAbsent(cacheKey, rrs);
 		}
 		checkMigrateRule(schema.getName(),rrs,sqlType);
+		if (rrs != null && (isUpdateSql(sqlType) || sqlType == ServerParse.REPLACE)) {
+			MysqlDataSetService.getInstance().onUpdate(sc, schema.getName(), rrs.getTables());
+		} else if (rrs != null && sqlType == ServerParse.CALL) {
+			// 存储过程修改哪些表未知，失效整个 schema
+			MysqlDataSetService.getInstance().onUpdate(sc, schema.getName(), null);
+		}
 		return rrs;
 	}
 
@@ -207,9 +223,9 @@ public class RouteService {
 		return -1;	// false
 	}
 	
-	 private   Map parseHint( String sql)
+	 private   Map<String, String> parseHint( String sql)
     {
-        Map map=new HashMap();
+        Map<String, String> map=new HashMap<String, String>();
         int y=0;
         int begin=0;
         for(int i=0;i<sql.length();i++)
@@ -237,7 +253,7 @@ public class RouteService {
         return map;
     }
 
-    private  void parseKeyValue(Map map, String substring)
+    private  void parseKeyValue(Map<String, String> map, String substring)
     {
         int indexOf = substring.indexOf('=');
         if(indexOf!=-1)
@@ -0,0 +1,53 @@
+package io.mycat.route.handler;
+
+import java.sql.SQLNonTransientException;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.mycat.cache.LayerCachePool;
+import io.mycat.config.model.SchemaConfig;
+import io.mycat.config.model.SystemConfig;
+import io.mycat.route.RouteResultset;
+import io.mycat.route.factory.RouteStrategyFactory;
+import io.mycat.server.ServerConnection;
+import io.mycat.server.parser.ServerParse;
+
+/**
+ * 处理注释中类型为 cache 的情况，缓存 select 的结果集，需要开启 useResultCache
+ *
+ * 注解 mycat:cache=30 表示缓存 30 秒，cache=true 时使用 resultCacheExpire
+ *
+ * @author mycat
+ */
+public class HintCacheHandler implements HintHandler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(HintCacheHandler.class);
+
+	@Override
+	public RouteResultset route(SystemConfig sysConfig, SchemaConfig schema, int sqlType, String realSQL,
+			String charset, ServerConnection sc, LayerCachePool cachePool, String hintSQLValue, int hintSqlType,
+			Map<String, String> hintMap) throws SQLNonTransientException {
+
+		RouteResultset rrs = RouteStrategyFactory.getRouteStrategy()
+				.route(sysConfig, schema, sqlType, realSQL, charset, sc, cachePool);
+		if (rrs == null || sqlType != ServerParse.SELECT) {
+			return rrs;
+		}
+
+		String value = hintSQLValue.trim();
+		int expire = 0;
+		if ("true".equalsIgnoreCase(value)) {
+			expire = sysConfig.getResultCacheExpire();
+		} else {
+			try {
+				expire = Integer.parseInt(value);
+			} catch (NumberFormatException e) {
+				LOGGER.warn("sql hint 'cache' should be seconds or true, ignore this hint: " + value);
+			}
+		}
+		rrs.setDataSetCacheExpire(expire);
+		return rrs;
+	}
+}
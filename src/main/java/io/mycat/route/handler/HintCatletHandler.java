@@ -40,7 +40,7 @@ public class HintCatletHandler implements HintHandler {
 	@Override
 	public RouteResultset route(SystemConfig sysConfig, SchemaConfig schema,
 			int sqlType, String realSQL, String charset, ServerConnection sc,
-			LayerCachePool cachePool, String hintSQLValue,int hintSqlType, Map hintMap)
+			LayerCachePool cachePool, String hintSQLValue,int hintSqlType, Map<String, String> hintMap)
 			throws SQLNonTransientException {
 		// sc.setEngineCtx ctx
 		String cateletClass = hintSQLValue;
@@ -25,7 +25,7 @@ public class HintDataNodeHandler implements HintHandler {
 
 	@Override
 	public RouteResultset route(SystemConfig sysConfig, SchemaConfig schema, int sqlType, String realSQL,
-			String charset, ServerConnection sc, LayerCachePool cachePool, String hintSQLValue,int hintSqlType, Map hintMap)
+			String charset, ServerConnection sc, LayerCachePool cachePool, String hintSQLValue,int hintSqlType, Map<String, String> hintMap)
 					throws SQLNonTransientException {
 		
 		String stmt = realSQL;
@@ -17,6 +17,6 @@ public interface HintHandler {
 
 	public RouteResultset route(SystemConfig sysConfig, SchemaConfig schema,
                                 int sqlType, String realSQL, String charset, ServerConnection sc,
-                                LayerCachePool cachePool, String hintSQLValue, int hintSqlType, Map hintMap)
+                                LayerCachePool cachePool, String hintSQLValue, int hintSqlType, Map<String, String> hintMap)
 			throws SQLNonTransientException;
 }
@@ -24,6 +24,8 @@ public class HintHandlerFactory {
         // 该hint可以和 /*balance*/ 一起使用
         // 实现强制走 master 和 强制走 slave
         hintHandlerMap.put("db_type", new HintMasterDBHandler());
+        // /*!mycat:cache=30*/ 缓存 select 结果
+        hintHandlerMap.put("cache", new HintCacheHandler());
         isInit = true;	// 修复多次初始化的bug
     }
     
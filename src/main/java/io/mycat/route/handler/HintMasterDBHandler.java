@@ -29,7 +29,7 @@ public class HintMasterDBHandler implements HintHandler {
 	@Override
 	public RouteResultset route(SystemConfig sysConfig, SchemaConfig schema, int sqlType, 
 			String realSQL, String charset,
-			ServerConnection sc, LayerCachePool cachePool, String hintSQLValue, int hintSqlType, Map hintMap)
+			ServerConnection sc, LayerCachePool cachePool, String hintSQLValue, int hintSqlType, Map<String, String> hintMap)
 			throws SQLNonTransientException {
 		
 //		LOGGER.debug("realSQL: " + realSQL); // select * from travelrecord limit 1
@@ -41,7 +41,7 @@ public class HintSQLHandler implements HintHandler {
 	@Override
 	public RouteResultset route(SystemConfig sysConfig, SchemaConfig schema,
 			int sqlType, String realSQL, String charset, ServerConnection sc,
-			LayerCachePool cachePool, String hintSQLValue,int hintSqlType, Map hintMap)
+			LayerCachePool cachePool, String hintSQLValue,int hintSqlType, Map<String, String> hintMap)
             throws SQLNonTransientException {
 		
 		RouteResultset rrs = routeStrategy.route(sysConfig, schema, hintSqlType,
@@ -79,7 +79,7 @@ public class HintSQLHandler implements HintHandler {
 
 
 
-    private   Procedure parseProcedure(String sql,Map hintMap)
+    private   Procedure parseProcedure(String sql,Map<String, String> hintMap)
     {
         boolean fields = hintMap.containsKey("list_fields");
         boolean isResultList= hintMap != null && ("list".equals(hintMap.get("result_type"))|| fields);
@@ -174,7 +174,7 @@ public class HintSQLHandler implements HintHandler {
         }
         if(fields)
         {
-            String list_fields =(String) hintMap.get("list_fields");
+            String list_fields = hintMap.get("list_fields");
             List<String> listFields = Splitter.on(",").trimResults().splitToList( list_fields);
             for (String field : listFields)
             {
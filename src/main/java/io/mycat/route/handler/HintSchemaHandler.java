@@ -44,7 +44,7 @@ public class HintSchemaHandler implements HintHandler {
 	@Override
 	public RouteResultset route(SystemConfig sysConfig, SchemaConfig schema,
 			int sqlType, String realSQL, String charset, ServerConnection sc,
-			LayerCachePool cachePool, String hintSQLValue,int hintSqlType, Map hintMap)
+			LayerCachePool cachePool, String hintSQLValue,int hintSqlType, Map<String, String> hintMap)
 			throws SQLNonTransientException {
 	    SchemaConfig tempSchema = MycatServer.getInstance().getConfig().getSchemas().get(hintSQLValue);
 		if (tempSchema != null) {
@@ -1,7 +1,9 @@
 package io.mycat.route.impl;
 
+import java.sql.SQLException;
 import java.sql.SQLNonTransientException;
 import java.sql.SQLSyntaxErrorException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -15,10 +17,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.alibaba.druid.sql.SQLUtils;
+import com.alibaba.druid.sql.ast.SQLExpr;
 import com.alibaba.druid.sql.ast.SQLObject;
 import com.alibaba.druid.sql.ast.SQLStatement;
 import com.alibaba.druid.sql.ast.expr.SQLAllExpr;
 import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLCharExpr;
 import com.alibaba.druid.sql.ast.expr.SQLExistsExpr;
 import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
 import com.alibaba.druid.sql.ast.expr.SQLInSubQueryExpr;
@@ -53,6 +57,7 @@ import io.mycat.route.RouteResultsetNode;
 import io.mycat.route.function.SlotFunction;
 import io.mycat.route.impl.middlerResultStrategy.BinaryOpResultHandler;
 import io.mycat.route.impl.middlerResultStrategy.InSubQueryResultHandler;
+import io.mycat.route.impl.middlerResultStrategy.InSubQueryShardRouter;
 import io.mycat.route.impl.middlerResultStrategy.RouteMiddlerReaultHandler;
 import io.mycat.route.impl.middlerResultStrategy.SQLAllResultHandler;
 import io.mycat.route.impl.middlerResultStrategy.SQLExistsResultHandler;
@@ -68,6 +73,7 @@ import io.mycat.route.util.RouterUtil;
 import io.mycat.server.NonBlockingSession;
 import io.mycat.server.ServerConnection;
 import io.mycat.server.parser.ServerParse;
+import io.mycat.statistic.SqlTrace;
 
 public class DruidMycatRouteStrategy extends AbstractRouteStrategy {
 	
@@ -107,6 +113,9 @@ public class DruidMycatRouteStrategy extends AbstractRouteStrategy {
 		 */
 		try {
 			statement = parser.parseStatement();
+			if (sc != null) {
+				sc.getSession2().getTrace().mark(SqlTrace.PARSE);
+			}
             visitor = new MycatSchemaStatVisitor();
 		} catch (Exception t) {
 	        LOGGER.error("DruidMycatRouteStrategyError", t);
@@ -272,19 +281,21 @@ public class DruidMycatRouteStrategy extends AbstractRouteStrategy {
 		
     	MiddlerResultHandler<String> middlerResultHandler =  new MiddlerQueryResultHandler<>(new SecondHandler() {						 
 				@Override
-				public void doExecute(List param) {
+				public void doExecute(List<SQLCharExpr> param) {
 					sc.getSession2().setMiddlerResultHandler(null);
 					String sqls = null;
 					// 路由计算
 					RouteResultset rrs = null;
 					try {
-						
-						sqls = buildSql(statement,sqlselect,param);
-						rrs = MycatServer
-								.getInstance()
-								.getRouterservice()
-								.route(MycatServer.getInstance().getConfig().getSystem(),
-										schema, sqlType,sqls.toLowerCase(), charset,sc );
+						rrs = shardPrunedRoute(schema, statement, sqlselect, param, sqlType, charset, sc);
+						if (rrs == null) {
+							sqls = buildSql(statement,sqlselect,param);
+							rrs = MycatServer
+									.getInstance()
+									.getRouterservice()
+									.route(MycatServer.getInstance().getConfig().getSystem(),
+											schema, sqlType,sqls.toLowerCase(), charset,sc );
+						}
 
 					} catch (Exception e) {
 						StringBuilder s = new StringBuilder();
@@ -329,6 +340,43 @@ public class DruidMycatRouteStrategy extends AbstractRouteStrategy {
 		return rrs;
 	}
 	
+	/**
+	 * in 子查询的字段是外层表的分片字段时，每个节点只发送该节点上可能存在的值
+	 * @return null 表示不能裁剪，此时语法树未被修改
+	 */
+	private RouteResultset shardPrunedRoute(SchemaConfig schema, SQLStatement statement, SQLSelect sqlselect,
+			List<? extends SQLExpr> param, int sqlType, String charset, ServerConnection sc) throws SQLException {
+		InSubQueryShardRouter router = InSubQueryShardRouter.create(schema, statement, sqlselect, param,
+				MycatServer.getInstance().getBusinessExecutor());
+		if (router == null) {
+			return null;
+		}
+		// 原语法树中的子查询替换为只含各节点代表值的 in 列表，路由出的 sql 很短。
+		// 路由结果随后按节点改写，不能经过 sql 路由缓存，否则缓存中的对象会被改写且被并发共享
+		List<SQLExpr> inValues = new ArrayList<SQLExpr>(router.getRepresentatives());
+		String sql = buildSql(statement, sqlselect, inValues);
+		RouteResultset rrs = MycatServer.getInstance().getRouterservice().route(
+				MycatServer.getInstance().getConfig().getSystem(), schema, sqlType, sql.toLowerCase(), charset, sc,
+				false);
+		if (rrs != null && !router.rewrite(rrs)) {
+			// 路由结果与分片计算不一致，退回到完整的 in 列表(inValues 就是语法树中 in 列表的 targetList)
+			LOGGER.warn("in subquery shard pruning mismatch, send all values: " + sql);
+			inValues.clear();
+			inValues.addAll(param);
+			rrs = MycatServer.getInstance().getRouterservice().route(
+					MycatServer.getInstance().getConfig().getSystem(), schema, sqlType,
+					statement.toString().toLowerCase(), charset, sc, false);
+		}
+		if (rrs == null) {
+			return null;
+		}
+		rrs.setCacheAble(false);
+		if (LOGGER.isDebugEnabled()) {
+			LOGGER.debug("in subquery with " + param.size() + " values pruned to " + router.getNodeCount() + " nodes");
+		}
+		return rrs;
+	}
+
 	/**
 	 * 获取子查询执行结果后,改写原始sql 继续执行.
 	 * @param statement
@@ -336,7 +384,7 @@ public class DruidMycatRouteStrategy extends AbstractRouteStrategy {
 	 * @param param
 	 * @return
 	 */
-	private String buildSql(SQLStatement statement,SQLSelect sqlselect,List param){
+	private String buildSql(SQLStatement statement,SQLSelect sqlselect,List<? extends SQLExpr> param){
 
 		SQLObject parent = sqlselect.getParent();
 		RouteMiddlerReaultHandler handler = middlerResultHandler.get(parent.getClass());
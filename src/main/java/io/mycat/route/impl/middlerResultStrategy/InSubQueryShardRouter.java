@@ -0,0 +1,314 @@
+package io.mycat.route.impl.middlerResultStrategy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLObject;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOpExpr;
+import com.alibaba.druid.sql.ast.expr.SQLBinaryOperator;
+import com.alibaba.druid.sql.ast.expr.SQLCharExpr;
+import com.alibaba.druid.sql.ast.expr.SQLIdentifierExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInListExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInSubQueryExpr;
+import com.alibaba.druid.sql.ast.expr.SQLPropertyExpr;
+import com.alibaba.druid.sql.ast.statement.SQLExprTableSource;
+import com.alibaba.druid.sql.ast.statement.SQLSelect;
+import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
+import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+
+import io.mycat.config.model.SchemaConfig;
+import io.mycat.config.model.TableConfig;
+import io.mycat.route.RouteResultset;
+import io.mycat.route.RouteResultsetNode;
+import io.mycat.route.function.AbstractPartitionAlgorithm;
+
+/**
+ * col in (select ...) 子查询的分片裁剪
+ *
+ * 当外层查询是单表查询、in 的字段就是该表的分片字段、并且 in 条件只通过 and 连接到 where 上时，
+ * 按分片规则把子查询的结果分配到各个 dataNode，每个节点只收到可能存在于该节点的值，
+ * 不再把完整的 in 列表拼进 sql 文本再重新解析、发送到所有节点。
+ *
+ * 路由时 in 列表中每个节点只放一个代表值，路由结果中每个节点的 sql 很短，
+ * 再在语法树上把代表值替换成该节点的完整值列表。
+ *
+ * @author mycat
+ */
+public class InSubQueryShardRouter {
+	private static final Logger LOGGER = LoggerFactory.getLogger(InSubQueryShardRouter.class);
+
+	/**
+	 * 值的个数超过此数时，分批并行计算分片
+	 */
+	static final int PARALLEL_CHUNK_SIZE = 10000;
+
+	private final Map<String, List<SQLExpr>> nodeValues;
+	private final List<SQLExpr> representatives;
+
+	private InSubQueryShardRouter(Map<String, List<SQLExpr>> nodeValues) {
+		this.nodeValues = nodeValues;
+		this.representatives = new ArrayList<SQLExpr>(nodeValues.size());
+		for (List<SQLExpr> values : nodeValues.values()) {
+			representatives.add(values.get(0));
+		}
+	}
+
+	/**
+	 * 判断能否裁剪并计算每个值所在的节点
+	 *
+	 * @return null 表示不能裁剪，按原来的方式处理
+	 */
+	public static InSubQueryShardRouter create(SchemaConfig schema, SQLStatement statement,
+			SQLSelect sqlselect, List<? extends SQLExpr> param, Executor executor) {
+		if (schema == null || param == null || param.isEmpty()) {
+			return null;
+		}
+		SQLObject parent = sqlselect.getParent();
+		if (!(parent instanceof SQLInSubQueryExpr) || ((SQLInSubQueryExpr) parent).isNot()) {
+			return null;
+		}
+		if (!(statement instanceof SQLSelectStatement)
+				|| !(((SQLSelectStatement) statement).getSelect().getQuery() instanceof MySqlSelectQueryBlock)) {
+			return null;
+		}
+		MySqlSelectQueryBlock query = (MySqlSelectQueryBlock) ((SQLSelectStatement) statement).getSelect().getQuery();
+		if (!(query.getFrom() instanceof SQLExprTableSource) || !isAndConjunct((SQLInSubQueryExpr) parent, query)) {
+			return null;
+		}
+		TableConfig tc = schema.getTables().get(tableName((SQLExprTableSource) query.getFrom()));
+		if (tc == null || tc.isGlobalTable() || tc.isDistTable() || tc.getRule() == null
+				|| tc.getRule().getRuleAlgorithm() == null
+				|| !columnName(((SQLInSubQueryExpr) parent).getExpr()).equalsIgnoreCase(tc.getPartitionColumn())) {
+			return null;
+		}
+
+		Integer[] indexes = calculate(tc.getRule().getRuleAlgorithm(), param, executor);
+		if (indexes == null) {
+			return null;
+		}
+		List<String> dataNodes = tc.getDataNodes();
+		Map<String, List<SQLExpr>> nodeValues = new LinkedHashMap<String, List<SQLExpr>>();
+		for (int i = 0; i < indexes.length; i++) {
+			Integer index = indexes[i];
+			if (index == null) { // null 值不会匹配任何行
+				continue;
+			}
+			if (index < 0 || index >= dataNodes.size()) {
+				return null;
+			}
+			String dataNode = dataNodes.get(index);
+			List<SQLExpr> values = nodeValues.get(dataNode);
+			if (values == null) {
+				values = new ArrayList<SQLExpr>();
+				nodeValues.put(dataNode, values);
+			}
+			values.add(param.get(i));
+		}
+		if (nodeValues.isEmpty()) {
+			return null;
+		}
+		return new InSubQueryShardRouter(nodeValues);
+	}
+
+	/**
+	 * 只放代表值的 in 列表，用于路由
+	 */
+	public List<SQLExpr> getRepresentatives() {
+		return representatives;
+	}
+
+	public int getNodeCount() {
+		return nodeValues.size();
+	}
+
+	/**
+	 * 把路由结果中各节点 sql 里的代表值替换成该节点的值列表。
+	 *
+	 * 各节点路由出的 sql 通常相同(只含代表值，很短)，相同的 sql 只解析一次，
+	 * 之后在同一棵语法树上依次换入各节点的值列表再输出，不再为每个节点解析一次 sql。
+	 *
+	 * @return false 表示路由结果与预期不一致，需要按原来的方式处理
+	 */
+	public boolean rewrite(RouteResultset rrs) {
+		RouteResultsetNode[] nodes = rrs.getNodes();
+		if (nodes == null || nodes.length == 0) {
+			return false;
+		}
+		Map<String, ParsedNodeSql> parsed = new HashMap<String, ParsedNodeSql>(4);
+		for (RouteResultsetNode node : nodes) {
+			List<SQLExpr> values = nodeValues.get(node.getName());
+			if (values == null) {
+				LOGGER.debug("unexpected route node " + node.getName() + " for in subquery");
+				return false;
+			}
+			ParsedNodeSql sql = parsed.get(node.getStatement());
+			if (sql == null) {
+				SQLStatement stmt = new MySqlStatementParser(node.getStatement()).parseStatement();
+				SQLInListExpr inList = findInList(stmt);
+				if (inList == null) {
+					return false;
+				}
+				sql = new ParsedNodeSql(stmt, inList);
+				parsed.put(node.getStatement(), sql);
+			}
+			List<SQLExpr> targets = new ArrayList<SQLExpr>(values);
+			for (SQLExpr value : targets) {
+				value.setParent(sql.inList);
+			}
+			sql.inList.setTargetList(targets);
+			node.setStatement(sql.stmt.toString());
+		}
+		return true;
+	}
+
+	private static final class ParsedNodeSql {
+		final SQLStatement stmt;
+		final SQLInListExpr inList;
+
+		ParsedNodeSql(SQLStatement stmt, SQLInListExpr inList) {
+			this.stmt = stmt;
+			this.inList = inList;
+		}
+	}
+
+	private SQLInListExpr findInList(SQLStatement stmt) {
+		final SQLInListExpr[] found = new SQLInListExpr[1];
+		stmt.accept(new MySqlASTVisitorAdapter() {
+			@Override
+			public boolean visit(SQLInListExpr x) {
+				if (found[0] == null && sameValues(x.getTargetList(), representatives)) {
+					found[0] = x;
+				}
+				return false;
+			}
+		});
+		return found[0];
+	}
+
+	private static boolean sameValues(List<SQLExpr> routed, List<SQLExpr> expected) {
+		if (routed.size() != expected.size()) {
+			return false;
+		}
+		for (int i = 0; i < routed.size(); i++) {
+			// 路由前 sql 被转成了小写
+			if (!valueOf(routed.get(i)).equalsIgnoreCase(valueOf(expected.get(i)))) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String valueOf(SQLExpr expr) {
+		if (expr instanceof SQLCharExpr) {
+			return String.valueOf(((SQLCharExpr) expr).getText());
+		}
+		return expr.toString();
+	}
+
+	/**
+	 * 计算每个值所在的分片，值很多时分批并行计算；
+	 * 调用线程会执行尚未被线程池调度的批次，不会因为线程池满而阻塞
+	 */
+	private static Integer[] calculate(final AbstractPartitionAlgorithm algorithm, final List<? extends SQLExpr> param,
+			Executor executor) {
+		final Integer[] indexes = new Integer[param.size()];
+		int chunks = (param.size() + PARALLEL_CHUNK_SIZE - 1) / PARALLEL_CHUNK_SIZE;
+		List<FutureTask<Boolean>> tasks = new ArrayList<FutureTask<Boolean>>(chunks);
+		for (int c = 0; c < chunks; c++) {
+			final int from = c * PARALLEL_CHUNK_SIZE;
+			final int to = Math.min(param.size(), from + PARALLEL_CHUNK_SIZE);
+			FutureTask<Boolean> task = new FutureTask<Boolean>(new Callable<Boolean>() {
+				@Override
+				public Boolean call() {
+					for (int i = from; i < to; i++) {
+						SQLExpr expr = param.get(i);
+						if (expr instanceof SQLCharExpr && ((SQLCharExpr) expr).getText() == null) {
+							continue;
+						}
+						indexes[i] = algorithm.calculate(valueOf(expr));
+						if (indexes[i] == null) {
+							return false;
+						}
+					}
+					return true;
+				}
+			});
+			tasks.add(task);
+			if (c > 0 && executor != null) {
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					// 由调用线程执行
+				}
+			}
+		}
+		try {
+			for (FutureTask<Boolean> task : tasks) {
+				task.run(); // 已经执行过的任务不会重复执行
+				if (!task.get()) {
+					return null;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			LOGGER.warn("calculate partition for in subquery error:", e.getCause());
+			return null;
+		} catch (RuntimeException e) {
+			LOGGER.warn("calculate partition for in subquery error:", e);
+			return null;
+		}
+		return indexes;
+	}
+
+	/**
+	 * in 条件到 where 的路径上只能是 and，否则裁剪会丢数据
+	 */
+	private static boolean isAndConjunct(SQLInSubQueryExpr expr, MySqlSelectQueryBlock query) {
+		SQLObject child = expr;
+		SQLObject p = expr.getParent();
+		while (p != query) {
+			if (!(p instanceof SQLBinaryOpExpr)
+					|| ((SQLBinaryOpExpr) p).getOperator() != SQLBinaryOperator.BooleanAnd) {
+				return false;
+			}
+			child = p;
+			p = p.getParent();
+		}
+		return query.getWhere() == child;
+	}
+
+	private static String tableName(SQLExprTableSource source) {
+		String name = source.getExpr() instanceof SQLPropertyExpr
+				? ((SQLPropertyExpr) source.getExpr()).getName() : source.getExpr().toString();
+		return name.replace("`", "").toUpperCase();
+	}
+
+	private static String columnName(SQLExpr expr) {
+		String name;
+		if (expr instanceof SQLIdentifierExpr) {
+			name = ((SQLIdentifierExpr) expr).getName();
+		} else if (expr instanceof SQLPropertyExpr) {
+			name = ((SQLPropertyExpr) expr).getName();
+		} else {
+			return "";
+		}
+		return name.replace("`", "");
+	}
+}
@@ -83,6 +83,15 @@ public final class ManagerParseShow {
 
     public static final int CHECK_GLOBAL = 47;
 
+    public static final int SQL_TRACE = 48;
+    public static final int SQL_TRACE_STAGE = 49;
+    public static final int CACHE_RESULT = 50;
+    public static final int DATASOURCE_COMPRESS = 51;
+    public static final int CACHE_PRIVILEGE = 52;
+    public static final int DATASOURCE_PREPARED = 53;
+    public static final int ACCEPTOR = 54;
+    public static final int SPILL = 55;
+
     public static int parse(String stmt, int offset) {
         int i = offset;
         for (; i < stmt.length(); i++) {
@@ -116,6 +125,9 @@ public final class ManagerParseShow {
         if (stmt.length() > ++offset && stmt.charAt(offset) == '@'
                 && stmt.length() > ++offset) {
                 switch (stmt.charAt(offset)) {
+                case 'A':
+                case 'a':
+                    return show2ACheck(stmt, offset);
                 case 'B':
                 case 'b':
                     return show2BCheck(stmt, offset);
@@ -199,6 +211,30 @@ public final class ManagerParseShow {
         return OTHER;
     }
 
+    // SHOW @@ACCEPTOR
+    static int show2ACheck(String stmt, int offset) {
+        if (stmt.length() > offset + "CCEPTOR".length()) {
+            char c1 = stmt.charAt(++offset);
+            char c2 = stmt.charAt(++offset);
+            char c3 = stmt.charAt(++offset);
+            char c4 = stmt.charAt(++offset);
+            char c5 = stmt.charAt(++offset);
+            char c6 = stmt.charAt(++offset);
+            char c7 = stmt.charAt(++offset);
+            if ((c1 == 'C' || c1 == 'c') && (c2 == 'C' || c2 == 'c') && (c3 == 'E' || c3 == 'e')
+                    && (c4 == 'P' || c4 == 'p') && (c5 == 'T' || c5 == 't') && (c6 == 'O' || c6 == 'o')
+                    && (c7 == 'R' || c7 == 'r')) {
+                while (stmt.length() > ++offset) {
+                    if (!ParseUtil.isEOF(stmt.charAt(offset))) {
+                        return OTHER;
+                    }
+                }
+                return ACCEPTOR;
+            }
+        }
+        return OTHER;
+    }
+
     // SHOW @@BACKEND
     static int show2BCheck(String stmt, int offset) {
         if (stmt.length() > offset + "ACKEND".length()) {
@@ -291,12 +327,22 @@ public final class ManagerParseShow {
 	}
 
 	// SHOW @@CACHE
+	// SHOW @@CACHE.RESULT
+	// SHOW @@CACHE.PRIVILEGE
     private static int show2CACheck(String stmt, int offset) {
     	String remain=stmt.substring(offset);
     	 if(remain.equalsIgnoreCase("ACHE"))
     	 {
     		 return CACHE;
     	 }
+    	 if(remain.equalsIgnoreCase("ACHE.RESULT"))
+    	 {
+    		 return CACHE_RESULT;
+    	 }
+    	 if(remain.equalsIgnoreCase("ACHE.PRIVILEGE"))
+    	 {
+    		 return CACHE_PRIVILEGE;
+    	 }
     	return OTHER;
 	}
 
@@ -400,6 +446,9 @@ public final class ManagerParseShow {
             	}
             case 'C':
             case 'c':
+            	if (stmt.length() > offset + 1 && (stmt.charAt(offset + 1) == 'O' || stmt.charAt(offset + 1) == 'o')) {
+            		return show2DataSCompressCheck(stmt, offset);
+            	}
             	if (stmt.length() > offset + "luster".length()) {
             		char c1 = stmt.charAt(++offset);
                     char c2 = stmt.charAt(++offset);
@@ -415,12 +464,61 @@ public final class ManagerParseShow {
                     	return OTHER;
                     }
             	}
+            case 'P':
+            case 'p':
+            	return show2DataSPreparedCheck(stmt, offset);
             default:
                 return OTHER;
             }
         }
         return OTHER;
     }
+    // SHOW @@DATASOURCE.PREPARED
+    static int show2DataSPreparedCheck(String stmt, int offset) {
+        if (stmt.length() > offset + "REPARED".length()) {
+            char c1 = stmt.charAt(++offset);
+            char c2 = stmt.charAt(++offset);
+            char c3 = stmt.charAt(++offset);
+            char c4 = stmt.charAt(++offset);
+            char c5 = stmt.charAt(++offset);
+            char c6 = stmt.charAt(++offset);
+            char c7 = stmt.charAt(++offset);
+            if ((c1 == 'R' || c1 == 'r') && (c2 == 'E' || c2 == 'e') && (c3 == 'P' || c3 == 'p')
+                    && (c4 == 'A' || c4 == 'a') && (c5 == 'R' || c5 == 'r') && (c6 == 'E' || c6 == 'e')
+                    && (c7 == 'D' || c7 == 'd')) {
+                while (stmt.length() > ++offset) {
+                    if (!ParseUtil.isEOF(stmt.charAt(offset))) {
+                        return OTHER;
+                    }
+                }
+                return DATASOURCE_PREPARED;
+            }
+        }
+        return OTHER;
+    }
+    // SHOW @@DATASOURCE.COMPRESS
+    static int show2DataSCompressCheck(String stmt, int offset) {
+        if (stmt.length() > offset + "OMPRESS".length()) {
+            char c1 = stmt.charAt(++offset);
+            char c2 = stmt.charAt(++offset);
+            char c3 = stmt.charAt(++offset);
+            char c4 = stmt.charAt(++offset);
+            char c5 = stmt.charAt(++offset);
+            char c6 = stmt.charAt(++offset);
+            char c7 = stmt.charAt(++offset);
+            if ((c1 == 'O' || c1 == 'o') && (c2 == 'M' || c2 == 'm') && (c3 == 'P' || c3 == 'p')
+                    && (c4 == 'R' || c4 == 'r') && (c5 == 'E' || c5 == 'e') && (c6 == 'S' || c6 == 's')
+                    && (c7 == 'S' || c7 == 's')) {
+                while (stmt.length() > ++offset) {
+                    if (!ParseUtil.isEOF(stmt.charAt(offset))) {
+                        return OTHER;
+                    }
+                }
+                return DATASOURCE_COMPRESS;
+            }
+        }
+        return OTHER;
+    }
     //show @@datasource.syndetail
     static int show2SynDetailCheck(String stmt, int offset) {
         if (stmt.length() > offset + "etail".length()) {
@@ -559,12 +657,33 @@ public final class ManagerParseShow {
             case 'Y':
             case 'y':
             	return show2SyCheck(stmt, offset);
+            case 'P':
+            case 'p':
+                return show2SpCheck(stmt, offset);
             default:
                 return OTHER;
             }
         }
         return OTHER;
     }
+
+    // SHOW @@SPILL
+    static int show2SpCheck(String stmt, int offset) {
+        if (stmt.length() > offset + "ILL".length()) {
+            char c1 = stmt.charAt(++offset);
+            char c2 = stmt.charAt(++offset);
+            char c3 = stmt.charAt(++offset);
+            if ((c1 == 'I' || c1 == 'i') && (c2 == 'L' || c2 == 'l') && (c3 == 'L' || c3 == 'l')) {
+                while (stmt.length() > ++offset) {
+                    if (!ParseUtil.isEOF(stmt.charAt(offset))) {
+                        return OTHER;
+                    }
+                }
+                return SPILL;
+            }
+        }
+        return OTHER;
+    }
     
 	// SHOW @@SLOW
     static int show2SlCheck(String stmt, int offset) {
@@ -1335,6 +1454,9 @@ public final class ManagerParseShow {
             case 'R':
             case 'r':
             	return show2SqlRCheck(stmt, offset);
+            case 'T':
+            case 't':
+            	return show2SqlTCheck(stmt, offset);
             default:
                 return OTHER;
             }
@@ -1490,6 +1612,40 @@ public final class ManagerParseShow {
         return OTHER;
     }
     
+    // SHOW @@SQL.TRACE
+    // SHOW @@SQL.TRACE.STAGE
+    static int show2SqlTCheck(String stmt, int offset) {
+        if (stmt.length() > offset + "RACE".length()) {
+            char c1 = stmt.charAt(++offset);
+            char c2 = stmt.charAt(++offset);
+            char c3 = stmt.charAt(++offset);
+            char c4 = stmt.charAt(++offset);
+            if ((c1 == 'R' || c1 == 'r') && (c2 == 'A' || c2 == 'a') && (c3 == 'C' || c3 == 'c')
+                    && (c4 == 'E' || c4 == 'e')) {
+                int type = SQL_TRACE;
+                if (stmt.length() > offset + ".STAGE".length() && stmt.charAt(offset + 1) == '.') {
+                    if (!"STAGE".equalsIgnoreCase(stmt.substring(offset + 2, offset + 7))) {
+                        return OTHER;
+                    }
+                    type = SQL_TRACE_STAGE;
+                    offset += ".STAGE".length();
+                }
+
+                while (stmt.length() > ++offset) {
+                    switch (stmt.charAt(offset)) {
+                    case ' ':
+                        continue;
+                    default:
+                        return (offset << 8) | type;
+                    }
+                }
+
+                return type;
+            }
+        }
+        return OTHER;
+    }
+
     // SHOW @@SQL.LARGE
     static int show2SqlLCheck(String stmt, int offset) {
     	
@@ -1,6 +1,8 @@
 package io.mycat.route.parser.druid;
 
 import java.io.UnsupportedEncodingException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
@@ -13,7 +15,7 @@ import io.mycat.config.model.SystemConfig;
 import io.mycat.route.SessionSQLPair;
 import io.mycat.route.sequence.handler.DistributedSequenceHandler;
 import io.mycat.route.sequence.handler.IncrSequenceMySQLHandler;
-import io.mycat.route.sequence.handler.IncrSequencePropHandler;
+import io.mycat.route.sequence.handler.IncrSequenceMappedHandler;
 import io.mycat.route.sequence.handler.IncrSequenceTimeHandler;
 import io.mycat.route.sequence.handler.IncrSequenceZKHandler;
 import io.mycat.route.sequence.handler.SequenceHandler;
@@ -40,13 +42,18 @@ public class DruidSequenceHandler {
 
     private final static Pattern pattern = Pattern.compile("(?:(\\s*next\\s+value\\s+for\\s*MYCATSEQ_(\\w+))(,|\\)|\\s)*)+", Pattern.CASE_INSENSITIVE);
 
+    /**
+     * 单个 next value for MYCATSEQ_xxx 表达式
+     */
+    private final static Pattern seqPattern = Pattern.compile("\\s*next\\s+value\\s+for\\s*MYCATSEQ_(\\w+)", Pattern.CASE_INSENSITIVE);
+
     public DruidSequenceHandler(int seqHandlerType) {
         switch (seqHandlerType) {
             case SystemConfig.SEQUENCEHANDLER_MYSQLDB:
                 sequenceHandler = IncrSequenceMySQLHandler.getInstance();
                 break;
             case SystemConfig.SEQUENCEHANDLER_LOCALFILE:
-                sequenceHandler = IncrSequencePropHandler.getInstance();
+                sequenceHandler = IncrSequenceMappedHandler.getInstance();
                 break;
             case SystemConfig.SEQUENCEHANDLER_LOCAL_TIME:
                 sequenceHandler = IncrSequenceTimeHandler.getInstance();
@@ -74,23 +81,52 @@ public class DruidSequenceHandler {
         if (null != pair.sql && !"".equals(pair.sql)) {
             Matcher matcher = pattern.matcher(executeSql);
             if(matcher.find()){
-            	String tableName = matcher.group(2);
-                ReentrantLock lock = getSegLock(tableName);
-				lock.lock();
-				try {
-                	matcher = pattern.matcher(executeSql);
-                	while(matcher.find()){            
-                		long value = sequenceHandler.nextId(tableName.toUpperCase());
-                        executeSql = executeSql.replaceFirst(matcher.group(1), " "+Long.toString(value));
-                        pair.session.getSource().setLastWriteTime(TimeUtil.currentTimeMillis());
-                    }
-				} finally {
-					lock.unlock();
-				}
+                executeSql = replaceSequence(executeSql);
+                pair.session.getSource().setLastWriteTime(TimeUtil.currentTimeMillis());
             }
         }
         return executeSql;
     }
+
+    /**
+     * 统计每个序列出现的次数，按序列一次预留全部 id，再一遍替换。
+     * 多行 insert 不再逐条取 id、逐次替换整条 sql
+     */
+    public String replaceSequence(String sql) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        Matcher matcher = seqPattern.matcher(sql);
+        while (matcher.find()) {
+            String name = matcher.group(1).toUpperCase();
+            Integer count = counts.get(name);
+            counts.put(name, count == null ? 1 : count + 1);
+        }
+
+        Map<String, long[]> values = new HashMap<>();
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            ReentrantLock lock = getSegLock(entry.getKey());
+            lock.lock();
+            try {
+                values.put(entry.getKey(), sequenceHandler.nextIds(entry.getKey(), entry.getValue()));
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        Map<String, Integer> used = new HashMap<>();
+        StringBuilder sb = new StringBuilder(sql.length());
+        int last = 0;
+        matcher = seqPattern.matcher(sql);
+        while (matcher.find()) {
+            String name = matcher.group(1).toUpperCase();
+            Integer index = used.get(name);
+            index = index == null ? 0 : index;
+            used.put(name, index + 1);
+            sb.append(sql, last, matcher.start()).append(' ').append(values.get(name)[index]);
+            last = matcher.end();
+        }
+        sb.append(sql, last, sql.length());
+        return sb.toString();
+    }
     
     /*
      * 获取分段锁 
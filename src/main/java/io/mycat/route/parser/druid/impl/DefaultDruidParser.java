@@ -7,7 +7,9 @@ import com.alibaba.druid.sql.ast.statement.SQLSelectStatement;
 import com.alibaba.druid.sql.dialect.mysql.ast.statement.MySqlSelectQueryBlock;
 import com.alibaba.druid.sql.visitor.SchemaStatVisitor;
 import com.alibaba.druid.stat.TableStat.Condition;
+import io.mycat.cache.CacheableSqlVisitor;
 import io.mycat.cache.LayerCachePool;
+import io.mycat.cache.MysqlDataSetService;
 import io.mycat.config.model.SchemaConfig;
 import io.mycat.route.RouteResultset;
 import io.mycat.route.parser.druid.DruidParser;
@@ -122,6 +124,10 @@ public class DefaultDruidParser implements DruidParser {
 					rrs.setSelectForUpdate(true);
 				}
 			}
+			// 含 now()、rand()、变量等的 select 不进结果缓存
+			if(MysqlDataSetService.getInstance().isEnabled()){
+				rrs.setDataSetCacheable(CacheableSqlVisitor.isCacheable(stmt));
+			}
 		}
 
 		List<List<Condition>> mergedConditionList = new ArrayList<List<Condition>>();
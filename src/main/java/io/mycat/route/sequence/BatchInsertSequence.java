@@ -97,7 +97,7 @@ public class BatchInsertSequence implements Catlet {
 							sequenceHandler = IncrSequenceMySQLHandler.getInstance();
 							break;
 						case SystemConfig.SEQUENCEHANDLER_LOCALFILE:
-							sequenceHandler = IncrSequencePropHandler.getInstance();
+							sequenceHandler = IncrSequenceMappedHandler.getInstance();
 							break;
 						case SystemConfig.SEQUENCEHANDLER_LOCAL_TIME:
 							sequenceHandler = IncrSequenceTimeHandler.getInstance();
@@ -113,10 +113,12 @@ public class BatchInsertSequence implements Catlet {
 					}
 				}
 				
+				//一次预留所有行的sequence值
+				long[] values = sequenceHandler.nextIds(tableName.toUpperCase(), insert.getValuesList().size());
+				int i = 0;
 				for(ValuesClause vc : insert.getValuesList()){
 					SQLIntegerExpr sqlIntegerExpr = new SQLIntegerExpr();
-					long value = sequenceHandler.nextId(tableName.toUpperCase());
-					sqlIntegerExpr.setNumber(value);//插入生成的sequence值
+					sqlIntegerExpr.setNumber(values[i++]);//插入生成的sequence值
 					vc.addValue(sqlIntegerExpr);
 				}
 				
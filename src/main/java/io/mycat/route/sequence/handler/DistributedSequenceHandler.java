@@ -193,6 +193,11 @@ public class DistributedSequenceHandler extends LeaderSelectorListenerAdapter im
 
     @Override
     public long nextId(String prefixName) {
+        return nextIds(prefixName, 1)[0];
+    }
+
+    @Override
+    public long[] nextIds(String prefixName, int count) {
         // System.out.println(instanceId);
         while (!ready) {
             try {
@@ -202,28 +207,32 @@ public class DistributedSequenceHandler extends LeaderSelectorListenerAdapter im
                 Thread.currentThread().interrupt();
             }
         }
-        long time = System.currentTimeMillis();
-        if (threadLastTime.get() == null) {
-            threadLastTime.set(time);
-        }
-        if (threadInc.get() == null) {
-            threadInc.set(0L);
-        }
         if (threadID.get() == null) {
             threadID.set(getNextThreadID());
         }
-        long a = threadInc.get();
-        if ((a + 1L) >= maxIncrement) {
-            if (threadLastTime.get() == time) {
-                time = blockUntilNextMillis(time);
+        // 线程内状态只读写一次
+        long lastTime = threadLastTime.get() == null ? -1L : threadLastTime.get();
+        long inc = threadInc.get() == null ? 0L : threadInc.get();
+        long suffix = ((threadID.get() % maxThreadId) << threadIdShift)
+                | (instanceId << instanceIdShift) | (clusterId << clusterIdShift);
+        long[] ids = new long[count];
+        for (int i = 0; i < count; i++) {
+            long time = System.currentTimeMillis();
+            long a = inc;
+            if ((a + 1L) >= maxIncrement) {
+                if (lastTime == time) {
+                    time = blockUntilNextMillis(time);
+                }
+                inc = 0L;
+            } else {
+                inc = a + 1L;
             }
-            threadInc.set(0L);
-        } else {
-            threadInc.set(a + 1L);
+            lastTime = time;
+            ids[i] = ((time & timestampMask) << timestampShift) | suffix | a;
         }
-        threadLastTime.set(time);
-        return ((time & timestampMask) << timestampShift) | (((threadID.get() % maxThreadId) << threadIdShift))
-                | (instanceId << instanceIdShift) | (clusterId << clusterIdShift) | a;
+        threadInc.set(inc);
+        threadLastTime.set(lastTime);
+        return ids;
     }
 
     private synchronized Long getNextThreadID() {
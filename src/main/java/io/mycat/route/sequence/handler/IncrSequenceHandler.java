@@ -53,6 +53,13 @@ public abstract class IncrSequenceHandler implements SequenceHandler {
 
 	public abstract Boolean fetchNextPeriod(String prefixName);
 
+	/**
+	 * 取下一个号段，批量取 id 时 minSize 为还缺的个数，支持的实现可以一次取够
+	 */
+	protected Boolean fetchNextPeriod(String prefixName, int minSize) {
+		return fetchNextPeriod(prefixName);
+	}
+
 	@Override
 	public long nextId(String prefixName) {
 		Map<String, String> paraMap = this.getParaValMap(prefixName);
@@ -69,4 +76,31 @@ public abstract class IncrSequenceHandler implements SequenceHandler {
 		return nextId.longValue();
 
 	}
+
+	@Override
+	public long[] nextIds(String prefixName, int count) {
+		long[] ids = new long[count];
+		int n = 0;
+		while (n < count) {
+			Map<String, String> paraMap = this.getParaValMap(prefixName);
+			if (null == paraMap) {
+				throw new RuntimeException("fetch Param Values error.");
+			}
+			long curId = Long.parseLong(paraMap.get(prefixName + KEY_CUR_NAME));
+			long maxId = Long.parseLong(paraMap.get(prefixName + KEY_MAX_NAME));
+			if (curId >= maxId) {
+				if (!Boolean.TRUE.equals(fetchNextPeriod(prefixName, count - n))) {
+					throw new RuntimeException("fetch next period error.");
+				}
+				continue;
+			}
+			// 当前号段内能取多少取多少，整段只更新一次 CURID
+			long take = Math.min(count - n, maxId - curId);
+			for (long i = 1; i <= take; i++) {
+				ids[n++] = curId + i;
+			}
+			updateCURIDVal(prefixName, curId + take);
+		}
+		return ids;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package io.mycat.route.sequence.handler;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.mycat.MycatServer;
+
+/**
+ * 本地文件实现递增序列号(sequnceHandlerType=0)，当前值保存在 mmap 的 {@link MappedSequenceStore} 中。
+ *
+ * 每次向文件预先登记 leaseSize 个 id 的高水位并刷盘，高水位以内的 id 在内存中通过 CAS 分配，
+ * 宕机重启后从高水位之后继续，最多跳过一个租约内未用完的 id，不会重复。
+ * 文件中还没有的序列第一次使用时从 sequence_conf.properties 导入(取 CURID)，之后以 mmap 文件为准。
+ *
+ * @author mycat
+ */
+public class IncrSequenceMappedHandler implements SequenceHandler {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(IncrSequenceMappedHandler.class);
+
+	public static final String STORE_FILE_NAME = "sequence_conf.dat";
+
+	private static class IncrSequenceMappedHandlerHolder {
+		private static final IncrSequenceMappedHandler instance = create();
+
+		private static IncrSequenceMappedHandler create() {
+			// 与 sequence_conf.properties 放在同一目录
+			String dir = Thread.currentThread().getContextClassLoader()
+					.getResource("").getPath().replaceAll("%20", " ");
+			int leaseSize = MycatServer.getInstance().getConfig().getSystem().getSequnceLocalLeaseSize();
+			try {
+				return new IncrSequenceMappedHandler(new File(dir, STORE_FILE_NAME),
+						new File(dir, IncrSequenceHandler.FILE_NAME), leaseSize);
+			} catch (IOException e) {
+				throw new RuntimeException("open local sequence store error", e);
+			}
+		}
+	}
+
+	public static IncrSequenceMappedHandler getInstance() {
+		return IncrSequenceMappedHandlerHolder.instance;
+	}
+
+	private static class Sequence {
+		// 最后分配出去的 id
+		final AtomicLong current;
+		// 已经刷盘的高水位
+		volatile long leaseEnd;
+
+		Sequence(long highWater) {
+			this.current = new AtomicLong(highWater);
+			this.leaseEnd = highWater;
+		}
+	}
+
+	private final MappedSequenceStore store;
+	private final File propsFile;
+	private final int leaseSize;
+	private final Map<String, Sequence> sequences = new ConcurrentHashMap<String, Sequence>();
+
+	public IncrSequenceMappedHandler(File storeFile, File propsFile, int leaseSize) throws IOException {
+		this.store = new MappedSequenceStore(storeFile);
+		this.propsFile = propsFile;
+		this.leaseSize = Math.max(1, leaseSize);
+	}
+
+	@Override
+	public long nextId(String prefixName) {
+		return reserve(prefixName, 1);
+	}
+
+	@Override
+	public long[] nextIds(String prefixName, int count) {
+		long first = reserve(prefixName, count);
+		long[] ids = new long[count];
+		for (int i = 0; i < count; i++) {
+			ids[i] = first + i;
+		}
+		return ids;
+	}
+
+	/**
+	 * 预留 count 个连续 id，返回第一个
+	 */
+	private long reserve(String prefixName, int count) {
+		Sequence seq = getSequence(prefixName);
+		while (true) {
+			long cur = seq.current.get();
+			long end = cur + count;
+			if (end <= seq.leaseEnd) {
+				if (seq.current.compareAndSet(cur, end)) {
+					return cur + 1;
+				}
+			} else {
+				extendLease(prefixName, seq, end);
+			}
+		}
+	}
+
+	private void extendLease(String prefixName, Sequence seq, long end) {
+		synchronized (seq) {
+			if (end > seq.leaseEnd) {
+				long leaseEnd = end + leaseSize;
+				try {
+					store.put(prefixName, leaseEnd);
+				} catch (IOException e) {
+					throw new RuntimeException("persist sequence " + prefixName + " error", e);
+				}
+				seq.leaseEnd = leaseEnd;
+			}
+		}
+	}
+
+	private Sequence getSequence(String prefixName) {
+		Sequence seq = sequences.get(prefixName);
+		if (seq == null) {
+			synchronized (sequences) {
+				seq = sequences.get(prefixName);
+				if (seq == null) {
+					Long highWater = store.get(prefixName);
+					if (highWater == null) {
+						highWater = importFromProperties(prefixName);
+					}
+					seq = new Sequence(highWater);
+					sequences.put(prefixName, seq);
+				}
+			}
+		}
+		return seq;
+	}
+
+	/**
+	 * 从 sequence_conf.properties 导入，CURID 及之前的 id 视为已经分配
+	 */
+	private long importFromProperties(String prefixName) {
+		Properties props = new Properties();
+		InputStream in = null;
+		try {
+			in = new FileInputStream(propsFile);
+			props.load(in);
+		} catch (IOException e) {
+			throw new RuntimeException("load " + propsFile + " error", e);
+		} finally {
+			if (in != null) {
+				try {
+					in.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+		String cur = props.getProperty(prefixName + IncrSequenceHandler.KEY_CUR_NAME);
+		String min = props.getProperty(prefixName + IncrSequenceHandler.KEY_MIN_NAME);
+		if (cur == null || min == null) {
+			throw new RuntimeException("can't find definition for sequence :" + prefixName);
+		}
+		long highWater = Math.max(Long.parseLong(cur.trim()), Long.parseLong(min.trim()) - 1);
+		LOGGER.info("import sequence " + prefixName + " from " + propsFile + ", current id " + highWater);
+		return highWater;
+	}
+
+	public void close() throws IOException {
+		store.close();
+	}
+}
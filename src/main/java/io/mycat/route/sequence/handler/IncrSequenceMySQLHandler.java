@@ -100,6 +100,35 @@ public class IncrSequenceMySQLHandler implements SequenceHandler {
 		}
 
 	}
+
+	@Override
+	public long[] nextIds(String seqName, int count) {
+		SequenceVal seqVal = seqValueMap.get(seqName);
+		if (seqVal == null) {
+			throw new ConfigException("can't find definition for sequence :"
+					+ seqName);
+		}
+		long[] ids = new long[count];
+		int n = 0;
+		while (n < count) {
+			if (!seqVal.isSuccessFetched()) {
+				ids[n++] = getSeqValueFromDB(seqVal);
+				continue;
+			}
+			//在当前号段内一次 CAS 预留一段连续的 id，号段不够时从数据库获取新号段
+			long cur = seqVal.curVal.get();
+			long take = Math.min(count - n, seqVal.maxSegValue - 1 - cur);
+			if (take <= 0) {
+				ids[n++] = getSeqValueFromDB(seqVal);
+			} else if (seqVal.curVal.compareAndSet(cur, cur + take)) {
+				for (long i = 1; i <= take; i++) {
+					ids[n++] = cur + i;
+				}
+			}
+		}
+		return ids;
+	}
+
 	//获取有效的sequence
 	private Long getNextValidSeqVal(SequenceVal seqVal) {
 		Long nexVal = seqVal.nextValue();
@@ -3,6 +3,7 @@ package io.mycat.route.sequence.handler;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.slf4j.Logger; import org.slf4j.LoggerFactory;
 
@@ -51,9 +52,15 @@ public class IncrSequenceTimeHandler implements SequenceHandler {
 		return workey.nextId();
 	}
 
+	@Override
+	public long[] nextIds(String prefixName, int count) {
+		return workey.nextIds(count);
+	}
+
 
 	/**
 	* 64位ID (42(毫秒)+5(机器ID)+5(业务编码)+12(重复累加))
+	* 毫秒时间戳与毫秒内序号打包在一个 AtomicLong 中，通过 CAS 分配，不加锁
 	* @author sw
 	*/
 	static class IdWorker {
@@ -76,9 +83,8 @@ public class IncrSequenceTimeHandler implements SequenceHandler {
 
 		private final static long sequenceMask = -1L ^ (-1L << sequenceBits);
 
-		private static long lastTimestamp = -1L;
-
-		private long sequence = 0L;
+		// (时间戳 - twepoch) << sequenceBits | 毫秒内最后分配的序号
+		private final AtomicLong lastState = new AtomicLong(0L);
 		private final long workerId;
 		private final long datacenterId;
 
@@ -93,33 +99,51 @@ public class IncrSequenceTimeHandler implements SequenceHandler {
 			this.datacenterId = datacenterId;
 		}
 
-		public synchronized long nextId() {
-			long timestamp = timeGen();
-			if (timestamp < lastTimestamp) {
-			try {
-				throw new Exception("Clock moved backwards.  Refusing to generate id for "+ (lastTimestamp - timestamp) + " milliseconds");
-			} catch (Exception e) {
-				LOGGER.error("error",e);
-			}
-			}
+		public long nextId() {
+			return nextIds(1)[0];
+		}
 
-			if (lastTimestamp == timestamp) {
-				// 当前毫秒内，则+1
-				sequence = (sequence + 1) & sequenceMask;
-				if (sequence == 0) {
-					// 当前毫秒内计数满了，则等待下一秒
-					timestamp = tilNextMillis(lastTimestamp);
+		public long[] nextIds(int count) {
+			long[] ids = new long[count];
+			int n = 0;
+			while (n < count) {
+				// 先读状态再取时间，时间小于状态中的时间戳只能是时钟回拨
+				long state = lastState.get();
+				long lastTimestamp = (state >>> sequenceBits) + twepoch;
+				long timestamp = timeGen();
+				if (timestamp < lastTimestamp) {
+				try {
+					throw new Exception("Clock moved backwards.  Refusing to generate id for "+ (lastTimestamp - timestamp) + " milliseconds");
+				} catch (Exception e) {
+					LOGGER.error("error",e);
+				}
 				}
-			} else {
-				sequence = timestamp & 1;
-			}
-			lastTimestamp = timestamp;
-			// ID偏移组合生成最终的ID，并返回ID
-			long nextId = ((timestamp - twepoch) << timestampLeftShift)
-					| (datacenterId << datacenterIdShift)
-					| (workerId << workerIdShift) | sequence;
 
-			return nextId;
+				long start;
+				if (lastTimestamp == timestamp) {
+					// 当前毫秒内，则+1
+					start = (state & sequenceMask) + 1;
+					if (start > sequenceMask) {
+						// 当前毫秒内计数满了，则等待下一毫秒
+						tilNextMillis(lastTimestamp);
+						continue;
+					}
+				} else {
+					start = timestamp & 1;
+				}
+				// 一次 CAS 预留当前毫秒内的一段序号
+				long end = Math.min(start + count - n, sequenceMask + 1) - 1;
+				if (lastState.compareAndSet(state, ((timestamp - twepoch) << sequenceBits) | end)) {
+					// ID偏移组合生成最终的ID
+					long prefix = ((timestamp - twepoch) << timestampLeftShift)
+							| (datacenterId << datacenterIdShift)
+							| (workerId << workerIdShift);
+					for (long sequence = start; sequence <= end; sequence++) {
+						ids[n++] = prefix | sequence;
+					}
+				}
+			}
+			return ids;
 		}
 
 		private long tilNextMillis(final long lastTimestamp) {
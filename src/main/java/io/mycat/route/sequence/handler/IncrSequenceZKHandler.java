@@ -167,6 +167,14 @@ public class IncrSequenceZKHandler extends IncrSequenceHandler {
 
     @Override
     public Boolean fetchNextPeriod(String prefixName) {
+        return fetchNextPeriod(prefixName, 0);
+    }
+
+    /**
+     * 号段长度按配置的 MAXID - MINID，批量取 id 时放大到 minSize，一次加锁取够
+     */
+    @Override
+    protected Boolean fetchNextPeriod(String prefixName, int minSize) {
         InterProcessSemaphoreMutex interProcessSemaphoreMutex = interProcessSemaphoreMutexThreadLocal.get();
         try {
             if (interProcessSemaphoreMutex == null) {
@@ -190,8 +198,9 @@ public class IncrSequenceZKHandler extends IncrSequenceHandler {
             if (paraValMap.get(prefixName + KEY_CUR_NAME) == null) {
                 paraValMap.put(prefixName + KEY_CUR_NAME, props.getProperty(prefixName + KEY_CUR_NAME));
             }
-            long period = Long.parseLong(paraValMap.get(prefixName + KEY_MAX_NAME))
-                    - Long.parseLong(paraValMap.get(prefixName + KEY_MIN_NAME));
+            long period = Long.parseLong(props.getProperty(prefixName + KEY_MAX_NAME))
+                    - Long.parseLong(props.getProperty(prefixName + KEY_MIN_NAME));
+            period = Math.max(period, minSize - 1L);
             long now = Long.parseLong(new String(client.getData().forPath(PATH + "/" + prefixName + SEQ)));
             client.setData().forPath(PATH + "/" + prefixName + SEQ, ((now + period + 1) + "").getBytes());
 
@@ -0,0 +1,211 @@
+package io.mycat.route.sequence.handler;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * 本地序列的持久化文件，通过 mmap 读写。
+ *
+ * 文件头之后是固定数量的槽位，每个序列占一个槽位。槽位内有两个副本，
+ * 每次写入代数较旧的那个副本并带 CRC32 校验，写到一半宕机时另一个副本仍然完整。
+ * 副本中保存的是高水位：不超过高水位的 id 可能已经分配过，重启后从高水位之后继续分配。
+ *
+ * @author mycat
+ */
+public class MappedSequenceStore implements Closeable {
+
+	private static final long MAGIC = 0x4d59434154534551L; // MYCATSEQ
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 32;
+
+	// 副本格式：generation(8) highWater(8) nameLength(2) name(<=MAX_NAME_LENGTH) ... crc(8)
+	private static final int COPY_SIZE = 128;
+	private static final int SLOT_SIZE = COPY_SIZE * 2;
+	private static final int NAME_OFFSET = 18;
+	private static final int CRC_OFFSET = COPY_SIZE - 8;
+	public static final int MAX_NAME_LENGTH = CRC_OFFSET - NAME_OFFSET;
+
+	public static final int DEFAULT_CAPACITY = 1024;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static class Slot {
+		final int index;
+		long generation;
+
+		Slot(int index, long generation) {
+			this.index = index;
+			this.generation = generation;
+		}
+	}
+
+	private final File file;
+	private final RandomAccessFile raf;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final byte[] copy = new byte[COPY_SIZE];
+	private final CRC32 crc = new CRC32();
+
+	// 序列名 -> 槽位及已恢复的高水位
+	private final Map<String, Slot> slots = new HashMap<String, Slot>();
+	private final Map<String, Long> highWaters = new HashMap<String, Long>();
+	private int used;
+
+	public MappedSequenceStore(File file) throws IOException {
+		this(file, DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * @param capacity 新建文件时的槽位数，已有文件以文件头为准
+	 */
+	public MappedSequenceStore(File file, int capacity) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			long magic = raf.length() >= HEADER_SIZE ? raf.readLong() : 0;
+			if (magic == 0) {
+				// 新文件，或者上次创建时没来得及写入文件头
+				raf.setLength(HEADER_SIZE + (long) capacity * SLOT_SIZE);
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, raf.length());
+				for (int i = 0; i < raf.length(); i++) {
+					buffer.put(i, (byte) 0);
+				}
+				buffer.putInt(8, VERSION);
+				buffer.putInt(12, capacity);
+				buffer.force();
+				buffer.putLong(0, MAGIC);
+				buffer.force();
+			} else if (magic != MAGIC || raf.readInt() != VERSION) {
+				throw new IOException("invalid sequence store file " + file);
+			} else {
+				capacity = raf.readInt();
+				if (raf.length() < HEADER_SIZE + (long) capacity * SLOT_SIZE) {
+					throw new IOException("truncated sequence store file " + file);
+				}
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * SLOT_SIZE);
+			}
+		} catch (IOException e) {
+			raf.close();
+			throw e;
+		}
+		this.capacity = capacity;
+		recover();
+	}
+
+	/**
+	 * 逐个槽位取校验通过且代数最大的副本
+	 */
+	private void recover() {
+		for (int i = 0; i < capacity; i++) {
+			long generation = -1;
+			long highWater = 0;
+			String name = null;
+			for (int c = 0; c < 2; c++) {
+				int offset = HEADER_SIZE + i * SLOT_SIZE + c * COPY_SIZE;
+				if (!readCopy(offset)) {
+					continue;
+				}
+				long g = ByteBuffer.wrap(copy).getLong(0);
+				if (g > generation) {
+					generation = g;
+					highWater = ByteBuffer.wrap(copy).getLong(8);
+					int length = ByteBuffer.wrap(copy).getShort(16);
+					name = new String(copy, NAME_OFFSET, length, UTF8);
+				}
+			}
+			if (name == null) {
+				continue;
+			}
+			used = i + 1;
+			Long old = highWaters.get(name);
+			if (old == null || old < highWater) {
+				slots.put(name, new Slot(i, generation));
+				highWaters.put(name, highWater);
+			}
+		}
+	}
+
+	private boolean readCopy(int offset) {
+		for (int i = 0; i < COPY_SIZE; i++) {
+			copy[i] = buffer.get(offset + i);
+		}
+		int length = ByteBuffer.wrap(copy).getShort(16);
+		if (length <= 0 || length > MAX_NAME_LENGTH) {
+			return false;
+		}
+		crc.reset();
+		crc.update(copy, 0, CRC_OFFSET);
+		return crc.getValue() == ByteBuffer.wrap(copy).getLong(CRC_OFFSET);
+	}
+
+	/**
+	 * @return 序列的高水位，文件中没有时返回 null
+	 */
+	public synchronized Long get(String name) {
+		return highWaters.get(name);
+	}
+
+	/**
+	 * 写入新的高水位并刷盘，返回后才能分配不超过它的 id
+	 */
+	public synchronized void put(String name, long highWater) throws IOException {
+		Slot slot = slots.get(name);
+		if (slot == null) {
+			byte[] bytes = name.getBytes(UTF8);
+			if (bytes.length == 0 || bytes.length > MAX_NAME_LENGTH) {
+				throw new IOException("invalid sequence name " + name);
+			}
+			if (used >= capacity) {
+				throw new IOException("sequence store " + file + " is full, capacity " + capacity);
+			}
+			slot = new Slot(used++, 0);
+			slots.put(name, slot);
+		}
+		long generation = slot.generation + 1;
+		ByteBuffer data = ByteBuffer.wrap(copy);
+		for (int i = 0; i < COPY_SIZE; i++) {
+			copy[i] = 0;
+		}
+		byte[] bytes = name.getBytes(UTF8);
+		data.putLong(0, generation);
+		data.putLong(8, highWater);
+		data.putShort(16, (short) bytes.length);
+		System.arraycopy(bytes, 0, copy, NAME_OFFSET, bytes.length);
+		crc.reset();
+		crc.update(copy, 0, CRC_OFFSET);
+		data.putLong(CRC_OFFSET, crc.getValue());
+
+		// 奇数代写副本 1，偶数代写副本 0，总是覆盖较旧的那个
+		int offset = HEADER_SIZE + slot.index * SLOT_SIZE + (int) (generation & 1) * COPY_SIZE;
+		for (int i = 0; i < COPY_SIZE; i++) {
+			buffer.put(offset + i, copy[i]);
+		}
+		buffer.force();
+		slot.generation = generation;
+		highWaters.put(name, highWater);
+	}
+
+	public synchronized int size() {
+		return slots.size();
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		buffer.force();
+		raf.close();
+	}
+}
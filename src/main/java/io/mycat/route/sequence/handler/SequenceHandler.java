@@ -33,4 +33,10 @@ public interface SequenceHandler {
 
 	public long nextId(String prefixName);
 
+	/**
+	 * 一次预留 count 个 id，按分配顺序返回。
+	 * 递增类型的 id 在号段内连续，批量插入时避免逐条加锁或写文件
+	 */
+	public long[] nextIds(String prefixName, int count);
+
 }
\ No newline at end of file
@@ -23,12 +23,15 @@
  */
 package io.mycat.route.sequence.handler;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * 本地默认获取的全局ID（用于单机或者测试） <br>
- * java for base on https://github.com/twitter/snowflake
+ * java for base on https://github.com/twitter/snowflake <br>
+ * 最后使用的时间戳和毫秒内序号打包在一个 AtomicLong 中，通过 CAS 分配，不加锁
  * 
  * @author <a href="http://www.micmiu.com">Michael</a>
  * @time Create on 2013-12-22 下午4:52:25
@@ -52,11 +55,11 @@ public class SnowflakeIdSequenceHandler implements SequenceHandler {
 	private static final long datacenterIdShift = sequenceBits + workerIdBits;
 
 	private static final long timestampLeftShift = sequenceBits
-			+ workerIdBits;
+			+ workerIdBits + datacenterIdBits;
 	private static final long sequenceMask = -1L ^ -1L << sequenceBits;
 
-	private long sequence = 0L;
-	private long lastTimestamp = -1L;
+	// (时间戳 - twepoch) << sequenceBits | 毫秒内最后分配的序号
+	private final AtomicLong lastState = new AtomicLong(0L);
 
 	public SnowflakeIdSequenceHandler(long workerId, long datacenterId) {
 		super();
@@ -93,33 +96,52 @@ public class SnowflakeIdSequenceHandler implements SequenceHandler {
 	}
 
 	@Override
-	public synchronized long nextId(String prefixName) {
-		long timestamp = this.timeGen();
-		if (timestamp < this.lastTimestamp) {
-			logger.error(
-					"clock is moving backwards.  Rejecting requests until %d.",
-					lastTimestamp);
-			throw new RuntimeException(
-					String.format(
-							"Clock moved backwards.  Refusing to generate id for %d milliseconds",
-							(this.lastTimestamp - timestamp)));
-		}
-		if (this.lastTimestamp == timestamp) {
-			this.sequence = this.sequence + 1 & this.sequenceMask;
-			if (this.sequence == 0) {
-				timestamp = this.tilNextMillis(this.lastTimestamp);
+	public long nextId(String prefixName) {
+		return nextIds(prefixName, 1)[0];
+	}
+
+	@Override
+	public long[] nextIds(String prefixName, int count) {
+		long[] ids = new long[count];
+		int n = 0;
+		while (n < count) {
+			// 先读状态再取时间，时间小于状态中的时间戳只能是时钟回拨
+			long state = this.lastState.get();
+			long lastTimestamp = (state >>> sequenceBits) + twepoch;
+			long timestamp = this.timeGen();
+			if (timestamp < lastTimestamp) {
+				logger.error(
+						"clock is moving backwards.  Rejecting requests until {}.",
+						lastTimestamp);
+				throw new RuntimeException(
+						String.format(
+								"Clock moved backwards.  Refusing to generate id for %d milliseconds",
+								(lastTimestamp - timestamp)));
+			}
+			long start = 0;
+			if (timestamp == lastTimestamp) {
+				start = (state & sequenceMask) + 1;
+				if (start > sequenceMask) {
+					// 当前毫秒的序号已用完
+					this.tilNextMillis(lastTimestamp);
+					continue;
+				}
+			}
+			// 一次 CAS 预留当前毫秒内的一段序号
+			long end = Math.min(start + count - n, sequenceMask + 1) - 1;
+			if (this.lastState.compareAndSet(state, (timestamp - twepoch) << sequenceBits | end)) {
+				long prefix = timestamp - twepoch << timestampLeftShift
+						| this.datacenterId << datacenterIdShift
+						| this.workerId << workerIdShift;
+				for (long sequence = start; sequence <= end; sequence++) {
+					ids[n++] = prefix | sequence;
+				}
 			}
-		} else {
-			this.sequence = 0;
 		}
-
-		this.lastTimestamp = timestamp;
-		return timestamp - this.twepoch << this.timestampLeftShift
-				| this.datacenterId << this.datacenterIdShift
-				| this.workerId << this.workerIdShift | this.sequence;
+		return ids;
 	}
 
-	private synchronized long tilNextMillis(long lastTimestamp) {
+	private long tilNextMillis(long lastTimestamp) {
 		long timestamp = this.timeGen();
 		while (timestamp <= lastTimestamp) {
 			timestamp = this.timeGen();
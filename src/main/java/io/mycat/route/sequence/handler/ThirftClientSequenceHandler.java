@@ -39,4 +39,10 @@ public class ThirftClientSequenceHandler implements SequenceHandler {
 		return 0;
 	}
 
+	@Override
+	public long[] nextIds(String prefixName, int count) {
+		
+		return new long[count];
+	}
+
 }
\ No newline at end of file
@@ -49,6 +49,7 @@ import io.mycat.backend.mysql.nio.handler.RollbackNodeHandler;
 import io.mycat.backend.mysql.nio.handler.RollbackReleaseHandler;
 import io.mycat.backend.mysql.nio.handler.SingleNodeHandler;
 import io.mycat.backend.mysql.nio.handler.UnLockTablesHandler;
+import io.mycat.cache.MysqlDataSetContext;
 import io.mycat.config.ErrorCode;
 import io.mycat.config.MycatConfig;
 import io.mycat.net.FrontendConnection;
@@ -57,6 +58,7 @@ import io.mycat.route.RouteResultset;
 import io.mycat.route.RouteResultsetNode;
 import io.mycat.server.parser.ServerParse;
 import io.mycat.server.sqlcmd.SQLCmdConstant;
+import io.mycat.statistic.SqlTrace;
 
 /**
  * @author mycat
@@ -82,6 +84,10 @@ public class NonBlockingSession implements Session {
   	
   	private volatile MiddlerResultHandler  middlerResultHandler;
     private boolean prepared;
+    // sql 分阶段耗时采样
+    private final SqlTrace trace = new SqlTrace();
+    // 查询结果缓存
+    private final MysqlDataSetContext dataSetContext = new MysqlDataSetContext();
 
     public NonBlockingSession(ServerConnection source) {
         this.source = source;
@@ -112,6 +118,14 @@ public class NonBlockingSession implements Session {
         return this.target;
     }
 
+    public SqlTrace getTrace() {
+        return trace;
+    }
+
+    public MysqlDataSetContext getDataSetContext() {
+        return dataSetContext;
+    }
+
     public BackendConnection removeTarget(RouteResultsetNode key) {
         return target.remove(key);
     }
@@ -223,6 +237,7 @@ public class NonBlockingSession implements Session {
     }
 
     public void commit() {
+        dataSetContext.commit();
         final int initCount = target.size();
         if (initCount <= 0) {
             ByteBuffer buffer = source.allocate();
@@ -264,6 +279,7 @@ public class NonBlockingSession implements Session {
     }
 
     public void rollback() {
+        dataSetContext.rollback();
         final int initCount = target.size();
         if (initCount <= 0) {
             if (LOGGER.isDebugEnabled()) {
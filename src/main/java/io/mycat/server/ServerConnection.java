@@ -24,6 +24,7 @@
 package io.mycat.server;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.NetworkChannel;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -32,6 +33,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import io.mycat.MycatServer;
+import io.mycat.cache.MysqlDataSetService;
 import io.mycat.config.ErrorCode;
 import io.mycat.config.model.SchemaConfig;
 import io.mycat.net.FrontendConnection;
@@ -43,8 +45,8 @@ import io.mycat.server.response.Heartbeat;
 import io.mycat.server.response.InformationSchemaProfiling;
 import io.mycat.server.response.Ping;
 import io.mycat.server.util.SchemaUtil;
+import io.mycat.statistic.SqlTrace;
 import io.mycat.util.SplitUtil;
-import io.mycat.util.TimeUtil;
 
 /**
  * @author mycat
@@ -75,12 +77,11 @@ public class ServerConnection extends FrontendConnection {
 	}
 
 	@Override
-	public boolean isIdleTimeout() {
+	public long getIdleDeadline() {
 		if (isAuthenticated) {
-			return super.isIdleTimeout();
+			return super.getIdleDeadline();
 		} else {
-			return TimeUtil.currentTimeMillis() > Math.max(lastWriteTime,
-					lastReadTime) + AUTH_TIMEOUT;
+			return Math.max(lastWriteTime, lastReadTime) + AUTH_TIMEOUT;
 		}
 	}
 
@@ -281,6 +282,11 @@ public class ServerConnection extends FrontendConnection {
 
 
 
+	@Override
+	protected void onWrite(ByteBuffer buffer) {
+		session.getDataSetContext().onWrite(buffer);
+	}
+
 	public void routeEndExecuteSQL(String sql, final int type, final SchemaConfig schema) {
 		// 路由计算
 		RouteResultset rrs = null;
@@ -299,6 +305,18 @@ public class ServerConnection extends FrontendConnection {
 			return;
 		}
 		if (rrs != null) {
+			SqlTrace trace = session.getTrace();
+			trace.mark(SqlTrace.ROUTE);
+			if (rrs.getNodes() != null) {
+				trace.setNodes(rrs.getNodes().length);
+			}
+			// 结果缓存命中时不再访问后端
+			if (type == ServerParse.SELECT && !rrs.isSelectForUpdate()
+					&& MysqlDataSetService.getInstance().isEnabled()
+					&& MysqlDataSetService.getInstance().query(this, schema, sql, rrs)) {
+				trace.end();
+				return;
+			}
 			// session执行
 			session.execute(rrs, rrs.isSelectForUpdate()?ServerParse.UPDATE:type);
 		}
@@ -56,6 +56,8 @@ public class ServerQueryHandler implements FrontendQueryHandler {
 		if (LOGGER.isDebugEnabled()) {
 			LOGGER.debug(new StringBuilder().append(c).append(sql).toString());
 		}
+		c.getSession2().getTrace().begin(c.getUser(), sql);
+		c.getSession2().getDataSetContext().reset();
 		//
 		int rs = ServerParse.parse(sql);
 		int sqlType = rs & 0xff;
@@ -37,6 +37,7 @@ import com.univocity.parsers.csv.CsvParserSettings;
 
 import io.mycat.MycatServer;
 import io.mycat.cache.LayerCachePool;
+import io.mycat.cache.MysqlDataSetService;
 import io.mycat.config.ErrorCode;
 import io.mycat.config.model.SchemaConfig;
 import io.mycat.config.model.SystemConfig;
@@ -62,6 +63,7 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.sql.SQLNonTransientException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -227,6 +229,7 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
                 {
                     flushDataToFile();
                     isStartLoadData = false;
+                    invalidateResultCache();
                     serverConnection.getSession2().execute(rrs, ServerParse.LOAD_DATA_INFILE_SQL);
                 }
 
@@ -449,6 +452,15 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
         }
     }
 
+    /**
+     * 导入的数据与 insert 一样使目标表的结果缓存失效
+     */
+    private void invalidateResultCache()
+    {
+        MysqlDataSetService.getInstance().onUpdate(serverConnection, schema.getName(),
+                Collections.singletonList(tableName));
+    }
+
     private void flushDataToFile()
     {
         for (Map.Entry<String, LoadData> stringLoadDataEntry : routeResultMap.entrySet())
@@ -679,6 +691,7 @@ public final class ServerLoadDataInfileHandler implements LoadDataInfileHandler
         if (rrs != null)
         {
             flushDataToFile();
+            invalidateResultCache();
             serverConnection.getSession2().execute(rrs, ServerParse.LOAD_DATA_INFILE_SQL);
         }
 
@@ -8,6 +8,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.lang.StringUtils;
@@ -43,6 +44,8 @@ import io.mycat.MycatServer;
 import io.mycat.backend.datasource.PhysicalDBNode;
 import io.mycat.backend.datasource.PhysicalDBPool;
 import io.mycat.backend.datasource.PhysicalDatasource;
+import io.mycat.backend.heartbeat.GlobalTableChecksumChecker;
+import io.mycat.backend.heartbeat.GlobalTableChecksumResult;
 import io.mycat.backend.heartbeat.MySQLConsistencyChecker;
 import io.mycat.backend.mysql.nio.MySQLDataSource;
 import io.mycat.config.MycatConfig;
@@ -50,6 +53,8 @@ import io.mycat.config.model.SchemaConfig;
 import io.mycat.config.model.TableConfig;
 import io.mycat.server.parser.ServerParse;
 import io.mycat.sqlengine.SQLQueryResult;
+import io.mycat.util.ExecutorUtil;
+import io.mycat.util.NameableExecutor;
 import io.mycat.util.StringUtil;
 
 /**
@@ -70,6 +75,11 @@ public class GlobalTableUtil{
 	private static final ReentrantLock lock = new ReentrantLock(false);
 	private static List<SQLQueryResult<Map<String, String>>> innerColumnNotExist = new ArrayList<>();
 	private static Map<String, String> tableColumsMap = new ConcurrentHashMap<>();
+	/** 最近一次分段校验和检查的结果，tableName -> result */
+	private static Map<String, GlobalTableChecksumResult> checksumResults = new ConcurrentHashMap<>();
+	/** 分段校验和检查需要扫描全表，在单独的线程中执行，上一次没执行完时跳过本次 */
+	private static volatile NameableExecutor checksumExecutor;
+	private static final AtomicBoolean checksumRunning = new AtomicBoolean(false);
 	
 	public static Map<String, TableConfig> getGlobalTableMap() {
 		return globalTableMap;
@@ -636,6 +646,76 @@ public class GlobalTableUtil{
 			}
 		}
 	}
+
+	/**
+	 * 在单独的线程中执行分段校验和检查，不占用定时任务线程
+	 * @return 上一次检查还没有结束时返回 false
+	 */
+	public static boolean submitChecksumCheck() {
+		if (!checksumRunning.compareAndSet(false, true)) {
+			LOGGER.info("global table checksum check is still running, skip this period");
+			return false;
+		}
+		try {
+			getChecksumExecutor().execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						checksumCheck();
+					} finally {
+						checksumRunning.set(false);
+					}
+				}
+			});
+		} catch (RuntimeException e) {
+			checksumRunning.set(false);
+			throw e;
+		}
+		return true;
+	}
+
+	/**
+	 * 管理命令发起的单表检查也在校验和线程中执行，不占用定时任务线程
+	 */
+	public static void executeChecksum(Runnable task) {
+		getChecksumExecutor().execute(task);
+	}
+
+	private static NameableExecutor getChecksumExecutor() {
+		if (checksumExecutor == null) {
+			synchronized (GlobalTableUtil.class) {
+				if (checksumExecutor == null) {
+					checksumExecutor = ExecutorUtil.create("GlobalTableChecksum", 1);
+				}
+			}
+		}
+		return checksumExecutor;
+	}
+
+	/**
+	 * count 和 max(_mycat_op_time) 无法发现内容不同的行，
+	 * 对配置了 primaryKey 的全局表再做一次分段校验和检查
+	 */
+	public static void checksumCheck() {
+		for(TableConfig table : globalTableMap.values()){
+			if(StringUtils.isBlank(table.getPrimaryKey()) || table.getDataNodes().size() < 2)
+				continue;
+			GlobalTableChecksumResult result = GlobalTableChecksumChecker.create(table).check();
+			checksumResults.put(table.getName().toUpperCase(), result);
+			if(result.isConsistent()){
+				LOGGER.info(result.toString());
+			}else{
+				LOGGER.warn(result.toString());
+				for(GlobalTableChecksumResult.DivergentRange range : result.getDivergentRanges()){
+					LOGGER.warn(table.getName() + " divergent range: " + range);
+				}
+			}
+		}
+	}
+
+	public static Map<String, GlobalTableChecksumResult> getChecksumResults() {
+		return checksumResults;
+	}
 	
 	/**
 	 * 每次处理 一种 check 的结果，不会交叉同时处理 多种不同 check 的结果
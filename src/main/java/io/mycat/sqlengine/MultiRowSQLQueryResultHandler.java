@@ -1,5 +1,6 @@
 package io.mycat.sqlengine;
 
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
@@ -28,7 +29,8 @@ public class MultiRowSQLQueryResultHandler extends OneRawSQLQueryResultHandler{
 	@Override
 	public boolean onRowData(String dataNode, byte[] rowData) {
 		super.onRowData(dataNode, rowData);
-		resultRows.add(getResult());
+		// 父类每行复用同一个 map，这里需要拷贝一份
+		resultRows.add(new HashMap<String, String>(getResult()));
 		
 		return false;
 	}
@@ -36,8 +38,7 @@ public class MultiRowSQLQueryResultHandler extends OneRawSQLQueryResultHandler{
 	@Override
 	public void finished(String dataNode, boolean failed, String errorMsg) {
 		SQLQueryResult<List<Map<String, String>>> queryResult = 
-				new SQLQueryResult<List<Map<String, String>>>(this.resultRows, !failed);
-		queryResult.setErrMsg(errorMsg);
+				new SQLQueryResult<List<Map<String, String>>>(this.resultRows, !failed, dataNode, errorMsg);
 		if(callback != null)
 			this.callback.onResult(queryResult); // callback 是构造函数传进来，在得到结果是进行回调
 		else
@@ -2,6 +2,8 @@ package io.mycat.sqlengine.mpp;
 
 import io.mycat.MycatServer;
 import io.mycat.backend.mysql.nio.handler.MultiNodeQueryHandler;
+import io.mycat.config.model.SystemConfig;
+import io.mycat.memory.unsafe.ringbuffer.exception.AlertException;
 import io.mycat.net.mysql.RowDataPacket;
 import io.mycat.route.RouteResultset;
 import io.mycat.server.NonBlockingSession;
@@ -10,8 +12,6 @@ import org.apache.log4j.Logger;
 import java.io.IOException;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
@@ -21,6 +21,10 @@ public abstract class AbstractDataNodeMerge implements Runnable{
 
 
     private static Logger LOGGER = Logger.getLogger(AbstractDataNodeMerge.class);
+    /**
+     * merge 线程空闲多久后退出(毫秒)，之后再有 row 时重新提交到业务线程池
+     */
+    private static final long MERGE_IDLE_MILLIS = 100;
     /**
      *row 有多少col
      */
@@ -34,10 +38,6 @@ public abstract class AbstractDataNodeMerge implements Runnable{
      * 夸分片处理handler
      */
     protected MultiNodeQueryHandler multiQueryHandler = null;
-    /**
-     * 分片结束包
-     */
-    public PackWraper END_FLAG_PACK = new PackWraper();
 
 
     /**
@@ -47,9 +47,9 @@ public abstract class AbstractDataNodeMerge implements Runnable{
     protected boolean isStreamOutputResult = false;
 
     /**
-     * rowData缓存队列
+     * rowData交接环，槽位预先分配
      */
-    protected BlockingQueue<PackWraper> packs = new LinkedBlockingQueue<PackWraper>();
+    protected final PackRingBuffer packs;
 
     /**
      * 标志业务线程是否启动了？
@@ -59,6 +59,9 @@ public abstract class AbstractDataNodeMerge implements Runnable{
     public AbstractDataNodeMerge(MultiNodeQueryHandler handler,RouteResultset rrs){
         this.rrs = rrs;
         this.multiQueryHandler = handler;
+        SystemConfig system = MycatServer.getInstance().getConfig().getSystem();
+        this.packs = new PackRingBuffer(system.getMergeRingBufferSize(), system.getMergeWaitStrategy(),
+                MERGE_IDLE_MILLIS);
     }
 
     public boolean isStreamOutputResult() {
@@ -70,16 +73,15 @@ public abstract class AbstractDataNodeMerge implements Runnable{
     }
 
     /**
-     * Add a row pack, and may be wake up a business thread to work if not running.
-     * @param pack row pack
+     * Wake up a business thread to work if not running.
+     * 业务线程在处理期间会一直等待新的 row，只有空闲退出后才需要重新提交。
      * @return true wake up a business thread, otherwise false
      *
      * @author Uncle-pan
      * @since 2016-03-23
      */
-    protected final boolean addPack(final PackWraper pack){
-        packs.add(pack);
-        if(running.get()){
+    protected final boolean wakeUp(){
+        if(running.get() || !running.compareAndSet(false, true)){
             return false;
         }
         final MycatServer server = MycatServer.getInstance();
@@ -88,8 +90,8 @@ public abstract class AbstractDataNodeMerge implements Runnable{
     }
 
     /**
-     * 处理新进来每个row数据，通过PackWraper进行封装，
-     * 投递到队列中进行后续处理即可。
+     * 处理新进来每个row数据，填入交接环的槽位，
+     * 由业务线程进行后续处理即可。
      * process new record (mysql binary data),if data can output to client
      * ,return true
      *
@@ -99,10 +101,8 @@ public abstract class AbstractDataNodeMerge implements Runnable{
      *            raw data
      */
     public boolean onNewRecord(String dataNode, byte[] rowData) {
-        final PackWraper data = new PackWraper();
-        data.dataNode = dataNode;
-        data.rowData = rowData;
-        addPack(data);
+        packs.publish(dataNode, rowData);
+        wakeUp();
 
         return false;
     }
@@ -129,13 +129,53 @@ public abstract class AbstractDataNodeMerge implements Runnable{
         return result;
     }
 
+    /**
+     * 按批取出交接环中的 row 逐个处理，取到结束标志后输出结果。
+     * sort-or-group 不需要多线程，同一时刻只有一个业务线程在处理
+     */
     @Override
-    public abstract void run();
+    public final void run() {
+        try {
+            for (; ; ) {
+                final PackWraper pack = packs.take();
+                if (pack == null) {
+                    // 空闲超时，让出业务线程；退出前再检查一次，避免与生产者的提交判断错开
+                    running.set(false);
+                    if (!packs.hasPending() || !running.compareAndSet(false, true)) {
+                        return;
+                    }
+                    continue;
+                }
+                if (pack == PackRingBuffer.END) {
+                    // running 保持为 true，之后不再提交
+                    handleEnd();
+                    return;
+                }
+                handleRow(pack);
+            }
+        } catch (final AlertException e) {
+            // 已经 clear
+        } catch (final Exception e) {
+            packs.halt();
+            multiQueryHandler.handleDataProcessException(e);
+        }
+    }
+
+    /**
+     * 处理一行，pack 在返回后会被复用，需要保留的要自己复制
+     */
+    protected abstract void handleRow(PackWraper pack) throws IOException;
+
+    /**
+     * 所有分片的数据都已处理完，输出结果
+     */
+    protected abstract void handleEnd() throws IOException;
 
     public abstract void onRowMetaData(Map<String, ColMeta> columToIndx, int fieldCount) throws IOException;
 
     public void outputMergeResult(NonBlockingSession session, byte[] eof) {
-        addPack(END_FLAG_PACK);
+        packs.publishEnd();
+        wakeUp();
     }
 
     public RouteResultset getRrs() {
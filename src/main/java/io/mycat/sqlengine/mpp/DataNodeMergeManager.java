@@ -344,139 +344,129 @@ public class DataNodeMergeManager extends AbstractDataNodeMerge {
     private UnsafeRowWriter unsafeRowWriter = null;
     private  int Index = 0;
 
+    /**
+     * 除 merge 列外全为 null 的行，等所有分片结束后再处理
+     */
+    private List<PackWraper> deferredPacks = null;
+
     @Override
-    public void run() {
+    protected void handleEnd() throws IOException {
 
-        if (!running.compareAndSet(false, true)) {
-            return;
+        hasEndFlag = true;
+
+        if (deferredPacks != null) {
+            List<PackWraper> deferred = deferredPacks;
+            deferredPacks = null;
+            for (PackWraper pack : deferred) {
+                handleRow(pack);
+            }
         }
 
-        boolean nulpack = false;
+        /**
+         * 最后一个节点datenode发送了row eof packet说明了整个
+         * 分片数据全部接收完成，进而将结果集全部发给你Mycat 客户端
+         */
+        final int warningCount = 0;
+        final EOFPacket eofp = new EOFPacket();
+        final ByteBuffer eof = ByteBuffer.allocate(9);
+        BufferUtil.writeUB3(eof, eofp.calcPacketSize());
+        eof.put(eofp.packetId);
+        eof.put(eofp.fieldCount);
+        BufferUtil.writeUB2(eof,warningCount);
+        BufferUtil.writeUB2(eof,eofp.status);
+        final ServerConnection source = multiQueryHandler.getSession().getSource();
+        final byte[] array = eof.array();
 
-        try {
-            for (; ; ) {
-                final PackWraper pack = packs.poll();
 
-                if (pack == null) {
-                    nulpack = true;
-                    break;
-                }
-                if (pack == END_FLAG_PACK) {
-                	
-                	hasEndFlag = true;
-                	
-                	if(packs.peek()!=null){
-                		packs.add(pack);
-                		continue;
-                	}
-                	
-                     /**
-                     * 最后一个节点datenode发送了row eof packet说明了整个
-                     * 分片数据全部接收完成，进而将结果集全部发给你Mycat 客户端
-                     */
-                    final int warningCount = 0;
-                    final EOFPacket eofp = new EOFPacket();
-                    final ByteBuffer eof = ByteBuffer.allocate(9);
-                    BufferUtil.writeUB3(eof, eofp.calcPacketSize());
-                    eof.put(eofp.packetId);
-                    eof.put(eofp.fieldCount);
-                    BufferUtil.writeUB2(eof,warningCount);
-                    BufferUtil.writeUB2(eof,eofp.status);
-                    final ServerConnection source = multiQueryHandler.getSession().getSource();
-                    final byte[] array = eof.array();
-
-
-                    Iterator<UnsafeRow> iters = null;
-
-
-                    if (unsafeRowGrouper != null){
-                        /**
-                         * group by里面需要排序情况
-                         */
-                        if (globalSorter != null){
-                            iters = unsafeRowGrouper.getResult(globalSorter);
-                        }else {
-                            iters = unsafeRowGrouper.getResult(globalMergeResult);
-                        }
+        Iterator<UnsafeRow> iters = null;
 
-                    }else if(globalSorter != null){
 
-                        iters = globalSorter.sort();
+        if (unsafeRowGrouper != null){
+            /**
+             * group by里面需要排序情况
+             */
+            if (globalSorter != null){
+                iters = unsafeRowGrouper.getResult(globalSorter);
+            }else {
+                iters = unsafeRowGrouper.getResult(globalMergeResult);
+            }
 
-                    }else if (!isStreamOutputResult){
+        }else if(globalSorter != null){
 
-                        iters = globalMergeResult.sort();
+            iters = globalSorter.sort();
 
-                    }
+        }else if (!isStreamOutputResult){
 
-                    if(iters != null){
-                        multiQueryHandler.outputMergeResult(source,array,iters,isMiddleResultDone);
-                     }    
-                    break;
-                }
+            iters = globalMergeResult.sort();
 
-                unsafeRow = new UnsafeRow(fieldCount);
-                bufferHolder = new BufferHolder(unsafeRow,0);
-                unsafeRowWriter = new UnsafeRowWriter(bufferHolder,fieldCount);
-                bufferHolder.reset();
-
-                /**
-                 *构造一行row，将对应的col填充.
-                 */
-                MySQLMessage mm = new MySQLMessage(pack.rowData);
-                mm.readUB3();
-                mm.read();
-
-                int nullnum = 0;
-                for (int i = 0; i < fieldCount; i++) {
-                    byte[] colValue = mm.readBytesWithLength();
-                    if (colValue != null)
-                    	unsafeRowWriter.write(i,colValue);
-                    else
-                    {
-            	 		if(mergeColsIndex!=null&&mergeColsIndex.length>0){
-            	 			
-            	 			if(Arrays.binarySearch(mergeColsIndex, i)<0){
-            	 				nullnum++;
-        	             	}
-            	 		}
-            	 		unsafeRow.setNullAt(i);
-                    }
-                }
-                
+        }
+
+        if(iters != null){
+            multiQueryHandler.outputMergeResult(source,array,iters,isMiddleResultDone);
+        }
+    }
+
+    @Override
+    protected void handleRow(PackWraper pack) throws IOException {
+
+        unsafeRow = new UnsafeRow(fieldCount);
+        bufferHolder = new BufferHolder(unsafeRow,0);
+        unsafeRowWriter = new UnsafeRowWriter(bufferHolder,fieldCount);
+        bufferHolder.reset();
+
+        /**
+         *构造一行row，将对应的col填充.
+         */
+        MySQLMessage mm = new MySQLMessage(pack.rowData);
+        mm.readUB3();
+        mm.read();
+
+        int nullnum = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            byte[] colValue = mm.readBytesWithLength();
+            if (colValue != null)
+                unsafeRowWriter.write(i,colValue);
+            else
+            {
                 if(mergeColsIndex!=null&&mergeColsIndex.length>0){
-                	if(nullnum == (fieldCount - mergeColsIndex.length)){
-                		if(!hasEndFlag){
-                			packs.add(pack);
-                        	continue;
-                		}
+
+                    if(Arrays.binarySearch(mergeColsIndex, i)<0){
+                        nullnum++;
                     }
                 }
+                unsafeRow.setNullAt(i);
+            }
+        }
 
-                unsafeRow.setTotalSize(bufferHolder.totalSize());
-
-                if(unsafeRowGrouper != null){
-                    unsafeRowGrouper.addRow(unsafeRow);
-                }else if (globalSorter != null){
-                    globalSorter.insertRow(unsafeRow);
-                }else {
-                    globalMergeResult.insertRow(unsafeRow);
+        if(mergeColsIndex!=null&&mergeColsIndex.length>0){
+            if(nullnum == (fieldCount - mergeColsIndex.length)){
+                if(!hasEndFlag){
+                    // 槽位会被复用，复制一份
+                    PackWraper copy = new PackWraper();
+                    copy.dataNode = pack.dataNode;
+                    copy.rowData = pack.rowData;
+                    if (deferredPacks == null) {
+                        deferredPacks = new ArrayList<PackWraper>();
+                    }
+                    deferredPacks.add(copy);
+                    return;
                 }
-
-                unsafeRow = null;
-                bufferHolder = null;
-                unsafeRowWriter = null;
             }
+        }
 
-        } catch (final Exception e) {
-        	e.printStackTrace();
-            multiQueryHandler.handleDataProcessException(e);
-        } finally {
-            running.set(false);
-            if (nulpack && !packs.isEmpty()) {
-                this.run();
-            }
+        unsafeRow.setTotalSize(bufferHolder.totalSize());
+
+        if(unsafeRowGrouper != null){
+            unsafeRowGrouper.addRow(unsafeRow);
+        }else if (globalSorter != null){
+            globalSorter.insertRow(unsafeRow);
+        }else {
+            globalMergeResult.insertRow(unsafeRow);
         }
+
+        unsafeRow = null;
+        bufferHolder = null;
+        unsafeRowWriter = null;
     }
 
     /**
@@ -484,6 +474,7 @@ public class DataNodeMergeManager extends AbstractDataNodeMerge {
      */
     public void clear() {
 
+        packs.halt();
         unsafeRows.clear();
 
         synchronized (this)
@@ -495,13 +486,24 @@ public class DataNodeMergeManager extends AbstractDataNodeMerge {
         }
 
         if(globalSorter != null){
+            logSpillMetrics("sort", globalSorter);
             globalSorter.cleanupResources();
             globalSorter = null;
         }
 
         if (globalMergeResult != null){
+            logSpillMetrics("merge", globalMergeResult);
             globalMergeResult.cleanupResources();
             globalMergeResult = null;
         }
     }
+
+    private void logSpillMetrics(String stage, UnsafeExternalRowSorter sorter) {
+        if (sorter.getSpillCount() > 0) {
+            LOGGER.info(stage + " spilled " + sorter.getSpillCount() + " times, raw "
+                    + sorter.getSpillRawBytes() + " bytes, disk " + sorter.getSpillDiskBytes()
+                    + " bytes, cost " + sorter.getSpillTimeNanos() / 1000000 + " ms, sql: "
+                    + rrs.getStatement());
+        }
+    }
 }
@@ -0,0 +1,228 @@
+package io.mycat.sqlengine.mpp;
+
+import io.mycat.memory.unsafe.ringbuffer.RingBuffer;
+import io.mycat.memory.unsafe.ringbuffer.common.barrier.ProcessingSequenceBarrier;
+import io.mycat.memory.unsafe.ringbuffer.common.event.EventFactory;
+import io.mycat.memory.unsafe.ringbuffer.common.sequence.Sequence;
+import io.mycat.memory.unsafe.ringbuffer.common.waitStrategy.WaitStrategy;
+import io.mycat.memory.unsafe.ringbuffer.common.waitStrategy.impl.BusySpinWaitStrategy;
+import io.mycat.memory.unsafe.ringbuffer.common.waitStrategy.impl.SleepingWaitStrategy;
+import io.mycat.memory.unsafe.ringbuffer.common.waitStrategy.impl.TimeoutBlockingWaitStrategy;
+import io.mycat.memory.unsafe.ringbuffer.exception.AlertException;
+import io.mycat.memory.unsafe.ringbuffer.exception.InsufficientCapacityException;
+import io.mycat.memory.unsafe.ringbuffer.exception.TimeoutException;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 后端 row 回调(reactor 线程)与 merge 业务线程之间的交接队列。
+ *
+ * 槽位在创建时一次性分配，生产者只把 dataNode 和 rowData 填进槽里再发布，
+ * 不再为每行创建 PackWraper 和队列节点；消费者按批取出，整批处理完才释放槽位。
+ * 环满时不阻塞 reactor 线程，而是放入溢出队列，溢出期间所有生产者都走溢出队列，
+ * 消费者把环中已抢占的槽处理完后再整体取走溢出队列，保证同一个生产者的行序不变。
+ *
+ * @author mycat
+ */
+public final class PackRingBuffer {
+
+    /** 先自旋、再 yield、最后 park，默认 */
+    public static final int WAIT_SLEEPING = 0;
+    /** 锁 + 条件变量，空闲时不占 CPU，但每次发布都要唤醒 */
+    public static final int WAIT_BLOCKING = 1;
+    /** 一直自旋，延迟最低，会占满一个核 */
+    public static final int WAIT_BUSY_SPIN = 2;
+
+    /** 结束标志 */
+    public static final PackWraper END = new PackWraper();
+
+    /** 每次等待的最长时间，超时后检查溢出队列以及是否空闲太久 */
+    private static final long WAIT_SLICE_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final EventFactory<PackWraper> FACTORY = new EventFactory<PackWraper>() {
+        @Override
+        public PackWraper newInstance() {
+            return new PackWraper();
+        }
+    };
+
+    private final RingBuffer<PackWraper> ring;
+    private final ProcessingSequenceBarrier barrier;
+    /** 消费者已处理完的位置，生产者不会覆盖之后的槽 */
+    private final Sequence consumed = new Sequence();
+    private final long idleNanos;
+
+    private final ArrayDeque<PackWraper> overflow = new ArrayDeque<PackWraper>();
+    private volatile boolean overflowing;
+    private volatile boolean halted;
+    private long overflowCount;
+
+    // 以下只由消费者访问，换线程时由调用方的 running 标志保证可见性
+    private long next = 0;
+    private long available = Sequence.INITIAL_VALUE;
+    private PackWraper last;
+    private final ArrayDeque<PackWraper> drained = new ArrayDeque<PackWraper>();
+
+    /**
+     * @param bufferSize   槽位数，向上取 2 的 n 次方
+     * @param waitStrategy WAIT_SLEEPING、WAIT_BLOCKING 或 WAIT_BUSY_SPIN
+     * @param idleMillis   消费者空闲多久后 take 返回 null，把业务线程还给线程池
+     */
+    public PackRingBuffer(int bufferSize, int waitStrategy, long idleMillis) {
+        int size = Integer.highestOneBit(Math.max(2, bufferSize));
+        if (size < bufferSize) {
+            size <<= 1;
+        }
+        this.ring = RingBuffer.createMultiProducer(FACTORY, size, newWaitStrategy(waitStrategy));
+        this.ring.addGatingSequences(consumed);
+        this.barrier = (ProcessingSequenceBarrier) ring.newBarrier();
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(idleMillis);
+    }
+
+    private static WaitStrategy newWaitStrategy(int type) {
+        switch (type) {
+        case WAIT_BLOCKING:
+            return new TimeoutBlockingWaitStrategy(WAIT_SLICE_NANOS, TimeUnit.NANOSECONDS);
+        case WAIT_BUSY_SPIN:
+            return new BusySpinWaitStrategy();
+        default:
+            return new SleepingWaitStrategy();
+        }
+    }
+
+    /**
+     * 生产者调用，可以多线程同时调用
+     */
+    public void publish(String dataNode, byte[] rowData) {
+        if (halted) {
+            return;
+        }
+        if (!overflowing) {
+            try {
+                long sequence = ring.tryNext();
+                PackWraper slot = ring.get(sequence);
+                slot.dataNode = dataNode;
+                slot.rowData = rowData;
+                ring.publish(sequence);
+                return;
+            } catch (InsufficientCapacityException e) {
+                // 环满，放入溢出队列
+            }
+        }
+        PackWraper pack = END;
+        if (rowData != null) {
+            pack = new PackWraper();
+            pack.dataNode = dataNode;
+            pack.rowData = rowData;
+        }
+        synchronized (overflow) {
+            overflowing = true;
+            overflow.add(pack);
+            overflowCount++;
+        }
+    }
+
+    /**
+     * 发布结束标志，消费者取到 {@link #END} 之前会先取完之前发布的所有行
+     */
+    public void publishEnd() {
+        publish(null, null);
+    }
+
+    /**
+     * 消费者调用，取下一个包，没有数据时按等待策略等待。
+     * 返回的包只在下一次调用 take 之前有效，需要保留的要自己复制。
+     *
+     * @return 空闲超过 idleMillis 时返回 null
+     * @throws AlertException 已经 halt
+     */
+    public PackWraper take() throws AlertException, InterruptedException {
+        if (last != null) {
+            // 不再引用已处理的行
+            last.rowData = null;
+            last.dataNode = null;
+            last = null;
+        }
+        long waitStart = 0;
+        for (;;) {
+            PackWraper pack = drained.poll();
+            if (pack != null) {
+                return pack;
+            }
+            if (next <= available) {
+                PackWraper slot = ring.get(next++);
+                if (slot.rowData == null) {
+                    return END;
+                }
+                last = slot;
+                return slot;
+            }
+            // 本批处理完，一次性释放槽位
+            consumed.set(next - 1);
+            if (overflowing && drainOverflow()) {
+                continue;
+            }
+            if (waitStart == 0) {
+                waitStart = System.nanoTime();
+            }
+            try {
+                available = barrier.waitFor(next, WAIT_SLICE_NANOS);
+            } catch (TimeoutException e) {
+                if (System.nanoTime() - waitStart >= idleNanos) {
+                    return null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 环中已抢占的槽都处理完后，整体取走溢出队列
+     */
+    private boolean drainOverflow() {
+        synchronized (overflow) {
+            if (ring.getCursor() >= next) {
+                return false;
+            }
+            drained.addAll(overflow);
+            overflow.clear();
+            overflowing = false;
+        }
+        return !drained.isEmpty();
+    }
+
+    /**
+     * 消费者退出前检查是否还有未处理的数据
+     */
+    public boolean hasPending() {
+        return !halted && (!drained.isEmpty() || ring.getCursor() >= next || overflowing);
+    }
+
+    /**
+     * 停止交接：之后发布的数据被丢弃，等待中的消费者抛出 AlertException
+     */
+    public void halt() {
+        halted = true;
+        barrier.alert();
+        synchronized (overflow) {
+            overflow.clear();
+        }
+    }
+
+    public boolean isHalted() {
+        return halted;
+    }
+
+    public int getBufferSize() {
+        return ring.getBufferSize();
+    }
+
+    /**
+     * 因环满进入溢出队列的包数
+     */
+    public long getOverflowCount() {
+        synchronized (overflow) {
+            return overflowCount;
+        }
+    }
+}
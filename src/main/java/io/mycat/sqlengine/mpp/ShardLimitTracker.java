@@ -0,0 +1,272 @@
+package io.mycat.sqlengine.mpp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.sqlengine.mpp.tmp.RowDataCmp;
+
+/**
+ * 跨分片 limit 查询中，判断哪些分片的剩余数据已经不会出现在结果中
+ *
+ * 无排序: 收到的行数达到 offset + size 后，所有未结束的分片都可以取消。
+ * 有排序: 每个分片返回的数据是有序的，当其它分片中比某分片当前行更靠前的行数
+ * 已经达到 offset + size 时，该分片后面的行都不会出现在结果中，可以取消。
+ * 其它分片的行数还不到 offset + size 时不可能取消，这时只计数，不解析行；
+ * 各分片的当前行也只保存原始数据，需要比较时才解析。排序列是否为 null 直接在原始数据上检查。
+ *
+ * 被取消分片的数据直接丢弃，不再进入合并。
+ *
+ * @author mycat
+ */
+public class ShardLimitTracker {
+
+	private final int limit;
+	private final int fieldCount;
+	// null 表示无排序
+	private final OrderCol[] orderCols;
+	private final RowDataCmp cmp;
+	// 下标为列序号，是否为排序列
+	private final boolean[] orderColumns;
+	private final Map<String, NodeState> nodes = new LinkedHashMap<String, NodeState>();
+	private final List<String> cancelable = new ArrayList<String>();
+	private long total;
+	// 排序列出现 null 时不再按排序裁剪，null 的排序规则与 mysql 不一致
+	private boolean orderDisabled;
+
+	private static class NodeState {
+		final String name;
+		byte[] lastRow;
+		// lastRow 解析后的结果，比较时才解析
+		RowDataPacket lastPacket;
+		long count;
+		boolean ended;
+		boolean cancelled;
+
+		NodeState(String name) {
+			this.name = name;
+		}
+	}
+
+	/**
+	 * @param limit offset + size
+	 * @param orderCols 排序列，null 表示无排序
+	 */
+	public ShardLimitTracker(int limit, OrderCol[] orderCols, int fieldCount, List<String> dataNodes) {
+		this.limit = limit;
+		this.fieldCount = fieldCount;
+		this.orderCols = orderCols;
+		this.cmp = orderCols == null ? null : new RowDataCmp(orderCols);
+		this.orderColumns = orderCols == null ? null : orderColumns(orderCols);
+		for (String dataNode : dataNodes) {
+			nodes.put(dataNode, new NodeState(dataNode));
+		}
+	}
+
+	/**
+	 * 排序列的比较结果与 mysql 一致时才能按排序裁剪：数值和日期类型
+	 */
+	public static boolean isOrderSupported(OrderCol[] orderCols) {
+		for (OrderCol orderCol : orderCols) {
+			switch (orderCol.colMeta.colType) {
+			case ColMeta.COL_TYPE_DECIMAL:
+			case ColMeta.COL_TYPE_NEWDECIMAL:
+			case ColMeta.COL_TYPE_FLOAT:
+			case ColMeta.COL_TYPE_DOUBLE:
+			case ColMeta.COL_TYPE_INT:
+			case ColMeta.COL_TYPE_SHORT:
+			case ColMeta.COL_TYPE_LONG:
+			case ColMeta.COL_TYPE_LONGLONG:
+			case ColMeta.COL_TYPE_INT24:
+			case ColMeta.COL_TYPE_YEAR:
+			case ColMeta.COL_TYPE_DATE:
+			case ColMeta.COL_TYPE_NEWDATE:
+			case ColMeta.COL_TYPE_DATETIME:
+			case ColMeta.COL_TYPE_TIMSTAMP:
+				break;
+			default:
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * @return false 表示该行不会出现在结果中，可以丢弃
+	 */
+	public synchronized boolean addRow(String dataNode, byte[] row) {
+		NodeState state = nodes.get(dataNode);
+		if (state == null) {
+			return true;
+		}
+		if (state.cancelled) {
+			return false;
+		}
+		if (cmp == null) {
+			if (total >= limit) {
+				cancel(state);
+				return false;
+			}
+			total++;
+			state.count++;
+			if (total == limit) {
+				for (NodeState s : nodes.values()) {
+					cancel(s);
+				}
+			}
+			return true;
+		}
+		if (orderDisabled) {
+			return true;
+		}
+
+		if (hasNullOrderValue(row)) {
+			orderDisabled = true;
+			return true;
+		}
+		RowDataPacket packet = null;
+		if (total - state.count >= limit) {
+			packet = parse(row);
+			if (betterCount(state, packet) >= limit) {
+				cancel(state);
+				return false;
+			}
+		}
+		state.lastRow = row;
+		state.lastPacket = packet;
+		state.count++;
+		total++;
+		// 新行可能使其它分片的当前行落到 limit 之外
+		for (NodeState s : nodes.values()) {
+			if (s == state || s.lastRow == null || s.cancelled || s.ended || total - s.count < limit) {
+				continue;
+			}
+			if (packet == null) {
+				packet = last(state);
+			}
+			RowDataPacket other = last(s);
+			if (cmp.compare(packet, other) < 0 && betterCount(s, other) >= limit) {
+				cancel(s);
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * 分片数据正常结束
+	 *
+	 * @return false 表示该分片已经被取消
+	 */
+	public synchronized boolean nodeEnd(String dataNode) {
+		NodeState state = nodes.get(dataNode);
+		if (state == null) {
+			return true;
+		}
+		if (state.cancelled) {
+			return false;
+		}
+		state.ended = true;
+		return true;
+	}
+
+	/**
+	 * 取出新的可以取消的分片，每个分片只返回一次
+	 */
+	public synchronized List<String> takeCancelableNodes() {
+		if (cancelable.isEmpty()) {
+			return null;
+		}
+		List<String> result = new ArrayList<String>(cancelable);
+		cancelable.clear();
+		return result;
+	}
+
+	public synchronized boolean isCancelled(String dataNode) {
+		NodeState state = nodes.get(dataNode);
+		return state != null && state.cancelled;
+	}
+
+	private void cancel(NodeState state) {
+		if (!state.cancelled && !state.ended) {
+			state.cancelled = true;
+			cancelable.add(state.name);
+		}
+	}
+
+	/**
+	 * 其它分片中严格排在 row 之前的行数的下限
+	 */
+	private long betterCount(NodeState self, RowDataPacket row) {
+		long better = 0;
+		for (NodeState s : nodes.values()) {
+			if (s != self && s.lastRow != null && cmp.compare(last(s), row) < 0) {
+				better += s.count;
+			}
+		}
+		return better;
+	}
+
+	private RowDataPacket last(NodeState s) {
+		if (s.lastPacket == null) {
+			s.lastPacket = parse(s.lastRow);
+		}
+		return s.lastPacket;
+	}
+
+	private RowDataPacket parse(byte[] row) {
+		RowDataPacket packet = new RowDataPacket(fieldCount);
+		packet.read(row);
+		return packet;
+	}
+
+	private static boolean[] orderColumns(OrderCol[] orderCols) {
+		int max = 0;
+		for (OrderCol orderCol : orderCols) {
+			max = Math.max(max, orderCol.colMeta.colIndex);
+		}
+		boolean[] columns = new boolean[max + 1];
+		for (OrderCol orderCol : orderCols) {
+			columns[orderCol.colMeta.colIndex] = true;
+		}
+		return columns;
+	}
+
+	/**
+	 * 按长度编码跳过各列，检查排序列是否为 null，不创建 RowDataPacket
+	 */
+	private boolean hasNullOrderValue(byte[] row) {
+		int pos = 4;
+		for (int i = 0; i < orderColumns.length && pos < row.length; i++) {
+			int b = row[pos] & 0xff;
+			if (b == 251) { // NULL
+				if (orderColumns[i]) {
+					return true;
+				}
+				pos++;
+				continue;
+			}
+			long length;
+			if (b < 251) {
+				length = b;
+				pos += 1;
+			} else if (b == 252) {
+				length = (row[pos + 1] & 0xff) | (row[pos + 2] & 0xff) << 8;
+				pos += 3;
+			} else if (b == 253) {
+				length = (row[pos + 1] & 0xff) | (row[pos + 2] & 0xff) << 8 | (row[pos + 3] & 0xff) << 16;
+				pos += 4;
+			} else {
+				length = (row[pos + 1] & 0xffL) | (row[pos + 2] & 0xffL) << 8 | (row[pos + 3] & 0xffL) << 16
+						| (row[pos + 4] & 0xffL) << 24;
+				pos += 9;
+			}
+			if (length > row.length - pos) {
+				return false;
+			}
+			pos += (int) length;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,112 @@
+package io.mycat.statistic;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+import io.mycat.MycatServer;
+
+/**
+ * 单条 sql 分阶段耗时跟踪，每个前端会话预分配一个，按 sqlTraceSampleRate 采样。
+ *
+ * 各阶段只记录 System.nanoTime() 时间戳，sql 响应写入前端写队列后计算各阶段耗时，
+ * 交给 {@link SqlTraceRecorder} 保存。未被采样时 mark 只读一次 volatile 变量。
+ *
+ * @author mycat
+ */
+public final class SqlTrace {
+
+    // 收到前端 sql
+    public static final int RECEIVE = 0;
+    // druid 解析完成
+    public static final int PARSE = 1;
+    // 路由计算完成
+    public static final int ROUTE = 2;
+    // 拿到后端连接(多节点时为最后一个)
+    public static final int CONNECTION = 3;
+    // 后端连接字符集、事务等状态同步完成
+    public static final int SYNC = 4;
+    // 收到后端第一个结果包
+    public static final int FIRST_BYTE = 5;
+    // 后端结果全部返回(多节点时为最后一个)
+    public static final int BACKEND_END = 6;
+    // 多节点结果合并完成
+    public static final int MERGE = 7;
+    // 结果写入前端写队列
+    public static final int WRITE = 8;
+
+    public static final int STAGE_COUNT = 9;
+
+    public static final String[] STAGE_NAMES = { "RECEIVE", "PARSE", "ROUTE", "CONNECTION", "SYNC",
+            "FIRST_BYTE", "BACKEND_END", "MERGE", "WRITE" };
+
+    private final long[] stamps = new long[STAGE_COUNT];
+    private volatile boolean active;
+    private long startTime;
+    private String user;
+    private String sql;
+    private int nodes;
+
+    /**
+     * 开始一条 sql，按采样率决定是否跟踪
+     */
+    public void begin(String user, String sql) {
+        int rate = MycatServer.getInstance().getConfig().getSystem().getSqlTraceSampleRate();
+        if (rate <= 0 || (rate > 1 && ThreadLocalRandom.current().nextInt(rate) != 0)) {
+            active = false;
+            return;
+        }
+        for (int i = 1; i < STAGE_COUNT; i++) {
+            stamps[i] = 0;
+        }
+        stamps[RECEIVE] = System.nanoTime();
+        this.startTime = System.currentTimeMillis();
+        this.user = user;
+        this.sql = sql;
+        this.nodes = 0;
+        active = true;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    /**
+     * 记录阶段第一次到达的时间，多节点时以最先到达的为准
+     */
+    public void mark(int stage) {
+        if (active && stamps[stage] == 0) {
+            stamps[stage] = System.nanoTime();
+        }
+    }
+
+    /**
+     * 记录阶段最后一次到达的时间，多节点时以最后到达的为准
+     */
+    public void markLast(int stage) {
+        if (active) {
+            stamps[stage] = System.nanoTime();
+        }
+    }
+
+    public void setNodes(int nodes) {
+        if (active) {
+            this.nodes = nodes;
+        }
+    }
+
+    /**
+     * 结果已写入前端，结束跟踪并记录
+     */
+    public void end() {
+        if (!active) {
+            return;
+        }
+        synchronized (this) {
+            if (!active) {
+                return;
+            }
+            active = false;
+            stamps[WRITE] = System.nanoTime();
+            SqlTraceRecorder.getInstance().record(startTime, user, sql, nodes, stamps);
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package io.mycat.statistic;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import io.mycat.MycatServer;
+
+/**
+ * 保存被采样 sql 的分阶段耗时，最近的记录放在环形缓冲中，
+ * 同时按阶段汇总 log2 分桶的耗时直方图，通过 show @@sql.trace 查看。
+ *
+ * 阶段耗时为该阶段时间戳与前一个已到达阶段时间戳之差，单位微秒，未经过的阶段为 -1。
+ *
+ * @author mycat
+ */
+public class SqlTraceRecorder {
+
+    // 直方图桶数，第 i 个桶为 [2^(i-1), 2^i) 微秒
+    private static final int BUCKETS = 40;
+
+    // 各阶段之后再加一个总耗时
+    public static final int TOTAL = SqlTrace.STAGE_COUNT;
+
+    private final AtomicReferenceArray<Record> records;
+    private final AtomicLong index = new AtomicLong();
+    private final AtomicLongArray histogram = new AtomicLongArray((TOTAL + 1) * BUCKETS);
+    private final AtomicLongArray counts = new AtomicLongArray(TOTAL + 1);
+    private final AtomicLongArray sums = new AtomicLongArray(TOTAL + 1);
+    private final AtomicLongArray maxs = new AtomicLongArray(TOTAL + 1);
+
+    private static class Holder {
+        static final SqlTraceRecorder INSTANCE = new SqlTraceRecorder(
+                MycatServer.getInstance().getConfig().getSystem().getSqlTraceBufferSize());
+    }
+
+    public static SqlTraceRecorder getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    public SqlTraceRecorder(int size) {
+        this.records = new AtomicReferenceArray<Record>(Math.max(size, 1));
+    }
+
+    /**
+     * 一条采样记录
+     */
+    public static final class Record {
+        public final long startTime;
+        public final String user;
+        public final String sql;
+        public final int nodes;
+        // 下标同 SqlTrace 的阶段，RECEIVE 位置存放总耗时
+        public final long[] micros;
+
+        Record(long startTime, String user, String sql, int nodes, long[] micros) {
+            this.startTime = startTime;
+            this.user = user;
+            this.sql = sql;
+            this.nodes = nodes;
+            this.micros = micros;
+        }
+
+        public long getTotalMicros() {
+            return micros[SqlTrace.RECEIVE];
+        }
+    }
+
+    public void record(long startTime, String user, String sql, int nodes, long[] stamps) {
+        long[] micros = new long[SqlTrace.STAGE_COUNT];
+        long prev = stamps[SqlTrace.RECEIVE];
+        for (int i = 1; i < SqlTrace.STAGE_COUNT; i++) {
+            if (stamps[i] == 0) {
+                micros[i] = -1;
+                continue;
+            }
+            // 多节点时阶段可能交错到达，不记负值
+            micros[i] = Math.max(stamps[i] - prev, 0) / 1000;
+            prev = Math.max(stamps[i], prev);
+            add(i, micros[i]);
+        }
+        micros[SqlTrace.RECEIVE] = (stamps[SqlTrace.WRITE] - stamps[SqlTrace.RECEIVE]) / 1000;
+        add(TOTAL, micros[SqlTrace.RECEIVE]);
+
+        int i = (int) (index.getAndIncrement() % records.length());
+        records.set(i, new Record(startTime, user, sql, nodes, micros));
+    }
+
+    private void add(int stage, long micros) {
+        int bucket = Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+        histogram.incrementAndGet(stage * BUCKETS + bucket);
+        counts.incrementAndGet(stage);
+        sums.addAndGet(stage, micros);
+        long max;
+        while ((max = maxs.get(stage)) < micros && !maxs.compareAndSet(stage, max, micros)) {
+            // retry
+        }
+    }
+
+    /**
+     * 最近的采样记录，按时间倒序
+     */
+    public List<Record> getRecords() {
+        int size = records.length();
+        long end = index.get();
+        List<Record> list = new ArrayList<Record>(size);
+        for (long i = end - 1; i >= 0 && i >= end - size; i--) {
+            Record record = records.get((int) (i % size));
+            if (record != null) {
+                list.add(record);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * @param stage SqlTrace 的阶段或 TOTAL
+     */
+    public long getCount(int stage) {
+        return counts.get(stage);
+    }
+
+    public long getAvg(int stage) {
+        long count = counts.get(stage);
+        return count == 0 ? 0 : sums.get(stage) / count;
+    }
+
+    public long getMax(int stage) {
+        return maxs.get(stage);
+    }
+
+    /**
+     * 近似分位数，返回所在桶的上界(微秒)，不超过最大值
+     */
+    public long getPercentile(int stage, double percent) {
+        long count = counts.get(stage);
+        if (count == 0) {
+            return 0;
+        }
+        long target = (long) Math.ceil(count * percent / 100);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += histogram.get(stage * BUCKETS + b);
+            if (seen >= target) {
+                return Math.min((1L << b) - 1, maxs.get(stage));
+            }
+        }
+        return maxs.get(stage);
+    }
+
+    public void clear() {
+        for (int i = 0; i < records.length(); i++) {
+            records.set(i, null);
+        }
+        for (int i = 0; i < histogram.length(); i++) {
+            histogram.set(i, 0);
+        }
+        for (int i = 0; i <= TOTAL; i++) {
+            counts.set(i, 0);
+            sums.set(i, 0);
+            maxs.set(i, 0);
+        }
+    }
+}
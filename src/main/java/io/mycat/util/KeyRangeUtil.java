@@ -0,0 +1,38 @@
+package io.mycat.util;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 整数主键范围切分，供按主键范围并行扫描的工具使用(rehash、迁移)
+ *
+ * @author mycat
+ */
+public final class KeyRangeUtil {
+
+	private KeyRangeUtil() {
+	}
+
+	/**
+	 * 把 [min, max] 均分成 parts 段，返回至多 parts - 1 个递增的切分点，
+	 * 每段为 (前一个点, 当前点]，最后一段为 (最后一个点, max]。
+	 * 范围比段数小时去掉重复的切分点，切分点不会等于 max
+	 */
+	public static List<BigInteger> splitPoints(BigInteger min, BigInteger max, int parts) {
+		List<BigInteger> points = new ArrayList<BigInteger>();
+		BigInteger span = max.subtract(min);
+		BigInteger last = null;
+		for (int i = 1; i < parts; i++) {
+			BigInteger point = min.add(span.multiply(BigInteger.valueOf(i)).divide(BigInteger.valueOf(parts)));
+			if (point.compareTo(max) >= 0) {
+				break;
+			}
+			if (last == null || point.compareTo(last) > 0) {
+				points.add(point);
+				last = point;
+			}
+		}
+		return points;
+	}
+}
@@ -23,6 +23,8 @@
  */
 package io.mycat.util;
 
+import java.security.SecureRandom;
+
 /**
  * @author mycat
  */
@@ -53,6 +55,49 @@ public class RandomUtil {
         return ab;
     }
 
+    private static final int SEED_POOL_SIZE = 4096;
+    private static final SecureRandom SEED_RANDOM = new SecureRandom();
+    private static final ThreadLocal<SeedPool> SEED_POOLS = new ThreadLocal<SeedPool>() {
+        @Override
+        protected SeedPool initialValue() {
+            return new SeedPool();
+        }
+    };
+
+    private static final class SeedPool {
+        private final byte[] pool = new byte[SEED_POOL_SIZE];
+        private int position = SEED_POOL_SIZE;
+
+        void next(byte[] dst) {
+            for (int i = 0; i < dst.length; i++) {
+                if (position == pool.length) {
+                    fill();
+                }
+                dst[i] = pool[position++];
+            }
+        }
+
+        private void fill() {
+            SEED_RANDOM.nextBytes(pool);
+            byte[] bb = bytes;
+            for (int i = 0; i < pool.length; i++) {
+                pool[i] = bb[(pool[i] & 0xff) % bb.length];
+            }
+            position = 0;
+        }
+    }
+
+    /**
+     * 握手认证用的随机字符。
+     * 每个线程一次从 SecureRandom 批量取 SEED_POOL_SIZE 个字符放在池中，按需取出且只用一次，
+     * 连接风暴时各 acceptor/reactor 线程不会竞争同一个随机数状态。
+     */
+    public static final byte[] randomSeed(int size) {
+        byte[] ab = new byte[size];
+        SEED_POOLS.get().next(ab);
+        return ab;
+    }
+
     private static byte randomByte(byte[] b) {
         int ran = (int) ((next() & integerMask) >>> 16);
         return b[ran % b.length];
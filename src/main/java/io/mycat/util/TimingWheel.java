@@ -0,0 +1,222 @@
+package io.mycat.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 哈希时间轮
+ *
+ * 用于替代按周期全量扫描连接的超时检查：每个超时任务按截止时间落入对应的槽，
+ * 每次 tick 只处理到期槽中的任务，开销与到期任务数成正比而不是与连接数成正比。
+ *
+ * 任务采用"延迟重置"的方式：连接活跃时只更新自身的最后活动时间，不触碰时间轮，
+ * 任务到期时重新计算真正的截止时间，如果还未超时就返回新的截止时间重新入轮。
+ * 由于截止时间只会往后移动，任务永远不会晚于真正的截止时间触发。
+ *
+ * schedule 可在任意线程调用，advance 只应由一个定时线程调用。
+ *
+ * @author mycat
+ */
+public final class TimingWheel {
+	private static final Logger LOGGER = LoggerFactory.getLogger(TimingWheel.class);
+
+	/**
+	 * 超时任务
+	 */
+	public interface TimerTask {
+		/**
+		 * @param now 当前时间(ms)
+		 * @return 下次触发的绝对时间(ms)，小于等于 0 表示任务结束
+		 */
+		long run(long now);
+	}
+
+	public static final class Timeout {
+		private volatile TimerTask task;
+		private long deadline;
+		private volatile boolean cancelled;
+
+		private Timeout(TimerTask task, long deadline) {
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * 取消后任务不会再执行，同时释放对任务的引用，任务所在的槽下次被处理时移除
+		 */
+		public void cancel() {
+			cancelled = true;
+			task = null;
+		}
+
+		public boolean isCancelled() {
+			return cancelled;
+		}
+	}
+
+	private final long tickMillis;
+	private final int mask;
+	private final ArrayDeque<Timeout>[] wheel;
+	private final ConcurrentLinkedQueue<Timeout> pending = new ConcurrentLinkedQueue<Timeout>();
+	private final AtomicInteger size = new AtomicInteger();
+	private final long startTime;
+	private long currentTick;
+
+	private volatile long expiredCount;
+	private volatile long rearmedCount;
+	private volatile long tickCount;
+	private volatile long lastTickCostNanos;
+	private volatile long maxTickCostNanos;
+
+	public TimingWheel(long tickMillis, int ticksPerWheel, long startTime) {
+		if (tickMillis <= 0) {
+			throw new IllegalArgumentException("tickMillis must be greater than 0: " + tickMillis);
+		}
+		int n = 1;
+		while (n < ticksPerWheel) {
+			n <<= 1;
+		}
+		this.tickMillis = tickMillis;
+		this.mask = n - 1;
+		this.wheel = newWheel(n);
+		this.startTime = startTime;
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static ArrayDeque<Timeout>[] newWheel(int n) {
+		ArrayDeque<Timeout>[] wheel = new ArrayDeque[n];
+		for (int i = 0; i < n; i++) {
+			wheel[i] = new ArrayDeque<Timeout>();
+		}
+		return wheel;
+	}
+
+	public Timeout schedule(TimerTask task, long deadline) {
+		Timeout timeout = new Timeout(task, deadline);
+		size.incrementAndGet();
+		pending.offer(timeout);
+		return timeout;
+	}
+
+	/**
+	 * 推进时间轮到 now，执行所有已到期的任务
+	 */
+	public synchronized void advance(long now) {
+		long begin = System.nanoTime();
+		transferPending();
+		long targetTick = (now - startTime) / tickMillis;
+		if (targetTick < currentTick) {
+			return;
+		}
+		// 落后超过一圈时，每个槽只需要处理一次
+		long fromTick = Math.max(currentTick, targetTick - mask);
+		List<Timeout> rearmed = null;
+		for (long tick = fromTick; tick <= targetTick; tick++) {
+			rearmed = expireBucket(wheel[(int) (tick & mask)], now, rearmed);
+		}
+		currentTick = targetTick + 1;
+		if (rearmed != null) {
+			for (Timeout t : rearmed) {
+				place(t);
+			}
+		}
+		long cost = System.nanoTime() - begin;
+		tickCount++;
+		lastTickCostNanos = cost;
+		if (cost > maxTickCostNanos) {
+			maxTickCostNanos = cost;
+		}
+	}
+
+	private List<Timeout> expireBucket(ArrayDeque<Timeout> bucket, long now, List<Timeout> rearmed) {
+		Iterator<Timeout> it = bucket.iterator();
+		while (it.hasNext()) {
+			Timeout t = it.next();
+			TimerTask task = t.task;
+			if (t.cancelled || task == null) {
+				it.remove();
+				size.decrementAndGet();
+				continue;
+			}
+			if (t.deadline > now) { // 后面几圈才到期
+				continue;
+			}
+			it.remove();
+			expiredCount++;
+			long next;
+			try {
+				next = task.run(now);
+			} catch (Exception e) {
+				LOGGER.warn("timing wheel task caught err:", e);
+				next = -1;
+			}
+			if (next > 0 && !t.cancelled) {
+				// 保证至少推后一个 tick，防止任务在同一次 advance 中反复执行
+				t.deadline = Math.max(next, now + tickMillis);
+				rearmedCount++;
+				if (rearmed == null) {
+					rearmed = new ArrayList<Timeout>();
+				}
+				rearmed.add(t);
+			} else {
+				size.decrementAndGet();
+			}
+		}
+		return rearmed;
+	}
+
+	private void transferPending() {
+		Timeout t;
+		while ((t = pending.poll()) != null) {
+			if (t.cancelled) {
+				size.decrementAndGet();
+				continue;
+			}
+			place(t);
+		}
+	}
+
+	private void place(Timeout t) {
+		// 向上取整，保证槽被处理时任务已经到期
+		long tick = (t.deadline - startTime + tickMillis - 1) / tickMillis;
+		if (tick < currentTick) {
+			tick = currentTick;
+		}
+		wheel[(int) (tick & mask)].add(t);
+	}
+
+	public long getTickMillis() {
+		return tickMillis;
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	public long getExpiredCount() {
+		return expiredCount;
+	}
+
+	public long getRearmedCount() {
+		return rearmedCount;
+	}
+
+	public long getTickCount() {
+		return tickCount;
+	}
+
+	public long getLastTickCostNanos() {
+		return lastTickCostNanos;
+	}
+
+	public long getMaxTickCostNanos() {
+		return maxTickCostNanos;
+	}
+}
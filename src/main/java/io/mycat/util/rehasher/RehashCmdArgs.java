@@ -25,6 +25,10 @@ public class RehashCmdArgs {
 	public static final String VIRTUAL_BUCKET_TIMES="virtualBucketTimes";
 	public static final String WEIGHT_MAP_FILE="weightMapFile";
 	public static final String REHASH_NODE_DIR="rehashNodeDir";
+	public static final String PRIMARY_KEY="primaryKey";
+	public static final String PAGE_SIZE="pageSize";
+	public static final String THREADS="threads";
+	public static final String ROW_OUTPUT="rowOutput";
 	
 	
 	private CmdArgs cmdArgs;
@@ -107,6 +111,29 @@ public class RehashCmdArgs {
 		return getString(REHASH_NODE_DIR);
 	}
 	
+	/**
+	 * 按主键分页扫描的字段，必须唯一；不指定时使用表的单列主键
+	 */
+	public String getPrimaryKey(){
+		String pk=getString(PRIMARY_KEY);
+		return StringUtil.isEmpty(pk)?null:pk;
+	}
+	public int getPageSize(){
+		return getIntWithDefaultValue(PAGE_SIZE, 10000);
+	}
+	/**
+	 * 扫描线程数，数值型主键的表按主键范围拆分后并行扫描
+	 */
+	public int getThreads(){
+		return getIntWithDefaultValue(THREADS, Runtime.getRuntime().availableProcessors());
+	}
+	/**
+	 * 是否输出每一行的迁移目标，默认只输出各目标节点的行数统计
+	 */
+	public boolean isRowOutput(){
+		return "true".equalsIgnoreCase(getString(ROW_OUTPUT));
+	}
+	
 	private int getIntWithDefaultValue(String name,int defaultValue){
 		String val=getString(name);
 		if(StringUtil.isEmpty(val)){
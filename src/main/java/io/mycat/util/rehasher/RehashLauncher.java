@@ -1,13 +1,25 @@
 package io.mycat.util.rehasher;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,65 +30,181 @@ import com.alibaba.druid.util.JdbcUtils;
 import io.mycat.route.function.AbstractPartitionAlgorithm;
 import io.mycat.route.function.PartitionByMod;
 import io.mycat.route.function.PartitionByMurmurHash;
-import io.mycat.util.CollectionUtil;
-import io.mycat.util.exception.RehashException;
+import io.mycat.util.KeyRangeUtil;
 
 /**
  * 本工具依赖druid，Mycat已经包含druid，druid配置请查阅相关文档。相关参数请看RehashCmdArgs
+ *
+ * 按主键分页扫描(where pk > ? order by pk limit ?)，避免 limit offset 翻页越往后越慢；
+ * 数值型主键按 min/max 拆分成多个范围并行扫描。
+ * 每个表输出各目标节点的行数统计，rowOutput=true 时同时输出每一行的目标节点。
  * @author wujingrun
  *
  */
 public class RehashLauncher {
+	/**
+	 * 一个表的扫描结果，所有范围扫描完成后输出统计
+	 */
+	private final class TableRehash {
+		private final String table;
+		private final String pk;
+		private final Writer writer;
+		private final AtomicLongArray hostRows = new AtomicLongArray(rehashHosts.length);
+		private final AtomicLong nullRows = new AtomicLong();
+		private final AtomicInteger pendingRanges = new AtomicInteger();
+		private final long startTime = System.currentTimeMillis();
+		private volatile Throwable error;
+
+		private TableRehash(String table, String pk, File output) throws IOException {
+			this.table = table;
+			this.pk = pk;
+			this.writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), "utf8"), 64 * 1024);
+		}
+
+		private void writeRows(CharSequence rows) throws IOException {
+			synchronized (writer) {
+				writer.append(rows);
+			}
+		}
+
+		private void rangeDone() {
+			if (pendingRanges.decrementAndGet() == 0) {
+				finish();
+			}
+		}
+
+		private void finish() {
+			try {
+				long total = 0;
+				for (int i = 0; i < hostRows.length(); i++) {
+					total += hostRows.get(i);
+				}
+				String hostWithDatabase = args.getHostWithDatabase();
+				long rehashed = 0;
+				StringBuilder sb = new StringBuilder();
+				sb.append("total rows:").append(total).append('\n');
+				for (int i = 0; i < rehashHosts.length; i++) {
+					long rows = hostRows.get(i);
+					if (rehashHosts[i].equals(hostWithDatabase)) {
+						rehashed += rows;
+					}
+					sb.append(rehashHosts[i]).append("=>").append(rows)
+						.append(String.format(" (%.2f%%)", total == 0 ? 0.0 : rows * 100.0 / total)).append('\n');
+				}
+				if (nullRows.get() > 0) {
+					sb.append("null sharding value rows:").append(nullRows.get()).append('\n');
+				}
+				sb.append("rehashed ratio:").append(((double) rehashed) / total).append('\n');
+				if (error != null) {
+					sb.append("incomplete, error:").append(error).append('\n');
+				}
+				synchronized (writer) {
+					writer.append(sb);
+				}
+				LOGGER.info("rehash table " + table + " finished, rows:" + total + ", cost:"
+						+ (System.currentTimeMillis() - startTime) + "ms");
+			} catch (IOException e) {
+				LOGGER.error("RehashLauncherError", e);
+			} finally {
+				try {
+					writer.close();
+				} catch (IOException e) {
+					LOGGER.error("RehashLauncherError", e);
+				}
+				latch.countDown();
+			}
+		}
+	}
+
+	/**
+	 * 扫描主键范围 (lower, upper]，null 表示不限
+	 */
 	private final class RehashRunner implements Runnable {
-        private final File   output;
-        private final String table;
-        
-        private RehashRunner(File output, String table) {
-            this.output = output;
-            this.table = table;
-        }
-        
-        public void run(){
-        	int pageSize=500;
-        	int page=0;
-        	List<Map<String, Object>> list=null;
-        	
-        	int total=0;
-        	int rehashed=0;
-        	String hostWithDatabase=args.getHostWithDatabase();
-        	
-        	PrintStream ps=null;
-        	try {
-        		ps=new PrintStream(output);
-        		list = JdbcUtils.executeQuery(dataSource, "select "
-                    + args.getShardingField() + " from " + table + " limit ?,?", page++ * pageSize,
-                    pageSize);
-                while (!CollectionUtil.isEmpty(list)) {
-        			for(int i=0,l=list.size();i<l;i++){
-        				Map<String, Object> sf=list.get(i);
-        				Integer hash=alg.calculate(sf.get(args.getShardingField()).toString());
-        				String host=rehashHosts[hash];
-        				total++;
-        				if(host.equals(hostWithDatabase)){
-        					rehashed++;
-        				}
-        				ps.println(sf+"=>"+host);
-        			}
-        			list = JdbcUtils.executeQuery(dataSource, "select "
-                        + args.getShardingField() + " from " + table + " limit ?,?", page++ * pageSize,
-                        pageSize);
-        		}
-        		ps.println("rehashed ratio:"+(((double)rehashed)/total));
-        	} catch (Exception e) {
-        		throw new RehashException(e);
-        	}finally{
-        		if(ps!=null){
-        			ps.close();
-        		}
-        		latch.countDown();
-        	}
-        }
-    }
+		private final TableRehash rehash;
+		private final Object lower;
+		private final Object upper;
+
+		private RehashRunner(TableRehash rehash, Object lower, Object upper) {
+			this.rehash = rehash;
+			this.lower = lower;
+			this.upper = upper;
+		}
+
+		public void run() {
+			String pk = rehash.pk;
+			String shardingField = args.getShardingField();
+			boolean sameField = pk.equalsIgnoreCase(shardingField);
+			int pageSize = args.getPageSize();
+			boolean rowOutput = args.isRowOutput();
+			long[] rows = new long[rehashHosts.length];
+			Connection conn = null;
+			PreparedStatement firstPage = null;
+			PreparedStatement nextPage = null;
+			try {
+				conn = dataSource.getConnection();
+				nextPage = conn.prepareStatement(pageSql(rehash.table, pk, true, upper != null));
+				Object last = lower;
+				if (last == null) {
+					firstPage = conn.prepareStatement(pageSql(rehash.table, pk, false, upper != null));
+				}
+				StringBuilder out = rowOutput ? new StringBuilder() : null;
+				while (true) {
+					PreparedStatement ps = last == null ? firstPage : nextPage;
+					int idx = 1;
+					if (last != null) {
+						ps.setObject(idx++, last);
+					}
+					if (upper != null) {
+						ps.setObject(idx++, upper);
+					}
+					ps.setInt(idx, pageSize);
+
+					int count = 0;
+					ResultSet rs = ps.executeQuery();
+					try {
+						while (rs.next()) {
+							count++;
+							last = rs.getObject(1);
+							Object value = sameField ? last : rs.getObject(2);
+							if (value == null) {
+								rehash.nullRows.incrementAndGet();
+								continue;
+							}
+							int hash = alg.calculate(value.toString());
+							rows[hash]++;
+							if (out != null) {
+								out.append('{').append(shardingField).append('=').append(value).append("}=>")
+									.append(rehashHosts[hash]).append('\n');
+							}
+						}
+					} finally {
+						rs.close();
+					}
+					for (int i = 0; i < rows.length; i++) {
+						if (rows[i] > 0) {
+							rehash.hostRows.addAndGet(i, rows[i]);
+							rows[i] = 0;
+						}
+					}
+					if (out != null && out.length() > 0) {
+						rehash.writeRows(out);
+						out.setLength(0);
+					}
+					if (count < pageSize) {
+						break;
+					}
+				}
+			} catch (Exception e) {
+				LOGGER.error("rehash table " + rehash.table + " range (" + lower + "," + upper + "] error", e);
+				rehash.error = e;
+			} finally {
+				JdbcUtils.close(firstPage);
+				JdbcUtils.close(nextPage);
+				JdbcUtils.close(conn);
+				rehash.rangeDone();
+			}
+		}
+	}
 
     private RehashCmdArgs args;
 	private DruidDataSource dataSource;
@@ -91,7 +219,7 @@ public class RehashLauncher {
 		initDataSource();
 		this.rehashHosts=this.args.getRehashHosts();
 		initHashAlg();
-		executor=Executors.newCachedThreadPool();
+		executor=Executors.newFixedThreadPool(this.args.getThreads());
 	}
 	
 	private void initHashAlg() throws IOException{
@@ -125,8 +253,101 @@ public class RehashLauncher {
 		dataSource.setTestWhileIdle(true);
 		dataSource.setUrl(args.getJdbcUrl());
 		dataSource.setUsername(args.getUser());
+		// 每个扫描线程一个连接，再加上拆分范围时查询 min/max 的连接
+		dataSource.setMaxActive(args.getThreads() + 1);
 	}
 	
+	private String pageSql(String table, String pk, boolean hasLower, boolean hasUpper) {
+		StringBuilder sql = new StringBuilder("select ").append(pk);
+		if (!pk.equalsIgnoreCase(args.getShardingField())) {
+			sql.append(',').append(args.getShardingField());
+		}
+		sql.append(" from ").append(table).append(" where ").append(pk);
+		sql.append(hasLower ? " > ?" : " is not null");
+		if (hasUpper) {
+			sql.append(" and ").append(pk).append(" <= ?");
+		}
+		return sql.append(" order by ").append(pk).append(" limit ?").toString();
+	}
+
+	/**
+	 * 数值型主键按 min/max 均分成多个范围，其它类型的主键只能顺序扫描
+	 */
+	private List<Object[]> splitRanges(String table, String pk) throws SQLException {
+		List<Object[]> ranges = new ArrayList<Object[]>();
+		int threads = args.getThreads();
+		if (threads > 1) {
+			Connection conn = dataSource.getConnection();
+			try {
+				PreparedStatement ps = conn.prepareStatement("select min(" + pk + "),max(" + pk + ") from " + table);
+				try {
+					ResultSet rs = ps.executeQuery();
+					if (rs.next() && isIntegral(rs.getObject(1)) && isIntegral(rs.getObject(2))) {
+						BigInteger min = new BigDecimal(rs.getObject(1).toString()).toBigInteger();
+						BigInteger max = new BigDecimal(rs.getObject(2).toString()).toBigInteger();
+						for (BigInteger bound : KeyRangeUtil.splitPoints(min, max, threads)) {
+							Object upper = bound.bitLength() < 64 ? (Object) bound.longValue() : bound;
+							ranges.add(new Object[] { ranges.isEmpty() ? null : ranges.get(ranges.size() - 1)[1], upper });
+						}
+					}
+					rs.close();
+				} finally {
+					ps.close();
+				}
+			} finally {
+				conn.close();
+			}
+		}
+		// 最后一个范围不设上限
+		if (ranges.isEmpty()) {
+			ranges.add(new Object[] { null, null });
+		} else {
+			ranges.add(new Object[] { ranges.get(ranges.size() - 1)[1], null });
+		}
+		return ranges;
+	}
+
+	private static boolean isIntegral(Object value) {
+		return value instanceof Integer || value instanceof Long || value instanceof Short
+			|| value instanceof Byte || value instanceof BigInteger
+			|| (value instanceof BigDecimal && ((BigDecimal) value).scale() <= 0);
+	}
+
+	/**
+	 * 分页扫描用的唯一键：优先使用 primaryKey 参数，否则从 information_schema 读取表的主键，
+	 * 没有主键或是联合主键时报错，不能用非唯一的字段分页，否则会漏掉或重复扫描行
+	 */
+	private String primaryKeyOf(String table) throws SQLException {
+		String pk = args.getPrimaryKey();
+		if (pk != null) {
+			return pk;
+		}
+		List<String> columns = new ArrayList<String>();
+		Connection conn = dataSource.getConnection();
+		try {
+			PreparedStatement ps = conn.prepareStatement("select COLUMN_NAME from information_schema.KEY_COLUMN_USAGE"
+					+ " where TABLE_SCHEMA = database() and TABLE_NAME = ? and CONSTRAINT_NAME = 'PRIMARY'"
+					+ " order by ORDINAL_POSITION");
+			try {
+				ps.setString(1, table);
+				ResultSet rs = ps.executeQuery();
+				while (rs.next()) {
+					columns.add(rs.getString(1));
+				}
+				rs.close();
+			} finally {
+				ps.close();
+			}
+		} finally {
+			conn.close();
+		}
+		if (columns.size() != 1) {
+			throw new IllegalArgumentException("table " + table + (columns.isEmpty() ? " has no primary key"
+					: " has a composite primary key " + columns) + ", specify a unique column with -primaryKey");
+		}
+		return columns.get(0);
+	}
+
 	private RehashLauncher execute() throws IOException{
 		final String[] tables=args.getTables();
 		final File outputDir=new File(args.getRehashNodeDir());
@@ -134,25 +355,53 @@ public class RehashLauncher {
 			outputDir.mkdirs();
 		}else if(outputDir.isFile()){
 			throw new IllegalArgumentException("rehashNodeDir must be a directory");
-		}else if(outputDir.canWrite()){
+		}else if(!outputDir.canWrite()){
 			throw new IllegalArgumentException("rehashNodeDir must be writable");
 		}
+		// 先确定所有表的分页字段，有表不满足时不开始扫描
+		final String[] keys=new String[tables.length];
+		for(int i=0,l=tables.length;i<l;i++){
+			try {
+				keys[i]=primaryKeyOf(tables[i]);
+			} catch (SQLException e) {
+				throw new IOException("read primary key of table " + tables[i] + " error", e);
+			}
+		}
 		latch=new CountDownLatch(tables.length);
 		for(int i=0,l=tables.length;i<l;i++){
-			final int tableIdx=i;
-			final String table=tables[tableIdx];
+			final String table=tables[i];
 			final File output=new File(outputDir,table);
 			if(output.exists()){
 				output.delete();
 			}
-			output.createNewFile();
-			executor.execute(new RehashRunner(output, table));
+			TableRehash rehash;
+			try {
+				rehash=new TableRehash(table, keys[i], output);
+			} catch (IOException e) {
+				// 后面的表不再执行
+				for(int j=i;j<l;j++){
+					latch.countDown();
+				}
+				throw e;
+			}
+			List<Object[]> ranges;
+			try {
+				ranges=splitRanges(table, keys[i]);
+			} catch (SQLException e) {
+				LOGGER.error("split key range of table " + table + " error", e);
+				ranges=new ArrayList<Object[]>();
+				ranges.add(new Object[] { null, null });
+			}
+			rehash.pendingRanges.set(ranges.size());
+			for (Object[] range : ranges) {
+				executor.execute(new RehashRunner(rehash, range[0], range[1]));
+			}
 		}
 		return this;
 	}
 	
 	private void shutdown(){
-		while(true){
+		while(latch!=null){
 			try {
 				latch.await();
 				break;
@@ -161,9 +410,7 @@ public class RehashLauncher {
 			}
 		}
 		executor.shutdown();
-		if(executor.isTerminated()){
-			dataSource.close();
-		}
+		dataSource.close();
 	}
 	
 	private static void execute(String[] args) throws IOException{
@@ -0,0 +1,108 @@
+package io.mycat.backend;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.config.Isolations;
+
+/**
+ * @author mycat
+ */
+public class ConQueueTest {
+
+	private static BackendConnection newCon(final int txIsolation, final boolean autocommit) {
+		return (BackendConnection) Proxy.newProxyInstance(ConQueueTest.class.getClassLoader(),
+				new Class<?>[] { BackendConnection.class }, new InvocationHandler() {
+					@Override
+					public Object invoke(Object proxy, Method method, Object[] args) {
+						String name = method.getName();
+						if ("getTxIsolation".equals(name)) {
+							return txIsolation;
+						} else if ("isAutocommit".equals(name)) {
+							return autocommit;
+						} else if ("isClosedOrQuit".equals(name) || "isBorrowed".equals(name)) {
+							return false;
+						} else if ("equals".equals(name)) {
+							return proxy == args[0];
+						} else if ("hashCode".equals(name)) {
+							return System.identityHashCode(proxy);
+						}
+						return null;
+					}
+				});
+	}
+
+	@Test
+	public void testExactMatchFirst() {
+		ConQueue queue = new ConQueue();
+		BackendConnection rc = newCon(Isolations.READ_COMMITTED, true);
+		BackendConnection rr = newCon(Isolations.REPEATED_READ, true);
+		BackendConnection rrManual = newCon(Isolations.REPEATED_READ, false);
+		queue.offerIdleCon(rc);
+		queue.offerIdleCon(rr);
+		queue.offerIdleCon(rrManual);
+		Assert.assertEquals(3, queue.getIdleCount());
+
+		Assert.assertSame(rrManual, queue.takeIdleCon(ConQueue.stateKey(0, Isolations.REPEATED_READ, false)));
+		Assert.assertSame(rc, queue.takeIdleCon(ConQueue.stateKey(0, Isolations.READ_COMMITTED, true)));
+		Assert.assertEquals(1, queue.getIdleCount());
+	}
+
+	@Test
+	public void testCheapestMismatch() {
+		ConQueue queue = new ConQueue();
+		BackendConnection twoSets = newCon(Isolations.READ_COMMITTED, false);
+		BackendConnection oneSet = newCon(Isolations.SERIALIZABLE, true);
+		queue.offerIdleCon(twoSets);
+		queue.offerIdleCon(oneSet);
+
+		// 只差隔离级别的连接只需要一条 SET
+		int wanted = ConQueue.stateKey(0, Isolations.REPEATED_READ, true);
+		Assert.assertEquals(1, ConQueue.syncCost(wanted, ConQueue.stateOf(oneSet)));
+		Assert.assertEquals(2, ConQueue.syncCost(wanted, ConQueue.stateOf(twoSets)));
+		Assert.assertSame(oneSet, queue.takeIdleCon(wanted));
+		Assert.assertSame(twoSets, queue.takeIdleCon(wanted));
+		Assert.assertNull(queue.takeIdleCon(wanted));
+	}
+
+	@Test
+	public void testReservePopularState() {
+		ConQueue queue = new ConQueue();
+		int hot = ConQueue.stateKey(0, Isolations.REPEATED_READ, true);
+		for (int i = 0; i < 4; i++) {
+			queue.offerIdleCon(newCon(Isolations.REPEATED_READ, true));
+			queue.offerIdleCon(newCon(Isolations.READ_COMMITTED, false));
+		}
+		for (int i = 0; i < 10; i++) {
+			BackendConnection con = queue.takeIdleCon(hot);
+			queue.offerIdleCon(con);
+		}
+		// 关闭一半空闲连接时，只关闭冷门状态的连接
+		List<BackendConnection> toClose = queue.getIdleConsToClose(4, 50);
+		Assert.assertEquals(4, toClose.size());
+		for (BackendConnection con : toClose) {
+			Assert.assertFalse(con.isAutocommit());
+		}
+		Assert.assertEquals(4, queue.getIdleCount());
+
+		// 不保留时按需要关闭
+		Assert.assertEquals(4, queue.getIdleConsToClose(4, 0).size());
+		Assert.assertEquals(0, queue.getIdleCount());
+	}
+
+	@Test
+	public void testRemoveCon() {
+		ConQueue queue = new ConQueue();
+		BackendConnection con = newCon(Isolations.REPEATED_READ, true);
+		queue.offerIdleCon(con);
+		Assert.assertTrue(queue.isSameCon(con));
+		Assert.assertTrue(queue.removeCon(con));
+		Assert.assertFalse(queue.removeCon(con));
+		Assert.assertNull(queue.takeIdleCon(true));
+	}
+}
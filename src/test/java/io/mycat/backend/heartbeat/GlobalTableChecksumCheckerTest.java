@@ -0,0 +1,156 @@
+package io.mycat.backend.heartbeat;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * 用内存中的模拟数据验证分段校验和的细分和定位逻辑
+ */
+public class GlobalTableChecksumCheckerTest {
+
+	private static final List<String> NODES = Arrays.asList("dn1", "dn2", "dn3");
+
+	@Test
+	public void testConsistent() {
+		MockChecker checker = new MockChecker(100000);
+		GlobalTableChecksumResult result = checker.check();
+		Assert.assertTrue(result.isConsistent());
+		Assert.assertEquals(1, result.getRangeQueries());
+		Assert.assertEquals(Long.valueOf(1), result.getMinKey());
+		Assert.assertEquals(Long.valueOf(100000), result.getMaxKey());
+	}
+
+	@Test
+	public void testDivergentRowPinpointed() {
+		MockChecker checker = new MockChecker(100000);
+		checker.rows.get("dn2").put(54321L, 777L);
+		GlobalTableChecksumResult result = checker.check();
+		Assert.assertFalse(result.isConsistent());
+		Assert.assertEquals(1, result.getDivergentRanges().size());
+		GlobalTableChecksumResult.DivergentRange range = result.getDivergentRanges().get(0);
+		Assert.assertTrue(range.getLowKey() <= 54321 && range.getHighKey() >= 54321);
+		Assert.assertTrue(range.getHighKey() - range.getLowKey() + 1 <= 100);
+		// 只读取了少量的桶，远小于行数
+		Assert.assertTrue(result.getBucketRowsRead() < 1000);
+	}
+
+	@Test
+	public void testMissingRowAndTruncate() {
+		MockChecker checker = new MockChecker(10000);
+		checker.rows.get("dn3").remove(10L);
+		checker.rows.get("dn1").remove(9000L);
+		GlobalTableChecksumResult result = checker.check();
+		Assert.assertEquals(2, result.getDivergentRanges().size());
+		GlobalTableChecksumResult.DivergentRange first = result.getDivergentRanges().get(0);
+		Assert.assertTrue(first.getLowKey() <= 10 && first.getHighKey() >= 10);
+		GlobalTableChecksumResult.DivergentRange second = result.getDivergentRanges().get(1);
+		Assert.assertTrue(second.getLowKey() <= 9000 && second.getHighKey() >= 9000);
+
+		checker = new MockChecker(10000, 1);
+		checker.rows.get("dn3").remove(10L);
+		checker.rows.get("dn1").remove(9000L);
+		result = checker.check();
+		Assert.assertEquals(1, result.getDivergentRanges().size());
+		Assert.assertTrue(result.isTruncated());
+	}
+
+	@Test
+	public void testBucketSQL() {
+		String expr = GlobalTableChecksumChecker.buildRowExpression(Arrays.asList("id", "name"));
+		Assert.assertEquals("CONCAT_WS('#', `id`, `name`, CONCAT(ISNULL(`id`), ISNULL(`name`)))", expr);
+		String sql = GlobalTableChecksumChecker.buildBucketSQL("T", "id", expr, 1, 100, 7);
+		Assert.assertTrue(sql.startsWith("select (id - (1)) DIV 7 as bucket_id"));
+		Assert.assertTrue(sql.endsWith("where id >= 1 and id <= 100 group by bucket_id"));
+		Assert.assertEquals(7, GlobalTableChecksumChecker.bucketStep(1, 100, 16));
+		Assert.assertEquals(1, GlobalTableChecksumChecker.bucketStep(1, 3, 16));
+	}
+
+	@Test
+	public void testFullLongRange() {
+		long step = GlobalTableChecksumChecker.bucketStep(Long.MIN_VALUE, Long.MAX_VALUE, 16);
+		Assert.assertEquals(1L << 60, step);
+		long[] first = GlobalTableChecksumChecker.bucketRange(Long.MIN_VALUE, Long.MAX_VALUE, 0, step);
+		Assert.assertEquals(Long.MIN_VALUE, first[0]);
+		Assert.assertEquals(Long.MIN_VALUE + step - 1, first[1]);
+		long[] lastBucket = GlobalTableChecksumChecker.bucketRange(Long.MIN_VALUE, Long.MAX_VALUE, 15, step);
+		Assert.assertEquals(Long.MAX_VALUE, lastBucket[1]);
+		Assert.assertFalse(GlobalTableChecksumChecker.widthAtMost(Long.MIN_VALUE, Long.MAX_VALUE, 1000));
+		Assert.assertTrue(GlobalTableChecksumChecker.widthAtMost(5, 5, 1));
+		Assert.assertFalse(GlobalTableChecksumChecker.widthAtMost(5, 6, 1));
+
+		// 宽度超过 Long.MAX_VALUE 时 fanout 为 1，步长被截断
+		step = GlobalTableChecksumChecker.bucketStep(Long.MIN_VALUE, Long.MAX_VALUE, 1);
+		Assert.assertEquals(Long.MAX_VALUE, step);
+		long[] tail = GlobalTableChecksumChecker.bucketRange(Long.MIN_VALUE, Long.MAX_VALUE, 2, step);
+		Assert.assertEquals(Long.MAX_VALUE - 1, tail[0]);
+		Assert.assertEquals(Long.MAX_VALUE, tail[1]);
+
+		String sql = GlobalTableChecksumChecker.buildBucketSQL("T", "id", "id", Long.MIN_VALUE, Long.MAX_VALUE, step);
+		Assert.assertTrue(sql.startsWith("select (CAST(id AS DECIMAL(20,0)) - (" + Long.MIN_VALUE + ")) DIV "));
+	}
+
+	private static class MockChecker extends GlobalTableChecksumChecker {
+		final Map<String, TreeMap<Long, Long>> rows = new HashMap<>();
+
+		MockChecker(long rowCount) {
+			this(rowCount, 100);
+		}
+
+		MockChecker(long rowCount, int maxRanges) {
+			super("T", "id", NODES, 16, 100, 0, maxRanges);
+			for (String dn : NODES) {
+				TreeMap<Long, Long> data = new TreeMap<>();
+				for (long i = 1; i <= rowCount; i++) {
+					data.put(i, i * 2654435761L & 0xffffffffL);
+				}
+				rows.put(dn, data);
+			}
+		}
+
+		@Override
+		protected long[] fetchKeyBounds() {
+			long[] bounds = null;
+			for (TreeMap<Long, Long> data : rows.values()) {
+				if (data.isEmpty()) {
+					continue;
+				}
+				if (bounds == null) {
+					bounds = new long[] { data.firstKey(), data.lastKey() };
+				}
+				bounds[0] = Math.min(bounds[0], data.firstKey());
+				bounds[1] = Math.max(bounds[1], data.lastKey());
+			}
+			return bounds;
+		}
+
+		@Override
+		protected Map<String, Map<Long, RangeChecksum>> fetchBuckets(long low, long high, long step) {
+			Map<String, Map<Long, RangeChecksum>> result = new HashMap<>();
+			for (Map.Entry<String, TreeMap<Long, Long>> entry : rows.entrySet()) {
+				Map<Long, long[]> acc = new HashMap<>();
+				for (Map.Entry<Long, Long> row : entry.getValue().subMap(low, true, high, true).entrySet()) {
+					long bucket = (row.getKey() - low) / step;
+					long[] v = acc.get(bucket);
+					if (v == null) {
+						v = new long[2];
+						acc.put(bucket, v);
+					}
+					v[0]++;
+					v[1] ^= row.getValue();
+				}
+				Map<Long, RangeChecksum> buckets = new HashMap<>();
+				for (Map.Entry<Long, long[]> e : acc.entrySet()) {
+					buckets.put(e.getKey(), new RangeChecksum(e.getValue()[0], e.getValue()[1]));
+				}
+				result.put(entry.getKey(), buckets);
+			}
+			return result;
+		}
+	}
+}
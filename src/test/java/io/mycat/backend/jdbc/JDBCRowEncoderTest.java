@@ -0,0 +1,150 @@
+package io.mycat.backend.jdbc;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.channels.SocketChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.mycat.buffer.DirectByteBufferPool;
+import io.mycat.net.AbstractConnection;
+import io.mycat.net.NIOProcessor;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.util.MysqlDefs;
+
+public class JDBCRowEncoderTest {
+
+	private SocketChannel channel;
+	private AbstractConnection conn;
+
+	@Before
+	public void setUp() throws IOException {
+		channel = SocketChannel.open();
+		conn = new AbstractConnection(channel) {
+		};
+		// chunk 很小，便于测试一行超过一个 buffer 的情况
+		DirectByteBufferPool pool = new DirectByteBufferPool(64 * 16, (short) 64, (short) 2, 4096);
+		conn.setProcessor(new NIOProcessor("test", pool, null));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		channel.close();
+	}
+
+	private static List<FieldPacket> fields(int... types) {
+		List<FieldPacket> fields = new ArrayList<FieldPacket>();
+		for (int type : types) {
+			FieldPacket field = new FieldPacket();
+			field.type = type;
+			fields.add(field);
+		}
+		return fields;
+	}
+
+	/**
+	 * 按文本协议解析行包，NULL 列为 null
+	 */
+	private static List<String> decode(byte[] row, byte packetId) {
+		int length = (row[0] & 0xff) | (row[1] & 0xff) << 8 | (row[2] & 0xff) << 16;
+		Assert.assertEquals(row.length - 4, length);
+		Assert.assertEquals(packetId, row[3]);
+		List<String> values = new ArrayList<String>();
+		int pos = 4;
+		while (pos < row.length) {
+			int b = row[pos++] & 0xff;
+			if (b == 251) {
+				values.add(null);
+				continue;
+			}
+			int len = b;
+			if (b == 252) {
+				len = (row[pos] & 0xff) | (row[pos + 1] & 0xff) << 8;
+				pos += 2;
+			}
+			values.add(new String(row, pos, len));
+			pos += len;
+		}
+		return values;
+	}
+
+	@Test
+	public void testIntegerColumns() throws SQLException {
+		List<FieldPacket> fields = fields(MysqlDefs.FIELD_TYPE_LONG, MysqlDefs.FIELD_TYPE_TINY,
+				MysqlDefs.FIELD_TYPE_LONG, MysqlDefs.FIELD_TYPE_LONG, MysqlDefs.FIELD_TYPE_LONG);
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.getLong(1)).thenReturn(0L);
+		when(rs.getLong(2)).thenReturn(-128L);
+		when(rs.getLong(3)).thenReturn(Long.MIN_VALUE);
+		when(rs.getLong(4)).thenReturn(Long.MAX_VALUE);
+		// NULL 列 getLong 返回 0，需要靠 wasNull 区分
+		when(rs.getLong(5)).thenReturn(0L);
+		when(rs.wasNull()).thenReturn(false, false, false, false, true);
+
+		JDBCRowEncoder encoder = new JDBCRowEncoder(conn, "utf8", fields, true);
+		try {
+			List<String> values = decode(encoder.encode(rs, (byte) 3), (byte) 3);
+			Assert.assertEquals(Arrays.asList("0", "-128", String.valueOf(Long.MIN_VALUE),
+					String.valueOf(Long.MAX_VALUE), null), values);
+		} finally {
+			encoder.release();
+		}
+	}
+
+	@Test
+	public void testStringAndDecimalColumns() throws SQLException {
+		List<FieldPacket> fields = fields(MysqlDefs.FIELD_TYPE_VAR_STRING, MysqlDefs.FIELD_TYPE_NEW_DECIMAL,
+				MysqlDefs.FIELD_TYPE_NEW_DECIMAL, MysqlDefs.FIELD_TYPE_LONG);
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.getString(1)).thenReturn(null);
+		when(rs.getBigDecimal(2)).thenReturn(new BigDecimal("1E+3"));
+		when(rs.getBigDecimal(3)).thenReturn(new BigDecimal("-12.3400"));
+		when(rs.getString(4)).thenReturn("42");
+
+		// 驱动不支持 wasNull 时整数列走 getString
+		JDBCRowEncoder encoder = new JDBCRowEncoder(conn, "utf8", fields, false);
+		try {
+			List<String> values = decode(encoder.encode(rs, (byte) 1), (byte) 1);
+			Assert.assertEquals(Arrays.asList(null, "1000", "-12.3400", "42"), values);
+		} finally {
+			encoder.release();
+		}
+	}
+
+	@Test
+	public void testRowLargerThanChunk() throws SQLException {
+		List<FieldPacket> fields = fields(MysqlDefs.FIELD_TYPE_VAR_STRING, MysqlDefs.FIELD_TYPE_LONG,
+				MysqlDefs.FIELD_TYPE_VAR_STRING);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			sb.append((char) ('a' + i % 26));
+		}
+		String big = sb.toString();
+		ResultSet rs = mock(ResultSet.class);
+		when(rs.getString(1)).thenReturn(big);
+		when(rs.getLong(2)).thenReturn(-7L);
+		when(rs.getString(3)).thenReturn(big + big);
+
+		JDBCRowEncoder encoder = new JDBCRowEncoder(conn, "utf8", fields, true);
+		try {
+			for (byte id = 1; id <= 3; id++) {
+				// buffer 扩容后复用，多行结果不受影响
+				List<String> values = decode(encoder.encode(rs, id), id);
+				Assert.assertEquals(Arrays.asList(big, "-7", big + big), values);
+			}
+		} finally {
+			encoder.release();
+		}
+	}
+}
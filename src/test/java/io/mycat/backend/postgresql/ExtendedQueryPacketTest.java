@@ -0,0 +1,80 @@
+package io.mycat.backend.postgresql;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.backend.postgresql.packet.Bind;
+import io.mycat.backend.postgresql.packet.BindComplete;
+import io.mycat.backend.postgresql.packet.Close;
+import io.mycat.backend.postgresql.packet.CloseComplete;
+import io.mycat.backend.postgresql.packet.Describe;
+import io.mycat.backend.postgresql.packet.ErrorResponse;
+import io.mycat.backend.postgresql.packet.Execute;
+import io.mycat.backend.postgresql.packet.NoData;
+import io.mycat.backend.postgresql.packet.Parse;
+import io.mycat.backend.postgresql.packet.PostgreSQLPacket;
+import io.mycat.backend.postgresql.packet.Sync;
+import io.mycat.backend.postgresql.utils.PacketUtils;
+
+public class ExtendedQueryPacketTest {
+
+	@Test
+	public void testWriteFlight() throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(512);
+		new Close(Close.STATEMENT, "mycat_s1").write(buf);
+		new Parse("mycat_s2", "select * from t where name = '中文'").write(buf);
+		new Bind("", "mycat_s2").write(buf);
+		new Describe(Describe.PORTAL, "").write(buf);
+		new Execute("", 0).write(buf);
+		new Sync().write(buf);
+
+		// 按消息头的长度逐条走完，正好到末尾
+		String markers = "";
+		int offset = 0;
+		int bind = 0;
+		while (offset < buf.position()) {
+			markers += (char) buf.get(offset);
+			offset += 1 + buf.getInt(offset + 1);
+			if (markers.endsWith("B")) {
+				bind = offset;
+			}
+		}
+		Assert.assertEquals("CPBDES", markers);
+		Assert.assertEquals(buf.position(), offset);
+
+		// Bind: 入口名、语句名之后是三个为 0 的 Int16
+		Assert.assertEquals(0, buf.getShort(bind - 6));
+		Assert.assertEquals(0, buf.getShort(bind - 4));
+		Assert.assertEquals(0, buf.getShort(bind - 2));
+	}
+
+	@Test
+	public void testParseResponses() throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(64);
+		for (char marker : new char[] { '1', '2', 'n', '3' }) {
+			buf.put((byte) marker);
+			buf.putInt(4);
+		}
+		List<PostgreSQLPacket> packets = PacketUtils.parsePacket(buf, 0, buf.position());
+		Assert.assertEquals(4, packets.size());
+		Assert.assertTrue(packets.get(1) instanceof BindComplete);
+		Assert.assertTrue(packets.get(2) instanceof NoData);
+		Assert.assertTrue(packets.get(3) instanceof CloseComplete);
+	}
+
+	@Test
+	public void testErrorResponseSqlState() throws IOException {
+		byte[] fields = "SERROR\0VERROR\0C0A000\0Mcached plan must not change result type\0\0".getBytes("utf-8");
+		ByteBuffer buf = ByteBuffer.allocate(128);
+		buf.put((byte) 'E');
+		buf.putInt(4 + fields.length);
+		buf.put(fields);
+		List<PostgreSQLPacket> packets = PacketUtils.parsePacket(buf, 0, buf.position());
+		Assert.assertEquals(1, packets.size());
+		Assert.assertEquals("0A000", ((ErrorResponse) packets.get(0)).getSqlState());
+	}
+}
@@ -0,0 +1,62 @@
+package io.mycat.backend.postgresql;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.backend.postgresql.packet.DataRow;
+import io.mycat.backend.postgresql.utils.PgPacketApaterUtils;
+import io.mycat.net.mysql.RowDataPacket;
+
+public class PgPacketApaterUtilsTest {
+
+	/**
+	 * 构造 pg 的 DataRow 消息，null 表示 NULL 值
+	 */
+	private static ByteBuffer dataRow(int offset, byte[]... values) {
+		int length = 4 + 2;
+		for (byte[] v : values) {
+			length += 4 + (v == null ? 0 : v.length);
+		}
+		ByteBuffer buf = ByteBuffer.allocate(offset + 1 + length);
+		buf.position(offset);
+		buf.put((byte) 'D');
+		buf.putInt(length);
+		buf.putShort((short) values.length);
+		for (byte[] v : values) {
+			if (v == null) {
+				buf.putInt(-1);
+			} else {
+				buf.putInt(v.length);
+				buf.put(v);
+			}
+		}
+		return buf;
+	}
+
+	@Test
+	public void testDataRowConvertRowDataBytes() {
+		byte[] big = new byte[300];
+		Arrays.fill(big, (byte) 'x');
+		byte[][] values = { "abc".getBytes(), null, new byte[0], big };
+		ByteBuffer buf = dataRow(5, values);
+
+		byte[] row = PgPacketApaterUtils.dataRowConvertRowDataBytes(buf, 5, (byte) 7);
+
+		// 与原来经过 DataRow、RowDataPacket 的转换结果一致
+		RowDataPacket expected = PgPacketApaterUtils.rowDataConvertRowDataPacket(DataRow.parse(buf, 5));
+		expected.packetId = 7;
+		Assert.assertEquals(4 + expected.calcPacketSize(), row.length);
+
+		RowDataPacket actual = new RowDataPacket(values.length);
+		actual.read(row);
+		Assert.assertEquals(7, actual.packetId);
+		Assert.assertEquals(expected.calcPacketSize(), actual.packetLength);
+		Assert.assertArrayEquals("abc".getBytes(), actual.fieldValues.get(0));
+		Assert.assertNull(actual.fieldValues.get(1));
+		Assert.assertEquals(0, actual.fieldValues.get(2).length);
+		Assert.assertArrayEquals(big, actual.fieldValues.get(3));
+	}
+}
@@ -0,0 +1,113 @@
+package io.mycat.backend.postgresql;
+
+import java.io.IOException;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PostgreSQLStatementCacheTest {
+
+	@Test
+	public void testLruAndClose() {
+		PostgreSQLStatementStat stat = new PostgreSQLStatementStat();
+		PostgreSQLStatementCache cache = new PostgreSQLStatementCache(2, stat);
+		Assert.assertNull(cache.get("select 1"));
+		String s1 = cache.add("select 1");
+		String s2 = cache.add("select 2");
+		Assert.assertFalse(s1.equals(s2));
+		Assert.assertEquals(s1, cache.get("select 1"));
+		Assert.assertNull(cache.drainClosing());
+
+		// select 2 最久未用，被淘汰并等待关闭
+		String s3 = cache.add("select 3");
+		Assert.assertEquals(2, cache.size());
+		Assert.assertNull(cache.get("select 2"));
+		Assert.assertEquals(Arrays.asList(s2), cache.drainClosing());
+		Assert.assertNull(cache.drainClosing());
+
+		// 出错后失效，重新 Parse 用新的语句名
+		cache.remove("select 3");
+		Assert.assertEquals(Arrays.asList(s3), cache.drainClosing());
+		String s4 = cache.add("select 3");
+		Assert.assertFalse(s3.equals(s4));
+
+		Assert.assertEquals(1, stat.getHit());
+		Assert.assertEquals(4, stat.getParse());
+		Assert.assertEquals(1, stat.getEviction());
+	}
+
+	@Test
+	public void testDisabled() {
+		PostgreSQLStatementStat stat = new PostgreSQLStatementStat();
+		PostgreSQLStatementCache cache = new PostgreSQLStatementCache(0, stat);
+		Assert.assertEquals("", cache.add("select 1"));
+		Assert.assertNull(cache.get("select 1"));
+		Assert.assertEquals(0, cache.size());
+		Assert.assertNull(cache.drainClosing());
+	}
+
+	@Test
+	public void testSingleStatement() {
+		Assert.assertTrue(PostgreSQLBackendConnection.isSingleStatement("select 1"));
+		Assert.assertTrue(PostgreSQLBackendConnection.isSingleStatement("select 1 ; "));
+		Assert.assertTrue(PostgreSQLBackendConnection.isSingleStatement("select 'a;b', \"c;d\" from t"));
+		Assert.assertFalse(PostgreSQLBackendConnection.isSingleStatement("set a=1;select 1"));
+	}
+
+	/**
+	 * 每条消息的类型
+	 */
+	private static String markers(byte[] data) {
+		StringBuilder sb = new StringBuilder();
+		int offset = 0;
+		while (offset < data.length) {
+			sb.append((char) data[offset]);
+			offset += 1 + ((data[offset + 1] & 0xff) << 24 | (data[offset + 2] & 0xff) << 16
+					| (data[offset + 3] & 0xff) << 8 | (data[offset + 4] & 0xff));
+		}
+		return sb.toString();
+	}
+
+	@Test
+	public void testRetryOnCachedPlanChanged() throws IOException {
+		final List<byte[]> writes = new ArrayList<byte[]>();
+		SocketChannel channel = SocketChannel.open();
+		try {
+			PostgreSQLBackendConnection con = new PostgreSQLBackendConnection(channel, false) {
+				@Override
+				public void write(byte[] data) {
+					writes.add(data);
+				}
+			};
+			con.setStatementCache(new PostgreSQLStatementCache(10, new PostgreSQLStatementStat()));
+			con.setSchema("db1");
+
+			con.query("select * from t");
+			con.query("select * from t");
+			Assert.assertEquals("PBDES", markers(writes.get(0)));
+			Assert.assertEquals("BDES", markers(writes.get(1)));
+
+			// 表结构变化后缓存的计划失效，关闭旧语句、重新 Parse 并重发，错误不返回前端
+			Assert.assertTrue(con.onErrorResponse("0A000"));
+			Assert.assertEquals(3, writes.size());
+			Assert.assertEquals("CPBDES", markers(writes.get(2)));
+			// 只重发一次
+			Assert.assertFalse(con.onErrorResponse("0A000"));
+			Assert.assertEquals(3, writes.size());
+
+			// 其它错误和事务中的请求不重发
+			con.query("select * from t");
+			Assert.assertFalse(con.onErrorResponse("42P01"));
+			con.query("select * from t");
+			con.setInTransaction(true);
+			Assert.assertFalse(con.onErrorResponse("0A000"));
+			Assert.assertEquals(5, writes.size());
+		} finally {
+			channel.close();
+		}
+	}
+}
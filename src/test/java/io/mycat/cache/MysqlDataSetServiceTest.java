@@ -0,0 +1,213 @@
+package io.mycat.cache;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.mycat.config.model.SystemConfig;
+import io.mycat.route.RouteResultset;
+import io.mycat.server.parser.ServerParse;
+
+public class MysqlDataSetServiceTest {
+
+	private MysqlDataSetService service;
+
+	@Before
+	public void setUp() {
+		SystemConfig system = new SystemConfig();
+		system.setUseResultCache(1);
+		system.setResultCacheMemorySize(100);
+		system.setResultCacheMaxResultSize(1000);
+		system.setResultCacheMappedSize(300);
+		system.setDataNodeSortedTempDir(System.getProperty("java.io.tmpdir"));
+		service = new MysqlDataSetService();
+		service.init(system);
+	}
+
+	private static ByteBuffer packet(int length, int value) {
+		ByteBuffer buffer = ByteBuffer.allocate(length + 16);
+		for (int i = 0; i < length; i++) {
+			buffer.put((byte) value);
+		}
+		return buffer;
+	}
+
+	private MysqlDataSetCache newCache(String sql, String... tables) {
+		// 新建的 service 中版本号都为 0
+		String[] depends = MysqlDataSetService.dependKeys("TESTDB", Arrays.asList(tables));
+		return new MysqlDataSetCache(MysqlDataSetService.cacheKey("TESTDB", "utf8", false, sql), depends,
+				new long[depends.length], 60, 1000);
+	}
+
+	@Test
+	public void testNormalize() {
+		Assert.assertEquals("select * from t where a = 'x  y'",
+				MysqlDataSetService.normalize("  select *\n\tfrom t   where a = 'x  y'  "));
+		Assert.assertEquals("select \"a\\\"  b\" from t", MysqlDataSetService.normalize("select  \"a\\\"  b\"  from t"));
+		Assert.assertEquals(MysqlDataSetService.cacheKey("TESTDB", "utf8", false, "select 1"),
+				MysqlDataSetService.cacheKey("TESTDB", "utf8", false, "select   1 "));
+		Assert.assertFalse(MysqlDataSetService.cacheKey("TESTDB", "utf8", false, "select 1")
+				.equals(MysqlDataSetService.cacheKey("TESTDB", "utf8", true, "select 1")));
+	}
+
+	@Test
+	public void testStoreAndInvalidate() {
+		MysqlDataSetCache cache = newCache("select * from orders", "orders");
+		Assert.assertTrue(cache.append(packet(40, 1)));
+		Assert.assertTrue(cache.append(packet(20, 2)));
+		service.store(cache);
+		Assert.assertEquals(60, cache.getTotal());
+		Assert.assertFalse(cache.isMapped());
+		Assert.assertSame(cache, service.findDataSetCache(cache.getSql()));
+
+		// 其它表的修改不影响
+		service.invalidate(Collections.singletonList("TESTDB.ITEMS"));
+		Assert.assertSame(cache, service.findDataSetCache(cache.getSql()));
+
+		service.invalidate(Collections.singletonList("TESTDB.ORDERS"));
+		Assert.assertNull(service.findDataSetCache(cache.getSql()));
+		Assert.assertEquals(0, service.getMemoryUsed());
+		Assert.assertEquals(3, service.getAccessTimes());
+		Assert.assertEquals(2, service.getHitTimes());
+	}
+
+	@Test
+	public void testInvalidatedWhileStoring() {
+		MysqlDataSetCache cache = newCache("select * from orders", "orders");
+		cache.append(packet(10, 1));
+		// 缓存过程中 schema 整体失效
+		service.invalidate(Collections.singletonList("TESTDB"));
+		service.store(cache);
+		Assert.assertNull(service.findDataSetCache(cache.getSql()));
+		Assert.assertEquals(0, service.getPutTimes());
+	}
+
+	@Test
+	public void testTooLarge() {
+		MysqlDataSetCache cache = newCache("select * from orders", "orders");
+		Assert.assertTrue(cache.append(packet(600, 1)));
+		Assert.assertFalse(cache.append(packet(600, 1)));
+		service.store(cache);
+		Assert.assertNull(service.findDataSetCache(cache.getSql()));
+	}
+
+	@Test
+	public void testSpillToMappedFile() {
+		MysqlDataSetCache small = newCache("select 1 from orders", "orders");
+		small.append(packet(80, 1));
+		service.store(small);
+		Assert.assertFalse(small.isMapped());
+
+		// 超过 100 字节的内存上限，写文件
+		MysqlDataSetCache large = newCache("select 2 from orders", "orders");
+		large.append(packet(100, 3));
+		large.append(packet(100, 4));
+		service.store(large);
+		Assert.assertTrue(large.isMapped());
+		Assert.assertFalse(new File(large.getDataFile()).exists());
+		Assert.assertEquals(80, service.getMemoryUsed());
+		Assert.assertEquals(200, service.getMappedUsed());
+		Assert.assertSame(large, service.findDataSetCache(large.getSql()));
+		Assert.assertEquals(2, service.getCount());
+	}
+
+	@Test
+	public void testMappedLimitEvictsLeastRecentlyUsed() throws InterruptedException {
+		MysqlDataSetCache first = newCache("select 1 from orders", "orders");
+		first.append(packet(200, 1));
+		service.store(first);
+		Assert.assertTrue(first.isMapped());
+		Thread.sleep(5);
+		MysqlDataSetCache second = newCache("select 2 from orders", "orders");
+		second.append(packet(200, 2));
+		service.store(second);
+
+		// 超过 300 字节的 mmap 上限，淘汰先缓存的结果并立即释放
+		Assert.assertEquals(200, service.getMappedUsed());
+		Assert.assertNull(service.findDataSetCache(first.getSql()));
+		Assert.assertFalse(first.retain());
+		MysqlDataSetCache hit = service.findDataSetCache(second.getSql());
+		Assert.assertSame(second, hit);
+		hit.release();
+
+		// 单个结果超过 mmap 上限时不缓存
+		MysqlDataSetCache huge = newCache("select 3 from orders", "orders");
+		huge.append(packet(400, 3));
+		service.store(huge);
+		Assert.assertNull(service.findDataSetCache(huge.getSql()));
+		Assert.assertFalse(huge.retain());
+		Assert.assertEquals(200, service.getMappedUsed());
+	}
+
+	@Test
+	public void testReleaseAfterHit() {
+		MysqlDataSetCache cache = newCache("select * from orders", "orders");
+		cache.append(packet(40, 1));
+		service.store(cache);
+		MysqlDataSetCache hit = service.findDataSetCache(cache.getSql());
+		Assert.assertSame(cache, hit);
+
+		// 写前端过程中被失效，命中方释放后才真正释放
+		service.invalidate(Collections.singletonList("TESTDB.ORDERS"));
+		service.sweep(System.currentTimeMillis());
+		Assert.assertEquals(0, service.getCount());
+		Assert.assertEquals(0, service.getMemoryUsed());
+		Assert.assertTrue(cache.retain());
+		cache.release();
+		hit.release();
+		Assert.assertFalse(cache.retain());
+	}
+
+	@Test
+	public void testAbandonedCaptureReleased() {
+		MysqlDataSetContext context = new MysqlDataSetContext();
+		MysqlDataSetCache cache = newCache("select * from orders", "orders");
+		context.startStoring(cache);
+		context.onWrite(packet(40, 1));
+		// 下一条 sql 开始时上一条未完成的缓存被丢弃
+		context.reset();
+		Assert.assertFalse(cache.retain());
+
+		MysqlDataSetCache tooLarge = newCache("select 1 from orders", "orders");
+		context.startStoring(tooLarge);
+		context.onWrite(packet(600, 1));
+		context.onWrite(packet(600, 1));
+		Assert.assertFalse(tooLarge.retain());
+	}
+
+	private static boolean cacheable(String sql) {
+		return MysqlDataSetService.isCacheable(sql, new RouteResultset(sql, ServerParse.SELECT));
+	}
+
+	@Test
+	public void testNonDeterministicNotCached() {
+		Assert.assertTrue(cacheable("select id, name from orders where id = 1"));
+		Assert.assertTrue(cacheable("select unix_timestamp(created) from orders"));
+		Assert.assertTrue(cacheable("select `current_date` from orders"));
+
+		Assert.assertFalse(cacheable("select * from orders where created > now()"));
+		Assert.assertFalse(cacheable("select * from orders where created > CURRENT_TIMESTAMP"));
+		Assert.assertFalse(cacheable("select * from orders where created > current_timestamp()"));
+		Assert.assertFalse(cacheable("select * from orders order by rand() limit 1"));
+		Assert.assertFalse(cacheable("select uuid(), id from orders"));
+		Assert.assertFalse(cacheable("select unix_timestamp() from orders"));
+		Assert.assertFalse(cacheable("select * from orders where id = last_insert_id()"));
+		Assert.assertFalse(cacheable("select * from orders where id = @id"));
+		Assert.assertFalse(cacheable("select @@session.tx_isolation"));
+		Assert.assertFalse(cacheable("select * from orders where id = 1 for update"));
+		Assert.assertFalse(cacheable("select * from orders where id = 1 lock in share mode"));
+		Assert.assertFalse(cacheable("select sql_no_cache * from orders"));
+		Assert.assertFalse(cacheable("select sql_calc_found_rows * from orders limit 10"));
+		Assert.assertFalse(cacheable("select * from orders where id in (select order_id from items where created > now())"));
+
+		// 路由时已经解析过的直接使用解析结果
+		RouteResultset rrs = new RouteResultset("select now()", ServerParse.SELECT);
+		rrs.setDataSetCacheable(true);
+		Assert.assertTrue(MysqlDataSetService.isCacheable("select now()", rrs));
+	}
+}
@@ -0,0 +1,77 @@
+package io.mycat.catlets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.memory.MyCatMemory;
+
+/**
+ * @author mycat
+ */
+public class JoinHashTableTest {
+
+	private static class Collector implements JoinHashTable.Matcher {
+		final List<String> rows = new ArrayList<String>();
+
+		@Override
+		public void onMatch(byte[] buildRow, byte[] probeRow) {
+			rows.add(new String(buildRow) + "|" + new String(probeRow));
+		}
+	}
+
+	private static void build(JoinHashTable table) throws Exception {
+		for (int i = 0; i < 100; i++) {
+			table.put(String.valueOf(i % 10).getBytes(), ("a" + i).getBytes());
+		}
+	}
+
+	@Test
+	public void testHeapTable() throws Exception {
+		JoinHashTable table = new JoinHashTable(null, 100);
+		build(table);
+		Collector c = new Collector();
+		table.probe("3".getBytes(), "b3".getBytes(), c);
+		table.probe("11".getBytes(), "b11".getBytes(), c);
+		Assert.assertEquals(10, c.rows.size());
+		Assert.assertTrue(c.rows.contains("a13|b3"));
+		table.finishProbe(c);
+		Assert.assertEquals(10, c.rows.size());
+	}
+
+	@Test
+	public void testOffHeapTable() throws Exception {
+		JoinHashTable table = new JoinHashTable(new MyCatMemory(), 100);
+		build(table);
+		Collector c = new Collector();
+		table.probe("7".getBytes(), "b7".getBytes(), c);
+		Assert.assertFalse(table.isSpilled());
+		Assert.assertEquals(10, c.rows.size());
+		Assert.assertTrue(c.rows.contains("a97|b7"));
+		table.probe("x".getBytes(), "bx".getBytes(), c);
+		Assert.assertEquals(10, c.rows.size());
+		table.finishProbe(c);
+	}
+
+	@Test
+	public void testSpilledTable() throws Exception {
+		JoinHashTable table = new JoinHashTable(new MyCatMemory(), 100);
+		build(table);
+		table.spill();
+		table.put("5".getBytes(), "a100".getBytes());
+		Assert.assertTrue(table.isSpilled());
+
+		Collector c = new Collector();
+		table.probe("5".getBytes(), "b5".getBytes(), c);
+		table.probe("6".getBytes(), "b6".getBytes(), c);
+		// 落盘后探测延迟到 finishProbe
+		Assert.assertTrue(c.rows.isEmpty());
+		table.finishProbe(c);
+		Assert.assertEquals(21, c.rows.size());
+		Assert.assertTrue(c.rows.contains("a100|b5"));
+		Assert.assertTrue(c.rows.contains("a56|b6"));
+		Assert.assertEquals(21, table.getMatchedRows());
+	}
+}
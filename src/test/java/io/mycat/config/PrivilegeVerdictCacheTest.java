@@ -0,0 +1,97 @@
+package io.mycat.config;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.config.PrivilegeVerdictCache.DmlVerdict;
+import io.mycat.config.PrivilegeVerdictCache.FirewallVerdict;
+
+public class PrivilegeVerdictCacheTest {
+
+	private static String fp(String sql) {
+		return PrivilegeVerdictCache.fingerprint(sql);
+	}
+
+	@Test
+	public void testFingerprintComparison() {
+		Assert.assertEquals("select * from t where id = ?", fp("select * from t where id = 1"));
+		Assert.assertEquals(fp("select * from t where id = 1"), fp("select  *\n from t where id = 2"));
+		Assert.assertEquals("select * from t where name=? and age>=?",
+				fp("select * from t where name='a''b' and age>=30"));
+		// 常量之间的比较可能是恒真条件，保持原样
+		Assert.assertEquals("select * from t where id = ? or 1 = 1", fp("select * from t where id = 2 or 1 = 1"));
+		Assert.assertFalse(fp("select * from t where 1 = 1").equals(fp("select * from t where 1 = 2")));
+		Assert.assertEquals("select * from t where null = 1", fp("select * from t where null = 1"));
+		// LIKE 及函数参数不替换
+		Assert.assertEquals("select * from t where name like 'a%'", fp("select * from t where name like 'a%'"));
+		Assert.assertEquals("select sleep(10) from t", fp("select sleep(10) from t"));
+	}
+
+	@Test
+	public void testFingerprintListAndLimit() {
+		Assert.assertEquals("insert into t(id,name) values(?,?),(?,?)",
+				fp("insert into t(id,name) values(1,'a'),(2,'b')"));
+		Assert.assertEquals("insert into t values(?, concat('a', 'b'))",
+				fp("insert into t values(1, concat('a', 'b'))"));
+		Assert.assertEquals("select * from t where id in (?,?,?) limit ?,?",
+				fp("select * from t where id in (1,2,3) limit 10,20"));
+		Assert.assertEquals("select * from t where id not in (?) limit ? offset ?",
+				fp("select * from t where id not in (1) limit 5 offset 10"));
+		// 常量 IN 列表保持原样
+		Assert.assertEquals("select * from t where 1 in (1,2)", fp("select * from t where 1 in (1,2)"));
+	}
+
+	@Test
+	public void testFingerprintComment() {
+		Assert.assertEquals("/*!mycat:sql=select 1*/select * from t where id = ?",
+				fp("/*!mycat:sql=select 1*/select * from t where id = 5"));
+		Assert.assertEquals("select * from t where id = ? -- 1 = 1\n",
+				fp("select * from t where id = 5 -- 1 = 1\n"));
+		Assert.assertEquals("select * from `t` where `id` = ?", fp("select * from `t` where `id` = 'x'"));
+	}
+
+	@Test
+	public void testCache() {
+		PrivilegeVerdictCache cache = new PrivilegeVerdictCache(10);
+		Assert.assertTrue(cache.isEnabled());
+		String key = cache.firewallKey("root", "select * from t where id = 1");
+		Assert.assertEquals(key, cache.firewallKey("root", "select * from t where id = 2"));
+		Assert.assertFalse(key.equals(cache.firewallKey("test", "select * from t where id = 2")));
+		Assert.assertNull(cache.getFirewall(key));
+		cache.putFirewall(key, new FirewallVerdict(false, "deny"), cache.getGeneration());
+		Assert.assertEquals("deny", cache.getFirewall(key).getMessage());
+
+		String dmlKey = cache.dmlKey("root", "db1", "delete from t where id = 1");
+		Assert.assertFalse(dmlKey.equals(cache.dmlKey("root", "db2", "delete from t where id = 1")));
+		cache.putDml(dmlKey, new DmlVerdict(true, "t"), cache.getGeneration());
+		Assert.assertEquals("t", cache.getDml(dmlKey).getTable());
+		Assert.assertEquals(1, cache.getDmlSize());
+
+		cache.clear();
+		Assert.assertNull(cache.getFirewall(key));
+		Assert.assertNull(cache.getDml(dmlKey));
+		Assert.assertFalse(new PrivilegeVerdictCache(0).isEnabled());
+	}
+
+	@Test
+	public void testReloadBetweenCheckAndPut() {
+		PrivilegeVerdictCache cache = new PrivilegeVerdictCache(10);
+		String key = cache.firewallKey("root", "select * from t where id = 1");
+		String dmlKey = cache.dmlKey("root", "db1", "delete from t where id = 1");
+
+		// 检查开始前取代次，检查过程中重新加载配置
+		long generation = cache.getGeneration();
+		PrivilegeVerdictCache.onConfigReload();
+		cache.putFirewall(key, new FirewallVerdict(true, null), generation);
+		cache.putDml(dmlKey, new DmlVerdict(true, "t"), generation);
+		Assert.assertNull(cache.getFirewall(key));
+		Assert.assertNull(cache.getDml(dmlKey));
+
+		// 重新加载之后开始的检查正常写入
+		generation = cache.getGeneration();
+		cache.putFirewall(key, new FirewallVerdict(false, "deny"), generation);
+		cache.putDml(dmlKey, new DmlVerdict(false, "t"), generation);
+		Assert.assertEquals("deny", cache.getFirewall(key).getMessage());
+		Assert.assertFalse(cache.getDml(dmlKey).isPassed());
+	}
+}
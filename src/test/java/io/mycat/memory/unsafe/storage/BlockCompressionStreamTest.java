@@ -0,0 +1,102 @@
+package io.mycat.memory.unsafe.storage;
+
+import io.mycat.memory.unsafe.utils.MycatPropertyConf;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+
+/**
+ * 落盘文件压缩格式的测试
+ */
+public class BlockCompressionStreamTest {
+
+    private static byte[] text(int len) {
+        StringBuilder sb = new StringBuilder();
+        int i = 0;
+        while (sb.length() < len) {
+            sb.append("row-").append(i++ % 97).append(",mycat,2016-06-04;");
+        }
+        return sb.substring(0, len).getBytes();
+    }
+
+    private static byte[] roundTrip(String codec, byte[] data, int blockSize) throws IOException {
+        MycatPropertyConf conf = new MycatPropertyConf();
+        conf.set("mycat.spill.compress.codec", codec);
+        conf.set("mycat.spill.compress.blockSize", String.valueOf(blockSize));
+        SerializerManager serializerManager = new SerializerManager(conf);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = serializerManager.wrapForCompression(null, bytes);
+        out.write(data, 0, data.length / 3);
+        out.write(data, data.length / 3, data.length - data.length / 3);
+        out.close();
+        byte[] result = new byte[data.length];
+        DataInputStream in = new DataInputStream(
+                serializerManager.wrapForCompression(null, new ByteArrayInputStream(bytes.toByteArray())));
+        in.readFully(result);
+        Assert.assertEquals(-1, in.read());
+        in.close();
+        Assert.assertEquals(data.length, serializerManager.getSpillRawBytes());
+        Assert.assertEquals(bytes.size(), serializerManager.getSpillCompressedBytes());
+        return result;
+    }
+
+    @Test
+    public void testLZRoundTrip() throws IOException {
+        byte[] data = text(300 * 1024);
+        Assert.assertArrayEquals(data, roundTrip("lz", data, 64 * 1024));
+    }
+
+    @Test
+    public void testDeflateRoundTrip() throws IOException {
+        byte[] data = text(100 * 1024);
+        Assert.assertArrayEquals(data, roundTrip("deflate", data, 16 * 1024));
+    }
+
+    @Test
+    public void testIncompressible() throws IOException {
+        byte[] data = new byte[50 * 1024];
+        new Random(7).nextBytes(data);
+        Assert.assertArrayEquals(data, roundTrip("lz", data, 8 * 1024));
+    }
+
+    @Test
+    public void testCompressionRatio() throws IOException {
+        byte[] data = text(256 * 1024);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new BlockCompressionOutputStream(bytes, new LZCompressionCodec(), 64 * 1024, null);
+        out.write(data);
+        out.close();
+        Assert.assertTrue(bytes.size() < data.length / 2);
+    }
+
+    @Test(expected = IOException.class)
+    public void testCorruptedBlock() throws IOException {
+        byte[] data = text(10 * 1024);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream out = new BlockCompressionOutputStream(bytes, new LZCompressionCodec(), 64 * 1024, null);
+        out.write(data);
+        out.close();
+        byte[] file = bytes.toByteArray();
+        file[file.length - 5] ^= 0x5a;
+        InputStream in = new BlockCompressionInputStream(new ByteArrayInputStream(file));
+        new DataInputStream(in).readFully(new byte[data.length]);
+    }
+
+    @Test
+    public void testReadAhead() throws IOException {
+        byte[] data = text(200 * 1024 + 17);
+        InputStream in = new ReadAheadInputStream(new ByteArrayInputStream(data), 4096);
+        byte[] result = new byte[data.length];
+        new DataInputStream(in).readFully(result);
+        Assert.assertEquals(-1, in.read());
+        in.close();
+        Assert.assertArrayEquals(data, result);
+    }
+}
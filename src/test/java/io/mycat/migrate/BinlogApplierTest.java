@@ -0,0 +1,120 @@
+package io.mycat.migrate;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import static io.mycat.migrate.BinlogApplier.ApplyStatement;
+import static io.mycat.migrate.BinlogApplier.RowChange;
+
+public class BinlogApplierTest {
+    @Test
+    public void mergeConsecutiveChanges() {
+        MigrateTask task = new MigrateTask();
+        MigrateTask other = new MigrateTask();
+        List<ApplyStatement> statements = BinlogApplier.merge(Arrays.asList(
+                RowChange.insert(task, "t", "t,1", "id,name", " (1,'a')", 0),
+                RowChange.insert(task, "t", "t,2", "id,name", " (2,'b')", 0),
+                RowChange.delete(task, "t", "t,3", "id", "3", 0),
+                RowChange.delete(task, "t", "t,4", "id", "4", 0),
+                RowChange.sql(task, "t", "t,5", "update t set name='c' where id=5", 0),
+                RowChange.insert(task, "t", "t,6", "id,name", " (6,'d')", 0),
+                // 不同任务的目标节点不同，不能合并
+                RowChange.insert(other, "t", "t,7", "id,name", " (7,'e')", 0)));
+        Assert.assertEquals(5, statements.size());
+        Assert.assertEquals("insert into t(id,name)  values  (1,'a'), (2,'b')", statements.get(0).sql);
+        Assert.assertEquals(2, statements.get(0).events);
+        Assert.assertEquals("delete from t where id in (3,4)", statements.get(1).sql);
+        Assert.assertEquals("update t set name='c' where id=5", statements.get(2).sql);
+        Assert.assertEquals("insert into t(id,name)  values  (6,'d')", statements.get(3).sql);
+        Assert.assertSame(other, statements.get(4).task);
+    }
+
+    @Test
+    public void errorWithFullQueueDoesNotDeadlock() throws Exception {
+        final CountDownLatch executing = new CountDownLatch(1);
+        final CountDownLatch fail = new CountDownLatch(1);
+        Statement stmt = mock(Statement.class);
+        when(stmt.execute(anyString())).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                executing.countDown();
+                fail.await();
+                throw new SQLException("apply error");
+            }
+        });
+        final Connection con = mock(Connection.class);
+        when(con.createStatement()).thenReturn(stmt);
+
+        // binlog 线程在 apply 中阻塞时，断开连接要等它退出(模拟 BinaryLogClient 的 connectLock)
+        final Thread[] client = new Thread[1];
+        final AtomicBoolean clientExited = new AtomicBoolean();
+        final CountDownLatch disconnected = new CountDownLatch(1);
+        BinlogStream stream = mock(BinlogStream.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                client[0].join(5000);
+                clientExited.set(!client[0].isAlive());
+                disconnected.countDown();
+                return null;
+            }
+        }).when(stream).disconnect();
+
+        // 一个回放线程，队列容量 4
+        final BinlogApplier applier = new BinlogApplier(stream, 1, 1) {
+            @Override
+            Connection openConnection(String dataNode) {
+                return con;
+            }
+
+            @Override
+            void reportError(MigrateTask task, String sql, Exception e) {
+            }
+        };
+        final MigrateTask task = new MigrateTask();
+        task.setTo("dn2");
+        client[0] = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < 100; i++) {
+                        applier.apply(RowChange.sql(task, "t", "t," + i, "update t set a=1 where id=" + i, 0));
+                    }
+                } catch (InterruptedException e) {
+                    // ignore
+                }
+            }
+        };
+        client[0].start();
+        Assert.assertTrue(executing.await(5, TimeUnit.SECONDS));
+        // 等回放队列满，binlog 线程阻塞在 offer 上
+        long deadline = System.currentTimeMillis() + 5000;
+        while (applier.getLagEvents() < 6 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        Assert.assertEquals(6, applier.getLagEvents());
+        Assert.assertTrue(client[0].isAlive());
+
+        fail.countDown();
+        Assert.assertTrue(disconnected.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(clientExited.get());
+        Assert.assertTrue(task.isHaserror());
+        applier.shutdown();
+    }
+}
@@ -0,0 +1,44 @@
+package io.mycat.migrate;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static io.mycat.route.function.PartitionByCRC32PreSlot.Range;
+
+public class MigrateCopyRunnerTest {
+    private static final List<MigrateCopyRunner.CopyColumn> COLUMNS = Arrays.asList(
+            new MigrateCopyRunner.CopyColumn("id", false),
+            new MigrateCopyRunner.CopyColumn("doc", true));
+
+    @Test
+    public void makeSelectSql() {
+        MigrateTask task = new MigrateTask();
+        task.addSlots(new Range(0, 10));
+        task.addSlots(new Range(20, 20));
+        String where = MigrateUtils.makeSlotWhere(task);
+        Assert.assertEquals("(_slot >=0 and _slot <=10) or  _slot =20", where);
+        Assert.assertEquals("select `id`,convert(`doc` using utf8mb4) from `t` where ((_slot >=0 and _slot <=10) or  _slot =20) and `id` > 5 and `id` <= 9",
+                MigrateCopyRunner.makeSelectSql("t", COLUMNS, "id", where, "5", "9"));
+        Assert.assertEquals("select `id`,convert(`doc` using utf8mb4) from `t` where (1=1)",
+                MigrateCopyRunner.makeSelectSql("t", COLUMNS, null, "1=1", null, null));
+    }
+
+    @Test
+    public void makeInsertSql() {
+        Assert.assertEquals("replace into `t` (`id`,`doc`) values (?,convert(? using utf8mb4)),(?,convert(? using utf8mb4))",
+                MigrateCopyRunner.makeInsertSql("t", COLUMNS, 2));
+    }
+
+    @Test
+    public void isGenerated() {
+        Assert.assertTrue(MigrateCopyRunner.isGenerated("VIRTUAL GENERATED"));
+        Assert.assertTrue(MigrateCopyRunner.isGenerated("STORED GENERATED"));
+        Assert.assertFalse(MigrateCopyRunner.isGenerated("DEFAULT_GENERATED on update CURRENT_TIMESTAMP"));
+        Assert.assertFalse(MigrateCopyRunner.isGenerated("auto_increment"));
+        Assert.assertFalse(MigrateCopyRunner.isGenerated(""));
+        Assert.assertFalse(MigrateCopyRunner.isGenerated(null));
+    }
+}
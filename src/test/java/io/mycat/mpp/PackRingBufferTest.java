@@ -0,0 +1,150 @@
+package io.mycat.mpp;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.memory.unsafe.ringbuffer.exception.AlertException;
+import io.mycat.sqlengine.mpp.PackRingBuffer;
+import io.mycat.sqlengine.mpp.PackWraper;
+
+public class PackRingBufferTest {
+
+	private static byte[] row(int n) {
+		return new byte[] { (byte) (n >>> 24), (byte) (n >>> 16), (byte) (n >>> 8), (byte) n };
+	}
+
+	private static int value(byte[] row) {
+		return (row[0] & 0xff) << 24 | (row[1] & 0xff) << 16 | (row[2] & 0xff) << 8 | (row[3] & 0xff);
+	}
+
+	@Test
+	public void testOverflowKeepsOrder() throws Exception {
+		PackRingBuffer packs = new PackRingBuffer(3, PackRingBuffer.WAIT_SLEEPING, 20);
+		Assert.assertEquals(4, packs.getBufferSize());
+		for (int i = 0; i < 10; i++) {
+			packs.publish("dn1", row(i));
+		}
+		// 环满后的 6 行进入溢出队列
+		Assert.assertEquals(6, packs.getOverflowCount());
+		for (int i = 0; i < 6; i++) {
+			PackWraper pack = packs.take();
+			Assert.assertEquals("dn1", pack.dataNode);
+			Assert.assertEquals(i, value(pack.rowData));
+		}
+		// 溢出队列已被消费者整体取走，新的行重新走环，但排在取走的行之后
+		packs.publish("dn1", row(10));
+		packs.publishEnd();
+		Assert.assertEquals(6, packs.getOverflowCount());
+		for (int i = 6; i <= 10; i++) {
+			Assert.assertEquals(i, value(packs.take().rowData));
+		}
+		Assert.assertSame(PackRingBuffer.END, packs.take());
+		Assert.assertFalse(packs.hasPending());
+	}
+
+	@Test
+	public void testIdleAndHalt() throws Exception {
+		PackRingBuffer packs = new PackRingBuffer(16, PackRingBuffer.WAIT_BLOCKING, 30);
+		long start = System.nanoTime();
+		Assert.assertNull(packs.take());
+		Assert.assertTrue(System.nanoTime() - start >= 30 * 1000000L);
+		Assert.assertFalse(packs.hasPending());
+
+		packs.publish("dn1", row(1));
+		Assert.assertTrue(packs.hasPending());
+		Assert.assertEquals(1, value(packs.take().rowData));
+
+		packs.halt();
+		packs.publish("dn1", row(2));
+		Assert.assertFalse(packs.hasPending());
+		try {
+			packs.take();
+			Assert.fail();
+		} catch (AlertException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testHaltWakesConsumer() throws Exception {
+		final PackRingBuffer packs = new PackRingBuffer(16, PackRingBuffer.WAIT_BLOCKING, 60000);
+		final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+		Thread consumer = new Thread() {
+			@Override
+			public void run() {
+				try {
+					packs.take();
+				} catch (Throwable e) {
+					error.set(e);
+				}
+			}
+		};
+		consumer.start();
+		Thread.sleep(50);
+		packs.halt();
+		consumer.join(5000);
+		Assert.assertFalse(consumer.isAlive());
+		Assert.assertTrue(error.get() instanceof AlertException);
+	}
+
+	@Test
+	public void testConcurrentProducers() throws Exception {
+		for (int strategy : new int[] { PackRingBuffer.WAIT_SLEEPING, PackRingBuffer.WAIT_BLOCKING,
+				PackRingBuffer.WAIT_BUSY_SPIN }) {
+			concurrentProducers(strategy);
+		}
+	}
+
+	private void concurrentProducers(int strategy) throws Exception {
+		final PackRingBuffer packs = new PackRingBuffer(64, strategy, 1000);
+		final int producers = 4;
+		final int rows = 50000;
+		final Thread[] threads = new Thread[producers];
+		for (int p = 0; p < producers; p++) {
+			final String dataNode = "dn" + p;
+			threads[p] = new Thread() {
+				@Override
+				public void run() {
+					for (int i = 0; i < rows; i++) {
+						packs.publish(dataNode, row(i));
+					}
+				}
+			};
+			threads[p].start();
+		}
+		Thread ender = new Thread() {
+			@Override
+			public void run() {
+				// 与后端一样，所有分片结束后才发布结束标志
+				for (int p = 0; p < producers; p++) {
+					try {
+						threads[p].join();
+					} catch (InterruptedException e) {
+						return;
+					}
+				}
+				packs.publishEnd();
+			}
+		};
+		ender.start();
+
+		int[] expected = new int[producers];
+		for (;;) {
+			PackWraper pack = packs.take();
+			Assert.assertNotNull("strategy " + strategy, pack);
+			if (pack == PackRingBuffer.END) {
+				break;
+			}
+			int p = pack.dataNode.charAt(2) - '0';
+			// 同一个生产者的行序不变
+			Assert.assertEquals("strategy " + strategy, expected[p], value(pack.rowData));
+			expected[p]++;
+		}
+		for (int p = 0; p < producers; p++) {
+			Assert.assertEquals(rows, expected[p]);
+		}
+		ender.join();
+	}
+}
@@ -0,0 +1,123 @@
+package io.mycat.mpp;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.sqlengine.mpp.ColMeta;
+import io.mycat.sqlengine.mpp.OrderCol;
+import io.mycat.sqlengine.mpp.ShardLimitTracker;
+
+public class ShardLimitTrackerTest {
+
+	private static final List<String> NODES = Arrays.asList("dn1", "dn2", "dn3");
+
+	private static byte[] row(String... values) {
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		for (String v : values) {
+			if (v == null) {
+				body.write(0xfb);
+			} else {
+				byte[] b = v.getBytes();
+				if (b.length >= 251) {
+					body.write(252);
+					body.write(b.length);
+					body.write(b.length >>> 8);
+				} else {
+					body.write(b.length);
+				}
+				body.write(b, 0, b.length);
+			}
+		}
+		byte[] data = body.toByteArray();
+		byte[] packet = new byte[data.length + 4];
+		packet[0] = (byte) data.length;
+		packet[1] = (byte) (data.length >>> 8);
+		packet[3] = 1;
+		System.arraycopy(data, 0, packet, 4, data.length);
+		return packet;
+	}
+
+	private static OrderCol[] orderById(int orderType) {
+		return new OrderCol[] { new OrderCol(new ColMeta(0, ColMeta.COL_TYPE_LONG), orderType) };
+	}
+
+	@Test
+	public void testUnorderedLimit() {
+		ShardLimitTracker tracker = new ShardLimitTracker(3, null, 2, NODES);
+		Assert.assertTrue(tracker.addRow("dn1", row("1", "a")));
+		Assert.assertTrue(tracker.addRow("dn1", row("2", "b")));
+		Assert.assertNull(tracker.takeCancelableNodes());
+		Assert.assertTrue(tracker.nodeEnd("dn1"));
+
+		Assert.assertTrue(tracker.addRow("dn2", row("3", "c")));
+		// dn1 已经结束，不需要取消
+		Assert.assertEquals(Arrays.asList("dn2", "dn3"), tracker.takeCancelableNodes());
+		Assert.assertFalse(tracker.addRow("dn3", row("4", "d")));
+		Assert.assertFalse(tracker.nodeEnd("dn3"));
+		Assert.assertNull(tracker.takeCancelableNodes());
+	}
+
+	@Test
+	public void testOrderedLimit() {
+		ShardLimitTracker tracker = new ShardLimitTracker(2, orderById(OrderCol.COL_ORDER_TYPE_ASC), 1, NODES);
+		Assert.assertTrue(tracker.addRow("dn2", row("5")));
+		Assert.assertTrue(tracker.addRow("dn1", row("1")));
+		Assert.assertNull(tracker.takeCancelableNodes());
+		// dn1 中已有两行排在 dn2 的当前行之前，dn2 后面的行都用不上
+		Assert.assertTrue(tracker.addRow("dn1", row("2")));
+		Assert.assertEquals(Arrays.asList("dn2"), tracker.takeCancelableNodes());
+		Assert.assertFalse(tracker.addRow("dn2", row("6")));
+
+		Assert.assertFalse(tracker.addRow("dn3", row("3")));
+		Assert.assertEquals(Arrays.asList("dn3"), tracker.takeCancelableNodes());
+		Assert.assertTrue(tracker.nodeEnd("dn1"));
+	}
+
+	@Test
+	public void testOrderedDesc() {
+		ShardLimitTracker tracker = new ShardLimitTracker(1, orderById(OrderCol.COL_ORDER_TYPE_DESC), 1, NODES);
+		Assert.assertTrue(tracker.addRow("dn1", row("9")));
+		Assert.assertTrue(tracker.addRow("dn2", row("10")));
+		Assert.assertEquals(Arrays.asList("dn1"), tracker.takeCancelableNodes());
+		// 相等的值不能确定先后，不取消
+		Assert.assertTrue(tracker.addRow("dn3", row("10")));
+		Assert.assertNull(tracker.takeCancelableNodes());
+	}
+
+	@Test
+	public void testNullOrderValue() {
+		ShardLimitTracker tracker = new ShardLimitTracker(1, orderById(OrderCol.COL_ORDER_TYPE_ASC), 1, NODES);
+		Assert.assertTrue(tracker.addRow("dn1", row((String) null)));
+		Assert.assertTrue(tracker.addRow("dn1", row("1")));
+		Assert.assertTrue(tracker.addRow("dn2", row("2")));
+		Assert.assertNull(tracker.takeCancelableNodes());
+	}
+
+	@Test
+	public void testNullOrderValueAfterLongColumn() {
+		char[] chars = new char[300];
+		Arrays.fill(chars, 'x');
+		String text = new String(chars);
+		OrderCol[] orderCols = new OrderCol[] {
+				new OrderCol(new ColMeta(1, ColMeta.COL_TYPE_LONG), OrderCol.COL_ORDER_TYPE_ASC) };
+		ShardLimitTracker tracker = new ShardLimitTracker(1, orderCols, 2, NODES);
+		Assert.assertTrue(tracker.addRow("dn1", row(text, "1")));
+		// 第一列为 null 不影响按第二列裁剪
+		Assert.assertFalse(tracker.addRow("dn2", row(null, "2")));
+		Assert.assertEquals(Arrays.asList("dn2"), tracker.takeCancelableNodes());
+		Assert.assertTrue(tracker.addRow("dn3", row(text, null)));
+		Assert.assertTrue(tracker.addRow("dn3", row(text, "3")));
+		Assert.assertNull(tracker.takeCancelableNodes());
+	}
+
+	@Test
+	public void testOrderSupported() {
+		Assert.assertTrue(ShardLimitTracker.isOrderSupported(orderById(OrderCol.COL_ORDER_TYPE_ASC)));
+		Assert.assertFalse(ShardLimitTracker.isOrderSupported(new OrderCol[] {
+				new OrderCol(new ColMeta(0, ColMeta.COL_TYPE_VAR_STRING), OrderCol.COL_ORDER_TYPE_ASC) }));
+	}
+}
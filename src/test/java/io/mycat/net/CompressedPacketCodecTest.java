@@ -0,0 +1,183 @@
+package io.mycat.net;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.buffer.BufferPool;
+import io.mycat.buffer.DirectByteBufferPool;
+
+public class CompressedPacketCodecTest {
+
+	private final BufferPool pool = new DirectByteBufferPool(1024 * 1024, (short) 4096, (short) 16, 4096);
+
+	private static byte[] packet(int seq, int length) {
+		byte[] packet = new byte[length + 4];
+		packet[0] = (byte) length;
+		packet[1] = (byte) (length >>> 8);
+		packet[2] = (byte) (length >>> 16);
+		packet[3] = (byte) seq;
+		for (int i = 4; i < packet.length; i++) {
+			packet[i] = (byte) ('a' + i % 7);
+		}
+		return packet;
+	}
+
+	private ByteBuffer buffer(byte[]... packets) {
+		ByteBuffer buffer = pool.allocate(64 * 1024);
+		for (byte[] packet : packets) {
+			buffer.put(packet);
+		}
+		return buffer;
+	}
+
+	/**
+	 * 把写队列中的字节流按帧头切成完整的帧
+	 */
+	private static List<byte[]> frames(Queue<ByteBuffer> queue) {
+		int total = 0;
+		for (ByteBuffer buffer : queue) {
+			total += buffer.position();
+		}
+		byte[] stream = new byte[total];
+		int offset = 0;
+		for (ByteBuffer buffer : queue) {
+			buffer.flip();
+			buffer.get(stream, offset, buffer.limit());
+			offset += buffer.limit();
+		}
+		List<byte[]> frames = new ArrayList<byte[]>();
+		offset = 0;
+		while (offset < total) {
+			int length = (stream[offset] & 0xff) | (stream[offset + 1] & 0xff) << 8 | (stream[offset + 2] & 0xff) << 16;
+			frames.add(Arrays.copyOfRange(stream, offset, offset + 7 + length));
+			offset += 7 + length;
+		}
+		return frames;
+	}
+
+	@Test
+	public void testPackPacketsIntoOneFrame() {
+		CompressedPacketCodec server = new CompressedPacketCodec(pool, false);
+		CompressedPacketCodec client = new CompressedPacketCodec(pool, true);
+		Queue<ByteBuffer> queue = new LinkedList<ByteBuffer>();
+
+		// 客户端新命令从 0 开始
+		client.write(buffer(packet(0, 30)), true, queue);
+		List<byte[]> frames = frames(queue);
+		Assert.assertEquals(1, frames.size());
+		Assert.assertEquals(0, frames.get(0)[3]);
+		// 小于 50 字节不压缩
+		Assert.assertEquals(0, frames.get(0)[4]);
+		List<byte[]> packets = server.read(frames.get(0));
+		Assert.assertEquals(1, packets.size());
+		Assert.assertArrayEquals(packet(0, 30), packets.get(0));
+
+		// 不 flush 时先攒着，多个包压成一帧，序号接着请求帧
+		queue.clear();
+		server.write(buffer(packet(1, 100), packet(2, 100)), false, queue);
+		Assert.assertTrue(queue.isEmpty());
+		server.write(buffer(packet(3, 100)), true, queue);
+		frames = frames(queue);
+		Assert.assertEquals(1, frames.size());
+		Assert.assertEquals(1, frames.get(0)[3]);
+		Assert.assertTrue(frames.get(0).length < 3 * 104);
+		packets = client.read(frames.get(0));
+		Assert.assertEquals(3, packets.size());
+		Assert.assertArrayEquals(packet(3, 100), packets.get(2));
+	}
+
+	@Test
+	public void testPacketSpanFrames() {
+		CompressedPacketCodec server = new CompressedPacketCodec(pool, false);
+		CompressedPacketCodec client = new CompressedPacketCodec(pool, true);
+		Queue<ByteBuffer> queue = new LinkedList<ByteBuffer>();
+
+		// 超过单帧上限时切成多帧，包可以跨帧
+		byte[] first = packet(1, 40000);
+		byte[] second = packet(2, 40000);
+		server.write(buffer(first), false, queue);
+		server.write(buffer(second), true, queue);
+		List<byte[]> frames = frames(queue);
+		Assert.assertEquals(2, frames.size());
+		Assert.assertEquals(1, frames.get(1)[3]);
+
+		List<byte[]> packets = client.read(frames.get(0));
+		Assert.assertEquals(1, packets.size());
+		Assert.assertArrayEquals(first, packets.get(0));
+		packets = client.read(frames.get(1));
+		Assert.assertEquals(1, packets.size());
+		Assert.assertArrayEquals(second, packets.get(0));
+	}
+
+	@Test
+	public void testZeroInsidePacketNotResetSequence() {
+		CompressedPacketCodec client = new CompressedPacketCodec(pool, true);
+		Queue<ByteBuffer> queue = new LinkedList<ByteBuffer>();
+
+		// 超过 64K 的命令按 4096 字节分块写入，第 17 块正好从第二帧开头开始，其第 4 个字节为 0
+		byte[] command = packet(0, 100000);
+		command[16 * 4096 + 3] = 0;
+		for (int offset = 0; offset < command.length; offset += 4096) {
+			int n = Math.min(4096, command.length - offset);
+			client.write(buffer(Arrays.copyOfRange(command, offset, offset + n)), offset + n == command.length, queue);
+		}
+		List<byte[]> frames = frames(queue);
+		Assert.assertEquals(2, frames.size());
+		Assert.assertEquals(0, frames.get(0)[3]);
+		Assert.assertEquals(1, frames.get(1)[3]);
+
+		CompressedPacketCodec server = new CompressedPacketCodec(pool, false);
+		Assert.assertTrue(server.read(frames.get(0)).isEmpty());
+		List<byte[]> packets = server.read(frames.get(1));
+		Assert.assertEquals(1, packets.size());
+		Assert.assertArrayEquals(command, packets.get(0));
+	}
+
+	@Test
+	public void testNewCommandResetSequence() {
+		CompressedPacketCodec server = new CompressedPacketCodec(pool, false);
+		CompressedPacketCodec client = new CompressedPacketCodec(pool, true);
+		Queue<ByteBuffer> queue = new LinkedList<ByteBuffer>();
+
+		// load data 之类的命令包序号回绕到 0 时不是新命令
+		client.write(buffer(packet(0, 10)), true, queue);
+		queue.clear();
+		server.write(buffer(packet(1, 10)), true, queue);
+		client.read(frames(queue).get(0));
+		queue.clear();
+		for (int seq = 2; seq <= 255; seq++) {
+			client.write(buffer(packet(seq, 10)), true, queue);
+		}
+		client.write(buffer(packet(0, 10)), true, queue);
+		List<byte[]> frames = frames(queue);
+		Assert.assertEquals(255, frames.size());
+		Assert.assertEquals(1, frames.get(0)[3]);
+		Assert.assertEquals((byte) 255, frames.get(254)[3]);
+
+		// 收到回包后序号为 0 的包是新命令
+		queue.clear();
+		server.write(buffer(packet(1, 10)), true, queue);
+		client.read(frames(queue).get(0));
+		queue.clear();
+		client.write(buffer(packet(0, 10)), true, queue);
+		Assert.assertEquals(0, frames(queue).get(0)[3]);
+	}
+
+	@Test
+	public void testRelease() {
+		CompressedPacketCodec codec = new CompressedPacketCodec(pool, false);
+		Queue<ByteBuffer> queue = new LinkedList<ByteBuffer>();
+		codec.write(buffer(packet(1, 100)), false, queue);
+		codec.release();
+		codec.write(buffer(packet(2, 100)), true, queue);
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertTrue(codec.read(new byte[] { 0, 0, 0, 0, 0, 0, 0 }).isEmpty());
+	}
+}
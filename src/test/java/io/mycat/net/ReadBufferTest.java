@@ -0,0 +1,157 @@
+package io.mycat.net;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.mycat.buffer.DirectByteBufferPool;
+
+/**
+ * NIO 连接的读缓冲：没有未处理完的包时不占用 BufferPool，数据先读到 reactor 共享的缓冲
+ */
+public class ReadBufferTest {
+
+	private final DirectByteBufferPool pool = new DirectByteBufferPool(1024 * 1024, (short) 4096, (short) 4, 4096);
+	private final List<byte[]> packets = new ArrayList<byte[]>();
+	private ServerSocketChannel server;
+	private SocketChannel client;
+	private SocketChannel accepted;
+	private AbstractConnection con;
+
+	@Before
+	public void setUp() throws IOException {
+		server = ServerSocketChannel.open();
+		server.bind(new InetSocketAddress("127.0.0.1", 0));
+		client = SocketChannel.open(server.getLocalAddress());
+		accepted = server.accept();
+		accepted.configureBlocking(false);
+
+		con = new AbstractConnection(accepted) {
+		};
+		con.packetHeaderSize = 4;
+		con.maxPacketSize = 16 * 1024 * 1024;
+		con.setProcessor(new NIOProcessor("test", pool, null));
+		con.setHandler(new NIOHandler() {
+			@Override
+			public void handle(byte[] data) {
+				packets.add(data);
+			}
+		});
+		// 模拟 reactor 线程
+		NIOReactor.returnSharedReadBuffer(ByteBuffer.allocateDirect(4096));
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		NIOReactor.takeSharedReadBuffer();
+		client.close();
+		accepted.close();
+		server.close();
+	}
+
+	private static byte[] packet(int bodyLength, byte seq) {
+		byte[] data = new byte[bodyLength + 4];
+		data[0] = (byte) bodyLength;
+		data[1] = (byte) (bodyLength >>> 8);
+		data[2] = (byte) (bodyLength >>> 16);
+		data[3] = seq;
+		for (int i = 4; i < data.length; i++) {
+			data[i] = (byte) i;
+		}
+		return data;
+	}
+
+	private void send(byte[] data, int offset, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+		while (buffer.hasRemaining()) {
+			client.write(buffer);
+		}
+	}
+
+	/**
+	 * 反复读直到收到 count 个包，或者读完已发送的 bytes 个字节
+	 */
+	private void readUntil(int count, long bytes) throws Exception {
+		long deadline = System.currentTimeMillis() + 5000L;
+		while (packets.size() < count || con.getNetInBytes() < bytes) {
+			con.asynRead();
+			if (System.currentTimeMillis() > deadline) {
+				Assert.fail("timeout, packets " + packets.size() + ", bytes " + con.getNetInBytes());
+			}
+			Thread.sleep(1);
+		}
+	}
+
+	private long usage() {
+		Long usage = pool.getNetDirectMemoryUsage().get(Thread.currentThread().getId());
+		return usage == null ? 0 : usage;
+	}
+
+	@Test
+	public void testReadBufferRelease() throws Exception {
+		Assert.assertNull(con.getReadBuffer());
+
+		// 整包：只用共享缓冲
+		byte[] p1 = packet(100, (byte) 1);
+		byte[] p2 = packet(200, (byte) 2);
+		send(p1, 0, p1.length);
+		send(p2, 0, p2.length);
+		long sent = p1.length + p2.length;
+		readUntil(2, sent);
+		Assert.assertNull(con.getReadBuffer());
+		Assert.assertEquals(0, usage());
+
+		// 半个包：剩余部分复制到连接自己的缓冲
+		byte[] p3 = packet(300, (byte) 3);
+		send(p3, 0, 150);
+		sent += 150;
+		readUntil(2, sent);
+		Assert.assertNotNull(con.getReadBuffer());
+		Assert.assertTrue(con.getReadBuffer().isDirect());
+		Assert.assertEquals(4096, usage());
+
+		// 包读完后归还
+		send(p3, 150, p3.length - 150);
+		sent += p3.length - 150;
+		readUntil(3, sent);
+		Assert.assertNull(con.getReadBuffer());
+		Assert.assertEquals(0, usage());
+
+		// 比共享缓冲大的包
+		byte[] p4 = packet(10000, (byte) 4);
+		byte[] p5 = packet(10, (byte) 5);
+		send(p4, 0, p4.length);
+		send(p5, 0, p5.length);
+		sent += p4.length + p5.length;
+		readUntil(5, sent);
+		Assert.assertNull(con.getReadBuffer());
+		Assert.assertEquals(0, usage());
+
+		byte[][] expected = { p1, p2, p3, p4, p5 };
+		Assert.assertEquals(expected.length, packets.size());
+		for (int i = 0; i < expected.length; i++) {
+			Assert.assertArrayEquals(expected[i], packets.get(i));
+		}
+	}
+
+	@Test
+	public void testWithoutSharedBuffer() throws Exception {
+		// 不在 reactor 线程时，按原来的方式分配连接自己的缓冲
+		NIOReactor.takeSharedReadBuffer();
+		byte[] p1 = packet(100, (byte) 1);
+		send(p1, 0, p1.length);
+		readUntil(1, p1.length);
+		Assert.assertArrayEquals(p1, packets.get(0));
+		Assert.assertNull(con.getReadBuffer());
+		Assert.assertEquals(0, usage());
+	}
+}
@@ -0,0 +1,88 @@
+package io.mycat.net.mysql;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.config.Capabilities;
+import io.mycat.config.Versions;
+import io.mycat.util.RandomUtil;
+
+public class HandshakeTemplateTest {
+
+	private static final int CAPABILITIES = Capabilities.CLIENT_LONG_PASSWORD | Capabilities.CLIENT_FOUND_ROWS
+			| Capabilities.CLIENT_LONG_FLAG | Capabilities.CLIENT_CONNECT_WITH_DB | Capabilities.CLIENT_PROTOCOL_41
+			| Capabilities.CLIENT_TRANSACTIONS | Capabilities.CLIENT_SECURE_CONNECTION
+			| Capabilities.CLIENT_PLUGIN_AUTH;
+
+	private static byte[] encode(boolean v10, int capabilities, int charsetIndex, long threadId, byte[] seed) {
+		byte[] rand1 = Arrays.copyOfRange(seed, 0, 8);
+		byte[] rand2 = Arrays.copyOfRange(seed, 8, 20);
+		ByteBuffer buffer;
+		if (v10) {
+			HandshakeV10Packet hs = new HandshakeV10Packet();
+			hs.packetId = 0;
+			hs.protocolVersion = Versions.PROTOCOL_VERSION;
+			hs.serverVersion = Versions.SERVER_VERSION;
+			hs.threadId = threadId;
+			hs.seed = rand1;
+			hs.serverCapabilities = capabilities;
+			hs.serverCharsetIndex = (byte) (charsetIndex & 0xff);
+			hs.serverStatus = 2;
+			hs.restOfScrambleBuff = rand2;
+			buffer = ByteBuffer.allocate(hs.packetHeaderSize + hs.calcPacketSize());
+			hs.write(buffer);
+		} else {
+			HandshakePacket hs = new HandshakePacket();
+			hs.packetId = 0;
+			hs.protocolVersion = Versions.PROTOCOL_VERSION;
+			hs.serverVersion = Versions.SERVER_VERSION;
+			hs.threadId = threadId;
+			hs.seed = rand1;
+			hs.serverCapabilities = capabilities;
+			hs.serverCharsetIndex = (byte) (charsetIndex & 0xff);
+			hs.serverStatus = 2;
+			hs.restOfScrambleBuff = rand2;
+			buffer = ByteBuffer.allocate(hs.packetHeaderSize + hs.calcPacketSize());
+			hs.write(buffer);
+		}
+		return buffer.array();
+	}
+
+	@Test
+	public void testSameAsPacket() {
+		long[] threadIds = { 1, 255, 65536, 0x7fffffffL, 0xfedcba98L };
+		int[] capabilities = { CAPABILITIES, CAPABILITIES & ~Capabilities.CLIENT_PLUGIN_AUTH,
+				CAPABILITIES & ~Capabilities.CLIENT_SECURE_CONNECTION };
+		for (boolean v10 : new boolean[] { true, false }) {
+			for (int caps : capabilities) {
+				for (int charsetIndex : new int[] { 33, 45 }) {
+					for (long threadId : threadIds) {
+						byte[] seed = RandomUtil.randomSeed(HandshakeTemplate.SEED_LENGTH);
+						Assert.assertArrayEquals(encode(v10, caps, charsetIndex, threadId, seed),
+								HandshakeTemplate.make(v10, caps, charsetIndex, threadId, seed));
+					}
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testRandomSeed() {
+		Set<String> seeds = new HashSet<String>();
+		// 跨越多次补充随机池
+		for (int i = 0; i < 1000; i++) {
+			byte[] seed = RandomUtil.randomSeed(HandshakeTemplate.SEED_LENGTH);
+			Assert.assertEquals(HandshakeTemplate.SEED_LENGTH, seed.length);
+			for (byte b : seed) {
+				Assert.assertTrue(Character.isLetterOrDigit((char) b));
+			}
+			seeds.add(new String(seed));
+		}
+		Assert.assertEquals(1000, seeds.size());
+	}
+}
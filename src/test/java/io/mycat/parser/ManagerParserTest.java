@@ -231,6 +231,30 @@ public class ManagerParserTest {
         Assert.assertEquals(ManagerParseShow.SQL_SLOW, ManagerParseShow.parse("SHOW @@sql.slow", 5));
     }
 
+    @Test
+    public void testShowCacheResult() {
+        Assert.assertEquals(ManagerParseShow.CACHE, ManagerParseShow.parse("show @@cache", 5));
+        Assert.assertEquals(ManagerParseShow.CACHE_RESULT, ManagerParseShow.parse("show @@cache.result", 5));
+        Assert.assertEquals(ManagerParseShow.CACHE_RESULT, ManagerParseShow.parse("SHOW @@CACHE.RESULT", 5));
+    }
+
+    @Test
+    public void testShowCachePrivilege() {
+        Assert.assertEquals(ManagerParseShow.CACHE_PRIVILEGE, ManagerParseShow.parse("show @@cache.privilege", 5));
+        Assert.assertEquals(ManagerParseShow.CACHE_PRIVILEGE, ManagerParseShow.parse("SHOW @@CACHE.PRIVILEGE", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@cache.privileges", 5));
+    }
+
+    @Test
+    public void testShowSQLTrace() {
+        Assert.assertEquals(ManagerParseShow.SQL_TRACE, ManagerParseShow.parse("show @@sql.trace", 5));
+        Assert.assertEquals(ManagerParseShow.SQL_TRACE, ManagerParseShow.parse("SHOW @@SQL.TRACE", 5));
+        Assert.assertEquals(ManagerParseShow.SQL_TRACE, ManagerParseShow.parse("show @@sql.trace true", 5) & 0xff);
+        Assert.assertEquals(ManagerParseShow.SQL_TRACE_STAGE, ManagerParseShow.parse("show @@sql.trace.stage", 5));
+        Assert.assertEquals(ManagerParseShow.SQL_TRACE_STAGE, ManagerParseShow.parse("SHOW @@SQL.TRACE.STAGE", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@sql.trace.stagx", 5));
+    }
+
     @Test
     public void testShowVariables() {
         Assert.assertEquals(ManagerParseShow.VARIABLES, ManagerParseShow.parse("show variables", 5));
@@ -409,5 +433,41 @@ public class ManagerParserTest {
         Assert.assertEquals(ManagerParseShow.DATASOURCE_SYNC_DETAIL,
                 0xff & ManagerParseShow.parse("show @@datasource.syndetail where name=slave",5)); 
     }
+    @Test
+    public void testDatasourceCompress() {
+        Assert.assertEquals(ManagerParseShow.DATASOURCE_COMPRESS,
+                ManagerParseShow.parse("show @@datasource.compress", 5));
+        Assert.assertEquals(ManagerParseShow.DATASOURCE_COMPRESS,
+                ManagerParseShow.parse("SHOW @@DATASOURCE.COMPRESS ", 5));
+        Assert.assertEquals(ManagerParseShow.DATASOURCE_CLUSTER,
+                ManagerParseShow.parse("show @@datasource.cluster", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER,
+                ManagerParseShow.parse("show @@datasource.compressx", 5));
+    }
+    @Test
+    public void testDatasourcePrepared() {
+        Assert.assertEquals(ManagerParseShow.DATASOURCE_PREPARED,
+                ManagerParseShow.parse("show @@datasource.prepared", 5));
+        Assert.assertEquals(ManagerParseShow.DATASOURCE_PREPARED,
+                ManagerParseShow.parse("SHOW @@DATASOURCE.PREPARED ", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER,
+                ManagerParseShow.parse("show @@datasource.prepare", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER,
+                ManagerParseShow.parse("show @@datasource.preparedx", 5));
+    }
+    @Test
+    public void testAcceptor() {
+        Assert.assertEquals(ManagerParseShow.ACCEPTOR, ManagerParseShow.parse("show @@acceptor", 5));
+        Assert.assertEquals(ManagerParseShow.ACCEPTOR, ManagerParseShow.parse("SHOW @@ACCEPTOR ", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@accepto", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@acceptors", 5));
+    }
+    @Test
+    public void testSpill() {
+        Assert.assertEquals(ManagerParseShow.SPILL, ManagerParseShow.parse("show @@spill", 5));
+        Assert.assertEquals(ManagerParseShow.SPILL, ManagerParseShow.parse("SHOW @@SPILL ", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@spil", 5));
+        Assert.assertEquals(ManagerParseShow.OTHER, ManagerParseShow.parse("show @@spills", 5));
+    }
 
 }
\ No newline at end of file
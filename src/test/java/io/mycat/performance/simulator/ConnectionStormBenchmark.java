@@ -0,0 +1,323 @@
+package io.mycat.performance.simulator;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.mycat.MycatServer;
+import io.mycat.backend.mysql.SecurityUtil;
+import io.mycat.config.Capabilities;
+import io.mycat.net.AcceptStat;
+import io.mycat.net.FrontendConnection;
+import io.mycat.net.NIOProcessor;
+import io.mycat.net.SocketAcceptor;
+import io.mycat.net.mysql.AuthPacket;
+import io.mycat.net.mysql.HandshakePacket;
+import io.mycat.performance.simulator.SimulatorLoadDriver.LatencyRecorder;
+
+/**
+ * 连接风暴压测：进程内启动 {@link MySQLSimulator} 和 Mycat，多个线程同时向服务端口建连并登录，
+ * 登录成功即算建立，输出建连速率、建连延迟和服务端 acceptor 的统计。
+ * 连接全部建完后保持空闲，统计 Mycat 前端连接占用的读缓冲和 BufferPool 的使用量。
+ *
+ * classpath 的要求与 {@link SimulatorLoadDriver} 相同，对比时分别以不同的 storm.acceptors 各跑一次：
+ *
+ * <pre>
+ * java -cp ... -Dstorm.acceptors=1 io.mycat.performance.simulator.ConnectionStormBenchmark
+ * java -cp ... -Dstorm.acceptors=4 io.mycat.performance.simulator.ConnectionStormBenchmark
+ * </pre>
+ *
+ * 参数(-D)：
+ * <ul>
+ * <li>storm.acceptors Mycat 服务端口的 acceptor 线程数，默认 1</li>
+ * <li>storm.backlog 服务端口的 backlog，默认 2048</li>
+ * <li>storm.connections 总连接数，默认 8000，客户端和服务端各占一个文件句柄，注意 ulimit -n</li>
+ * <li>storm.threads 客户端建连线程数，默认 32</li>
+ * <li>storm.hold 建立后是否保持到全部建完再关闭，默认 true；为 false 时建立后立即关闭</li>
+ * <li>storm.auth 是否登录，默认 true；为 false 时读到握手包即算建立</li>
+ * <li>storm.host/storm.port Mycat 服务端口，默认 127.0.0.1:18066，与 simulator/server.xml 一致</li>
+ * <li>storm.user/storm.password/storm.schema 登录用户，默认与 simulator/server.xml 一致</li>
+ * <li>storm.localHosts 客户端绑定的本地地址，逗号分隔，轮流使用，单个地址的临时端口不够用时指定</li>
+ * </ul>
+ *
+ * 10 万空闲连接需要调大文件句柄数，并用多个本地地址分摊临时端口：
+ *
+ * <pre>
+ * ulimit -n 250000
+ * java -Xmx4g -cp ... -Dstorm.connections=100000 -Dstorm.threads=64 \
+ *     -Dstorm.localHosts=127.0.0.2,127.0.0.3,127.0.0.4,127.0.0.5 \
+ *     io.mycat.performance.simulator.ConnectionStormBenchmark
+ * </pre>
+ *
+ * @author mycat
+ */
+public class ConnectionStormBenchmark {
+
+	private final String host;
+	private final int port;
+	private final int connections;
+	private final int threads;
+	private final boolean hold;
+	private String user;
+	private String password;
+	private String schema;
+	private String[] localHosts;
+
+	public ConnectionStormBenchmark(String host, int port, int connections, int threads, boolean hold) {
+		this.host = host;
+		this.port = port;
+		this.connections = connections;
+		this.threads = threads;
+		this.hold = hold;
+	}
+
+	/**
+	 * 建立后用此用户登录，user 为 null 时只读握手包
+	 */
+	public void setAuth(String user, String password, String schema) {
+		this.user = user;
+		this.password = password;
+		this.schema = schema;
+	}
+
+	public void setLocalHosts(String[] localHosts) {
+		this.localHosts = localHosts;
+	}
+
+	/**
+	 * 读完一个完整的 MySQL 包，含包头
+	 */
+	private static byte[] readPacket(InputStream in) throws IOException {
+		byte[] header = new byte[4];
+		readFully(in, header, 0);
+		int length = (header[0] & 0xff) | (header[1] & 0xff) << 8 | (header[2] & 0xff) << 16;
+		byte[] packet = new byte[length + 4];
+		System.arraycopy(header, 0, packet, 0, 4);
+		readFully(in, packet, 4);
+		return packet;
+	}
+
+	private static void readFully(InputStream in, byte[] b, int offset) throws IOException {
+		while (offset < b.length) {
+			int n = in.read(b, offset, b.length - offset);
+			if (n < 0) {
+				throw new IOException("connection closed by server");
+			}
+			offset += n;
+		}
+	}
+
+	private void handshake(Socket socket) throws IOException {
+		InputStream in = socket.getInputStream();
+		byte[] handshake = readPacket(in);
+		if (user == null) {
+			return;
+		}
+		HandshakePacket hs = new HandshakePacket();
+		hs.read(handshake);
+		byte[] seed = new byte[hs.seed.length + hs.restOfScrambleBuff.length];
+		System.arraycopy(hs.seed, 0, seed, 0, hs.seed.length);
+		System.arraycopy(hs.restOfScrambleBuff, 0, seed, hs.seed.length, hs.restOfScrambleBuff.length);
+
+		AuthPacket auth = new AuthPacket();
+		auth.packetId = 1;
+		auth.clientFlags = Capabilities.CLIENT_LONG_PASSWORD | Capabilities.CLIENT_LONG_FLAG
+				| Capabilities.CLIENT_CONNECT_WITH_DB | Capabilities.CLIENT_PROTOCOL_41
+				| Capabilities.CLIENT_TRANSACTIONS | Capabilities.CLIENT_SECURE_CONNECTION;
+		auth.maxPacketSize = 16 * 1024 * 1024;
+		auth.charsetIndex = hs.serverCharsetIndex & 0xff;
+		auth.user = user;
+		try {
+			auth.password = SecurityUtil.scramble411(password.getBytes(), seed);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		auth.database = schema;
+		OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+		auth.write(out);
+		out.flush();
+		byte[] ok = readPacket(in);
+		if (ok[4] != 0) {
+			throw new IOException("auth failed");
+		}
+	}
+
+	private static void close(Socket socket) {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	public String run() throws InterruptedException {
+		final AtomicInteger next = new AtomicInteger();
+		final AtomicInteger errors = new AtomicInteger();
+		final CountDownLatch start = new CountDownLatch(1);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final List<LatencyRecorder> recorders = new ArrayList<LatencyRecorder>();
+		final List<Socket> opened = new ArrayList<Socket>();
+		for (int i = 0; i < threads; i++) {
+			final LatencyRecorder recorder = new LatencyRecorder();
+			recorders.add(recorder);
+			Thread thread = new Thread(SimulatorLoadDriver.DRIVER_THREAD_PREFIX + i) {
+				@Override
+				public void run() {
+					List<Socket> sockets = new ArrayList<Socket>();
+					try {
+						start.await();
+						int n;
+						while ((n = next.getAndIncrement()) < connections) {
+							long begin = System.nanoTime();
+							Socket socket = new Socket();
+							try {
+								if (localHosts != null) {
+									socket.bind(new InetSocketAddress(localHosts[n % localHosts.length], 0));
+								}
+								socket.connect(new InetSocketAddress(host, port), 30000);
+								socket.setSoTimeout(30000);
+								handshake(socket);
+								recorder.record((System.nanoTime() - begin) / 1000);
+							} catch (IOException e) {
+								errors.incrementAndGet();
+								close(socket);
+								continue;
+							}
+							if (hold) {
+								sockets.add(socket);
+							} else {
+								close(socket);
+							}
+						}
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					} finally {
+						synchronized (opened) {
+							opened.addAll(sockets);
+						}
+						done.countDown();
+					}
+				}
+			};
+			thread.start();
+		}
+
+		AcceptStat stat = findAcceptStat();
+		long acceptedBefore = stat == null ? 0 : stat.getAccepted();
+		long begin = System.nanoTime();
+		start.countDown();
+		done.await();
+		long elapsed = System.nanoTime() - begin;
+		// 空闲连接占用的读缓冲，等服务端处理完最后的登录包
+		Thread.sleep(1000L);
+		long[] readBuffers = readBufferUsage();
+		long poolUsed = bufferPoolUsage();
+		for (Socket socket : opened) {
+			close(socket);
+		}
+
+		long[] latency = LatencyRecorder.merge(recorders);
+		return String.format("%8d %7d %10d %10d %9d %9d %9d %10d %10d %7d %9d %12d %12d", connections, threads,
+				latency.length, latency.length * 1000000000L / Math.max(1, elapsed),
+				LatencyRecorder.percentile(latency, 0.5), LatencyRecorder.percentile(latency, 0.99),
+				latency.length == 0 ? 0 : latency[latency.length - 1],
+				stat == null ? 0 : stat.getAccepted() - acceptedBefore, stat == null ? 0 : stat.getPeakRate(),
+				errors.get(), readBuffers[0], readBuffers[0] == 0 ? 0 : readBuffers[1] / readBuffers[0], poolUsed);
+	}
+
+	/**
+	 * Mycat 前端连接数及其读缓冲的总字节数
+	 */
+	private static long[] readBufferUsage() {
+		long count = 0;
+		long bytes = 0;
+		for (NIOProcessor processor : MycatServer.getInstance().getProcessors()) {
+			for (FrontendConnection c : processor.getFrontends().values()) {
+				count++;
+				ByteBuffer buffer = c.getReadBuffer();
+				if (buffer != null) {
+					bytes += buffer.capacity();
+				}
+			}
+		}
+		return new long[] { count, bytes };
+	}
+
+	/**
+	 * BufferPool 中已分配未归还的字节数
+	 */
+	private static long bufferPoolUsage() {
+		long used = 0;
+		for (Map.Entry<Long, Long> entry : MycatServer.getInstance().getBufferPool().getNetDirectMemoryUsage()
+				.entrySet()) {
+			used += entry.getValue();
+		}
+		return used;
+	}
+
+	private AcceptStat findAcceptStat() {
+		SocketAcceptor[] acceptors = MycatServer.getInstance().getAcceptors();
+		if (acceptors != null) {
+			for (SocketAcceptor acceptor : acceptors) {
+				if (acceptor.getPort() == port) {
+					return acceptor.getAcceptStat();
+				}
+			}
+		}
+		return null;
+	}
+
+	public static void main(String[] args) throws Exception {
+		int acceptors = Integer.getInteger("storm.acceptors", 1);
+		MySQLSimulator simulator = new MySQLSimulator(Integer.getInteger("sim.port", 13306));
+		simulator.addTable(SimulatorLoadDriver.createTable(SimulatorLoadDriver.parseLongs(null,
+				SimulatorLoadDriver.SHARD_COUNT, 100)));
+		simulator.start();
+
+		// acceptor 在 startup 时创建，需要先改掉加载好的配置
+		SimulatorLoadDriver.prepareMycatHome();
+		MycatServer.getInstance().getConfig().getSystem().setAcceptorCount(acceptors);
+		MycatServer.getInstance().getConfig().getSystem().setAcceptBacklog(Integer.getInteger("storm.backlog", 2048));
+		MycatServer.getInstance().startup();
+
+		String host = System.getProperty("storm.host", "127.0.0.1");
+		int port = Integer.getInteger("storm.port", 18066);
+		int threads = Integer.getInteger("storm.threads", 32);
+		boolean hold = Boolean.parseBoolean(System.getProperty("storm.hold", "true"));
+		boolean auth = Boolean.parseBoolean(System.getProperty("storm.auth", "true"));
+		String localHosts = System.getProperty("storm.localHosts");
+
+		ConnectionStormBenchmark warmup = new ConnectionStormBenchmark(host, port, Math.min(1000, threads * 20),
+				threads, false);
+		ConnectionStormBenchmark storm = new ConnectionStormBenchmark(host, port,
+				Integer.getInteger("storm.connections", 8000), threads, hold);
+		for (ConnectionStormBenchmark benchmark : new ConnectionStormBenchmark[] { warmup, storm }) {
+			if (auth) {
+				benchmark.setAuth(System.getProperty("storm.user", "sim"), System.getProperty("storm.password", "sim"),
+						System.getProperty("storm.schema", "SIMDB"));
+			}
+			if (localHosts != null && !localHosts.trim().isEmpty()) {
+				benchmark.setLocalHosts(localHosts.split(","));
+			}
+		}
+		warmup.run();
+		String result = storm.run();
+		System.out.println("acceptors=" + acceptors + " hold=" + hold + " auth=" + auth);
+		System.out.println(String.format("%8s %7s %10s %10s %9s %9s %9s %10s %10s %7s %9s %12s %12s", "conns",
+				"threads", "ok", "conn/s", "p50(us)", "p99(us)", "max(us)", "accepted", "peak/s", "errors",
+				"frontends", "readbuf/conn", "pool used(B)"));
+		System.out.println(result);
+		simulator.stop();
+		System.exit(0);
+	}
+}
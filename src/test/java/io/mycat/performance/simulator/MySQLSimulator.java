@@ -0,0 +1,242 @@
+package io.mycat.performance.simulator;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.mycat.buffer.BufferPool;
+import io.mycat.buffer.DirectByteBufferPool;
+
+/**
+ * 进程内的 MySQL 协议模拟后端，可以直接作为 schema.xml 中 dataHost 的 writeHost，
+ * 不需要真实的 MySQL 即可在本机压测 Mycat。
+ *
+ * 报文使用 io.mycat.net.mysql 下的包类编码，接受任意用户名和密码，
+ * 数据由 {@link SimulatedTable} 按行号生成，每次请求的响应前按配置的延迟等待，
+ * 可以按库单独配置延迟来模拟慢分片。
+ *
+ * <pre>
+ * MySQLSimulator simulator = new MySQLSimulator(13306);
+ * simulator.addTable(new SimulatedTable("travelrecord", "id").setDefaultShard(1000, 0, 1));
+ * simulator.setLatencyMicros(200);
+ * simulator.start();
+ * </pre>
+ *
+ * @author mycat
+ */
+public class MySQLSimulator {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(MySQLSimulator.class);
+
+	public static final String THREAD_PREFIX = "simulator-";
+	public static final String SERVER_VERSION = "5.6.29-mycat-simulator";
+
+	private final int port;
+	private final Map<String, SimulatedTable> tables = new ConcurrentHashMap<String, SimulatedTable>();
+	private final Map<String, Long> databaseLatency = new ConcurrentHashMap<String, Long>();
+	private final Map<String, String> variables = new ConcurrentHashMap<String, String>();
+	private final Set<SimulatorConnection> connections = Collections
+			.newSetFromMap(new ConcurrentHashMap<SimulatorConnection, Boolean>());
+	private final AtomicInteger connectionId = new AtomicInteger();
+	private final AtomicLong queries = new AtomicLong();
+	private final BufferPool bufferPool;
+	private volatile long latencyMicros;
+	private volatile long jitterMicros;
+	private volatile boolean compress;
+	private volatile boolean running;
+	private ServerSocket serverSocket;
+	private ExecutorService executor;
+
+	/**
+	 * @param port 0 表示随机端口，启动后通过 {@link #getPort()} 获取
+	 */
+	public MySQLSimulator(int port) {
+		this.port = port;
+		this.bufferPool = new DirectByteBufferPool(1024 * 1024, (short) 4096, (short) 16, 4096);
+		variables.put("version", SERVER_VERSION);
+		variables.put("version_comment", "Mycat MySQL simulator");
+		variables.put("character_set_server", "utf8");
+		variables.put("character_set_client", "utf8");
+		variables.put("character_set_connection", "utf8");
+		variables.put("character_set_results", "utf8");
+		variables.put("collation_server", "utf8_general_ci");
+		variables.put("lower_case_table_names", "1");
+		variables.put("max_allowed_packet", "16777216");
+		variables.put("net_write_timeout", "60");
+		variables.put("interactive_timeout", "28800");
+		variables.put("wait_timeout", "28800");
+		variables.put("sql_mode", "");
+		variables.put("time_zone", "SYSTEM");
+		variables.put("system_time_zone", "UTC");
+		variables.put("tx_isolation", "REPEATABLE-READ");
+		variables.put("transaction_isolation", "REPEATABLE-READ");
+		variables.put("auto_increment_increment", "1");
+		variables.put("autocommit", "1");
+		variables.put("tx_read_only", "0");
+		variables.put("query_cache_size", "0");
+		variables.put("query_cache_type", "OFF");
+		variables.put("license", "GPL");
+		variables.put("init_connect", "");
+	}
+
+	public void addTable(SimulatedTable table) {
+		tables.put(table.getName(), table);
+	}
+
+	public SimulatedTable getTable(String name) {
+		return tables.get(name.toLowerCase());
+	}
+
+	public Map<String, SimulatedTable> getTables() {
+		return tables;
+	}
+
+	public Map<String, String> getVariables() {
+		return variables;
+	}
+
+	/**
+	 * 每个请求的固定延迟(微秒)
+	 */
+	public void setLatencyMicros(long latencyMicros) {
+		this.latencyMicros = latencyMicros;
+	}
+
+	/**
+	 * 在固定延迟之上叠加 [0, jitterMicros) 的随机延迟
+	 */
+	public void setJitterMicros(long jitterMicros) {
+		this.jitterMicros = jitterMicros;
+	}
+
+	/**
+	 * 单独设置某个库的延迟，覆盖全局设置
+	 */
+	public void setLatencyMicros(String database, long latencyMicros) {
+		databaseLatency.put(database.toLowerCase(), latencyMicros);
+	}
+
+	/**
+	 * 握手时声明支持压缩协议，客户端同时申请时认证后的报文按压缩帧收发
+	 */
+	public void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+
+	public boolean isCompress() {
+		return compress;
+	}
+
+	long getLatencyMicros(String database) {
+		Long latency = database == null ? null : databaseLatency.get(database.toLowerCase());
+		return latency == null ? latencyMicros : latency;
+	}
+
+	long getJitterMicros() {
+		return jitterMicros;
+	}
+
+	BufferPool getBufferPool() {
+		return bufferPool;
+	}
+
+	void queryExecuted() {
+		queries.incrementAndGet();
+	}
+
+	public long getQueryCount() {
+		return queries.get();
+	}
+
+	public int getPort() {
+		return serverSocket == null ? port : serverSocket.getLocalPort();
+	}
+
+	public boolean isRunning() {
+		return running;
+	}
+
+	public synchronized void start() throws IOException {
+		if (running) {
+			return;
+		}
+		serverSocket = new ServerSocket();
+		serverSocket.setReuseAddress(true);
+		serverSocket.bind(new InetSocketAddress("127.0.0.1", port), 1024);
+		executor = Executors.newCachedThreadPool(new ThreadFactory() {
+			private final AtomicInteger index = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, THREAD_PREFIX + index.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		running = true;
+		Thread acceptor = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		}, THREAD_PREFIX + "acceptor");
+		acceptor.setDaemon(true);
+		acceptor.start();
+		LOGGER.info("mysql simulator started on port " + getPort());
+	}
+
+	private void accept() {
+		while (running) {
+			try {
+				Socket socket = serverSocket.accept();
+				socket.setTcpNoDelay(true);
+				SimulatorConnection connection = new SimulatorConnection(this, socket, connectionId.incrementAndGet());
+				connections.add(connection);
+				executor.execute(connection);
+			} catch (IOException e) {
+				if (running) {
+					LOGGER.warn("simulator accept error", e);
+				}
+			}
+		}
+	}
+
+	void connectionClosed(SimulatorConnection connection) {
+		connections.remove(connection);
+	}
+
+	public int getConnectionCount() {
+		return connections.size();
+	}
+
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		try {
+			serverSocket.close();
+		} catch (IOException e) {
+			LOGGER.warn("close simulator error", e);
+		}
+		for (SimulatorConnection connection : connections) {
+			connection.close();
+		}
+		connections.clear();
+		executor.shutdownNow();
+		LOGGER.info("mysql simulator stopped, total queries " + queries.get());
+	}
+}
@@ -0,0 +1,152 @@
+package io.mycat.performance.simulator;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.mycat.config.Fields;
+
+public class MySQLSimulatorTest {
+
+	private MySQLSimulator simulator;
+
+	@Before
+	public void setUp() throws Exception {
+		simulator = new MySQLSimulator(0);
+		SimulatedTable table = new SimulatedTable("orders", "id")
+				.addColumn("user_id", Fields.FIELD_TYPE_LONG)
+				.addColumn("name", Fields.FIELD_TYPE_VAR_STRING);
+		// 两个分片，主键按奇偶分布，db1 的数据更多
+		table.setShard("db0", 10, 0, 2).setShard("db1", 20, 1, 2);
+		simulator.addTable(table);
+		simulator.start();
+		Class.forName("com.mysql.jdbc.Driver");
+	}
+
+	@After
+	public void tearDown() {
+		simulator.stop();
+	}
+
+	private Connection connect(String database) throws SQLException {
+		return DriverManager.getConnection("jdbc:mysql://127.0.0.1:" + simulator.getPort() + "/" + database
+				+ "?allowMultiQueries=true", "root", "any");
+	}
+
+	@Test
+	public void testPointSelect() throws Exception {
+		Connection con = connect("db1");
+		try {
+			Statement stmt = con.createStatement();
+			ResultSet rs = stmt.executeQuery("select id, name from orders where id = 7");
+			Assert.assertTrue(rs.next());
+			Assert.assertEquals(7, rs.getLong(1));
+			Assert.assertEquals("name-7", rs.getString("name"));
+			Assert.assertFalse(rs.next());
+
+			// 6 不在 db1 中
+			rs = stmt.executeQuery("select * from orders where id in (5, 6, 41)");
+			Assert.assertTrue(rs.next());
+			Assert.assertEquals(5, rs.getLong("id"));
+			Assert.assertEquals(5, rs.getInt("user_id"));
+			Assert.assertFalse(rs.next());
+		} finally {
+			con.close();
+		}
+	}
+
+	@Test
+	public void testScanWithOrderAndLimit() throws Exception {
+		Connection con = connect("db0");
+		try {
+			Statement stmt = con.createStatement();
+			ResultSet rs = stmt.executeQuery("select count(*) from orders");
+			Assert.assertTrue(rs.next());
+			Assert.assertEquals(10, rs.getLong(1));
+
+			rs = stmt.executeQuery("select id from orders order by id desc limit 1, 3");
+			long[] ids = new long[3];
+			for (int i = 0; i < ids.length; i++) {
+				Assert.assertTrue(rs.next());
+				ids[i] = rs.getLong(1);
+			}
+			Assert.assertFalse(rs.next());
+			Assert.assertTrue(Arrays.equals(new long[] { 16, 14, 12 }, ids));
+		} finally {
+			con.close();
+		}
+	}
+
+	@Test
+	public void testUpdateAndMultiStatements() throws Exception {
+		Connection con = connect("db0");
+		try {
+			Statement stmt = con.createStatement();
+			Assert.assertEquals(3, stmt.executeUpdate(
+					"insert into orders (id, user_id, name) values (100, 1, 'a;b'), (102, 2, 'c'), (104, 3, '(d)')"));
+
+			Assert.assertFalse(stmt.execute("SET autocommit=0;XA START 'x1';select id from orders where id = 2"));
+			Assert.assertEquals(0, stmt.getUpdateCount());
+			Assert.assertFalse(stmt.getMoreResults());
+			Assert.assertTrue(stmt.getMoreResults());
+			ResultSet rs = stmt.getResultSet();
+			Assert.assertTrue(rs.next());
+			Assert.assertEquals(2, rs.getLong(1));
+
+			try {
+				stmt.executeQuery("select * from missing");
+				Assert.fail();
+			} catch (SQLException e) {
+				Assert.assertEquals(1146, e.getErrorCode());
+			}
+		} finally {
+			con.close();
+		}
+	}
+
+	@Test
+	public void testLatency() throws Exception {
+		simulator.setLatencyMicros("db1", 50000);
+		Connection con = connect("db1");
+		try {
+			long start = System.nanoTime();
+			con.createStatement().executeQuery("select user()").close();
+			Assert.assertTrue(System.nanoTime() - start >= 50000000L);
+		} finally {
+			con.close();
+		}
+	}
+
+	@Test
+	public void testCompress() throws Exception {
+		simulator.setCompress(true);
+		Connection con = DriverManager.getConnection("jdbc:mysql://127.0.0.1:" + simulator.getPort()
+				+ "/db1?useCompression=true", "root", "any");
+		try {
+			ResultSet rs = con.createStatement().executeQuery("select id, name from orders order by id");
+			int rows = 0;
+			while (rs.next()) {
+				Assert.assertEquals("name-" + rs.getLong(1), rs.getString(2));
+				rows++;
+			}
+			Assert.assertEquals(20, rows);
+		} finally {
+			con.close();
+		}
+	}
+
+	@Test
+	public void testCountValues() {
+		Assert.assertEquals(1, SimulatorConnection.countValues("insert into t values (1, 'a)')"));
+		Assert.assertEquals(2, SimulatorConnection.countValues("insert into t (a, b) values (f(1), 2),(3, '\\'(')"));
+		Assert.assertEquals(1, SimulatorConnection.countValues("insert into t select * from s"));
+	}
+}
@@ -0,0 +1,130 @@
+package io.mycat.performance.simulator;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.mycat.config.Fields;
+
+/**
+ * 模拟后端中的一张表，数据按行号即时生成，不占内存。
+ *
+ * 第一列为主键，每个库(分片)的数据分布单独配置：
+ * 第 i 行的主键为 firstId + i * idStep，共 rows 行。
+ * 其它列由主键推算：整型列为 id % 100，字符串列为 "列名-id"。
+ *
+ * @author mycat
+ */
+public class SimulatedTable {
+
+	private final String name;
+	private final List<String> columns = new ArrayList<String>();
+	private final List<Integer> types = new ArrayList<Integer>();
+	private final Map<String, Shard> shards = new HashMap<String, Shard>();
+	private Shard defaultShard = new Shard(0, 0, 1);
+
+	/**
+	 * 某个库中的数据分布
+	 */
+	public static class Shard {
+		final long rows;
+		final long firstId;
+		final long idStep;
+
+		public Shard(long rows, long firstId, long idStep) {
+			if (idStep <= 0) {
+				throw new IllegalArgumentException("idStep must be positive");
+			}
+			this.rows = rows;
+			this.firstId = firstId;
+			this.idStep = idStep;
+		}
+
+		public long getRows() {
+			return rows;
+		}
+
+		public long idOf(long index) {
+			return firstId + index * idStep;
+		}
+
+		/**
+		 * @return 主键所在行号，不存在时返回 -1
+		 */
+		public long indexOf(long id) {
+			long offset = id - firstId;
+			if (offset < 0 || offset % idStep != 0) {
+				return -1;
+			}
+			long index = offset / idStep;
+			return index < rows ? index : -1;
+		}
+	}
+
+	public SimulatedTable(String name, String keyColumn) {
+		this.name = name.toLowerCase();
+		addColumn(keyColumn, Fields.FIELD_TYPE_LONGLONG);
+	}
+
+	public SimulatedTable addColumn(String column, int type) {
+		columns.add(column.toLowerCase());
+		types.add(type);
+		return this;
+	}
+
+	/**
+	 * 设置某个库中的行数和主键分布
+	 */
+	public SimulatedTable setShard(String database, long rows, long firstId, long idStep) {
+		shards.put(database.toLowerCase(), new Shard(rows, firstId, idStep));
+		return this;
+	}
+
+	/**
+	 * 未单独配置的库使用的分布
+	 */
+	public SimulatedTable setDefaultShard(long rows, long firstId, long idStep) {
+		this.defaultShard = new Shard(rows, firstId, idStep);
+		return this;
+	}
+
+	public Shard getShard(String database) {
+		Shard shard = database == null ? null : shards.get(database.toLowerCase());
+		return shard == null ? defaultShard : shard;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getKeyColumn() {
+		return columns.get(0);
+	}
+
+	public List<String> getColumns() {
+		return Collections.unmodifiableList(columns);
+	}
+
+	public int indexOfColumn(String column) {
+		return columns.indexOf(column.toLowerCase());
+	}
+
+	public int getType(int columnIndex) {
+		return types.get(columnIndex);
+	}
+
+	public String value(int columnIndex, long id) {
+		if (columnIndex == 0) {
+			return String.valueOf(id);
+		}
+		switch (types.get(columnIndex)) {
+		case Fields.FIELD_TYPE_VAR_STRING:
+		case Fields.FIELD_TYPE_STRING:
+			return columns.get(columnIndex) + '-' + id;
+		default:
+			return String.valueOf(id % 100);
+		}
+	}
+}
@@ -0,0 +1,735 @@
+package io.mycat.performance.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.mycat.backend.mysql.PacketUtil;
+import io.mycat.buffer.BufferArray;
+import io.mycat.config.Capabilities;
+import io.mycat.config.ErrorCode;
+import io.mycat.config.Fields;
+import io.mycat.net.mysql.AuthPacket;
+import io.mycat.net.mysql.EOFPacket;
+import io.mycat.net.mysql.ErrorPacket;
+import io.mycat.net.mysql.FieldPacket;
+import io.mycat.net.mysql.HandshakeV10Packet;
+import io.mycat.net.mysql.MySQLPacket;
+import io.mycat.net.mysql.OkPacket;
+import io.mycat.net.mysql.ResultSetHeaderPacket;
+import io.mycat.net.mysql.RowDataPacket;
+import io.mycat.util.CompressUtil;
+import io.mycat.util.RandomUtil;
+
+/**
+ * 模拟后端的一个连接，阻塞 IO，一个连接一个线程。
+ *
+ * 只解析压测需要的 SQL 形式：按主键等值/IN 查询、全表查询(支持主键倒序和 limit)、
+ * count(*)、insert/replace/update/delete、事务和 XA 命令、set/use/show variables，
+ * 一个 COM_QUERY 中用分号分隔的多条语句按 multi-results 依次返回。
+ *
+ * @author mycat
+ */
+public class SimulatorConnection implements Runnable {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SimulatorConnection.class);
+
+	private static final int SERVER_STATUS_AUTOCOMMIT = 0x0002;
+	private static final int SERVER_MORE_RESULTS_EXISTS = 0x0008;
+	private static final int SERVER_CAPABILITIES = Capabilities.CLIENT_LONG_PASSWORD
+			| Capabilities.CLIENT_FOUND_ROWS | Capabilities.CLIENT_LONG_FLAG
+			| Capabilities.CLIENT_CONNECT_WITH_DB | Capabilities.CLIENT_PROTOCOL_41
+			| Capabilities.CLIENT_TRANSACTIONS | Capabilities.CLIENT_SECURE_CONNECTION
+			| Capabilities.CLIENT_MULTI_STATEMENTS | Capabilities.CLIENT_MULTI_RESULTS
+			| Capabilities.CLIENT_PLUGIN_AUTH;
+	private static final byte UTF8_CHARSET_INDEX = 33;
+	// 输出缓冲中的块数超过该值时先写出，避免大结果集全部堆在内存中
+	private static final int FLUSH_BLOCK_COUNT = 16;
+	// 压缩帧压缩前的最大长度
+	private static final int COMPRESS_FRAME_LENGTH = 1024 * 1024;
+
+	private static final Pattern FROM = Pattern.compile("\\sfrom\\s+([`\\w.]+)", Pattern.CASE_INSENSITIVE);
+	private static final Pattern WHERE = Pattern.compile(
+			"\\swhere\\s+(.*?)(\\s+order\\s+by\\s|\\s+group\\s+by\\s|\\s+limit\\s|$)",
+			Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+	private static final Pattern ORDER_BY = Pattern.compile("\\sorder\\s+by\\s+([`\\w.]+)(\\s+(asc|desc))?",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern LIMIT = Pattern.compile(
+			"\\slimit\\s+(\\d+)(\\s*,\\s*(\\d+)|\\s+offset\\s+(\\d+))?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern INSERT_VALUES = Pattern.compile("\\svalues?\\s*\\(", Pattern.CASE_INSENSITIVE);
+	private static final Pattern USE = Pattern.compile("^use\\s+`?(\\w+)`?", Pattern.CASE_INSENSITIVE);
+	private static final Pattern VARIABLE = Pattern.compile("@@(?:session\\.|global\\.)?(\\w+)",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern ALIAS = Pattern.compile("^(.+?)\\s+(?:as\\s+)?`?(\\w+)`?$",
+			Pattern.CASE_INSENSITIVE);
+	private static final Pattern LIKE = Pattern.compile("\\slike\\s+'([^']*)'", Pattern.CASE_INSENSITIVE);
+
+	private final MySQLSimulator simulator;
+	private final Socket socket;
+	private final int id;
+	private DataInputStream in;
+	private OutputStream out;
+	private BufferArray output;
+	private byte packetId;
+	private String user;
+	private String database;
+	private boolean autocommit = true;
+	private boolean compressed;
+	private int compressSeq;
+
+	public SimulatorConnection(MySQLSimulator simulator, Socket socket, int id) {
+		this.simulator = simulator;
+		this.socket = socket;
+		this.id = id;
+	}
+
+	@Override
+	public void run() {
+		try {
+			in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 16 * 1024));
+			out = new BufferedOutputStream(socket.getOutputStream(), 16 * 1024);
+			output = simulator.getBufferPool().allocateArray();
+			handshake();
+			if (!authenticate()) {
+				return;
+			}
+			byte[] data;
+			while ((data = readPacket()) != null) {
+				if (!handleCommand(data)) {
+					break;
+				}
+			}
+		} catch (EOFException e) {
+			// 客户端关闭连接
+		} catch (IOException e) {
+			if (simulator.isRunning() && !socket.isClosed()) {
+				LOGGER.warn("simulator connection " + id + " error", e);
+			}
+		} finally {
+			simulator.connectionClosed(this);
+			close();
+		}
+	}
+
+	public void close() {
+		try {
+			socket.close();
+		} catch (IOException e) {
+			// ignore
+		}
+	}
+
+	private void handshake() throws IOException {
+		HandshakeV10Packet hs = new HandshakeV10Packet();
+		hs.packetId = 0;
+		hs.protocolVersion = 10;
+		hs.serverVersion = MySQLSimulator.SERVER_VERSION.getBytes();
+		hs.threadId = id;
+		hs.seed = RandomUtil.randomBytes(8);
+		hs.serverCapabilities = SERVER_CAPABILITIES | (simulator.isCompress() ? Capabilities.CLIENT_COMPRESS : 0);
+		hs.serverCharsetIndex = UTF8_CHARSET_INDEX;
+		hs.serverStatus = SERVER_STATUS_AUTOCOMMIT;
+		hs.restOfScrambleBuff = RandomUtil.randomBytes(12);
+		hs.write(output);
+		flush();
+	}
+
+	private boolean authenticate() throws IOException {
+		byte[] data = readPacket();
+		if (data == null) {
+			return false;
+		}
+		AuthPacket auth = new AuthPacket();
+		auth.read(data);
+		user = auth.user;
+		database = auth.database;
+		packetId = auth.packetId;
+		writeOk(0, SERVER_STATUS_AUTOCOMMIT);
+		flush();
+		if (simulator.isCompress() && (auth.clientFlags & Capabilities.CLIENT_COMPRESS) != 0) {
+			compressed = true;
+			in = new DataInputStream(new CompressedInputStream(in));
+		}
+		return true;
+	}
+
+	/**
+	 * @return false 表示客户端退出
+	 */
+	private boolean handleCommand(byte[] data) throws IOException {
+		packetId = 0;
+		byte command = data[4];
+		String arg = new String(data, 5, data.length - 5, "UTF-8");
+		switch (command) {
+		case MySQLPacket.COM_QUIT:
+			return false;
+		case MySQLPacket.COM_PING:
+			writeOk(0, status(false));
+			break;
+		case MySQLPacket.COM_INIT_DB:
+			database = arg.trim();
+			writeOk(0, status(false));
+			break;
+		case MySQLPacket.COM_QUERY:
+			delay();
+			simulator.queryExecuted();
+			List<String> statements = splitStatements(arg);
+			if (statements.isEmpty()) {
+				writeError(ErrorCode.ER_PARSE_ERROR, "Query was empty");
+			}
+			for (int i = 0; i < statements.size(); i++) {
+				boolean more = i < statements.size() - 1;
+				if (!query(statements.get(i), more)) {
+					// 出错后不再执行后面的语句，与 mysql 一致
+					break;
+				}
+			}
+			break;
+		default:
+			writeError(ErrorCode.ER_UNKNOWN_COM_ERROR, "Unknown command " + command);
+		}
+		flush();
+		return true;
+	}
+
+	private void delay() {
+		long micros = simulator.getLatencyMicros(database);
+		long jitter = simulator.getJitterMicros();
+		if (jitter > 0) {
+			micros += ThreadLocalRandom.current().nextLong(jitter);
+		}
+		if (micros > 0) {
+			LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+		}
+	}
+
+	/**
+	 * @return false 表示执行出错
+	 */
+	private boolean query(String sql, boolean more) throws IOException {
+		String lower = sql.toLowerCase();
+		if (lower.startsWith("select")) {
+			return select(sql, more);
+		} else if (lower.startsWith("insert") || lower.startsWith("replace")) {
+			writeOk(countValues(sql), status(more));
+		} else if (lower.startsWith("update") || lower.startsWith("delete")) {
+			writeOk(1, status(more));
+		} else if (lower.startsWith("show")) {
+			show(lower, more);
+		} else if (lower.startsWith("xa recover")) {
+			writeResultSet(new String[] { "formatID", "gtrid_length", "bqual_length", "data" },
+					new ArrayList<String[]>(), more);
+		} else if (lower.startsWith("use")) {
+			Matcher m = USE.matcher(sql);
+			if (m.find()) {
+				database = m.group(1);
+			}
+			writeOk(0, status(more));
+		} else {
+			if (lower.startsWith("set")) {
+				if (lower.replace(" ", "").contains("autocommit=0")) {
+					autocommit = false;
+				} else if (lower.replace(" ", "").contains("autocommit=1")) {
+					autocommit = true;
+				}
+			}
+			// begin/commit/rollback/xa/set/kill 等
+			writeOk(0, status(more));
+		}
+		return true;
+	}
+
+	private boolean select(String sql, boolean more) throws IOException {
+		Matcher from = FROM.matcher(sql);
+		if (!from.find()) {
+			return selectConstants(sql, more);
+		}
+		String tableName = from.group(1).replace("`", "");
+		int dot = tableName.lastIndexOf('.');
+		if (dot >= 0) {
+			tableName = tableName.substring(dot + 1);
+		}
+		SimulatedTable table = simulator.getTable(tableName);
+		if (table == null) {
+			writeError(ErrorCode.ER_NO_SUCH_TABLE, "Table '" + database + "." + tableName + "' doesn't exist");
+			return false;
+		}
+		SimulatedTable.Shard shard = table.getShard(database);
+
+		// 选择列
+		String selectList = sql.substring("select".length(), from.start()).trim();
+		boolean count = false;
+		List<Integer> columns = new ArrayList<Integer>();
+		List<String> labels = new ArrayList<String>();
+		for (String item : splitTopLevel(selectList, ',')) {
+			String expr = item.trim();
+			String label = expr;
+			Matcher alias = ALIAS.matcher(expr);
+			if (alias.find() && !expr.endsWith(")")) {
+				expr = alias.group(1);
+				label = alias.group(2);
+			}
+			String lowerExpr = expr.toLowerCase().replace(" ", "");
+			if (lowerExpr.startsWith("count(")) {
+				count = true;
+				labels.add(label);
+			} else if (lowerExpr.equals("*") || lowerExpr.endsWith(".*")) {
+				for (int i = 0; i < table.getColumns().size(); i++) {
+					columns.add(i);
+					labels.add(table.getColumns().get(i));
+				}
+			} else {
+				String column = stripQualifier(expr);
+				int index = table.indexOfColumn(column);
+				if (index < 0) {
+					writeError(ErrorCode.ER_BAD_FIELD_ERROR, "Unknown column '" + column + "' in 'field list'");
+					return false;
+				}
+				columns.add(index);
+				labels.add(label.equals(expr) ? column : label);
+			}
+		}
+
+		// 过滤条件只识别主键上的等值和 IN
+		List<Long> ids = keyValues(sql, table.getKeyColumn());
+		boolean desc = false;
+		Matcher order = ORDER_BY.matcher(sql);
+		if (order.find() && stripQualifier(order.group(1)).equalsIgnoreCase(table.getKeyColumn())) {
+			desc = "desc".equalsIgnoreCase(order.group(3));
+		}
+		long offset = 0;
+		long limit = Long.MAX_VALUE;
+		Matcher limitMatcher = LIMIT.matcher(sql);
+		if (limitMatcher.find()) {
+			if (limitMatcher.group(3) != null) {
+				offset = Long.parseLong(limitMatcher.group(1));
+				limit = Long.parseLong(limitMatcher.group(3));
+			} else {
+				limit = Long.parseLong(limitMatcher.group(1));
+				if (limitMatcher.group(4) != null) {
+					offset = Long.parseLong(limitMatcher.group(4));
+				}
+			}
+		}
+
+		if (count) {
+			long total;
+			if (ids != null) {
+				total = 0;
+				for (Long id : ids) {
+					if (shard.indexOf(id) >= 0) {
+						total++;
+					}
+				}
+			} else {
+				total = shard.getRows();
+			}
+			List<String[]> rows = new ArrayList<String[]>(1);
+			String[] row = new String[labels.size()];
+			for (int i = 0; i < row.length; i++) {
+				row[i] = String.valueOf(total);
+			}
+			rows.add(row);
+			writeResultSet(labels.toArray(new String[labels.size()]), rows, more);
+			return true;
+		}
+
+		int[] types = new int[columns.size()];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = table.getType(columns.get(i));
+		}
+		writeHeader(labels.toArray(new String[labels.size()]), types);
+		long skipped = 0;
+		long sent = 0;
+		if (ids != null) {
+			for (Long id : ids) {
+				if (sent >= limit) {
+					break;
+				}
+				if (shard.indexOf(id) < 0) {
+					continue;
+				}
+				if (skipped++ < offset) {
+					continue;
+				}
+				writeRow(table, columns, id);
+				sent++;
+			}
+		} else {
+			long rows = shard.getRows();
+			for (long i = offset; i < rows && sent < limit; i++) {
+				writeRow(table, columns, shard.idOf(desc ? rows - 1 - i : i));
+				sent++;
+			}
+		}
+		writeEof(status(more));
+		return true;
+	}
+
+	private void writeRow(SimulatedTable table, List<Integer> columns, long id) throws IOException {
+		RowDataPacket row = new RowDataPacket(columns.size());
+		for (Integer column : columns) {
+			row.add(table.value(column, id).getBytes());
+		}
+		row.packetId = ++packetId;
+		row.write(output);
+		if (output.getBlockCount() > FLUSH_BLOCK_COUNT) {
+			flush();
+		}
+	}
+
+	/**
+	 * 没有 from 的查询：心跳、select @@xxx、select user() 等
+	 */
+	private boolean selectConstants(String sql, boolean more) throws IOException {
+		String selectList = sql.substring("select".length()).trim();
+		List<String> items = splitTopLevel(selectList, ',');
+		String[] labels = new String[items.size()];
+		String[] row = new String[items.size()];
+		Map<String, String> variables = simulator.getVariables();
+		for (int i = 0; i < items.size(); i++) {
+			String expr = items.get(i).trim();
+			labels[i] = expr;
+			String lower = expr.toLowerCase();
+			Matcher var = VARIABLE.matcher(expr);
+			if (var.find()) {
+				row[i] = variables.get(var.group(1).toLowerCase());
+			} else if (lower.startsWith("user()") || lower.startsWith("current_user()")) {
+				row[i] = user + "@localhost";
+			} else if (lower.startsWith("database()")) {
+				row[i] = database;
+			} else if (lower.startsWith("connection_id()")) {
+				row[i] = String.valueOf(id);
+			} else if (lower.startsWith("last_insert_id()")) {
+				row[i] = "0";
+			} else if (expr.startsWith("'") && expr.endsWith("'") && expr.length() > 1) {
+				row[i] = expr.substring(1, expr.length() - 1);
+			} else {
+				row[i] = expr;
+			}
+		}
+		List<String[]> rows = new ArrayList<String[]>(1);
+		rows.add(row);
+		writeResultSet(labels, rows, more);
+		return true;
+	}
+
+	private void show(String lower, boolean more) throws IOException {
+		List<String[]> rows = new ArrayList<String[]>();
+		if (lower.startsWith("show variables") || lower.startsWith("show session variables")
+				|| lower.startsWith("show global variables")) {
+			Matcher like = LIKE.matcher(lower);
+			String prefix = like.find() ? like.group(1).replace("%", "") : null;
+			for (Map.Entry<String, String> entry : simulator.getVariables().entrySet()) {
+				if (prefix == null || entry.getKey().startsWith(prefix)) {
+					rows.add(new String[] { entry.getKey(), entry.getValue() });
+				}
+			}
+			writeResultSet(new String[] { "Variable_name", "Value" }, rows, more);
+		} else if (lower.startsWith("show tables")) {
+			for (String table : simulator.getTables().keySet()) {
+				rows.add(new String[] { table });
+			}
+			writeResultSet(new String[] { "Tables_in_" + database }, rows, more);
+		} else {
+			// 其它 show 语句返回空结果
+			writeResultSet(new String[] { "Value" }, rows, more);
+		}
+	}
+
+	/**
+	 * @return 主键上的等值或 IN 条件中的值，没有时返回 null
+	 */
+	static List<Long> keyValues(String sql, String keyColumn) {
+		Matcher where = WHERE.matcher(sql);
+		if (!where.find()) {
+			return null;
+		}
+		String condition = where.group(1);
+		String key = "(?:[`\\w]+\\.)?`?" + Pattern.quote(keyColumn) + "`?";
+		Matcher eq = Pattern.compile("(?:^|[\\s(])" + key + "\\s*=\\s*'?(-?\\d+)'?", Pattern.CASE_INSENSITIVE)
+				.matcher(condition);
+		if (eq.find()) {
+			List<Long> ids = new ArrayList<Long>(1);
+			ids.add(Long.parseLong(eq.group(1)));
+			return ids;
+		}
+		Matcher in = Pattern.compile("(?:^|[\\s(])" + key + "\\s+in\\s*\\(([^)]*)\\)", Pattern.CASE_INSENSITIVE)
+				.matcher(condition);
+		if (in.find()) {
+			List<Long> ids = new ArrayList<Long>();
+			for (String value : in.group(1).split(",")) {
+				String v = value.trim().replace("'", "");
+				if (!v.isEmpty()) {
+					ids.add(Long.parseLong(v));
+				}
+			}
+			return ids;
+		}
+		return null;
+	}
+
+	/**
+	 * insert ... values (...),(...) 中的行数
+	 */
+	static int countValues(String sql) {
+		Matcher values = INSERT_VALUES.matcher(sql);
+		if (!values.find()) {
+			// insert ... select 等
+			return 1;
+		}
+		int rows = 0;
+		int depth = 0;
+		char quote = 0;
+		for (int i = values.end() - 1; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (quote != 0) {
+				if (c == '\\') {
+					i++;
+				} else if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"') {
+				quote = c;
+			} else if (c == '(') {
+				if (depth++ == 0) {
+					rows++;
+				}
+			} else if (c == ')') {
+				depth--;
+			}
+		}
+		return rows;
+	}
+
+	/**
+	 * 按分号拆分多条语句，忽略引号中的分号
+	 */
+	static List<String> splitStatements(String sql) {
+		List<String> statements = new ArrayList<String>();
+		for (String statement : splitTopLevel(sql, ';')) {
+			String trimmed = statement.trim();
+			if (!trimmed.isEmpty()) {
+				statements.add(stripComment(trimmed));
+			}
+		}
+		return statements;
+	}
+
+	private static List<String> splitTopLevel(String sql, char separator) {
+		List<String> parts = new ArrayList<String>();
+		int depth = 0;
+		char quote = 0;
+		int start = 0;
+		for (int i = 0; i < sql.length(); i++) {
+			char c = sql.charAt(i);
+			if (quote != 0) {
+				if (c == '\\') {
+					i++;
+				} else if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '\'' || c == '"' || c == '`') {
+				quote = c;
+			} else if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == separator && depth == 0) {
+				parts.add(sql.substring(start, i));
+				start = i + 1;
+			}
+		}
+		parts.add(sql.substring(start));
+		return parts;
+	}
+
+	/**
+	 * 去掉语句开头的注释，如 jdbc 驱动加的 \/* mysql-connector-java *\/
+	 */
+	private static String stripComment(String sql) {
+		while (sql.startsWith("/*")) {
+			int end = sql.indexOf("*/");
+			if (end < 0) {
+				break;
+			}
+			sql = sql.substring(end + 2).trim();
+		}
+		return sql;
+	}
+
+	private static String stripQualifier(String column) {
+		String name = column.replace("`", "").trim();
+		int dot = name.lastIndexOf('.');
+		return dot >= 0 ? name.substring(dot + 1) : name;
+	}
+
+	private int status(boolean more) {
+		int status = autocommit ? SERVER_STATUS_AUTOCOMMIT : 0;
+		return more ? status | SERVER_MORE_RESULTS_EXISTS : status;
+	}
+
+	private void writeResultSet(String[] labels, List<String[]> rows, boolean more) throws IOException {
+		int[] types = new int[labels.length];
+		for (int i = 0; i < types.length; i++) {
+			types[i] = Fields.FIELD_TYPE_VAR_STRING;
+		}
+		writeHeader(labels, types);
+		for (String[] values : rows) {
+			RowDataPacket row = new RowDataPacket(values.length);
+			for (String value : values) {
+				row.add(value == null ? null : value.getBytes());
+			}
+			row.packetId = ++packetId;
+			row.write(output);
+		}
+		writeEof(status(more));
+	}
+
+	private void writeHeader(String[] labels, int[] types) {
+		ResultSetHeaderPacket header = PacketUtil.getHeader(labels.length);
+		header.packetId = ++packetId;
+		header.write(output);
+		for (int i = 0; i < labels.length; i++) {
+			FieldPacket field = PacketUtil.getField(labels[i], types[i]);
+			field.charsetIndex = UTF8_CHARSET_INDEX;
+			field.packetId = ++packetId;
+			field.write(output);
+		}
+		writeEof(status(false));
+	}
+
+	private void writeEof(int status) {
+		EOFPacket eof = new EOFPacket();
+		eof.status = status;
+		eof.packetId = ++packetId;
+		eof.write(output);
+	}
+
+	private void writeOk(long affectedRows, int status) {
+		OkPacket ok = new OkPacket();
+		ok.affectedRows = affectedRows;
+		ok.serverStatus = status;
+		ok.packetId = ++packetId;
+		ok.write(output);
+	}
+
+	private void writeError(int errno, String message) {
+		ErrorPacket err = new ErrorPacket();
+		err.errno = errno;
+		err.message = message.getBytes();
+		err.packetId = ++packetId;
+		output.write(err.writeToBytes());
+	}
+
+	private void flush() throws IOException {
+		byte[] data = output.writeToByteArrayAndRecycle();
+		if (compressed) {
+			writeCompressed(data);
+		} else {
+			out.write(data);
+		}
+		out.flush();
+		output = simulator.getBufferPool().allocateArray();
+	}
+
+	private void writeCompressed(byte[] data) throws IOException {
+		for (int offset = 0; offset < data.length; offset += COMPRESS_FRAME_LENGTH) {
+			byte[] raw = Arrays.copyOfRange(data, offset, Math.min(data.length, offset + COMPRESS_FRAME_LENGTH));
+			byte[] payload = raw.length < CompressUtil.MINI_LENGTH_TO_COMPRESS ? raw : CompressUtil.compress(raw);
+			int rawLength = payload == raw ? 0 : raw.length;
+			out.write(payload.length);
+			out.write(payload.length >>> 8);
+			out.write(payload.length >>> 16);
+			out.write(compressSeq);
+			out.write(rawLength);
+			out.write(rawLength >>> 8);
+			out.write(rawLength >>> 16);
+			out.write(payload);
+			compressSeq = (compressSeq + 1) & 0xff;
+		}
+	}
+
+	private static int readUB3(byte[] data, int offset) {
+		return (data[offset] & 0xff) | ((data[offset + 1] & 0xff) << 8) | ((data[offset + 2] & 0xff) << 16);
+	}
+
+	/**
+	 * 把压缩帧还原成普通的包字节流，回包的压缩序号接着最后收到的帧
+	 */
+	private final class CompressedInputStream extends InputStream {
+
+		private final DataInputStream raw;
+		private byte[] buffer = new byte[0];
+		private int position;
+
+		CompressedInputStream(DataInputStream raw) {
+			this.raw = raw;
+		}
+
+		@Override
+		public int read() throws IOException {
+			return fill() ? buffer[position++] & 0xff : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			if (!fill()) {
+				return -1;
+			}
+			int n = Math.min(len, buffer.length - position);
+			System.arraycopy(buffer, position, b, off, n);
+			position += n;
+			return n;
+		}
+
+		private boolean fill() throws IOException {
+			while (position == buffer.length) {
+				byte[] header = new byte[7];
+				try {
+					raw.readFully(header);
+				} catch (EOFException e) {
+					return false;
+				}
+				compressSeq = (header[3] + 1) & 0xff;
+				byte[] payload = new byte[readUB3(header, 0)];
+				raw.readFully(payload);
+				int rawLength = readUB3(header, 4);
+				buffer = rawLength == 0 ? payload : CompressUtil.decompress(payload, 0, payload.length);
+				position = 0;
+			}
+			return true;
+		}
+	}
+
+	private byte[] readPacket() throws IOException {
+		byte[] header = new byte[4];
+		try {
+			in.readFully(header);
+		} catch (EOFException e) {
+			return null;
+		}
+		int length = (header[0] & 0xff) | ((header[1] & 0xff) << 8) | ((header[2] & 0xff) << 16);
+		byte[] data = new byte[length + 4];
+		System.arraycopy(header, 0, data, 0, 4);
+		in.readFully(data, 4, length);
+		return data;
+	}
+}
@@ -0,0 +1,462 @@
+package io.mycat.performance.simulator;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.URL;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.mycat.MycatServer;
+import io.mycat.config.Fields;
+import io.mycat.config.model.SystemConfig;
+
+/**
+ * 端到端压测：进程内启动 {@link MySQLSimulator} 作为后端和 Mycat，通过 jdbc 压测
+ * 点查、跨分片排序合并、批量插入和 XA 提交，输出 QPS、p50/p99 延迟和 Mycat 的内存分配速率。
+ *
+ * Mycat 的配置从 classpath 根目录加载，需要把 src/test/resources/simulator 放在 classpath 最前面：
+ *
+ * <pre>
+ * mvn -DskipTests test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes/simulator:target/test-classes:target/classes:$(cat target/cp.txt) \
+ *     -Dsim.threads=32 -Dsim.seconds=30 io.mycat.performance.simulator.SimulatorLoadDriver
+ * </pre>
+ *
+ * 参数(-D)：
+ * <ul>
+ * <li>sim.embedded 是否在进程内启动 Mycat，默认 true；为 false 时压测 sim.url 指向的 Mycat</li>
+ * <li>sim.url/sim.user/sim.password Mycat 的连接信息，默认与 simulator/server.xml 一致</li>
+ * <li>sim.port 模拟后端端口，默认 13306，与 simulator/schema.xml 一致</li>
+ * <li>sim.shardRows 4 个分片各自的行数，逗号分隔，默认每个分片 10000 行</li>
+ * <li>sim.latencyMicros/sim.jitterMicros 后端每个请求的延迟，默认 100/0</li>
+ * <li>sim.compress 模拟后端是否支持压缩协议，默认 false，配合 dataHost 的 compress 属性使用</li>
+ * <li>sim.shardLatencyMicros 4 个分片各自的延迟，逗号分隔，用于模拟慢分片</li>
+ * <li>sim.scenarios 压测场景，默认 point,fanout,insert,xa，另有 merge(跨分片分组，压 merge 线程)</li>
+ * <li>sim.threads/sim.warmupSeconds/sim.seconds 并发数、预热和压测时长，默认 16/5/20</li>
+ * <li>sim.batchSize 批量插入每条语句的行数，默认 100</li>
+ * <li>sim.mergeLimit merge 场景的 limit，也是每个分片最多返回的行数，默认 10000</li>
+ * </ul>
+ *
+ * 内存分配速率按线程统计：模拟后端和压测线程之外的线程都算作 Mycat，
+ * 压测期间新建又退出的线程统计不到。
+ *
+ * @author mycat
+ */
+public class SimulatorLoadDriver {
+
+	static final String DRIVER_THREAD_PREFIX = "sim-driver-";
+	static final String TABLE = "sim_order";
+	static final int SHARD_COUNT = 4;
+
+	private final String url;
+	private final String user;
+	private final String password;
+	private final int threads;
+	private final int warmupSeconds;
+	private final int seconds;
+	private final int batchSize;
+	private final int mergeLimit;
+	private final long[] shardRows;
+	private final MySQLSimulator simulator;
+	private final AtomicLong nextInsertId = new AtomicLong(1000000000L);
+
+	public SimulatorLoadDriver(MySQLSimulator simulator, long[] shardRows) {
+		this.simulator = simulator;
+		this.shardRows = shardRows;
+		this.url = System.getProperty("sim.url", "jdbc:mysql://127.0.0.1:18066/SIMDB");
+		this.user = System.getProperty("sim.user", "sim");
+		this.password = System.getProperty("sim.password", "sim");
+		this.threads = Integer.getInteger("sim.threads", 16);
+		this.warmupSeconds = Integer.getInteger("sim.warmupSeconds", 5);
+		this.seconds = Integer.getInteger("sim.seconds", 20);
+		this.batchSize = Integer.getInteger("sim.batchSize", 100);
+		this.mergeLimit = Integer.getInteger("sim.mergeLimit", 10000);
+	}
+
+	/**
+	 * 与 simulator/rule.xml 一致，id % 4 决定分片，分片 i 中的第 k 行主键为 i + 4 * k
+	 */
+	public static SimulatedTable createTable(long[] shardRows) {
+		SimulatedTable table = new SimulatedTable(TABLE, "id")
+				.addColumn("user_id", Fields.FIELD_TYPE_LONG)
+				.addColumn("name", Fields.FIELD_TYPE_VAR_STRING)
+				.addColumn("fee", Fields.FIELD_TYPE_LONG);
+		for (int i = 0; i < shardRows.length; i++) {
+			table.setShard("sim" + i, shardRows[i], i, shardRows.length);
+		}
+		return table;
+	}
+
+	/**
+	 * 压测场景，每个线程一个连接
+	 */
+	abstract static class Scenario {
+		final String name;
+
+		Scenario(String name) {
+			this.name = name;
+		}
+
+		void prepare(Connection con) throws SQLException {
+		}
+
+		abstract void execute(Connection con, Statement stmt) throws SQLException;
+	}
+
+	Scenario createScenario(String name) {
+		if ("point".equals(name)) {
+			return new Scenario(name) {
+				@Override
+				void execute(Connection con, Statement stmt) throws SQLException {
+					consume(stmt.executeQuery("select * from " + TABLE + " where id = " + randomId()));
+				}
+			};
+		} else if ("fanout".equals(name)) {
+			return new Scenario(name) {
+				@Override
+				void execute(Connection con, Statement stmt) throws SQLException {
+					consume(stmt.executeQuery("select id, user_id, fee from " + TABLE + " order by id desc limit 100"));
+				}
+			};
+		} else if ("merge".equals(name)) {
+			return new Scenario(name) {
+				@Override
+				void execute(Connection con, Statement stmt) throws SQLException {
+					// 所有分片的行都要经过 merge 线程分组
+					consume(stmt.executeQuery("select user_id, fee from " + TABLE + " group by user_id, fee limit "
+							+ mergeLimit));
+				}
+			};
+		} else if ("insert".equals(name)) {
+			return new Scenario(name) {
+				@Override
+				void execute(Connection con, Statement stmt) throws SQLException {
+					stmt.executeUpdate(insertSql(batchSize));
+				}
+			};
+		} else if ("xa".equals(name)) {
+			return new Scenario(name) {
+				@Override
+				void prepare(Connection con) throws SQLException {
+					con.setAutoCommit(false);
+					con.createStatement().execute("set xa=on");
+				}
+
+				@Override
+				void execute(Connection con, Statement stmt) throws SQLException {
+					// 连续的两个主键落在不同分片上
+					stmt.executeUpdate(insertSql(1));
+					stmt.executeUpdate(insertSql(1));
+					con.commit();
+				}
+			};
+		}
+		throw new IllegalArgumentException("unknown scenario " + name);
+	}
+
+	private long randomId() {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int shard = random.nextInt(shardRows.length);
+		long rows = Math.max(1, shardRows[shard]);
+		return shard + shardRows.length * random.nextLong(rows);
+	}
+
+	private String insertSql(int rows) {
+		StringBuilder sb = new StringBuilder(64 + rows * 40);
+		sb.append("insert into ").append(TABLE).append(" (id, user_id, name, fee) values ");
+		for (int i = 0; i < rows; i++) {
+			long id = nextInsertId.getAndIncrement();
+			if (i > 0) {
+				sb.append(',');
+			}
+			sb.append('(').append(id).append(',').append(id % 1000).append(",'name-").append(id).append("',")
+					.append(id % 100).append(')');
+		}
+		return sb.toString();
+	}
+
+	private static void consume(ResultSet rs) throws SQLException {
+		try {
+			int columns = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				for (int i = 1; i <= columns; i++) {
+					rs.getString(i);
+				}
+			}
+		} finally {
+			rs.close();
+		}
+	}
+
+	Connection connect() throws SQLException {
+		return DriverManager.getConnection(url, user, password);
+	}
+
+	/**
+	 * 单个线程的延迟记录(微秒)
+	 */
+	static class LatencyRecorder {
+		private long[] values = new long[4096];
+		private int size;
+
+		void record(long micros) {
+			if (size == values.length) {
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = micros;
+		}
+
+		static long[] merge(List<LatencyRecorder> recorders) {
+			int total = 0;
+			for (LatencyRecorder recorder : recorders) {
+				total += recorder.size;
+			}
+			long[] all = new long[total];
+			int offset = 0;
+			for (LatencyRecorder recorder : recorders) {
+				System.arraycopy(recorder.values, 0, all, offset, recorder.size);
+				offset += recorder.size;
+			}
+			Arrays.sort(all);
+			return all;
+		}
+
+		static long percentile(long[] sorted, double percentile) {
+			if (sorted.length == 0) {
+				return 0;
+			}
+			int index = (int) Math.ceil(percentile * sorted.length) - 1;
+			return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+		}
+	}
+
+	/**
+	 * 按线程名统计的已分配字节数：[Mycat, 模拟后端, 压测线程]
+	 */
+	static long[] allocatedBytes() {
+		long[] result = new long[3];
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+			Arrays.fill(result, -1);
+			return result;
+		}
+		com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+		if (!sunBean.isThreadAllocatedMemorySupported() || !sunBean.isThreadAllocatedMemoryEnabled()) {
+			Arrays.fill(result, -1);
+			return result;
+		}
+		long[] ids = bean.getAllThreadIds();
+		long[] allocated = sunBean.getThreadAllocatedBytes(ids);
+		ThreadInfo[] infos = bean.getThreadInfo(ids);
+		for (int i = 0; i < ids.length; i++) {
+			if (infos[i] == null || allocated[i] < 0) {
+				continue;
+			}
+			String name = infos[i].getThreadName();
+			if (name.startsWith(MySQLSimulator.THREAD_PREFIX)) {
+				result[1] += allocated[i];
+			} else if (name.startsWith(DRIVER_THREAD_PREFIX)) {
+				result[2] += allocated[i];
+			} else {
+				result[0] += allocated[i];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 运行一个场景：先预热，再统计 seconds 秒内的结果
+	 */
+	public String run(final Scenario scenario) throws Exception {
+		final CountDownLatch ready = new CountDownLatch(threads);
+		final CountDownLatch done = new CountDownLatch(threads);
+		final List<LatencyRecorder> recorders = new ArrayList<LatencyRecorder>();
+		final AtomicLong errors = new AtomicLong();
+		final Control control = new Control();
+		List<Thread> workers = new ArrayList<Thread>();
+		for (int i = 0; i < threads; i++) {
+			final LatencyRecorder recorder = new LatencyRecorder();
+			recorders.add(recorder);
+			Thread worker = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					Connection con = null;
+					boolean started = false;
+					try {
+						con = connect();
+						scenario.prepare(con);
+						Statement stmt = con.createStatement();
+						started = true;
+						ready.countDown();
+						while (!control.stopped) {
+							long start = System.nanoTime();
+							try {
+								scenario.execute(con, stmt);
+							} catch (SQLException e) {
+								errors.incrementAndGet();
+								if (!con.getAutoCommit()) {
+									con.rollback();
+								}
+								continue;
+							}
+							if (control.measuring) {
+								recorder.record((System.nanoTime() - start) / 1000);
+							}
+						}
+					} catch (SQLException e) {
+						errors.incrementAndGet();
+						System.err.println(scenario.name + " worker failed: " + e);
+						if (!started) {
+							ready.countDown();
+						}
+					} finally {
+						if (con != null) {
+							try {
+								con.close();
+							} catch (SQLException e) {
+								// ignore
+							}
+						}
+						done.countDown();
+					}
+				}
+			}, DRIVER_THREAD_PREFIX + scenario.name + "-" + i);
+			workers.add(worker);
+			worker.start();
+		}
+		ready.await();
+		Thread.sleep(warmupSeconds * 1000L);
+
+		long backendQueries = simulator == null ? 0 : simulator.getQueryCount();
+		long[] allocatedBefore = allocatedBytes();
+		long start = System.nanoTime();
+		control.measuring = true;
+		Thread.sleep(seconds * 1000L);
+		control.measuring = false;
+		long elapsed = System.nanoTime() - start;
+		long[] allocatedAfter = allocatedBytes();
+		backendQueries = simulator == null ? 0 : simulator.getQueryCount() - backendQueries;
+		control.stopped = true;
+		done.await();
+
+		long[] latencies = LatencyRecorder.merge(recorders);
+		double elapsedSeconds = elapsed / 1e9;
+		long ops = latencies.length;
+		long mycatAllocated = allocatedAfter[0] < 0 ? -1 : allocatedAfter[0] - allocatedBefore[0];
+		return String.format("%-8s %7d %10d %10.1f %9d %9d %12.1f %12d %9.2f %7d", scenario.name, threads, ops,
+				ops / elapsedSeconds, LatencyRecorder.percentile(latencies, 0.5),
+				LatencyRecorder.percentile(latencies, 0.99),
+				mycatAllocated < 0 ? -1.0 : mycatAllocated / elapsedSeconds / (1024 * 1024),
+				mycatAllocated < 0 || ops == 0 ? -1 : mycatAllocated / ops,
+				ops == 0 ? 0.0 : (double) backendQueries / ops, errors.get());
+	}
+
+	private static class Control {
+		volatile boolean measuring;
+		volatile boolean stopped;
+	}
+
+	static long[] parseLongs(String value, int count, long defaultValue) {
+		long[] result = new long[count];
+		Arrays.fill(result, defaultValue);
+		if (value != null && !value.trim().isEmpty()) {
+			String[] items = value.split(",");
+			for (int i = 0; i < items.length && i < count; i++) {
+				result[i] = Long.parseLong(items[i].trim());
+			}
+		}
+		return result;
+	}
+
+	static void startMycat() throws Exception {
+		prepareMycatHome();
+		MycatServer.getInstance().startup();
+	}
+
+	/**
+	 * 检查 classpath 并设置 MYCAT_HOME，MycatServer 初始化时读取，需要在第一次访问之前调用
+	 */
+	static void prepareMycatHome() {
+		URL schema = SimulatorLoadDriver.class.getResource("/schema.xml");
+		if (schema == null || !schema.getPath().contains("/simulator/")) {
+			throw new IllegalStateException("simulator schema.xml is not first on classpath, found " + schema
+					+ ", put src/test/resources/simulator (or target/test-classes/simulator) before other entries");
+		}
+		File home = new File(System.getProperty("sim.home", "target/simulator-home")).getAbsoluteFile();
+		new File(home, "conf").mkdirs();
+		new File(home, "logs").mkdirs();
+		System.setProperty(SystemConfig.SYS_HOME, home.getPath());
+	}
+
+	private void awaitReady() throws Exception {
+		long deadline = System.currentTimeMillis() + 60000L;
+		while (true) {
+			Connection con = null;
+			try {
+				con = connect();
+				consume(con.createStatement().executeQuery("select count(*) from " + TABLE));
+				return;
+			} catch (SQLException e) {
+				if (System.currentTimeMillis() > deadline) {
+					throw e;
+				}
+				Thread.sleep(500);
+			} finally {
+				if (con != null) {
+					con.close();
+				}
+			}
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		long[] shardRows = parseLongs(System.getProperty("sim.shardRows"), SHARD_COUNT, 10000);
+		long[] shardLatency = parseLongs(System.getProperty("sim.shardLatencyMicros"), SHARD_COUNT, -1);
+		MySQLSimulator simulator = new MySQLSimulator(Integer.getInteger("sim.port", 13306));
+		simulator.addTable(createTable(shardRows));
+		simulator.setLatencyMicros(Long.getLong("sim.latencyMicros", 100L));
+		simulator.setJitterMicros(Long.getLong("sim.jitterMicros", 0L));
+		simulator.setCompress(Boolean.getBoolean("sim.compress"));
+		for (int i = 0; i < SHARD_COUNT; i++) {
+			if (shardLatency[i] >= 0) {
+				simulator.setLatencyMicros("sim" + i, shardLatency[i]);
+			}
+		}
+		simulator.start();
+
+		Class.forName("com.mysql.jdbc.Driver");
+		if (Boolean.parseBoolean(System.getProperty("sim.embedded", "true"))) {
+			startMycat();
+		}
+		SimulatorLoadDriver driver = new SimulatorLoadDriver(simulator, shardRows);
+		driver.awaitReady();
+
+		String header = String.format("%-8s %7s %10s %10s %9s %9s %12s %12s %9s %7s", "scenario", "threads",
+				"ops", "qps", "p50(us)", "p99(us)", "alloc(MB/s)", "alloc/op(B)", "backend/op", "errors");
+		List<String> results = new ArrayList<String>();
+		for (String name : System.getProperty("sim.scenarios", "point,fanout,insert,xa").split(",")) {
+			String result = driver.run(driver.createScenario(name.trim()));
+			System.out.println(header);
+			System.out.println(result);
+			results.add(result);
+		}
+		System.out.println();
+		System.out.println(header);
+		for (String result : results) {
+			System.out.println(result);
+		}
+		simulator.stop();
+		System.exit(0);
+	}
+}
@@ -0,0 +1,126 @@
+package io.mycat.route.impl.middlerResultStrategy;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.druid.sql.ast.SQLExpr;
+import com.alibaba.druid.sql.ast.SQLStatement;
+import com.alibaba.druid.sql.ast.expr.SQLCharExpr;
+import com.alibaba.druid.sql.ast.expr.SQLInSubQueryExpr;
+import com.alibaba.druid.sql.ast.statement.SQLSelect;
+import com.alibaba.druid.sql.dialect.mysql.parser.MySqlStatementParser;
+import com.alibaba.druid.sql.dialect.mysql.visitor.MySqlASTVisitorAdapter;
+
+import io.mycat.MycatServer;
+import io.mycat.SimpleCachePool;
+import io.mycat.config.loader.SchemaLoader;
+import io.mycat.config.loader.xml.XMLSchemaLoader;
+import io.mycat.config.model.SchemaConfig;
+import io.mycat.config.model.SystemConfig;
+import io.mycat.route.RouteResultset;
+import io.mycat.route.RouteResultsetNode;
+import io.mycat.route.RouteStrategy;
+import io.mycat.route.factory.RouteStrategyFactory;
+import io.mycat.server.parser.ServerParse;
+
+/**
+ * @author mycat
+ */
+public class InSubQueryShardRouterTest {
+	private final SchemaConfig schema;
+
+	public InSubQueryShardRouterTest() {
+		SchemaLoader schemaLoader = new XMLSchemaLoader("/route/schema.xml", "/route/rule.xml");
+		schema = schemaLoader.getSchemas().get("TESTDB");
+		MycatServer.getInstance().getConfig().getSchemas().putAll(schemaLoader.getSchemas());
+		RouteStrategyFactory.init();
+	}
+
+	private static SQLSelect subQuery(SQLStatement stmt) {
+		final SQLSelect[] found = new SQLSelect[1];
+		stmt.accept(new MySqlASTVisitorAdapter() {
+			@Override
+			public boolean visit(SQLInSubQueryExpr x) {
+				found[0] = x.getSubQuery();
+				return true;
+			}
+		});
+		return found[0];
+	}
+
+	private static List<SQLExpr> values(String... values) {
+		List<SQLExpr> list = new ArrayList<SQLExpr>();
+		for (String v : values) {
+			list.add(new SQLCharExpr(v));
+		}
+		return list;
+	}
+
+	private InSubQueryShardRouter create(String sql, List<SQLExpr> param) {
+		SQLStatement stmt = new MySqlStatementParser(sql).parseStatement();
+		return InSubQueryShardRouter.create(schema, stmt, subQuery(stmt), param, null);
+	}
+
+	@Test
+	public void testNotPrunable() {
+		List<SQLExpr> param = values("1", "2500000");
+		Assert.assertNull(create("select * from travelrecord where id in (select id from company) or fee > 1", param));
+		Assert.assertNull(create("select * from travelrecord where id not in (select id from company)", param));
+		Assert.assertNull(create("select * from travelrecord where fee in (select id from company)", param));
+		Assert.assertNull(create("select * from company where id in (select id from travelrecord)", param));
+		Assert.assertNotNull(create("select * from travelrecord t where fee > 1 and t.id in (select id from company)", param));
+	}
+
+	@Test
+	public void testPerNodeInList() throws Exception {
+		String sql = "select * from travelrecord where id in (select id from company) and fee > 1 order by id limit 10";
+		SQLStatement stmt = new MySqlStatementParser(sql).parseStatement();
+		SQLSelect sqlselect = subQuery(stmt);
+		List<SQLExpr> param = values("1", "2", "2500000", null, "3");
+		InSubQueryShardRouter router = InSubQueryShardRouter.create(schema, stmt, sqlselect, param, null);
+		Assert.assertEquals(2, router.getNodeCount());
+		Assert.assertEquals(2, router.getRepresentatives().size());
+
+		String routeSql = new InSubQueryResultHandler().dohandler(stmt, sqlselect, sqlselect.getParent(),
+				new ArrayList<SQLExpr>(router.getRepresentatives()));
+		RouteStrategy routeStrategy = RouteStrategyFactory.getRouteStrategy("druidparser");
+		RouteResultset rrs = routeStrategy.route(new SystemConfig(), schema, ServerParse.SELECT, routeSql,
+				null, null, new SimpleCachePool());
+		Assert.assertTrue(router.rewrite(rrs));
+
+		Map<String, String> statements = new HashMap<String, String>();
+		for (RouteResultsetNode node : rrs.getNodes()) {
+			statements.put(node.getName(), node.getStatement().replaceAll("\\s+", " "));
+		}
+		Assert.assertEquals(2, statements.size());
+		Assert.assertTrue(statements.get("dn1"), statements.get("dn1").contains("IN ('1', '2', '3')"));
+		Assert.assertTrue(statements.get("dn2"), statements.get("dn2").contains("IN ('2500000')"));
+		Assert.assertTrue(statements.get("dn1").contains("LIMIT 10"));
+	}
+
+	@Test
+	public void testParallelChunks() {
+		List<SQLExpr> param = new ArrayList<SQLExpr>();
+		int count = InSubQueryShardRouter.PARALLEL_CHUNK_SIZE * 3 + 7;
+		for (int i = 0; i < count; i++) {
+			param.add(new SQLCharExpr(String.valueOf(i * 100L)));
+		}
+		SQLStatement stmt = new MySqlStatementParser(
+				"select * from travelrecord where id in (select id from company)").parseStatement();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			InSubQueryShardRouter router = InSubQueryShardRouter.create(schema, stmt, subQuery(stmt), param, executor);
+			// 0 - 200M 和 200M - 300M，M 为 1 万
+			Assert.assertEquals(2, router.getNodeCount());
+		} finally {
+			executor.shutdown();
+		}
+	}
+}
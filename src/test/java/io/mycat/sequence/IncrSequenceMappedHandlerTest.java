@@ -0,0 +1,151 @@
+package io.mycat.sequence;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.mycat.route.sequence.handler.IncrSequenceMappedHandler;
+import io.mycat.route.sequence.handler.MappedSequenceStore;
+
+public class IncrSequenceMappedHandlerTest {
+
+	private File dir;
+	private File storeFile;
+	private File propsFile;
+
+	@Before
+	public void setUp() throws IOException {
+		dir = File.createTempFile("mycat-seq", "");
+		dir.delete();
+		dir.mkdirs();
+		storeFile = new File(dir, IncrSequenceMappedHandler.STORE_FILE_NAME);
+		propsFile = new File(dir, "sequence_conf.properties");
+		Properties props = new Properties();
+		props.setProperty("GLOBAL.HISIDS", "");
+		props.setProperty("GLOBAL.MINID", "10001");
+		props.setProperty("GLOBAL.MAXID", "20000");
+		props.setProperty("GLOBAL.CURID", "10000");
+		props.setProperty("ORDER.MINID", "1001");
+		props.setProperty("ORDER.MAXID", "2000");
+		props.setProperty("ORDER.CURID", "1500");
+		OutputStream out = new FileOutputStream(propsFile);
+		props.store(out, "");
+		out.close();
+	}
+
+	@After
+	public void tearDown() {
+		storeFile.delete();
+		propsFile.delete();
+		dir.delete();
+	}
+
+	@Test
+	public void testImportAndRestart() throws IOException {
+		IncrSequenceMappedHandler handler = new IncrSequenceMappedHandler(storeFile, propsFile, 100);
+		Assert.assertEquals(10001, handler.nextId("GLOBAL"));
+		Assert.assertEquals(1501, handler.nextId("ORDER"));
+		long[] ids = handler.nextIds("GLOBAL", 250);
+		Assert.assertEquals(10002, ids[0]);
+		Assert.assertEquals(10251, ids[249]);
+		handler.close();
+
+		// 重启后从高水位之后继续，properties 中的值不再生效
+		handler = new IncrSequenceMappedHandler(storeFile, propsFile, 100);
+		long next = handler.nextId("GLOBAL");
+		Assert.assertTrue(next > 10251);
+		Assert.assertTrue(next <= 10251 + 100 + 1);
+		Assert.assertTrue(handler.nextId("ORDER") > 1501);
+		handler.close();
+
+		handler = new IncrSequenceMappedHandler(storeFile, propsFile, 100);
+		try {
+			handler.nextId("NOT_EXISTS");
+			Assert.fail();
+		} catch (RuntimeException e) {
+			Assert.assertTrue(e.getMessage().contains("NOT_EXISTS"));
+		} finally {
+			handler.close();
+		}
+	}
+
+	@Test
+	public void testTornWrite() throws IOException {
+		MappedSequenceStore store = new MappedSequenceStore(storeFile, 4);
+		store.put("GLOBAL", 100);
+		store.put("GLOBAL", 200);
+		store.put("ORDER", 50);
+		store.close();
+
+		// 第 2 代写在副本 0(偏移 32)，破坏后回退到第 1 代
+		RandomAccessFile raf = new RandomAccessFile(storeFile, "rw");
+		raf.seek(32 + 8);
+		raf.writeLong(300);
+		raf.close();
+
+		store = new MappedSequenceStore(storeFile, 4);
+		Assert.assertEquals(Long.valueOf(100), store.get("GLOBAL"));
+		Assert.assertEquals(Long.valueOf(50), store.get("ORDER"));
+		Assert.assertEquals(2, store.size());
+		Assert.assertEquals(4, store.getCapacity());
+		// 下一次写入覆盖损坏的副本
+		store.put("GLOBAL", 400);
+		store.close();
+
+		store = new MappedSequenceStore(storeFile);
+		Assert.assertEquals(Long.valueOf(400), store.get("GLOBAL"));
+		Assert.assertEquals(4, store.getCapacity());
+		store.put("A", 1);
+		store.put("B", 1);
+		try {
+			store.put("C", 1);
+			Assert.fail();
+		} catch (IOException e) {
+			Assert.assertTrue(e.getMessage().contains("full"));
+		} finally {
+			store.close();
+		}
+	}
+
+	@Test
+	public void testConcurrent() throws Exception {
+		final IncrSequenceMappedHandler handler = new IncrSequenceMappedHandler(storeFile, propsFile, 1000);
+		final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		final int threadCount = 8;
+		final int loop = 2000;
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int k = 0; k < loop; k++) {
+						ids.add(handler.nextId("GLOBAL"));
+						for (long id : handler.nextIds("GLOBAL", 7)) {
+							ids.add(id);
+						}
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(threadCount * loop * 8, ids.size());
+		// 连续分配，没有空洞
+		Assert.assertEquals(10001L, (long) Collections.min(ids));
+		Assert.assertEquals(10000L + threadCount * loop * 8, (long) Collections.max(ids));
+		handler.close();
+	}
+}
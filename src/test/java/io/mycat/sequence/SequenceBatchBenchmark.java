@@ -0,0 +1,116 @@
+package io.mycat.sequence;
+
+import java.util.Properties;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.curator.test.TestingServer;
+
+import io.mycat.config.model.SystemConfig;
+import io.mycat.route.sequence.handler.DistributedSequenceHandler;
+import io.mycat.route.sequence.handler.IncrSequenceMappedHandler;
+import io.mycat.route.sequence.handler.IncrSequencePropHandler;
+import io.mycat.route.sequence.handler.IncrSequenceTimeHandler;
+import io.mycat.route.sequence.handler.IncrSequenceZKHandler;
+import io.mycat.route.sequence.handler.SequenceHandler;
+import io.mycat.route.sequence.handler.SnowflakeIdSequenceHandler;
+import io.mycat.route.util.PropertiesUtil;
+
+/**
+ * 各 SequenceHandler 逐条 nextId 与批量 nextIds 的多线程吞吐对比，模拟多个连接同时执行批量 insert。
+ * 数据库方式(IncrSequenceMySQLHandler)依赖 mycat 数据节点及 mycat_seq_nextval 函数，不在此列。
+ *
+ * 参数：线程数 每批行数 每线程批数，默认 8 1000 50
+ */
+public class SequenceBatchBenchmark {
+
+	private static int threads = 8;
+	private static int batch = 1000;
+	private static int loop = 50;
+
+	/**
+	 * @param serialized 本地 properties 文件方式不是线程安全的，与 DruidSequenceHandler 一样按序列加锁
+	 */
+	private static void bench(String name, final SequenceHandler handler, final String seq, boolean serialized)
+			throws InterruptedException {
+		final ReentrantLock lock = serialized ? new ReentrantLock() : null;
+		// 预热
+		run(handler, seq, lock, false, 1);
+		long single = run(handler, seq, lock, false, loop);
+		long batched = run(handler, seq, lock, true, loop);
+		long total = (long) threads * batch * loop;
+		System.out.println(String.format("%-24s nextId %10d ids/s   nextIds %10d ids/s   x%.1f", name,
+				total * 1000000000L / single, total * 1000000000L / batched, single * 1.0 / batched));
+	}
+
+	private static long run(final SequenceHandler handler, final String seq, final ReentrantLock lock,
+			final boolean batched, final int loop) throws InterruptedException {
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int k = 0; k < loop; k++) {
+						if (lock != null) {
+							lock.lock();
+						}
+						try {
+							if (batched) {
+								handler.nextIds(seq, batch);
+							} else {
+								for (int j = 0; j < batch; j++) {
+									handler.nextId(seq);
+								}
+							}
+						} finally {
+							if (lock != null) {
+								lock.unlock();
+							}
+						}
+					}
+				}
+			};
+		}
+		long start = System.nanoTime();
+		for (Thread worker : workers) {
+			worker.start();
+		}
+		for (Thread worker : workers) {
+			worker.join();
+		}
+		return System.nanoTime() - start;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length > 0) {
+			threads = Integer.parseInt(args[0]);
+		}
+		if (args.length > 1) {
+			batch = Integer.parseInt(args[1]);
+		}
+		if (args.length > 2) {
+			loop = Integer.parseInt(args[2]);
+		}
+		System.out.println("threads=" + threads + " batch=" + batch + " loop=" + loop);
+
+		bench("localfile_properties", IncrSequencePropHandler.getInstance(), "MY1", true);
+		bench("localfile_mapped", IncrSequenceMappedHandler.getInstance(), "MY1", false);
+		bench("localtime", IncrSequenceTimeHandler.getInstance(), "T", false);
+		bench("snowflake", new SnowflakeIdSequenceHandler(), "T", false);
+
+		DistributedSequenceHandler distributed = new DistributedSequenceHandler(new SystemConfig());
+		distributed.load();
+		bench("zk_distributed", distributed, "T", false);
+
+		TestingServer testingServer = new TestingServer();
+		testingServer.start();
+		try {
+			IncrSequenceZKHandler zk = new IncrSequenceZKHandler();
+			Properties props = PropertiesUtil.loadProps("sequence_conf.properties");
+			zk.initializeZK(props, testingServer.getConnectString());
+			bench("zk_global_increment", zk, "GLOBAL", false);
+		} finally {
+			testingServer.close();
+		}
+		System.exit(0);
+	}
+}
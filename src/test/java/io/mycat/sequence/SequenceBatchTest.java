@@ -0,0 +1,136 @@
+package io.mycat.sequence;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.mycat.config.model.SystemConfig;
+import io.mycat.route.parser.druid.DruidSequenceHandler;
+import io.mycat.route.sequence.handler.IncrSequenceHandler;
+import io.mycat.route.sequence.handler.IncrSequenceTimeHandler;
+import io.mycat.route.sequence.handler.SequenceHandler;
+import io.mycat.route.sequence.handler.SnowflakeIdSequenceHandler;
+
+/**
+ * 批量预留 id(nextIds)的正确性测试，性能对比见 SequenceBatchBenchmark
+ */
+public class SequenceBatchTest {
+
+	/**
+	 * 内存中的递增序列，号段规则与本地文件方式相同
+	 */
+	static class MemoryIncrSequenceHandler extends IncrSequenceHandler {
+		final Map<String, String> values = new HashMap<String, String>();
+		int updates;
+		int fetches;
+
+		MemoryIncrSequenceHandler(long min, long max, long cur) {
+			values.put("T" + KEY_MIN_NAME, String.valueOf(min));
+			values.put("T" + KEY_MAX_NAME, String.valueOf(max));
+			values.put("T" + KEY_CUR_NAME, String.valueOf(cur));
+		}
+
+		@Override
+		public Map<String, String> getParaValMap(String prefixName) {
+			return new HashMap<String, String>(values);
+		}
+
+		@Override
+		public Boolean updateCURIDVal(String prefixName, Long val) {
+			updates++;
+			values.put(prefixName + KEY_CUR_NAME, String.valueOf(val));
+			return true;
+		}
+
+		@Override
+		public Boolean fetchNextPeriod(String prefixName) {
+			fetches++;
+			long min = Long.parseLong(values.get(prefixName + KEY_MIN_NAME));
+			long max = Long.parseLong(values.get(prefixName + KEY_MAX_NAME));
+			values.put(prefixName + KEY_MIN_NAME, String.valueOf(max + 1));
+			values.put(prefixName + KEY_MAX_NAME, String.valueOf(max - min + max + 1));
+			values.put(prefixName + KEY_CUR_NAME, String.valueOf(max));
+			return true;
+		}
+	}
+
+	@Test
+	public void testIncrNextIds() {
+		MemoryIncrSequenceHandler handler = new MemoryIncrSequenceHandler(1001, 2000, 1000);
+		long[] ids = handler.nextIds("T", 2500);
+		for (int i = 0; i < ids.length; i++) {
+			Assert.assertEquals(1001 + i, ids[i]);
+		}
+		// 跨两个号段，每段只写一次 CURID
+		Assert.assertEquals(2, handler.fetches);
+		Assert.assertEquals(3, handler.updates);
+		Assert.assertEquals(3501, handler.nextId("T"));
+	}
+
+	/**
+	 * 多线程批量取 id，不能重复，且单批内递增
+	 */
+	private static void checkConcurrentNextIds(final SequenceHandler handler) throws InterruptedException {
+		final Set<Long> ids = Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+		final int threadCount = 8;
+		final int loop = 50;
+		final int batch = 1000;
+		final boolean[] sorted = { true };
+		Thread[] threads = new Thread[threadCount];
+		for (int i = 0; i < threadCount; i++) {
+			threads[i] = new Thread() {
+				@Override
+				public void run() {
+					for (int k = 0; k < loop; k++) {
+						long[] values = handler.nextIds("T", batch);
+						for (int j = 0; j < values.length; j++) {
+							ids.add(values[j]);
+							if (j > 0 && values[j] <= values[j - 1]) {
+								sorted[0] = false;
+							}
+						}
+						ids.add(handler.nextId("T"));
+					}
+				}
+			};
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		Assert.assertEquals(threadCount * loop * (batch + 1), ids.size());
+		Assert.assertTrue(sorted[0]);
+	}
+
+	@Test
+	public void testSnowflakeNextIds() throws InterruptedException {
+		checkConcurrentNextIds(new SnowflakeIdSequenceHandler());
+	}
+
+	@Test
+	public void testTimeNextIds() throws InterruptedException {
+		checkConcurrentNextIds(IncrSequenceTimeHandler.getInstance());
+	}
+
+	@Test
+	public void testReplaceSequence() {
+		DruidSequenceHandler handler = new DruidSequenceHandler(SystemConfig.SEQUENCEHANDLER_LOCAL_TIME);
+		String sql = handler.replaceSequence("insert into t(id,name) values(next value for MYCATSEQ_T,'a'),"
+				+ "(next  value for mycatseq_t ,'next value'),(NEXT VALUE FOR MYCATSEQ_T,'c')");
+		Assert.assertFalse(sql.toUpperCase().contains("MYCATSEQ_"));
+		String[] rows = sql.substring(sql.indexOf("values(") + "values(".length()).split("\\),\\(");
+		Assert.assertEquals(3, rows.length);
+		long last = 0;
+		for (String row : rows) {
+			long id = Long.parseLong(row.substring(0, row.indexOf(',')).trim());
+			Assert.assertTrue(id > last);
+			last = id;
+		}
+		Assert.assertTrue(sql.endsWith(",'c')"));
+	}
+}
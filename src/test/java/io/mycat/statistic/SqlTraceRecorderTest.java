@@ -0,0 +1,75 @@
+package io.mycat.statistic;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SqlTraceRecorderTest {
+
+    private static long[] stamps(long... micros) {
+        long[] stamps = new long[SqlTrace.STAGE_COUNT];
+        for (int i = 0; i < micros.length; i++) {
+            stamps[i] = micros[i] * 1000;
+        }
+        return stamps;
+    }
+
+    @Test
+    public void testStageDurations() {
+        SqlTraceRecorder recorder = new SqlTraceRecorder(4);
+        // 跳过 SYNC 和 MERGE
+        long[] stamps = stamps(1000, 1010, 1030, 1100, 0, 1400, 1900, 0, 1950);
+        recorder.record(1L, "test", "select 1", 2, stamps);
+
+        SqlTraceRecorder.Record record = recorder.getRecords().get(0);
+        Assert.assertEquals(950, record.getTotalMicros());
+        Assert.assertEquals(10, record.micros[SqlTrace.PARSE]);
+        Assert.assertEquals(20, record.micros[SqlTrace.ROUTE]);
+        Assert.assertEquals(70, record.micros[SqlTrace.CONNECTION]);
+        Assert.assertEquals(-1, record.micros[SqlTrace.SYNC]);
+        Assert.assertEquals(300, record.micros[SqlTrace.FIRST_BYTE]);
+        Assert.assertEquals(500, record.micros[SqlTrace.BACKEND_END]);
+        Assert.assertEquals(-1, record.micros[SqlTrace.MERGE]);
+        Assert.assertEquals(50, record.micros[SqlTrace.WRITE]);
+        Assert.assertEquals(2, record.nodes);
+
+        Assert.assertEquals(0, recorder.getCount(SqlTrace.SYNC));
+        Assert.assertEquals(1, recorder.getCount(SqlTraceRecorder.TOTAL));
+        Assert.assertEquals(950, recorder.getMax(SqlTraceRecorder.TOTAL));
+    }
+
+    @Test
+    public void testRingBuffer() {
+        SqlTraceRecorder recorder = new SqlTraceRecorder(3);
+        for (int i = 0; i < 5; i++) {
+            recorder.record(i, "test", "sql" + i, 1, stamps(0, 0, 0, 0, 0, 0, 0, 0, 10));
+        }
+        List<SqlTraceRecorder.Record> records = recorder.getRecords();
+        Assert.assertEquals(3, records.size());
+        Assert.assertEquals("sql4", records.get(0).sql);
+        Assert.assertEquals("sql2", records.get(2).sql);
+
+        recorder.clear();
+        Assert.assertTrue(recorder.getRecords().isEmpty());
+        Assert.assertEquals(0, recorder.getCount(SqlTraceRecorder.TOTAL));
+    }
+
+    @Test
+    public void testPercentile() {
+        SqlTraceRecorder recorder = new SqlTraceRecorder(16);
+        for (int i = 1; i <= 100; i++) {
+            // 总耗时 i 毫秒
+            recorder.record(i, "test", "sql", 1, stamps(0, 0, 0, 0, 0, 0, 0, 0, i * 1000));
+        }
+        int total = SqlTraceRecorder.TOTAL;
+        Assert.assertEquals(100, recorder.getCount(total));
+        Assert.assertEquals(50500, recorder.getAvg(total));
+        Assert.assertEquals(100000, recorder.getMax(total));
+        // 分位数为 log2 分桶上界
+        long p50 = recorder.getPercentile(total, 50);
+        Assert.assertTrue(p50 >= 50000 && p50 < 2 * 50000);
+        long p99 = recorder.getPercentile(total, 99);
+        Assert.assertTrue(p99 >= 99000 && p99 <= 100000);
+    }
+}
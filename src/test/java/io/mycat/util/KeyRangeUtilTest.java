@@ -0,0 +1,41 @@
+package io.mycat.util;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class KeyRangeUtilTest {
+
+	private static List<BigInteger> points(long... values) {
+		BigInteger[] result = new BigInteger[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = BigInteger.valueOf(values[i]);
+		}
+		return Arrays.asList(result);
+	}
+
+	@Test
+	public void testSplitPoints() {
+		Assert.assertEquals(points(25, 50, 75),
+				KeyRangeUtil.splitPoints(BigInteger.valueOf(0), BigInteger.valueOf(100), 4));
+		// 范围比段数小时不会产生重复或越界的切分点
+		Assert.assertEquals(points(1, 2),
+				KeyRangeUtil.splitPoints(BigInteger.valueOf(1), BigInteger.valueOf(3), 8));
+		Assert.assertEquals(points(1),
+				KeyRangeUtil.splitPoints(BigInteger.ONE, BigInteger.valueOf(2), 4));
+		Assert.assertEquals(points(),
+				KeyRangeUtil.splitPoints(BigInteger.valueOf(5), BigInteger.valueOf(5), 4));
+	}
+
+	@Test
+	public void testSplitPointsNoOverflow() {
+		Assert.assertEquals(points(-1),
+				KeyRangeUtil.splitPoints(BigInteger.valueOf(Long.MIN_VALUE), BigInteger.valueOf(Long.MAX_VALUE), 2));
+		// unsigned bigint
+		Assert.assertEquals(Arrays.asList(new BigInteger("9223372036854775807")),
+				KeyRangeUtil.splitPoints(BigInteger.ZERO, new BigInteger("18446744073709551615"), 2));
+	}
+}
@@ -0,0 +1,123 @@
+package io.mycat.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author mycat
+ */
+public class TimingWheelTest {
+
+	@Test
+	public void testExpireAtDeadline() {
+		TimingWheel wheel = new TimingWheel(100, 8, 0);
+		final List<Long> fired = new ArrayList<Long>();
+		TimingWheel.TimerTask task = new TimingWheel.TimerTask() {
+			@Override
+			public long run(long now) {
+				fired.add(now);
+				return -1;
+			}
+		};
+		wheel.schedule(task, 250);
+		wheel.advance(100);
+		wheel.advance(200);
+		Assert.assertTrue(fired.isEmpty());
+		wheel.advance(300);
+		Assert.assertEquals(1, fired.size());
+		Assert.assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testMultipleRounds() {
+		TimingWheel wheel = new TimingWheel(10, 4, 0);
+		final int[] count = new int[1];
+		wheel.schedule(new TimingWheel.TimerTask() {
+			@Override
+			public long run(long now) {
+				count[0]++;
+				return -1;
+			}
+		}, 1000);
+		for (long now = 0; now < 1000; now += 10) {
+			wheel.advance(now);
+		}
+		Assert.assertEquals(0, count[0]);
+		wheel.advance(1000);
+		Assert.assertEquals(1, count[0]);
+	}
+
+	@Test
+	public void testLazyRearm() {
+		TimingWheel wheel = new TimingWheel(10, 16, 0);
+		// 模拟连接的活动时间不断后移
+		final long[] lastActive = new long[] { 0 };
+		final int[] closed = new int[1];
+		wheel.schedule(new TimingWheel.TimerTask() {
+			@Override
+			public long run(long now) {
+				long deadline = lastActive[0] + 100;
+				if (deadline <= now) {
+					closed[0]++;
+					return -1;
+				}
+				return deadline;
+			}
+		}, 100);
+		lastActive[0] = 50;
+		wheel.advance(100);
+		Assert.assertEquals(0, closed[0]);
+		Assert.assertEquals(1, wheel.getRearmedCount());
+		wheel.advance(140);
+		Assert.assertEquals(0, closed[0]);
+		wheel.advance(150);
+		Assert.assertEquals(1, closed[0]);
+		Assert.assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testCancelAndLag() {
+		TimingWheel wheel = new TimingWheel(10, 4, 0);
+		final int[] count = new int[1];
+		TimingWheel.TimerTask task = new TimingWheel.TimerTask() {
+			@Override
+			public long run(long now) {
+				count[0]++;
+				return -1;
+			}
+		};
+		TimingWheel.Timeout cancelled = wheel.schedule(task, 20);
+		cancelled.cancel();
+		for (int i = 0; i < 10; i++) {
+			wheel.schedule(task, 15 + i * 7);
+		}
+		// 定时线程落后了很多圈
+		wheel.advance(10000);
+		Assert.assertEquals(10, count[0]);
+		Assert.assertEquals(0, wheel.size());
+	}
+
+	@Test
+	public void testCancelRearmedTask() {
+		TimingWheel wheel = new TimingWheel(10, 4, 0);
+		final int[] count = new int[1];
+		TimingWheel.Timeout timeout = wheel.schedule(new TimingWheel.TimerTask() {
+			@Override
+			public long run(long now) {
+				count[0]++;
+				return now + 100;
+			}
+		}, 10);
+		wheel.advance(10);
+		Assert.assertEquals(1, count[0]);
+		Assert.assertEquals(1, wheel.size());
+		// 已经在槽中的任务被取消，连接关闭后不再执行
+		timeout.cancel();
+		wheel.advance(500);
+		Assert.assertEquals(1, count[0]);
+		Assert.assertEquals(0, wheel.size());
+	}
+}